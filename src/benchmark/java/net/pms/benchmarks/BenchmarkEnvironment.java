@@ -0,0 +1,159 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.benchmarks;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import net.pms.PMS;
+import net.pms.configuration.FormatConfiguration;
+import net.pms.configuration.PmsConfiguration;
+import net.pms.configuration.RendererConfiguration;
+import net.pms.dlna.DLNAMediaAudio;
+import net.pms.dlna.DLNAMediaInfo;
+import net.pms.dlna.GlobalIdRepo;
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shared set up of the benchmarks: a quiet test configuration, the renderer
+ * configurations and synthetic media libraries.
+ */
+public class BenchmarkEnvironment {
+	private static final String[] TITLES = {
+		"The Simpsons S01E01 - Simpsons Roasting on an Open Fire (1989) [720p]",
+		"Star Wars Episode IV - A New Hope (1977) 1080p BluRay x264",
+		"Game of Thrones - S05E09 - The Dance of Dragons",
+		"Documentary.2019.2160p.HDR.HEVC.DTS-HD",
+		"Home Video 2012-07-14 Beach"
+	};
+
+	private static boolean initialized;
+
+	/**
+	 * This class is not meant to be instantiated.
+	 */
+	private BenchmarkEnvironment() {
+	}
+
+	/**
+	 * Silences the logging and sets up the test configuration and the
+	 * renderer configurations. The test configuration uses the "UMS-tests"
+	 * profile, so the benchmarks never touch a real database.
+	 * <p>
+	 * The server itself isn't started, but the global id repository is
+	 * created since resources can't be added to folders without it.
+	 */
+	public static synchronized void initialize() throws ConfigurationException, IllegalAccessException, InterruptedException {
+		if (initialized) {
+			return;
+		}
+		LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+		context.getLogger(Logger.ROOT_LOGGER_NAME).setLevel(Level.OFF);
+		Locale.setDefault(Locale.ENGLISH);
+		PMS.setLocale(Locale.ENGLISH);
+		PMS.get();
+		PmsConfiguration configuration = new PmsConfiguration(false);
+		// The code database isn't created either, since the server isn't started
+		configuration.getConfiguration().setProperty("code_enable", false);
+		PMS.setConfiguration(configuration);
+		RendererConfiguration.loadRendererConfigurations(configuration);
+
+		// Only created when the server starts, but every resource tree needs it
+		if (PMS.getGlobalRepo() == null) {
+			FieldUtils.writeField(PMS.get(), "globalRepo", new GlobalIdRepo(), true);
+		}
+		initialized = true;
+	}
+
+	/**
+	 * @param index the index of the synthetic file.
+	 * @return A realistic file name for the given index.
+	 */
+	public static String getFileName(int index) {
+		return TITLES[index % TITLES.length] + " " + index + ".mkv";
+	}
+
+	/**
+	 * Creates synthetic media information, as it would be parsed from a
+	 * typical video file.
+	 *
+	 * @param index the index of the synthetic file, used to vary the values.
+	 * @return The {@link DLNAMediaInfo}.
+	 */
+	public static DLNAMediaInfo createVideoMedia(int index) {
+		DLNAMediaInfo media = new DLNAMediaInfo();
+		media.setContainer(FormatConfiguration.MKV);
+		media.setCodecV(index % 3 == 0 ? FormatConfiguration.H265 : FormatConfiguration.H264);
+		media.setWidth(index % 2 == 0 ? 1920 : 1280);
+		media.setHeight(index % 2 == 0 ? 1080 : 720);
+		media.setFrameRate("23.976");
+		media.setBitrate(8000000 + index);
+		media.setSize(1000000000L + index);
+		media.setDuration(2400d + index % 600);
+		media.setVideoTrackCount(1);
+		List<DLNAMediaAudio> audioTracks = new ArrayList<>();
+		DLNAMediaAudio audio = new DLNAMediaAudio();
+		audio.setId(0);
+		audio.setCodecA(index % 2 == 0 ? FormatConfiguration.AC3 : FormatConfiguration.AAC_LC);
+		audio.getAudioProperties().setNumberOfChannels(6);
+		audio.setSampleFrequency("48000");
+		audio.setLang("eng");
+		audioTracks.add(audio);
+		media.setAudioTracks(audioTracks);
+		media.setMediaparsed(true);
+		return media;
+	}
+
+	/**
+	 * Creates a temporary directory holding {@code size} empty files with
+	 * synthetic names.
+	 *
+	 * @param size the number of files.
+	 * @return The created files.
+	 * @throws IOException If the files can't be created.
+	 */
+	public static List<File> createLibrary(int size) throws IOException {
+		File directory = Files.createTempDirectory("ums-benchmark").toFile();
+		List<File> files = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			File file = new File(directory, getFileName(i));
+			FileUtils.touch(file);
+			files.add(file);
+		}
+		return files;
+	}
+
+	/**
+	 * Deletes a library created by {@link #createLibrary(int)}.
+	 *
+	 * @param files the library files.
+	 */
+	public static void deleteLibrary(List<File> files) {
+		if (files != null && !files.isEmpty()) {
+			FileUtils.deleteQuietly(files.get(0).getParentFile());
+		}
+	}
+}
@@ -0,0 +1,106 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.configuration;
+
+import java.util.concurrent.TimeUnit;
+import net.pms.benchmarks.BenchmarkEnvironment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the matching of media against the supported formats of a
+ * renderer, done for every item of every Browse response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FormatConfigurationBenchmark {
+
+	/**
+	 * The renderer whose supported formats are matched.
+	 */
+	@Param({"PlayStation 4", "Samsung C/D Series", "LG EG910V"})
+	public String rendererName;
+
+	private FormatConfiguration formatConfiguration;
+	private RendererConfiguration renderer;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		BenchmarkEnvironment.initialize();
+		renderer = RendererConfiguration.getRendererConfigurationByName(rendererName);
+		if (renderer == null) {
+			throw new IllegalArgumentException("Unknown renderer: " + rendererName);
+		}
+		// Built here since renderers only have one when MediaInfo is available
+		formatConfiguration = new FormatConfiguration(renderer.getConfiguration().getList(RendererConfiguration.SUPPORTED));
+	}
+
+	@Benchmark
+	public String getMatchedMIMEtypeSupported() {
+		return formatConfiguration.getMatchedMIMEtype(
+			FormatConfiguration.MP4,
+			FormatConfiguration.H264,
+			FormatConfiguration.AAC_LC,
+			2,
+			48000,
+			0,
+			24,
+			1920,
+			1080,
+			8,
+			null,
+			null,
+			false,
+			renderer
+		);
+	}
+
+	@Benchmark
+	public String getMatchedMIMEtypeUnsupported() {
+		// Nothing matches, so all the supported formats are tried
+		return formatConfiguration.getMatchedMIMEtype(
+			FormatConfiguration.MKV,
+			FormatConfiguration.VP9,
+			FormatConfiguration.OPUS,
+			8,
+			48000,
+			0,
+			60,
+			3840,
+			2160,
+			10,
+			null,
+			"SUBRIP",
+			true,
+			renderer
+		);
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.configuration;
+
+import java.util.concurrent.TimeUnit;
+import net.pms.benchmarks.BenchmarkEnvironment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import net.pms.configuration.RendererConfiguration.SortedHeaderMap;
+
+/**
+ * Benchmarks the matching of request headers against the loaded renderer
+ * configurations, done for requests from renderers not yet recognized.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RendererConfigurationBenchmark {
+
+	/**
+	 * The sets of request headers to match, from a renderer matched early,
+	 * one matched late and one not matched at all.
+	 */
+	private static final String[][] HEADERS = {
+		{
+			"User-Agent: PS4Application libhttp/1.000 (PS4) libhttp/3.15 (PlayStation 4)"
+		},
+		{
+			"User-Agent: Linux/2.6.35 UPnP/1.0 DLNADOC/1.50 INTEL_NMPR/2.0 LGE_DLNA_SDK/1.5.0",
+			"FriendlyName.DLNA.ORG: RX-V3900"
+		},
+		{
+			"User-Agent: UnknownRenderer/1.0 UPnP/1.0 DLNADOC/1.50",
+			"X-Custom-Header: unknown"
+		}
+	};
+
+	@Param({"0", "1", "2"})
+	public int headerSet;
+
+	private String[] headers;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		BenchmarkEnvironment.initialize();
+		headers = HEADERS[headerSet];
+	}
+
+	@Benchmark
+	public RendererConfiguration getRendererConfigurationByHeaders() {
+		// Every request comes with its own headers, so the map isn't reused
+		SortedHeaderMap sortedHeaders = new SortedHeaderMap();
+		for (String header : headers) {
+			sortedHeaders.put(header);
+		}
+		return RendererConfiguration.getRendererConfigurationByHeaders(sortedHeaders);
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.database;
+
+import java.sql.Connection;
+import java.util.concurrent.TimeUnit;
+import net.pms.benchmarks.BenchmarkEnvironment;
+import net.pms.dlna.DLNAMediaInfo;
+import net.pms.formats.Format;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the reading and writing of cached media information, done when
+ * files are parsed and when folders are browsed.
+ * <p>
+ * The database lives in the "UMS-tests" profile directory, so running this
+ * doesn't touch a real media library.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MediaTableFilesBenchmark {
+
+	private static final long MODIFIED = 1600000000000L;
+
+	@Param({"1000", "10000"})
+	public int librarySize;
+
+	private Connection connection;
+	private String[] fileNames;
+	private DLNAMediaInfo[] media;
+	private int index;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		BenchmarkEnvironment.initialize();
+		MediaDatabase.init();
+		connection = MediaDatabase.getConnectionIfAvailable();
+		if (connection == null) {
+			throw new IllegalStateException("The media database is not available");
+		}
+		MediaDatabase.dropAllTables(connection);
+		MediaDatabase.get().checkTables(true);
+
+		fileNames = new String[librarySize];
+		media = new DLNAMediaInfo[librarySize];
+		for (int i = 0; i < librarySize; i++) {
+			fileNames[i] = "/media/benchmark/" + BenchmarkEnvironment.getFileName(i);
+			media[i] = BenchmarkEnvironment.createVideoMedia(i);
+			MediaTableFiles.insertOrUpdateData(connection, fileNames[i], MODIFIED, Format.VIDEO, media[i]);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		MediaDatabase.dropAllTables(connection);
+		connection.close();
+		MediaDatabase.shutdown();
+	}
+
+	private int nextIndex() {
+		index = index + 1 < librarySize ? index + 1 : 0;
+		return index;
+	}
+
+	@Benchmark
+	public DLNAMediaInfo getData() throws Exception {
+		return MediaTableFiles.getData(connection, fileNames[nextIndex()], MODIFIED);
+	}
+
+	@Benchmark
+	public Long getFileId() {
+		return MediaTableFiles.getFileId(connection, fileNames[nextIndex()], MODIFIED);
+	}
+
+	@Benchmark
+	public void insertOrUpdateData() throws Exception {
+		int i = nextIndex();
+		MediaTableFiles.insertOrUpdateData(connection, fileNames[i], MODIFIED, Format.VIDEO, media[i]);
+	}
+}
@@ -0,0 +1,108 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.dlna;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.pms.PMS;
+import net.pms.benchmarks.BenchmarkEnvironment;
+import net.pms.configuration.RendererConfiguration;
+import net.pms.dlna.virtual.VirtualFolder;
+import net.pms.formats.FormatFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks the rendering of Browse responses: the DIDL-Lite representation
+ * of the items and the paging through a folder of a synthetic library.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DLNAResourceBenchmark {
+
+	@Param({"100", "1000", "10000"})
+	public int librarySize;
+
+	@Param({"50"})
+	public int pageSize;
+
+	private List<File> files;
+	private RendererConfiguration renderer;
+	private VirtualFolder folder;
+	private String folderId;
+	private int offset;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		BenchmarkEnvironment.initialize();
+		renderer = RendererConfiguration.getDefaultConf();
+		files = BenchmarkEnvironment.createLibrary(librarySize);
+		folder = new VirtualFolder("Benchmark", null);
+		PMS.getGlobalRepo().add(folder);
+		for (int i = 0; i < files.size(); i++) {
+			RealFile item = new RealFile(files.get(i));
+			item.setFormat(FormatFactory.getAssociatedFormat(files.get(i).getName()));
+			item.setMedia(BenchmarkEnvironment.createVideoMedia(i));
+			folder.addChild(item);
+		}
+		folder.setDiscovered(true);
+		folderId = folder.getResourceId();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		BenchmarkEnvironment.deleteLibrary(files);
+	}
+
+	private int nextOffset() {
+		// The folder may also hold a transcode folder, so full pages only
+		offset = offset + pageSize < librarySize ? offset + pageSize : 0;
+		return offset;
+	}
+
+	@Benchmark
+	public void getDidlString(Blackhole blackhole) {
+		List<DLNAResource> children = folder.getChildren();
+		int start = nextOffset();
+		for (int i = start; i < start + pageSize && i < children.size(); i++) {
+			blackhole.consume(children.get(i).getDidlString(renderer));
+		}
+	}
+
+	@Benchmark
+	public List<DLNAResource> getDLNAResourcesPage() throws IOException {
+		return folder.getDLNAResources(folderId, true, nextOffset(), pageSize, renderer);
+	}
+}
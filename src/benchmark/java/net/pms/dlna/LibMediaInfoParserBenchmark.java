@@ -0,0 +1,87 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.dlna;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import net.pms.benchmarks.BenchmarkEnvironment;
+import net.pms.dlna.MediaInfo.StreamType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks the interpretation of the values reported by MediaInfo, done
+ * for every stream of every parsed file.
+ * <p>
+ * The native library isn't involved, so this measures the Java side of the
+ * parsing only.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LibMediaInfoParserBenchmark {
+
+	private static final String[] VIDEO_FORMATS = {"AVC", "HEVC", "MPEG Video", "VP9", "MPEG-4 Visual"};
+	private static final String[] AUDIO_FORMATS = {"AC-3", "AAC", "DTS", "MPEG Audio", "FLAC", "Opus"};
+
+	private File file;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		BenchmarkEnvironment.initialize();
+		file = new File(BenchmarkEnvironment.getFileName(0));
+	}
+
+	@Benchmark
+	public void parseValues(Blackhole blackhole) {
+		blackhole.consume(LibMediaInfoParser.getReferenceFrameCount("4 frames"));
+		blackhole.consume(LibMediaInfoParser.getAvcLevel("High@L4.1"));
+		blackhole.consume(LibMediaInfoParser.getAvcProfile("High@L4.1"));
+		blackhole.consume(LibMediaInfoParser.getBitrate("4 500 kb/s"));
+		blackhole.consume(LibMediaInfoParser.getVideoBitrate("12000000"));
+		blackhole.consume(LibMediaInfoParser.getFPSValue("23.976 (24000/1001) FPS"));
+		blackhole.consume(LibMediaInfoParser.getSampleFrequency("48.0 kHz"));
+		blackhole.consume(LibMediaInfoParser.getPixelValue("1 920 pixels"));
+		blackhole.consume(LibMediaInfoParser.getLang("English"));
+	}
+
+	@Benchmark
+	public DLNAMediaInfo setFormat() {
+		DLNAMediaInfo media = new DLNAMediaInfo();
+		LibMediaInfoParser.setFormat(StreamType.General, media, null, "Matroska", file);
+		for (String format : VIDEO_FORMATS) {
+			LibMediaInfoParser.setFormat(StreamType.Video, media, null, format, file);
+		}
+		for (String format : AUDIO_FORMATS) {
+			LibMediaInfoParser.setFormat(StreamType.Audio, media, new DLNAMediaAudio(), format, file);
+		}
+		return media;
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.io;
+
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import net.pms.PMS;
+import net.pms.benchmarks.BenchmarkEnvironment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks pushing transcoded data through the transcoding buffer: a
+ * transcoder writing into it and a renderer reading it back out.
+ * <p>
+ * Every invocation creates a new buffer, so the allocation rate reported by
+ * the GC profiler includes the buffer itself.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BufferedOutputFileBenchmark {
+
+	/**
+	 * The amount of data written and read, in megabytes. This stays below
+	 * the buffer size so that the writer never has to wait for the reader.
+	 */
+	@Param({"16"})
+	public int megabytes;
+
+	@Param({"8192", "65536"})
+	public int chunkSize;
+
+	private OutputParams params;
+	private byte[] chunk;
+	private byte[] readBuffer;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		BenchmarkEnvironment.initialize();
+		params = new OutputParams(PMS.getConfiguration());
+		params.setHideBuffer(true);
+		chunk = new byte[chunkSize];
+		new Random(chunkSize).nextBytes(chunk);
+		readBuffer = new byte[chunkSize];
+	}
+
+	@Benchmark
+	public long writeThenRead() throws Exception {
+		BufferedOutputFileImpl output = new BufferedOutputFileImpl(params);
+		long total = (long) megabytes * 1048576;
+		for (long written = 0; written < total; written += chunk.length) {
+			output.write(chunk, 0, chunk.length);
+		}
+		output.close();
+
+		long read = 0;
+		try (InputStream input = output.getInputStream(0)) {
+			int n;
+			while ((n = input.read(readBuffer)) != -1) {
+				read += n;
+			}
+		}
+		output.reset();
+		return read;
+	}
+}
@@ -0,0 +1,76 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.util;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import net.pms.benchmarks.BenchmarkEnvironment;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks the extraction of metadata from file names, done for every file
+ * that is parsed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FileUtilBenchmark {
+
+	private static final String[] FILE_NAMES = {
+		"The Simpsons S01E01 - Simpsons Roasting on an Open Fire.mkv",
+		"Battlestar.Galactica.2003.S02E05.720p.BluRay.x264-DEMAND.mkv",
+		"The.Grand.Budapest.Hotel.2014.1080p.BluRay.x264.DTS-HD.MA.5.1-RARBG.mkv",
+		"Home Movies 2019-07-14.mp4",
+		"Dr. Strangelove or How I Learned to Stop Worrying and Love the Bomb (1964) [Director's Cut].avi"
+	};
+
+	@Param({"false", "true"})
+	public boolean withPath;
+
+	private String[] absolutePaths;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		BenchmarkEnvironment.initialize();
+		absolutePaths = new String[FILE_NAMES.length];
+		for (int i = 0; i < FILE_NAMES.length; i++) {
+			absolutePaths[i] = withPath ? new File(new File("media", "Series " + i), FILE_NAMES[i]).getAbsolutePath() : null;
+		}
+	}
+
+	@Benchmark
+	public void getFileNameMetadata(Blackhole blackhole) {
+		for (int i = 0; i < FILE_NAMES.length; i++) {
+			blackhole.consume(FileUtil.getFileNameMetadata(FILE_NAMES[i], absolutePaths[i]));
+		}
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the stream transformers that tsMuxeR streams pass through: the
+ * H.264 Annex B conversion and the LPCM and IEC 61937 audio wrappers. Every
+ * invocation pushes 16 megabytes through a new stream, as if a stream was
+ * started, so the allocation rate reported by the GC profiler shows the
+ * garbage produced per stream and per chunk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StreamTransformerBenchmark {
+
+	private static final int SIZE = 16 * 1024 * 1024;
+	private static final int CHUNK_SIZE = 512 * 1024;
+	private static final byte[] HEADER = {0, 0, 0, 1, 0x67, 0x64, 0x00, 0x29, 0, 0, 0, 1, 0x68, (byte) 0xEB, 0, 0, 0, 1};
+
+	private byte[] avc;
+	private byte[] pcm;
+	private byte[] ac3;
+	private byte[] chunk;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random random = new Random(SIZE);
+		ByteArrayOutputStream out = new ByteArrayOutputStream(SIZE + 65536);
+		for (int i = 0; out.size() < SIZE; i++) {
+			// NAL units of typical sizes for a high bitrate stream
+			byte[] nal = new byte[i % 25 == 0 ? 200000 : 3 + random.nextInt(40000)];
+			random.nextBytes(nal);
+			nal[0] = (byte) (i % 25 == 0 ? 0x65 : 0x41);
+			nal[1] = (byte) (i % 25 == 0 ? 0x88 : 0x02);
+			out.write(nal.length >> 24);
+			out.write(nal.length >> 16);
+			out.write(nal.length >> 8);
+			out.write(nal.length);
+			out.write(nal, 0, nal.length);
+		}
+		avc = out.toByteArray();
+
+		pcm = new byte[SIZE];
+		random.nextBytes(pcm);
+
+		ac3 = new byte[SIZE];
+		random.nextBytes(ac3);
+		for (int i = 0; i < ac3.length; i++) {
+			if (ac3[i] == 11) {
+				ac3[i] = 12;
+			}
+		}
+		for (int i = 0; i + 1 < ac3.length; i += 1536) {
+			ac3[i] = 11;
+			ac3[i + 1] = 119;
+		}
+		chunk = new byte[CHUNK_SIZE];
+	}
+
+	@Benchmark
+	public long h264AnnexB() throws IOException {
+		long read = 0;
+		try (InputStream in = new H264AnnexBInputStream(new ByteArrayInputStream(avc), HEADER)) {
+			int n;
+			while ((n = in.read(chunk)) > -1) {
+				read += n;
+			}
+		}
+		return read;
+	}
+
+	@Benchmark
+	public void pcm() throws IOException {
+		write(new PCMAudioOutputStream(OutputStream.nullOutputStream(), 6, 48000, 16), pcm);
+	}
+
+	@Benchmark
+	public void iec61937() throws IOException {
+		write(new IEC61937AudioOutputStream(new PCMAudioOutputStream(OutputStream.nullOutputStream(), 2, 48000, 16)), ac3);
+	}
+
+	/**
+	 * Writes the data in the chunk size of the IPC pipes.
+	 */
+	private void write(OutputStream out, byte[] data) throws IOException {
+		try {
+			for (int pos = 0; pos < data.length; pos += CHUNK_SIZE) {
+				int len = Math.min(CHUNK_SIZE, data.length - pos);
+				System.arraycopy(data, pos, chunk, 0, len);
+				out.write(chunk, 0, len);
+			}
+		} finally {
+			out.close();
+		}
+	}
+}
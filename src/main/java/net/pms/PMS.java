@@ -64,6 +64,7 @@ import net.pms.logging.CacheLogger;
 import net.pms.logging.LoggingConfig;
 import net.pms.network.configuration.NetworkConfiguration;
 import net.pms.network.mediaserver.MediaServer;
+import net.pms.network.mediaserver.handlers.api.starrating.StarRatingWriter;
 import net.pms.network.webinterfaceserver.WebInterfaceServer;
 import net.pms.newgui.DbgPacker;
 import net.pms.gui.EConnectionState;
@@ -403,6 +404,9 @@ public class PMS {
 		// Initialize mediaDatabase
 		MediaDatabase.init();
 
+		// Remove a copy left by a star rating write that was interrupted
+		StarRatingWriter.getInstance().removeStaleCopy();
+
 		/**
 		 * Bump the SystemUpdateID state variable because now we will have
 		 * different resource IDs than last time UMS ran. It also populates our
@@ -676,6 +680,9 @@ public class PMS {
 					LOGGER.trace("", e);
 				}
 
+				// Write the star ratings that are still queued
+				StarRatingWriter.getInstance().shutdown();
+
 				// Destroy services
 				Services.destroy();
 
@@ -91,7 +91,7 @@ public class DeviceConfiguration extends PmsConfiguration {
 
 		// Initialize our internal RendererConfiguration vars
 		if (ref != null) {
-			sortedHeaderMatcher = ref.sortedHeaderMatcher;
+			sortedHeaderPattern = ref.sortedHeaderPattern;
 		}
 
 		// Note: intentionally omitting 'player = null' so as to preserve player state when reloading
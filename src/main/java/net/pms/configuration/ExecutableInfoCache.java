@@ -0,0 +1,188 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.configuration;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import net.pms.PMS;
+import net.pms.configuration.FFmpegExecutableInfo.FFmpegExecutableInfoBuilder;
+import net.pms.util.Version;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A persistent cache of successful executable tests.
+ * <p>
+ * Testing an executable means starting it at least once, which adds up to a
+ * noticeable delay at startup when all the transcoding engines are tested.
+ * The results are stored in {@value #CACHE_FILE} in the data folder, keyed
+ * by the executable path, size and modification time, so that executables
+ * that haven't changed aren't tested again on the next start.
+ * <p>
+ * Only available executables are cached, failures might be caused by
+ * something other than the executable itself and are always retested.
+ */
+public class ExecutableInfoCache {
+	private static final Logger LOGGER = LoggerFactory.getLogger(ExecutableInfoCache.class);
+	private static final String CACHE_FILE = "executables.json";
+	private static final Gson GSON = new Gson();
+
+	/** The cached tests by executable path, guarded by itself */
+	private static final Map<String, Entry> ENTRIES = new HashMap<>();
+
+	private static File file;
+
+	/**
+	 * This class is not meant to be instantiated.
+	 */
+	private ExecutableInfoCache() {
+	}
+
+	/**
+	 * Looks up the cached test of the executable of {@code executableInfo}.
+	 *
+	 * @param executableInfo the {@link ExecutableInfo} to look up.
+	 * @return The cached test result or {@code null} if the executable hasn't
+	 *         been cached or has changed since.
+	 */
+	@Nullable
+	public static ExecutableInfo get(@Nonnull ExecutableInfo executableInfo) {
+		Path path = executableInfo.getPath();
+		BasicFileAttributes attributes = getAttributes(path);
+		if (attributes == null || !Files.isExecutable(path)) {
+			return null;
+		}
+		Entry entry;
+		synchronized (ENTRIES) {
+			load();
+			entry = ENTRIES.get(path.toString());
+		}
+		if (
+			entry == null ||
+			entry.size != attributes.size() ||
+			entry.modified != attributes.lastModifiedTime().toMillis()
+		) {
+			return null;
+		}
+
+		ExecutableInfo.ExecutableInfoBuilder builder = executableInfo.modify();
+		builder.available(Boolean.TRUE).errorType(null).errorText(null);
+		builder.version(entry.version == null ? null : new Version(entry.version));
+		if (builder instanceof FFmpegExecutableInfoBuilder) {
+			((FFmpegExecutableInfoBuilder) builder).protocols(entry.protocols);
+		}
+		LOGGER.debug("Using the cached test result for \"{}\"", path);
+		return builder.build();
+	}
+
+	/**
+	 * Stores the test result {@code executableInfo} if the executable is
+	 * available.
+	 *
+	 * @param executableInfo the test result to store.
+	 */
+	public static void put(@Nonnull ExecutableInfo executableInfo) {
+		if (!Boolean.TRUE.equals(executableInfo.getAvailable())) {
+			return;
+		}
+		Path path = executableInfo.getPath();
+		BasicFileAttributes attributes = getAttributes(path);
+		if (attributes == null) {
+			return;
+		}
+		Entry entry = new Entry();
+		entry.size = attributes.size();
+		entry.modified = attributes.lastModifiedTime().toMillis();
+		entry.version = executableInfo.getVersion() == null ? null : executableInfo.getVersion().toString();
+		if (executableInfo instanceof FFmpegExecutableInfo) {
+			entry.protocols = ((FFmpegExecutableInfo) executableInfo).getProtocols();
+		}
+		synchronized (ENTRIES) {
+			load();
+			ENTRIES.put(path.toString(), entry);
+			save();
+		}
+	}
+
+	@Nullable
+	private static BasicFileAttributes getAttributes(@Nonnull Path path) {
+		try {
+			BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+			return attributes.isRegularFile() ? attributes : null;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Reads the cache file if it hasn't been read. Must be called while
+	 * synchronized on {@link #ENTRIES}.
+	 */
+	private static void load() {
+		if (file != null) {
+			return;
+		}
+		PmsConfiguration configuration = PMS.getConfiguration();
+		file = new File(configuration.getDataFile(CACHE_FILE));
+		if (!file.isFile()) {
+			return;
+		}
+		try (Reader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+			Map<String, Entry> entries = GSON.fromJson(reader, new TypeToken<Map<String, Entry>>() { }.getType());
+			if (entries != null) {
+				ENTRIES.putAll(entries);
+			}
+		} catch (IOException | JsonParseException e) {
+			LOGGER.debug("Couldn't read the executables cache \"{}\", it will be rebuilt: {}", file, e.getMessage());
+			LOGGER.trace("", e);
+		}
+	}
+
+	/**
+	 * Writes the cache file. Must be called while synchronized on
+	 * {@link #ENTRIES}.
+	 */
+	private static void save() {
+		try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+			GSON.toJson(ENTRIES, writer);
+		} catch (IOException e) {
+			LOGGER.debug("Couldn't write the executables cache \"{}\": {}", file, e.getMessage());
+			LOGGER.trace("", e);
+		}
+	}
+
+	private static class Entry {
+		private long size;
+		private long modified;
+		private String version;
+		private List<String> protocols;
+	}
+}
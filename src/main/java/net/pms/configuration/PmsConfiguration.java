@@ -234,6 +234,8 @@ public class PmsConfiguration extends RendererConfiguration {
 	protected static final String KEY_MAX_BITRATE = "maximum_bitrate";
 	protected static final String KEY_MAX_MEMORY_BUFFER_SIZE = "maximum_video_buffer_size";
 	protected static final String KEY_MEDIA_LIB_SORT = "media_lib_sort";
+	protected static final String KEY_MEDIAINFO_PARSERS = "mediainfo_parsers";
+	protected static final String KEY_MEDIAINFO_REPORT_PARSING = "mediainfo_report_parsing";
 	protected static final String KEY_MENCODER_ASS = "mencoder_ass";
 	protected static final String KEY_MENCODER_AC3_FIXED = "mencoder_ac3_fixed";
 	protected static final String KEY_MENCODER_CODEC_SPECIFIC_SCRIPT = "mencoder_codec_specific_script";
@@ -318,6 +320,7 @@ public class PmsConfiguration extends RendererConfiguration {
 	protected static final String KEY_SPEED_DBG = "speed_debug";
 	protected static final String KEY_SUBS_COLOR = "subtitles_color";
 	protected static final String KEY_SUBS_INFO_LEVEL = "subs_info_level";
+	protected static final String KEY_SUBTITLES_CACHE_SIZE = "subtitles_cache_size";
 	protected static final String KEY_SUBTITLES_CODEPAGE = "subtitles_codepage";
 	protected static final String KEY_SUBTITLES_LANGUAGES = "subtitles_languages";
 	protected static final String KEY_TEMP_FOLDER_PATH = "temp_directory";
@@ -1883,6 +1886,21 @@ public class PmsConfiguration extends RendererConfiguration {
 		return getString(KEY_SUBTITLES_CODEPAGE, "");
 	}
 
+	/**
+	 * Returns the maximum size in megabytes of the cache holding embedded
+	 * text subtitles extracted in the background. A value of {@code 0}
+	 * disables both the cache and the background extraction.
+	 *
+	 * @return The maximum cache size in megabytes.
+	 */
+	public int getSubtitlesCacheSize() {
+		return Math.max(0, getInt(KEY_SUBTITLES_CACHE_SIZE, 200));
+	}
+
+	public void setSubtitlesCacheSize(int value) {
+		configuration.setProperty(KEY_SUBTITLES_CACHE_SIZE, value);
+	}
+
 	/**
 	 * Whether MEncoder should use fontconfig for displaying subtitles.
 	 *
@@ -2317,6 +2335,38 @@ public class PmsConfiguration extends RendererConfiguration {
 		return getInt(KEY_NUMBER_OF_CPU_CORES, nbcores);
 	}
 
+	/**
+	 * Returns the maximum number of files MediaInfo parses at the same time.
+	 * Each one uses its own native MediaInfo handle. The default is the
+	 * number of available processors, up to 8, since parsing is mostly
+	 * limited by the storage beyond that.
+	 *
+	 * @return The maximum number of parallel MediaInfo parsers.
+	 */
+	public int getMediaInfoParsers() {
+		int defaultParsers = Math.max(1, Math.min(8, Runtime.getRuntime().availableProcessors()));
+		return Math.max(1, getInt(KEY_MEDIAINFO_PARSERS, defaultParsers));
+	}
+
+	public void setMediaInfoParsers(int value) {
+		configuration.setProperty(KEY_MEDIAINFO_PARSERS, value);
+	}
+
+	/**
+	 * Whether MediaInfo should return the complete report of a file in a
+	 * single call, instead of each value being read with its own call. This
+	 * requires MediaInfo 18.03 or later.
+	 *
+	 * @return {@code true} if files should be parsed from a single report.
+	 */
+	public boolean isMediaInfoReportParsing() {
+		return getBoolean(KEY_MEDIAINFO_REPORT_PARSING, false);
+	}
+
+	public void setMediaInfoReportParsing(boolean value) {
+		configuration.setProperty(KEY_MEDIAINFO_REPORT_PARSING, value);
+	}
+
 	/**
 	 * Sets the number of CPU cores that should be used for transcoding. The
 	 * maximum value depends on the physical available count of "real processor
@@ -4838,11 +4888,6 @@ public class PmsConfiguration extends RendererConfiguration {
 	}
 
 	public void setAutomaticMaximumBitrate(boolean b) {
-		if (!isAutomaticMaximumBitrate() && b) {
-			// get all bitrates from renderers
-			RendererConfiguration.calculateAllSpeeds();
-		}
-
 		configuration.setProperty(KEY_AUTOMATIC_MAXIMUM_BITRATE, b);
 	}
 
@@ -13,6 +13,8 @@ import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.Map.Entry;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.regex.Matcher;
@@ -33,6 +35,7 @@ import net.pms.network.mediaserver.UPNPHelper;
 import net.pms.network.mediaserver.UPNPPlayer;
 import net.pms.gui.IRendererGuiListener;
 import net.pms.util.BasicPlayer;
+import net.pms.util.BasicThreadFactory;
 import net.pms.util.FileWatcher;
 import net.pms.util.FormattableColor;
 import net.pms.util.InvalidArgumentException;
@@ -59,6 +62,15 @@ public class RendererConfiguration extends Renderer {
 	public static final File NOFILE = new File("NOFILE");
 
 	protected static TreeSet<RendererConfiguration> enabledRendererConfs;
+
+	/**
+	 * An immutable snapshot of {@link #enabledRendererConfs} in matching
+	 * order, so that renderer detection neither copies nor locks the set.
+	 */
+	private static volatile List<RendererConfiguration> matchIndex = Collections.emptyList();
+
+	/** The maximum number of threads parsing renderer configuration files */
+	private static final int MAX_LOADING_THREADS = 8;
 	protected static PmsConfiguration pmsConfigurationStatic = PMS.getConfiguration();
 	protected static RendererConfiguration defaultConf;
 	protected static DeviceConfiguration streamingConf;
@@ -70,7 +82,8 @@ public class RendererConfiguration extends Renderer {
 	protected ConfigurationReader configurationReader;
 	protected FormatConfiguration formatConfiguration;
 	protected int rank;
-	protected Matcher sortedHeaderMatcher;
+	protected volatile Pattern sortedHeaderPattern;
+	private volatile UpnpDetailsPattern upnpDetailsPattern;
 	protected List<String> identifiers = null;
 	protected BasicPlayer player;
 
@@ -254,6 +267,8 @@ public class RendererConfiguration extends Renderer {
 
 	/**
 	 * Load all renderer configuration files and set up the default renderer.
+	 * The files are parsed in parallel, but they are ranked and enabled in
+	 * the same order as if they were loaded one by one.
 	 *
 	 * @param pmsConf
 	 */
@@ -275,39 +290,36 @@ public class RendererConfiguration extends Renderer {
 				if (renderersDir != null) {
 					LOGGER.info("Loading renderer configurations from " + renderersDir.getAbsolutePath());
 
-					File[] confs = renderersDir.listFiles();
+					File[] confs = renderersDir.listFiles((File dir, String name) -> name.endsWith(".conf"));
+					if (confs == null) {
+						continue;
+					}
 					Arrays.sort(confs);
 					int rank = 1;
 
 					List<String> selectedRenderers = pmsConf.getSelectedRenderers();
-					for (File f : confs) {
-						if (f.getName().endsWith(".conf")) {
-							try {
-								RendererConfiguration r = new RendererConfiguration(f);
-								//do not add device conf
-								if (r.configuration.containsKey(DEVICE_ID) || r.configuration.containsKey("device")) {
-									continue;
-								}
-								r.rank = rank++;
-								String rendererName = r.getConfName();
-								ALL_RENDERERS_NAMES.add(rendererName);
-								String renderersGroup = null;
-								if (rendererName.indexOf(' ') > 0) {
-									renderersGroup = rendererName.substring(0, rendererName.indexOf(' '));
-								}
-
-								if (selectedRenderers.contains(rendererName) || selectedRenderers.contains(renderersGroup) || selectedRenderers.contains(pmsConf.allRenderers)) {
-									enabledRendererConfs.add(r);
-								} else {
-									LOGGER.debug("Ignored \"{}\" configuration", rendererName);
-								}
-							} catch (ConfigurationException ce) {
-								LOGGER.info("Error in loading configuration of: " + f.getAbsolutePath());
-							}
+					for (RendererConfiguration r : parseRendererConfigurations(confs)) {
+						//do not add device conf
+						if (r.configuration.containsKey(DEVICE_ID) || r.configuration.containsKey("device")) {
+							continue;
+						}
+						r.rank = rank++;
+						String rendererName = r.getConfName();
+						ALL_RENDERERS_NAMES.add(rendererName);
+						String renderersGroup = null;
+						if (rendererName.indexOf(' ') > 0) {
+							renderersGroup = rendererName.substring(0, rendererName.indexOf(' '));
+						}
+
+						if (selectedRenderers.contains(rendererName) || selectedRenderers.contains(renderersGroup) || selectedRenderers.contains(pmsConf.allRenderers)) {
+							enabledRendererConfs.add(r);
+						} else {
+							LOGGER.debug("Ignored \"{}\" configuration", rendererName);
 						}
 					}
 				}
 			}
+			updateMatchIndex();
 		}
 
 		LOGGER.info("Enabled " + enabledRendererConfs.size() + " configurations, listed in order of loading priority:");
@@ -332,6 +344,64 @@ public class RendererConfiguration extends Renderer {
 		DeviceConfiguration.loadDeviceConfigurations(pmsConf);
 	}
 
+	/**
+	 * Parses the given renderer configuration files on a small pool of
+	 * threads.
+	 *
+	 * @param confs the files to parse.
+	 * @return The parsed configurations in the order of {@code confs}, without
+	 *         the files that couldn't be parsed.
+	 */
+	private static List<RendererConfiguration> parseRendererConfigurations(File[] confs) {
+		List<RendererConfiguration> result = new ArrayList<>(confs.length);
+		if (confs.length == 0) {
+			return result;
+		}
+		int threads = Math.max(1, Math.min(MAX_LOADING_THREADS, Math.min(Runtime.getRuntime().availableProcessors(), confs.length)));
+		ExecutorService executor = Executors.newFixedThreadPool(threads, new BasicThreadFactory("Renderer Loader %d"));
+		try {
+			List<Future<RendererConfiguration>> futures = new ArrayList<>(confs.length);
+			for (File f : confs) {
+				futures.add(executor.submit(() -> new RendererConfiguration(f)));
+			}
+			for (int i = 0; i < confs.length; i++) {
+				try {
+					result.add(futures.get(i).get());
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof ConfigurationException) {
+						LOGGER.info("Error in loading configuration of: " + confs[i].getAbsolutePath());
+					} else {
+						LOGGER.error("Unexpected error while loading configuration of {}: {}", confs[i].getAbsolutePath(), e.getCause().getMessage());
+						LOGGER.trace("", e.getCause());
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			LOGGER.debug("Interrupted while loading renderer configurations");
+			Thread.currentThread().interrupt();
+		} finally {
+			executor.shutdownNow();
+		}
+		return result;
+	}
+
+	/**
+	 * Rebuilds the snapshot of the enabled renderers that detection runs
+	 * against. Must be called after {@link #enabledRendererConfs} or the
+	 * loading priority of one of its members changes.
+	 */
+	private static void updateMatchIndex() {
+		synchronized (LOAD_RENDERER_CONFIGURATIONS_LOCK) {
+			if (enabledRendererConfs == null) {
+				matchIndex = Collections.emptyList();
+				return;
+			}
+			List<RendererConfiguration> index = new ArrayList<>(enabledRendererConfs);
+			index.sort(RENDERER_LOADING_PRIORITY_COMPARATOR);
+			matchIndex = Collections.unmodifiableList(index);
+		}
+	}
+
 	public int getInt(String key, int def) {
 		return configurationReader.getInt(key, def);
 	}
@@ -585,34 +655,9 @@ public class RendererConfiguration extends Renderer {
 		}
 		resetUpnpMode();
 
-		if (
-			(
-				pmsConfiguration.isAutomaticMaximumBitrate() ||
-				pmsConfiguration.isSpeedDbg()
-			) &&
-			!(
-				sa.isLoopbackAddress() ||
-				sa.isAnyLocalAddress()
-			)
-		) {
-			SpeedStats.getSpeedInMBits(sa, getRendererName());
-		}
 		return true;
 	}
 
-	public static void calculateAllSpeeds() {
-		for (Entry<InetAddress, RendererConfiguration> entry : ADDRESS_ASSOCIATION.entrySet()) {
-			InetAddress sa = entry.getKey();
-			if (sa.isLoopbackAddress() || sa.isAnyLocalAddress()) {
-				continue;
-			}
-			RendererConfiguration r = entry.getValue();
-			if (!r.isOffline()) {
-				SpeedStats.getSpeedInMBits(sa, r.getRendererName());
-			}
-		}
-	}
-
 	public static RendererConfiguration getRendererConfigurationBySocketAddress(InetAddress sa) {
 		RendererConfiguration r = ADDRESS_ASSOCIATION.get(sa);
 		if (r != null) {
@@ -657,7 +702,7 @@ public class RendererConfiguration extends Renderer {
 			LOGGER.debug("Forcing renderer match to \"" + defaultConf.getRendererName() + "\"");
 			return defaultConf;
 		}
-		for (RendererConfiguration r : getEnabledRenderersConfigurations()) {
+		for (RendererConfiguration r : matchIndex) {
 			if (r.match(sortedHeaders)) {
 				LOGGER.debug("Matched media renderer \"" + r.getRendererName() + "\" based on headers " + sortedHeaders);
 				return r;
@@ -698,7 +743,7 @@ public class RendererConfiguration extends Renderer {
 	}
 
 	public static RendererConfiguration getRendererConfigurationByUPNPDetails(String details) {
-		for (RendererConfiguration r : enabledRendererConfs) {
+		for (RendererConfiguration r : matchIndex) {
 			if (r.matchUPNPDetails(details)) {
 				LOGGER.debug("Matched media renderer \"" + r.getRendererName() + "\" based on dlna details \"" + details + "\"");
 				return r;
@@ -869,6 +914,7 @@ public class RendererConfiguration extends Renderer {
 				try {
 					RendererConfiguration renderer = new RendererConfiguration(file);
 					enabledRendererConfs.add(renderer);
+					updateMatchIndex();
 					if (r instanceof DeviceConfiguration) {
 						((DeviceConfiguration) r).inherit(renderer);
 					}
@@ -1017,7 +1063,7 @@ public class RendererConfiguration extends Renderer {
 			searchMap.put("User-Agent", getUserAgent());
 			searchMap.put(getUserAgentAdditionalHttpHeader(), getUserAgentAdditionalHttpHeaderSearch());
 			String re = searchMap.toRegex();
-			sortedHeaderMatcher = StringUtils.isNotBlank(re) ? Pattern.compile(re, Pattern.CASE_INSENSITIVE).matcher("") : null;
+			sortedHeaderPattern = StringUtils.isNotBlank(re) ? Pattern.compile(re, Pattern.CASE_INSENSITIVE) : null;
 
 			boolean addWatch = file != f;
 			file = f;
@@ -1128,6 +1174,8 @@ public class RendererConfiguration extends Renderer {
 			LOGGER.info("Reloading renderer configuration: {}", f);
 			loaded = false;
 			init(f);
+			// The loading priority may have changed
+			updateMatchIndex();
 			// update gui
 			for (RendererConfiguration d : DeviceConfiguration.getInheritors(this)) {
 				d.updateRendererGui();
@@ -1456,16 +1504,30 @@ public class RendererConfiguration extends Renderer {
 
 	public boolean matchUPNPDetails(String details) {
 		String upnpDetails = getUpnpDetailsString();
-		Pattern pattern;
 
 		if (StringUtils.isNotBlank(upnpDetails)) {
-			String p = StringUtils.join(upnpDetails.split(" , "), ".*");
-			pattern = Pattern.compile(p, Pattern.CASE_INSENSITIVE);
-			return pattern.matcher(details.replace("\n", " ")).find();
+			// The pattern is compiled once and again only if the configured
+			// details change, e.g. when the configuration is reloaded
+			UpnpDetailsPattern compiled = upnpDetailsPattern;
+			if (compiled == null || !compiled.source.equals(upnpDetails)) {
+				compiled = new UpnpDetailsPattern(upnpDetails);
+				upnpDetailsPattern = compiled;
+			}
+			return compiled.pattern.matcher(details.replace("\n", " ")).find();
 		}
 		return false;
 	}
 
+	private static class UpnpDetailsPattern {
+		private final String source;
+		private final Pattern pattern;
+
+		private UpnpDetailsPattern(String source) {
+			this.source = source;
+			pattern = Pattern.compile(StringUtils.join(source.split(" , "), ".*"), Pattern.CASE_INSENSITIVE);
+		}
+	}
+
 	/**
 	 * Returns the pattern to match the User-Agent header to as defined in the
 	 * renderer configuration. Default value is "".
@@ -1962,21 +2024,14 @@ public class RendererConfiguration extends Renderer {
 	 */
 	public int getMaxVideoBitrate() {
 		if (PMS.getConfiguration().isAutomaticMaximumBitrate()) {
-			try {
-				int calculatedSpeed = calculatedSpeed();
-				if (calculatedSpeed >= 70) { // this should be a wired connection
-					setAutomaticVideoQuality("Automatic (Wired)");
-				} else {
-					setAutomaticVideoQuality("Automatic (Wireless)");
-				}
-
-				return calculatedSpeed;
-			} catch (InterruptedException e) {
-				return 0;
-			} catch (ExecutionException e) {
-				LOGGER.debug("Automatic maximum bitrate calculation failed with: {}", e.getCause().getMessage());
-				LOGGER.trace("", e.getCause());
+			int calculatedSpeed = calculatedSpeed();
+			if (calculatedSpeed >= 70) { // this should be a wired connection
+				setAutomaticVideoQuality("Automatic (Wired)");
+			} else {
+				setAutomaticVideoQuality("Automatic (Wireless)");
 			}
+
+			return calculatedSpeed;
 		}
 		return getInt(MAX_VIDEO_BITRATE, 0);
 	}
@@ -2679,28 +2734,23 @@ public class RendererConfiguration extends Renderer {
 	}
 
 	/**
-	 * Returns the actual renderer network speed in Mbits/sec calculated from
-	 * the Ping response.
+	 * Returns the renderer network speed in Mbits/sec as estimated from the
+	 * throughput of previous transfers to the renderer.
 	 *
-	 * @return the actual speed or the default MAX_VIDEO_BITRATE when the calculation fails.
-	 * @throws InterruptedException
-	 * @throws ExecutionException
+	 * @return the estimated speed capped to MAX_VIDEO_BITRATE, or
+	 *         MAX_VIDEO_BITRATE when there is no estimate yet.
 	 */
-	public int calculatedSpeed() throws InterruptedException, ExecutionException {
+	public int calculatedSpeed() {
 		int max = getInt(MAX_VIDEO_BITRATE, 0);
 		for (Entry<InetAddress, RendererConfiguration> entry : ADDRESS_ASSOCIATION.entrySet()) {
 			if (entry.getValue() == this) {
-				Future<Integer> speed = SpeedStats.getSpeedInMBitsStored(entry.getKey());
-				if (speed != null) {
-					if (max == 0) {
-						return speed.get();
-					}
-
-					if (speed.get() > max && max > 0) {
+				int speed = SpeedStats.getSpeedInMBits(entry.getKey());
+				if (speed > 0) {
+					if (max > 0 && speed > max) {
 						return max;
 					}
 
-					return speed.get();
+					return speed;
 				}
 			}
 		}
@@ -2765,9 +2815,10 @@ public class RendererConfiguration extends Renderer {
 	 * @return True if the pattern matches or false if no match, no headers, or no matcher.
 	 */
 	public boolean match(SortedHeaderMap headers) {
-		if (headers != null && !headers.isEmpty() && sortedHeaderMatcher != null) {
+		Pattern pattern = sortedHeaderPattern;
+		if (headers != null && !headers.isEmpty() && pattern != null) {
 			try {
-				return sortedHeaderMatcher.reset(headers.joined()).find();
+				return pattern.matcher(headers.joined()).find();
 			} catch (Exception e) {
 				return false;
 			}
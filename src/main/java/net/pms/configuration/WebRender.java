@@ -25,7 +25,6 @@ import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import net.pms.Messages;
@@ -294,13 +293,9 @@ public class WebRender extends DeviceConfiguration implements RendererConfigurat
 
 	public boolean isLowBitrate() {
 		// FIXME: this should return true if either network speed or client cpu are slow
-		boolean slow = false;
-		try {
-			// note here if we get a low speed then calcspeed
-			// will return -1 which will ALWAYS be less that the configed value.
-			slow = calculatedSpeed() < pmsConfiguration.getWebLowSpeed();
-		} catch (InterruptedException | ExecutionException e) {
-		}
+		// note here if there is no speed estimate yet calcspeed
+		// will return the configured maximum bitrate.
+		boolean slow = calculatedSpeed() < pmsConfiguration.getWebLowSpeed();
 		return slow || (screenWidth < 720 && (ua.contains("mobi") || isTouchDevice));
 	}
 
@@ -549,11 +544,23 @@ public class WebRender extends DeviceConfiguration implements RendererConfigurat
 
 	private final ArrayList<String[]> pushList;
 
+	/**
+	 * Sends a message to the browser over its event stream, or keeps it for
+	 * the next poll if the stream is closed or fails before the message is
+	 * written.
+	 *
+	 * @param args the message.
+	 */
 	public void push(String... args) {
-		if (sse == null || !sse.isOpened() || !sse.sendMessage(gson.toJson(args))) {
-			synchronized (pushList) {
-				pushList.add(args);
-			}
+		ServerSentEvents stream = sse;
+		if (stream == null || !stream.sendMessage(gson.toJson(args), () -> addToPushList(args))) {
+			addToPushList(args);
+		}
+	}
+
+	private void addToPushList(String[] args) {
+		synchronized (pushList) {
+			pushList.add(args);
 		}
 	}
 
@@ -568,20 +575,21 @@ public class WebRender extends DeviceConfiguration implements RendererConfigurat
 		return json;
 	}
 
-	private ServerSentEvents sse;
+	private volatile ServerSentEvents sse;
 	public void addServerSentEvents(ServerSentEvents sse) {
 		if (this.sse != null && this.sse.isOpened()) {
-			this.sse.sendMessage(gson.toJson(new String[] {"close", "warn", "", ""}));
-			this.sse.close();
+			this.sse.sendMessage(gson.toJson(new String[] {"close", "warn", "", ""}), null);
+			this.sse.finish();
 		}
+		List<String[]> pending;
 		synchronized (pushList) {
 			this.sse = sse;
-			//empty current push datas
-			while (!pushList.isEmpty() && this.sse != null && this.sse.isOpened()) {
-				if (this.sse.sendMessage(gson.toJson(pushList.get(0)))) {
-					pushList.remove(0);
-				}
-			}
+			pending = new ArrayList<>(pushList);
+			pushList.clear();
+		}
+		//empty current push datas
+		for (String[] args : pending) {
+			push(args);
 		}
 	}
 
@@ -18,10 +18,12 @@
 package net.pms.database;
 
 import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
 import java.sql.*;
 import net.pms.Messages;
 import net.pms.gui.GuiManager;
 import net.pms.util.UMSUtils;
+import net.pms.util.metrics.Metrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -57,6 +59,15 @@ public abstract class Database extends DatabaseHelper {
 		ds = new HikariDataSource();
 		ds.setJdbcUrl(jdbcUrl);
 		ds.setUsername(DatabaseEmbedded.getDbUser());
+		Metrics.gauge("ums_db_connections_active", "Connections in use in the database pool", "database", name, this::getActiveConnections);
+		Metrics.gauge("ums_db_connections_idle", "Idle connections in the database pool", "database", name, () -> {
+			HikariPoolMXBean pool = ds.getHikariPoolMXBean();
+			return pool != null ? pool.getIdleConnections() : 0;
+		});
+		Metrics.gauge("ums_db_connections_pending", "Threads waiting for a connection from the database pool", "database", name, () -> {
+			HikariPoolMXBean pool = ds.getHikariPoolMXBean();
+			return pool != null ? pool.getThreadsAwaitingConnection() : 0;
+		});
 	}
 
 	/**
@@ -72,8 +83,9 @@ public abstract class Database extends DatabaseHelper {
 		return ds.getConnection();
 	}
 
-	public int getActiveConnections() throws SQLException {
-		return ds.isRegisterMbeans() ? ds.getHikariPoolMXBean().getActiveConnections() : 0;
+	public int getActiveConnections() {
+		HikariPoolMXBean pool = ds.getHikariPoolMXBean();
+		return pool != null ? pool.getActiveConnections() : 0;
 	}
 
 	public boolean isOpened() {
@@ -155,8 +167,6 @@ public abstract class Database extends DatabaseHelper {
 			if (activeConnections > 0) {
 				LOGGER.debug("Database shutdown will kill remaining connections ({}), db errors may occurs", activeConnections);
 			}
-		} catch (SQLException e) {
-			LOGGER.error("Waiting DB connections", e);
 		} catch (InterruptedException e) {
 			LOGGER.debug("Interrupted while shutting down database..");
 			LOGGER.trace("", e);
@@ -99,6 +99,7 @@ public class MediaDatabase extends Database {
 
 				MediaTableTVSeries.checkTable(connection);
 				MediaTableFailedLookups.checkTable(connection);
+				MediaTableOpenSubtitles.checkTable(connection);
 
 				// Video metadata tables
 				MediaTableVideoMetadataActors.checkTable(connection);
@@ -151,6 +152,7 @@ public class MediaDatabase extends Database {
 
 		dropTableAndConstraint(connection, MediaTableTVSeries.TABLE_NAME);
 		dropTableAndConstraint(connection, MediaTableFailedLookups.TABLE_NAME);
+		dropTableAndConstraint(connection, MediaTableOpenSubtitles.TABLE_NAME);
 
 		// Video metadata tables
 		dropTableAndConstraint(connection, MediaTableVideoMetadataActors.TABLE_NAME);
@@ -17,7 +17,21 @@
  */
 package net.pms.database;
 
+import net.pms.util.metrics.Histogram;
+import net.pms.util.metrics.Metrics;
+import net.pms.util.metrics.Metrics.Family;
+
 public abstract class MediaTable extends DatabaseHelper {
 	protected static final MediaDatabase DATABASE = MediaDatabase.get();
 	protected static final String DATABASE_NAME = MediaDatabase.DATABASE_NAME;
+
+	/**
+	 * The time spent in the most frequent media database operations, labeled
+	 * with "TABLE.method".
+	 */
+	protected static final Family<Histogram> QUERY_TIME = Metrics.histograms(
+		"ums_db_query_seconds",
+		"Time spent in media database operations",
+		"query"
+	);
 }
@@ -35,6 +35,7 @@ import net.pms.image.ImagesUtil.ScaleType;
 import net.pms.util.FileUtil;
 import net.pms.util.UnknownFormatException;
 import net.pms.util.UriFileRetriever;
+import net.pms.util.metrics.Histogram;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -72,6 +73,13 @@ public class MediaTableFiles extends MediaTable {
 
 	public static final String NONAME = "###";
 
+	private static final Histogram GET_FILE_ID_TIME = QUERY_TIME.labels(TABLE_NAME + ".getFileId");
+	private static final Histogram GET_DATA_TIME = QUERY_TIME.labels(TABLE_NAME + ".getData");
+	private static final Histogram GET_FILE_METADATA_TIME = QUERY_TIME.labels(TABLE_NAME + ".getFileMetadata");
+	private static final Histogram INSERT_OR_UPDATE_DATA_TIME = QUERY_TIME.labels(TABLE_NAME + ".insertOrUpdateData");
+	private static final Histogram GET_STRINGS_TIME = QUERY_TIME.labels(TABLE_NAME + ".getStrings");
+	private static final Histogram GET_FILES_TIME = QUERY_TIME.labels(TABLE_NAME + ".getFiles");
+
 	private static final UriFileRetriever URI_FILE_RETRIEVER = new UriFileRetriever();
 
 	/**
@@ -101,8 +109,10 @@ public class MediaTableFiles extends MediaTable {
 	 * - 29-30: No db changes, improved filename parsing
 	 * - 31: Redo the changes from version 27 because the versioning got muddled
 	 * - 32: Added an index for the Media Library Movies folder that includes duration
+	 * - 34: Added H264_ANNEXB column with the H.264 parameter sets read from
+	 *       MP4/MOV and Matroska headers
 	 */
-	private static final int TABLE_VERSION = 33;
+	private static final int TABLE_VERSION = 34;
 
 	// Database column sizes
 	private static final int SIZE_CODECV = 32;
@@ -354,6 +364,12 @@ public class MediaTableFiles extends MediaTable {
 						executeUpdate(connection, "CREATE INDEX IF NOT EXISTS " + TABLE_NAME + "_" + COL_THUMBID + "_IDX ON " + TABLE_NAME + "(" + COL_THUMBID + ")");
 						LOGGER.trace(LOG_UPGRADED_TABLE, DATABASE_NAME, TABLE_NAME, currentVersion, version);
 						break;
+					case 33:
+						if (!isColumnExist(connection, TABLE_NAME, "H264_ANNEXB")) {
+							executeUpdate(connection, "ALTER TABLE " + TABLE_NAME + " ADD H264_ANNEXB VARBINARY");
+						}
+						LOGGER.trace(LOG_UPGRADED_TABLE, DATABASE_NAME, TABLE_NAME, currentVersion, version);
+						break;
 					default:
 						// Do the dumb way
 						force = true;
@@ -406,6 +422,7 @@ public class MediaTableFiles extends MediaTable {
 			sb.append(", ASPECTRATIOVIDEOTRACK   VARCHAR(").append(SIZE_MAX).append(')');
 			sb.append(", REFRAMES                TINYINT");
 			sb.append(", AVCLEVEL                VARCHAR(").append(SIZE_AVCLEVEL).append(')');
+			sb.append(", H264_ANNEXB             VARBINARY");
 			sb.append(", IMAGEINFO               OTHER");
 			sb.append(", CONTAINER               VARCHAR(").append(SIZE_CONTAINER).append(')');
 			sb.append(", MUXINGMODE              VARCHAR(").append(SIZE_MUXINGMODE).append(')');
@@ -465,6 +482,15 @@ public class MediaTableFiles extends MediaTable {
 	 * @return the file id if the data exists for this media, -1 otherwise.
 	 */
 	public static Long getFileId(final Connection connection, String filename, long modified) {
+		long start = System.nanoTime();
+		try {
+			return doGetFileId(connection, filename, modified);
+		} finally {
+			GET_FILE_ID_TIME.recordSince(start);
+		}
+	}
+
+	private static Long doGetFileId(final Connection connection, String filename, long modified) {
 		try {
 			try (PreparedStatement statement = connection.prepareStatement(SQL_GET_ID_FILENAME_MODIFIED)) {
 				statement.setString(1, filename);
@@ -519,6 +545,15 @@ public class MediaTableFiles extends MediaTable {
 	 * @throws IOException if an IO error occurs during the operation.
 	 */
 	public static DLNAMediaInfo getData(final Connection connection, String name, long modified) throws IOException, SQLException {
+		long start = System.nanoTime();
+		try {
+			return doGetData(connection, name, modified);
+		} finally {
+			GET_DATA_TIME.recordSince(start);
+		}
+	}
+
+	private static DLNAMediaInfo doGetData(final Connection connection, String name, long modified) throws IOException, SQLException {
 		DLNAMediaInfo media = null;
 		ArrayList<String> externalFileReferencesToRemove = new ArrayList();
 		try {
@@ -549,6 +584,7 @@ public class MediaTableFiles extends MediaTable {
 						media.setAspectRatioVideoTrack(rs.getString("ASPECTRATIOVIDEOTRACK"));
 						media.setReferenceFrameCount(rs.getByte("REFRAMES"));
 						media.setAvcLevel(rs.getString("AVCLEVEL"));
+						media.setH264AnnexB(rs.getBytes("H264_ANNEXB"));
 						media.setImageInfo((ImageInfo) rs.getObject("IMAGEINFO"));
 						media.setThumb((DLNAThumbnail) rs.getObject("THUMBNAIL"));
 						media.setContainer(rs.getString("CONTAINER"));
@@ -715,6 +751,15 @@ public class MediaTableFiles extends MediaTable {
 	 * @throws IOException if an IO error occurs during the operation.
 	 */
 	public static DLNAMediaInfo getFileMetadata(final Connection connection, String name) throws IOException, SQLException {
+		long start = System.nanoTime();
+		try {
+			return doGetFileMetadata(connection, name);
+		} finally {
+			GET_FILE_METADATA_TIME.recordSince(start);
+		}
+	}
+
+	private static DLNAMediaInfo doGetFileMetadata(final Connection connection, String name) throws IOException, SQLException {
 		Long id = getFileId(connection, name);
 		if (id != null) {
 			DLNAMediaInfo media = new DLNAMediaInfo();
@@ -740,11 +785,20 @@ public class MediaTableFiles extends MediaTable {
 	 * @throws SQLException if an SQL error occurs during the operation.
 	 */
 	public static void insertOrUpdateData(final Connection connection, String name, long modified, int type, DLNAMediaInfo media) throws SQLException {
+		long start = System.nanoTime();
+		try {
+			doInsertOrUpdateData(connection, name, modified, type, media);
+		} finally {
+			INSERT_OR_UPDATE_DATA_TIME.recordSince(start);
+		}
+	}
+
+	private static void doInsertOrUpdateData(final Connection connection, String name, long modified, int type, DLNAMediaInfo media) throws SQLException {
 		try {
 			long fileId = -1;
 			try (PreparedStatement ps = connection.prepareStatement("SELECT " +
 					"ID, FILENAME, MODIFIED, FORMAT_TYPE, DURATION, BITRATE, WIDTH, HEIGHT, MEDIA_SIZE, CODECV, FRAMERATE, " +
-					"ASPECTRATIODVD, ASPECTRATIOCONTAINER, ASPECTRATIOVIDEOTRACK, REFRAMES, AVCLEVEL, IMAGEINFO, " +
+					"ASPECTRATIODVD, ASPECTRATIOCONTAINER, ASPECTRATIOVIDEOTRACK, REFRAMES, AVCLEVEL, H264_ANNEXB, IMAGEINFO, " +
 					"CONTAINER, MUXINGMODE, FRAMERATEMODE, STEREOSCOPY, MATRIXCOEFFICIENTS, TITLECONTAINER, " +
 					"TITLEVIDEOTRACK, VIDEOTRACKCOUNT, IMAGECOUNT, BITDEPTH, PIXELASPECTRATIO, SCANTYPE, SCANORDER " +
 				"FROM " + TABLE_NAME + " " +
@@ -785,6 +839,7 @@ public class MediaTableFiles extends MediaTable {
 							rs.updateString("ASPECTRATIOVIDEOTRACK", StringUtils.left(media.getAspectRatioVideoTrack(), SIZE_MAX));
 							rs.updateByte("REFRAMES", media.getReferenceFrameCount());
 							rs.updateString("AVCLEVEL", StringUtils.left(media.getAvcLevel(), SIZE_AVCLEVEL));
+							rs.updateBytes("H264_ANNEXB", media.getH264AnnexB());
 							updateSerialized(rs, media.getImageInfo(), "IMAGEINFO");
 							if (media.getImageInfo() != null) {
 								rs.updateObject("IMAGEINFO", media.getImageInfo());
@@ -813,7 +868,7 @@ public class MediaTableFiles extends MediaTable {
 			if (fileId < 0) {
 				// No fileId means it didn't exist
 				String columns = "FILENAME, MODIFIED, FORMAT_TYPE, DURATION, BITRATE, WIDTH, HEIGHT, MEDIA_SIZE, CODECV, " +
-					"FRAMERATE, ASPECTRATIODVD, ASPECTRATIOCONTAINER, ASPECTRATIOVIDEOTRACK, REFRAMES, AVCLEVEL, IMAGEINFO, " +
+					"FRAMERATE, ASPECTRATIODVD, ASPECTRATIOCONTAINER, ASPECTRATIOVIDEOTRACK, REFRAMES, AVCLEVEL, H264_ANNEXB, IMAGEINFO, " +
 					"CONTAINER, MUXINGMODE, FRAMERATEMODE, STEREOSCOPY, MATRIXCOEFFICIENTS, TITLECONTAINER, " +
 					"TITLEVIDEOTRACK, VIDEOTRACKCOUNT, IMAGECOUNT, BITDEPTH, PIXELASPECTRATIO, SCANTYPE, SCANORDER";
 
@@ -855,6 +910,7 @@ public class MediaTableFiles extends MediaTable {
 						ps.setString(++databaseColumnIterator, StringUtils.left(media.getAspectRatioVideoTrack(), SIZE_MAX));
 						ps.setByte(++databaseColumnIterator, media.getReferenceFrameCount());
 						ps.setString(++databaseColumnIterator, StringUtils.left(media.getAvcLevel(), SIZE_AVCLEVEL));
+						ps.setBytes(++databaseColumnIterator, media.getH264AnnexB());
 						if (media.getImageInfo() != null) {
 							ps.setObject(++databaseColumnIterator, media.getImageInfo());
 						} else {
@@ -886,6 +942,7 @@ public class MediaTableFiles extends MediaTable {
 						ps.setNull(++databaseColumnIterator, Types.VARCHAR);
 						ps.setByte(++databaseColumnIterator, (byte) -1);
 						ps.setNull(++databaseColumnIterator, Types.VARCHAR);
+						ps.setNull(++databaseColumnIterator, Types.VARBINARY);
 						ps.setNull(++databaseColumnIterator, Types.OTHER);
 						ps.setNull(++databaseColumnIterator, Types.VARCHAR);
 						ps.setNull(++databaseColumnIterator, Types.VARCHAR);
@@ -1076,6 +1133,15 @@ public class MediaTableFiles extends MediaTable {
 	}
 
 	public static ArrayList<String> getStrings(final Connection connection, String sql) {
+		long start = System.nanoTime();
+		try {
+			return doGetStrings(connection, sql);
+		} finally {
+			GET_STRINGS_TIME.recordSince(start);
+		}
+	}
+
+	private static ArrayList<String> doGetStrings(final Connection connection, String sql) {
 		ArrayList<String> list = new ArrayList<>();
 		HashSet<String> set = new HashSet<>();
 		try {
@@ -1220,6 +1286,15 @@ public class MediaTableFiles extends MediaTable {
 	}
 
 	public static ArrayList<File> getFiles(final Connection connection, String sql) {
+		long start = System.nanoTime();
+		try {
+			return doGetFiles(connection, sql);
+		} finally {
+			GET_FILES_TIME.recordSince(start);
+		}
+	}
+
+	private static ArrayList<File> doGetFiles(final Connection connection, String sql) {
 		ArrayList<File> list = new ArrayList<>();
 		try {
 			try (
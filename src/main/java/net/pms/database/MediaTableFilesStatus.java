@@ -32,6 +32,7 @@ import net.pms.Messages;
 import net.pms.dlna.MediaMonitor;
 import net.pms.gui.GuiManager;
 import net.pms.util.FileUtil;
+import net.pms.util.metrics.Histogram;
 
 /**
  * This class is responsible for managing the FilesStatus table. It
@@ -56,6 +57,10 @@ public final class MediaTableFilesStatus extends MediaTable {
 	private static final String SQL_DELETE = "DELETE FROM " + TABLE_NAME + " WHERE " + TABLE_COL_FILENAME + " = ?";
 	private static final String SQL_DELETE_LIKE = "DELETE FROM " + TABLE_NAME + " WHERE " + TABLE_COL_FILENAME + " LIKE ?";
 
+	private static final Histogram SET_LAST_PLAYED_TIME = QUERY_TIME.labels(TABLE_NAME + ".setLastPlayed");
+	private static final Histogram IS_FULLY_PLAYED_TIME = QUERY_TIME.labels(TABLE_NAME + ".isFullyPlayed");
+	private static final Histogram GET_BOOKMARK_TIME = QUERY_TIME.labels(TABLE_NAME + ".getBookmark");
+
 	/**
 	 * Table version must be increased every time a change is done to the table
 	 * definition. Table upgrade SQL must also be added to
@@ -309,6 +314,15 @@ public final class MediaTableFilesStatus extends MediaTable {
 	 * @param lastPlaybackPosition how many seconds were played
 	 */
 	public static void setLastPlayed(final Connection connection, final String fullPathToFile, final Double lastPlaybackPosition) {
+		long start = System.nanoTime();
+		try {
+			doSetLastPlayed(connection, fullPathToFile, lastPlaybackPosition);
+		} finally {
+			SET_LAST_PLAYED_TIME.recordSince(start);
+		}
+	}
+
+	private static void doSetLastPlayed(final Connection connection, final String fullPathToFile, final Double lastPlaybackPosition) {
 		boolean trace = LOGGER.isTraceEnabled();
 		try {
 			try (PreparedStatement statement = connection.prepareStatement(SQL_GET_ALL, ResultSet.TYPE_SCROLL_SENSITIVE, ResultSet.CONCUR_UPDATABLE)) {
@@ -419,6 +433,15 @@ public final class MediaTableFilesStatus extends MediaTable {
 	}
 
 	public static Boolean isFullyPlayed(final Connection connection, final String fullPathToFile) {
+		long start = System.nanoTime();
+		try {
+			return doIsFullyPlayed(connection, fullPathToFile);
+		} finally {
+			IS_FULLY_PLAYED_TIME.recordSince(start);
+		}
+	}
+
+	private static Boolean doIsFullyPlayed(final Connection connection, final String fullPathToFile) {
 		try {
 			try (PreparedStatement statement = connection.prepareStatement(SQL_GET_ISFULLYPLAYED)) {
 				statement.setString(1, fullPathToFile);
@@ -440,6 +463,15 @@ public final class MediaTableFilesStatus extends MediaTable {
 	}
 
 	public static int getBookmark(final Connection connection, final String fullPathToFile) {
+		long start = System.nanoTime();
+		try {
+			return doGetBookmark(connection, fullPathToFile);
+		} finally {
+			GET_BOOKMARK_TIME.recordSince(start);
+		}
+	}
+
+	private static int doGetBookmark(final Connection connection, final String fullPathToFile) {
 		boolean trace = LOGGER.isTraceEnabled();
 		int result = 0;
 
@@ -0,0 +1,323 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; version 2
+ * of the License only.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package net.pms.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This class is responsible for managing the OpenSubtitles table. It stores
+ * the OpenSubtitles hash of files and the outcome of looking the hash up, so
+ * that neither has to be repeated for a file that hasn't changed. A row is
+ * only valid for the size and modification time it was stored with. The
+ * {@link LookupMethod} tells whether the stored outcome can replace a full
+ * lookup.
+ */
+public final class MediaTableOpenSubtitles extends MediaTable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(MediaTableOpenSubtitles.class);
+	public static final String TABLE_NAME = "OPENSUBTITLES";
+	private static final String COL_FILENAME = "FILENAME";
+	private static final String COL_FILESIZE = "FILESIZE";
+	private static final String COL_MODIFIED = "MODIFIED";
+	private static final String COL_OSDB_HASH = "OSDB_HASH";
+	private static final String COL_IMDBID = "IMDBID";
+	private static final String COL_LASTLOOKUP = "LASTLOOKUP";
+	private static final String COL_LOOKUPMETHOD = "LOOKUPMETHOD";
+	private static final String SQL_GET_FILENAME = "SELECT * FROM " + TABLE_NAME + " WHERE " + COL_FILENAME + " = ? LIMIT 1";
+
+	/**
+	 * Table version must be increased every time a change is done to the table
+	 * definition. Table upgrade SQL must also be added to
+	 * {@link #upgradeTable(Connection, int)}
+	 */
+	private static final int TABLE_VERSION = 2;
+
+	/**
+	 * Checks and creates or upgrades the table as needed.
+	 *
+	 * @param connection the {@link Connection} to use
+	 *
+	 * @throws SQLException
+	 */
+	protected static void checkTable(final Connection connection) throws SQLException {
+		if (tableExists(connection, TABLE_NAME)) {
+			Integer version = MediaTableTablesVersions.getTableVersion(connection, TABLE_NAME);
+			if (version != null) {
+				if (version < TABLE_VERSION) {
+					upgradeTable(connection, version);
+				} else if (version > TABLE_VERSION) {
+					LOGGER.warn(LOG_TABLE_NEWER_VERSION_DELETEDB, DATABASE_NAME, TABLE_NAME, DATABASE.getDatabaseFilename());
+				}
+			} else {
+				LOGGER.warn(LOG_TABLE_UNKNOWN_VERSION_RECREATE, DATABASE_NAME, TABLE_NAME);
+				dropTable(connection, TABLE_NAME);
+				createTable(connection);
+				MediaTableTablesVersions.setTableVersion(connection, TABLE_NAME, TABLE_VERSION);
+			}
+		} else {
+			createTable(connection);
+			MediaTableTablesVersions.setTableVersion(connection, TABLE_NAME, TABLE_VERSION);
+		}
+	}
+
+	/**
+	 * This method <strong>MUST</strong> be updated if the table definition are
+	 * altered. The changes for each version in the form of
+	 * <code>ALTER TABLE</code> must be implemented here.
+	 *
+	 * @param connection the {@link Connection} to use
+	 * @param currentVersion the version to upgrade <strong>from</strong>
+	 *
+	 * @throws SQLException
+	 */
+	private static void upgradeTable(final Connection connection, final int currentVersion) throws SQLException {
+		LOGGER.info(LOG_UPGRADING_TABLE, DATABASE_NAME, TABLE_NAME, currentVersion, TABLE_VERSION);
+		for (int version = currentVersion; version < TABLE_VERSION; version++) {
+			LOGGER.trace(LOG_UPGRADING_TABLE, DATABASE_NAME, TABLE_NAME, version, version + 1);
+			switch (version) {
+				case 1:
+					if (!isColumnExist(connection, TABLE_NAME, COL_LOOKUPMETHOD)) {
+						executeUpdate(connection, "ALTER TABLE " + TABLE_NAME + " ADD " + COL_LOOKUPMETHOD + " VARCHAR(32)");
+					}
+					break;
+				default:
+					throw new IllegalStateException(
+						getMessage(LOG_UPGRADING_TABLE_MISSING, DATABASE_NAME, TABLE_NAME, version, TABLE_VERSION)
+					);
+			}
+		}
+		MediaTableTablesVersions.setTableVersion(connection, TABLE_NAME, TABLE_VERSION);
+	}
+
+	private static void createTable(final Connection connection) throws SQLException {
+		LOGGER.debug(LOG_CREATING_TABLE, DATABASE_NAME, TABLE_NAME);
+		execute(connection,
+			"CREATE TABLE " + TABLE_NAME + "(" +
+				"ID               IDENTITY                   PRIMARY KEY , " +
+				"FILENAME         VARCHAR(1024)              NOT NULL    , " +
+				"FILESIZE         BIGINT                     NOT NULL    , " +
+				"MODIFIED         TIMESTAMP                  NOT NULL    , " +
+				"OSDB_HASH        VARCHAR(16)                NOT NULL    , " +
+				"IMDBID           VARCHAR(32)                            , " +
+				"LASTLOOKUP       TIMESTAMP WITH TIME ZONE                 , " +
+				"LOOKUPMETHOD     VARCHAR(32)                              " +
+			")",
+			"CREATE UNIQUE INDEX OPENSUBTITLES_FILENAME_IDX ON " + TABLE_NAME + "(FILENAME)"
+		);
+	}
+
+	/**
+	 * How the stored IMDB ID of a file was looked up.
+	 */
+	public enum LookupMethod {
+		/**
+		 * Only {@code CheckMovieHash2} was queried, like for the batched
+		 * lookups during a library scan. {@code SearchSubtitles} may still
+		 * find a better match since it also uses the file size.
+		 */
+		CHECK_MOVIE_HASH2,
+
+		/**
+		 * {@code SearchSubtitles} was queried, falling back to
+		 * {@code CheckMovieHash2} if it found nothing.
+		 */
+		SEARCH_SUBTITLES
+	}
+
+	/**
+	 * The stored OpenSubtitles information for a file.
+	 */
+	public static class OpenSubtitlesHash {
+		private final String hash;
+		private final String imdbId;
+		private final OffsetDateTime lastLookup;
+		private final LookupMethod lookupMethod;
+
+		public OpenSubtitlesHash(String hash, String imdbId, OffsetDateTime lastLookup, LookupMethod lookupMethod) {
+			this.hash = hash;
+			this.imdbId = imdbId;
+			this.lastLookup = lastLookup;
+			this.lookupMethod = lookupMethod;
+		}
+
+		/**
+		 * @return The OpenSubtitles hash of the file.
+		 */
+		public String getHash() {
+			return hash;
+		}
+
+		/**
+		 * @return The IMDB ID found by the last lookup or {@code null}.
+		 */
+		public String getImdbId() {
+			return imdbId;
+		}
+
+		/**
+		 * @return When the hash was last looked up, or {@code null} if it
+		 *         hasn't been looked up.
+		 */
+		public OffsetDateTime getLastLookup() {
+			return lastLookup;
+		}
+
+		/**
+		 * @return How the hash was last looked up, or {@code null} if it
+		 *         hasn't been looked up.
+		 */
+		public LookupMethod getLookupMethod() {
+			return lookupMethod;
+		}
+
+		/**
+		 * Whether the stored lookup outcome can be used instead of looking
+		 * the hash up again. A lookup that found something is used until the
+		 * file changes, a lookup that found nothing is repeated after a week
+		 * since titles are added to OpenSubtitles all the time.
+		 *
+		 * @return {@code true} if the stored outcome is still valid.
+		 */
+		public boolean isLookupValid() {
+			if (lastLookup == null) {
+				return false;
+			}
+			return imdbId != null || lastLookup.plusWeeks(1).isAfter(OffsetDateTime.now(ZoneOffset.UTC));
+		}
+	}
+
+	/**
+	 * Gets the stored OpenSubtitles information for a file.
+	 *
+	 * @param connection the db connection
+	 * @param fullPathToFile the full path of the file.
+	 * @param size the current size of the file.
+	 * @param modified the current modification time of the file.
+	 * @return The stored information or {@code null} if there is none for the
+	 *         file with this size and modification time.
+	 */
+	public static OpenSubtitlesHash get(final Connection connection, final String fullPathToFile, final long size, final long modified) {
+		try (PreparedStatement statement = connection.prepareStatement(SQL_GET_FILENAME)) {
+			statement.setString(1, fullPathToFile);
+			try (ResultSet rs = statement.executeQuery()) {
+				if (rs.next() && rs.getLong(COL_FILESIZE) == size && rs.getTimestamp(COL_MODIFIED).getTime() == modified) {
+					OffsetDateTime lastLookup = rs.getObject(COL_LASTLOOKUP, OffsetDateTime.class);
+					LookupMethod lookupMethod = null;
+					if (lastLookup != null) {
+						// Lookups stored before the method was recorded may be from a scan
+						String method = rs.getString(COL_LOOKUPMETHOD);
+						lookupMethod = method == null ? LookupMethod.CHECK_MOVIE_HASH2 : LookupMethod.valueOf(method);
+					}
+					return new OpenSubtitlesHash(
+						rs.getString(COL_OSDB_HASH),
+						rs.getString(COL_IMDBID),
+						lastLookup,
+						lookupMethod
+					);
+				}
+			}
+		} catch (SQLException e) {
+			LOGGER.error(LOG_ERROR_WHILE_IN_FOR, DATABASE_NAME, "reading", TABLE_NAME, fullPathToFile, e.getMessage());
+			LOGGER.trace("", e);
+		}
+		return null;
+	}
+
+	/**
+	 * Stores the OpenSubtitles hash of a file. A stored lookup outcome is
+	 * kept if the hash is unchanged.
+	 *
+	 * @param connection the db connection
+	 * @param fullPathToFile the full path of the file.
+	 * @param size the size of the file.
+	 * @param modified the modification time of the file.
+	 * @param hash the OpenSubtitles hash of the file.
+	 */
+	public static void setHash(final Connection connection, final String fullPathToFile, final long size, final long modified, final String hash) {
+		set(connection, fullPathToFile, size, modified, hash, null, null);
+	}
+
+	/**
+	 * Stores the OpenSubtitles hash of a file and the outcome of looking it
+	 * up.
+	 *
+	 * @param connection the db connection
+	 * @param fullPathToFile the full path of the file.
+	 * @param size the size of the file.
+	 * @param modified the modification time of the file.
+	 * @param hash the OpenSubtitles hash of the file.
+	 * @param lookupMethod how the hash was looked up.
+	 * @param imdbId the IMDB ID that was found or {@code null} if nothing was
+	 *            found.
+	 */
+	public static void setLookup(
+		final Connection connection,
+		final String fullPathToFile,
+		final long size,
+		final long modified,
+		final String hash,
+		final LookupMethod lookupMethod,
+		final String imdbId
+	) {
+		set(connection, fullPathToFile, size, modified, hash, lookupMethod, imdbId);
+	}
+
+	private static void set(
+		final Connection connection,
+		final String fullPathToFile,
+		final long size,
+		final long modified,
+		final String hash,
+		final LookupMethod lookupMethod,
+		final String imdbId
+	) {
+		try (PreparedStatement statement = connection.prepareStatement(SQL_GET_FILENAME, ResultSet.TYPE_SCROLL_SENSITIVE, ResultSet.CONCUR_UPDATABLE)) {
+			statement.setString(1, fullPathToFile);
+			try (ResultSet result = statement.executeQuery()) {
+				boolean update = result.next();
+				if (!update) {
+					result.moveToInsertRow();
+					result.updateString(COL_FILENAME, fullPathToFile);
+				}
+				if (lookupMethod != null || !update || !hash.equals(result.getString(COL_OSDB_HASH))) {
+					result.updateString(COL_IMDBID, imdbId);
+					result.updateObject(COL_LASTLOOKUP, lookupMethod != null ? OffsetDateTime.now(ZoneOffset.UTC) : null);
+					result.updateString(COL_LOOKUPMETHOD, lookupMethod != null ? lookupMethod.name() : null);
+				}
+				result.updateLong(COL_FILESIZE, size);
+				result.updateTimestamp(COL_MODIFIED, new Timestamp(modified));
+				result.updateString(COL_OSDB_HASH, hash);
+				if (update) {
+					result.updateRow();
+				} else {
+					result.insertRow();
+				}
+			}
+		} catch (SQLException e) {
+			LOGGER.error(LOG_ERROR_WHILE_IN_FOR, DATABASE_NAME, "writing", TABLE_NAME, fullPathToFile, e.getMessage());
+			LOGGER.trace("", e);
+		}
+	}
+}
@@ -26,6 +26,7 @@ import org.slf4j.LoggerFactory;
 import edu.umd.cs.findbugs.annotations.SuppressFBWarnings;
 import java.sql.PreparedStatement;
 import net.pms.dlna.DLNAThumbnail;
+import net.pms.util.metrics.Histogram;
 import org.apache.commons.codec.digest.DigestUtils;
 
 /**
@@ -55,6 +56,8 @@ public final class MediaTableThumbnails extends MediaTable {
 	private static final String SQL_INSERT_ID_MD5 = "INSERT INTO " + TABLE_NAME + " (" + COL_THUMBNAIL + ", " + COL_MODIFIED + ", " + COL_MD5 + ") VALUES (?, ?, ?)";
 	private static final String SQL_DELETE_ID = "DELETE FROM " + TABLE_NAME + " WHERE " + TABLE_COL_ID + " = ?";
 
+	private static final Histogram SET_THUMBNAIL_TIME = QUERY_TIME.labels(TABLE_NAME + ".setThumbnail");
+
 	/**
 	 * Table version must be increased every time a change is done to the table
 	 * definition. Table upgrade SQL must also be added to
@@ -177,6 +180,15 @@ public final class MediaTableThumbnails extends MediaTable {
 	 *                 introduced to fix unrecoverable serialization
 	 */
 	public static void setThumbnail(final Connection connection, final DLNAThumbnail thumbnail, final String fullPathToFile, final long tvSeriesID, final boolean forceNew) {
+		long start = System.nanoTime();
+		try {
+			doSetThumbnail(connection, thumbnail, fullPathToFile, tvSeriesID, forceNew);
+		} finally {
+			SET_THUMBNAIL_TIME.recordSince(start);
+		}
+	}
+
+	private static void doSetThumbnail(final Connection connection, final DLNAThumbnail thumbnail, final String fullPathToFile, final long tvSeriesID, final boolean forceNew) {
 		if (fullPathToFile == null && tvSeriesID == -1) {
 			LOGGER.trace("Either fullPathToFile or tvSeriesID are required for setThumbnail, returning early");
 			return;
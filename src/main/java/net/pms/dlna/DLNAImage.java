@@ -20,6 +20,7 @@ package net.pms.dlna;
 import com.drew.metadata.Metadata;
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
@@ -384,6 +385,49 @@ public class DLNAImage extends Image {
 		);
 	}
 
+	/**
+	 * Converts an image file to a {@link DLNAImage} adhering to
+	 * {@code outputProfile}. Format support is limited to that of
+	 * {@link ImageIO}. Output format will be the same as the source if the
+	 * source is either GIF, JPEG or PNG. Further restrictions on color space
+	 * and compression is imposed and conversion done if necessary. All other
+	 * formats will be converted to a DLNA compliant JPEG. Preserves aspect
+	 * ratio and rotates/flips the image according to Exif orientation.
+	 * <p>
+	 * The file is read directly instead of into memory, and large images are
+	 * only decoded at the resolution needed for {@code outputProfile}.
+	 *
+	 * @param inputFile the source image file in a supported format.
+	 * @param outputProfile the {@link DLNAImageProfile} to adhere to for the
+	 *            output.
+	 * @param padToSize whether padding should be used if source aspect doesn't
+	 *            match target aspect.
+	 * @return The populated {@link DLNAImage} or {@code null} if the source
+	 *         image is {@code null}.
+	 * @throws IOException if the operation fails.
+	 */
+	public static DLNAImage toDLNAImage(
+		File inputFile,
+		DLNAImageProfile outputProfile,
+		boolean padToSize
+	) throws IOException {
+		if (inputFile == null) {
+			return null;
+		}
+
+		return (DLNAImage) ImagesUtil.transcodeImage(
+			inputFile,
+			0,
+			0,
+			null,
+			outputProfile,
+			true,
+			false,
+			padToSize,
+			null
+		);
+	}
+
 	/**
 	 * Converts an image to a {@link DLNAThumbnail} adhering to
 	 * {@code outputProfile}. Format support is limited to that of
@@ -18,6 +18,7 @@
 package net.pms.dlna;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import net.pms.image.ImageFormat;
@@ -146,6 +147,31 @@ public class DLNAImageInputStream extends ByteArrayInputStream {
 		return image != null ? new DLNAImageInputStream(image) : null;
 	}
 
+	/**
+	 * Creates a {@link DLNAImageInputStream} from {@code inputFile}. The file
+	 * is read directly and large images are only decoded at the resolution
+	 * needed for {@code outputProfile}. Format support is limited to that of
+	 * {@link ImageIO}. Preserves aspect ratio and rotates/flips the image
+	 * according to Exif orientation.
+	 *
+	 * @param inputFile the source image file in a supported format.
+	 * @param outputProfile the {@link DLNAImageProfile} to adhere to for the
+	 *            output.
+	 * @param padToSize whether padding should be used if source aspect doesn't
+	 *            match target aspect.
+	 * @return The populated {@link DLNAImageInputStream} or {@code null} if the
+	 *         source image is {@code null}.
+	 * @throws IOException if the operation fails.
+	 */
+	public static DLNAImageInputStream toImageInputStream(
+		File inputFile,
+		DLNAImageProfile outputProfile,
+		boolean padToSize
+	) throws IOException {
+		DLNAImage image = DLNAImage.toDLNAImage(inputFile, outputProfile, padToSize);
+		return image != null ? new DLNAImageInputStream(image) : null;
+	}
+
 	/**
 	 * Creates a {@link DLNAImageInputStream} where it uses
 	 * {@code imageByteArray} as its buffer array. The buffer is only copied if
@@ -20,9 +20,9 @@ package net.pms.dlna;
 import com.google.gson.Gson;
 import com.google.gson.JsonIOException;
 import java.io.*;
-import java.nio.file.Files;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import javax.annotation.Nullable;
 import net.pms.PMS;
@@ -49,12 +49,16 @@ import net.pms.network.mediaserver.handlers.api.starrating.StarRating;
 import net.pms.util.CoverSupplier;
 import net.pms.util.CoverUtil;
 import net.pms.util.FileUtil;
+import net.pms.util.H264ParameterSets;
 import net.pms.util.MpegUtil;
 import net.pms.util.ProcessUtil;
 import net.pms.util.StringUtil;
 import net.pms.util.UnknownFormatException;
 import static net.pms.util.StringUtil.*;
 import net.pms.util.UMSUtils;
+import net.pms.util.metrics.Histogram;
+import net.pms.util.metrics.Metrics;
+import net.pms.util.metrics.Metrics.Family;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 import org.apache.commons.lang3.StringUtils;
@@ -79,6 +83,11 @@ import org.slf4j.LoggerFactory;
 public class DLNAMediaInfo implements Cloneable {
 	private static final Logger LOGGER = LoggerFactory.getLogger(DLNAMediaInfo.class);
 	private static final PmsConfiguration CONFIGURATION = PMS.getConfiguration();
+	private static final Family<Histogram> THUMBNAIL_GENERATION_TIME = Metrics.histograms(
+		"ums_thumbnail_generation_seconds",
+		"Time spent generating thumbnails",
+		"type"
+	);
 	private static final Gson GSON = new Gson();
 	public static final long ENDFILE_POS = 99999475712L;
 
@@ -186,6 +195,12 @@ public class DLNAMediaInfo implements Cloneable {
 	 */
 	private volatile boolean thumbready;
 
+	/**
+	 * Whether the last parsing left the cover lookup running, in which case
+	 * the thumbnail isn't ready yet. Not stored in database.
+	 */
+	private boolean coverLookupPending;
+
 	private int dvdtrack;
 	private boolean secondaryFormatValid = true;
 
@@ -195,8 +210,6 @@ public class DLNAMediaInfo implements Cloneable {
 	private final Object ffmpegFailureLock = new Object();
 	private boolean ffmpegFailure = false;
 
-	private final Object ffmpegAnnexbFailureLock = new Object();
-	private boolean ffmpegAnnexbFailure;
 	private boolean muxable;
 	private Map<String, String> extras;
 	private boolean encrypted;
@@ -407,6 +420,7 @@ public class DLNAMediaInfo implements Cloneable {
 	}
 
 	public void generateThumbnail(InputFile input, Format ext, int type, Double seekPosition, boolean resume, RendererConfiguration renderer) {
+		long start = System.nanoTime();
 		DLNAMediaInfo forThumbnail = new DLNAMediaInfo();
 		forThumbnail.setMediaparsed(mediaparsed);  // check if file was already parsed by MediaInfo
 		forThumbnail.setImageInfo(imageInfo);
@@ -419,7 +433,22 @@ public class DLNAMediaInfo implements Cloneable {
 
 		forThumbnail.parse(input, ext, type, true, resume, renderer);
 		thumb = forThumbnail.thumb;
-		thumbready = true;
+		// A cover that is still being looked up is used the next time
+		thumbready = !forThumbnail.coverLookupPending;
+		THUMBNAIL_GENERATION_TIME.labels(getThumbnailMetricsType(type)).recordSince(start);
+	}
+
+	private static String getThumbnailMetricsType(int type) {
+		switch (type) {
+			case Format.AUDIO:
+				return "audio";
+			case Format.IMAGE:
+				return "image";
+			case Format.VIDEO:
+				return "video";
+			default:
+				return "other";
+		}
 	}
 
 	private ProcessWrapperImpl getFFmpegThumbnail(InputFile media, boolean resume) {
@@ -438,11 +467,10 @@ public class DLNAMediaInfo implements Cloneable {
 		}
 
 		if (generateThumbnail) {
-			args.add("-ss");
 			if (resume) {
-				args.add(Integer.toString((int) getDurationInSeconds()));
+				addThumbnailInputArgs(args, (int) getDurationInSeconds());
 			} else {
-				args.add(Integer.toString((int) Math.min(CONFIGURATION.getThumbnailSeekPos(), getDurationInSeconds())));
+				addThumbnailInputArgs(args, (int) Math.min(CONFIGURATION.getThumbnailSeekPos(), getDurationInSeconds()));
 			}
 		}
 
@@ -458,13 +486,7 @@ public class DLNAMediaInfo implements Cloneable {
 		args.add("-dn");
 		args.add("-sn");
 		if (generateThumbnail) {
-			args.add("-vf");
-			args.add("scale=320:-2");
-			args.add("-vframes");
-			args.add("1");
-			args.add("-f");
-			args.add("image2");
-			args.add("pipe:");
+			addThumbnailOutputArgs(args);
 		}
 
 		OutputParams params = new OutputParams(CONFIGURATION);
@@ -502,6 +524,45 @@ public class DLNAMediaInfo implements Cloneable {
 		return pw;
 	}
 
+	/**
+	 * Adds the FFmpeg input options for a video thumbnail. The input is seeked
+	 * to the keyframe at or before the position, and since the frames up to
+	 * the position aren't decoded and dropped, that keyframe is the
+	 * thumbnail. Getting the exact frame would mean decoding up to a whole
+	 * GOP, so only keyframes are decoded. The timestamps are copied, otherwise
+	 * the keyframe would be before the seek position and FFmpeg would drop it.
+	 * Decoding uses a single thread, the {@link VideoThumbnailWorkers} run
+	 * several thumbnails at a time instead.
+	 *
+	 * @param args the FFmpeg arguments to add to.
+	 * @param seekPosition the position of the thumbnail in seconds.
+	 */
+	static void addThumbnailInputArgs(List<String> args, int seekPosition) {
+		args.add("-ss");
+		args.add(Integer.toString(seekPosition));
+		args.add("-noaccurate_seek");
+		args.add("-skip_frame");
+		args.add("nokey");
+		args.add("-threads");
+		args.add("1");
+		args.add("-copyts");
+	}
+
+	/**
+	 * Adds the FFmpeg output options for a video thumbnail written to stdout.
+	 *
+	 * @param args the FFmpeg arguments to add to.
+	 */
+	static void addThumbnailOutputArgs(List<String> args) {
+		args.add("-vf");
+		args.add("scale=320:-2");
+		args.add("-vframes");
+		args.add("1");
+		args.add("-f");
+		args.add("image2");
+		args.add("pipe:");
+	}
+
 	private ProcessWrapperImpl getMplayerThumbnail(InputFile media, boolean resume) throws IOException {
 		File file = media.getFile();
 		String[] args = new String[14];
@@ -659,14 +720,20 @@ public class DLNAMediaInfo implements Cloneable {
 									false
 								);
 							} else if (!CONFIGURATION.getAudioThumbnailMethod().equals(CoverSupplier.NONE)) {
-								thumb = DLNAThumbnail.toThumbnail(
-									CoverUtil.get().getThumbnail(t),
-									640,
-									480,
-									ScaleType.MAX,
-									ImageFormat.SOURCE,
-									false
-								);
+								// Don't hold up parsing for the cover lookup, the cover
+								// is picked up the next time the thumbnail is requested
+								CompletableFuture<byte[]> cover = CoverUtil.get().getThumbnailAsync(t);
+								coverLookupPending = !cover.isDone();
+								if (!coverLookupPending) {
+									thumb = DLNAThumbnail.toThumbnail(
+										cover.join(),
+										640,
+										480,
+										ScaleType.MAX,
+										ImageFormat.SOURCE,
+										false
+									);
+								}
 							}
 							if (thumb != null) {
 								thumbready = true;
@@ -788,7 +855,7 @@ public class DLNAMediaInfo implements Cloneable {
 						} else {
 							// This will fail with UnknownFormatException for any image formats not supported by ImageIO
 							thumb = DLNAThumbnail.toThumbnail(
-								Files.newInputStream(file.toPath()),
+								file,
 								320,
 								320,
 								ScaleType.MAX,
@@ -1566,10 +1633,17 @@ public class DLNAMediaInfo implements Cloneable {
 		if (getFirstAudioTrack() == null || !(type == Format.AUDIO && getFirstAudioTrack().getBitsperSample() == 24 && getFirstAudioTrack().getSampleRate() > 48000)) {
 			secondaryFormatValid = false;
 		}
+
+		if (getH264AnnexB() == null) {
+			parseH264ParameterSets(f);
+		}
 	}
 
 	/**
-	 * Checks whether the video has too many reference frames per pixels for the renderer
+	 * Checks whether the video has too many reference frames per pixels for the renderer.
+	 * For containers without Annex B headers, the parameter sets read by
+	 * {@link #parseH264ParameterSets} are required, which are normally
+	 * stored in the database with the rest of the media information.
 	 *
 	 * TODO move to PlayerUtil
 	 */
@@ -1578,98 +1652,73 @@ public class DLNAMediaInfo implements Cloneable {
 			if (videoWithinH264LevelLimits == null) {
 				if (isH264()) {
 					videoWithinH264LevelLimits = true;
-					if (
-						container != null &&
-						(
-							container.equals("matroska") ||
-							container.equals("mkv") ||
-							container.equals("mov") ||
-							container.equals("mp4")
-						)
-					) { // Containers without h264_annexB
-						byte[][] headers = getAnnexBFrameHeader(f);
-						synchronized (ffmpegAnnexbFailureLock) {
-							if (ffmpegAnnexbFailure) {
-								LOGGER.info("Error parsing information from the file: " + f.getFilename());
-							}
+					if (isH264ParameterSetsContainer()) { // Containers without h264_annexB
+						if (getH264AnnexB() == null) {
+							parseH264ParameterSets(f);
 						}
 
-						if (headers != null) {
-							synchronized (h264AnnexBLock) {
-								h264AnnexB = headers[1];
-								if (h264AnnexB != null) {
-									int skip = 5;
-									if (h264AnnexB[2] == 1) {
-										skip = 4;
+						if (getH264AnnexB() != null) {
+							avcLevelLock.readLock().lock();
+							referenceFrameCountLock.readLock().lock();
+							try {
+								if (
+									referenceFrameCount > -1 &&
+									(
+										"4.1".equals(avcLevel) ||
+										"4.2".equals(avcLevel) ||
+										"5".equals(avcLevel) ||
+										"5.0".equals(avcLevel) ||
+										"5.1".equals(avcLevel) ||
+										"5.2".equals(avcLevel)
+									) &&
+									width > 0 &&
+									height > 0
+								) {
+									int maxref;
+									if (mediaRenderer == null || mediaRenderer.isPS3()) {
+										/**
+										 * 2013-01-25: Confirmed maximum reference frames on PS3:
+										 *    - 4 for 1920x1080
+										 *    - 11 for 1280x720
+										 * Meaning this math is correct
+										 */
+										maxref = (int) Math.floor(10252743 / (double) (width * height));
+									} else {
+										/**
+										 * This is the math for level 4.1, which results in:
+										 *    - 4 for 1920x1080
+										 *    - 9 for 1280x720
+										 */
+										maxref = (int) Math.floor(8388608 / (double) (width * height));
 									}
-									byte[] header = new byte[h264AnnexB.length - skip];
-									System.arraycopy(h264AnnexB, skip, header, 0, header.length);
 
-									avcLevelLock.readLock().lock();
-									referenceFrameCountLock.readLock().lock();
-									try {
-										if (
-											referenceFrameCount > -1 &&
-											(
-												"4.1".equals(avcLevel) ||
-												"4.2".equals(avcLevel) ||
-												"5".equals(avcLevel) ||
-												"5.0".equals(avcLevel) ||
-												"5.1".equals(avcLevel) ||
-												"5.2".equals(avcLevel)
-											) &&
-											width > 0 &&
-											height > 0
-										) {
-											int maxref;
-											if (mediaRenderer == null || mediaRenderer.isPS3()) {
-												/**
-												 * 2013-01-25: Confirmed maximum reference frames on PS3:
-												 *    - 4 for 1920x1080
-												 *    - 11 for 1280x720
-												 * Meaning this math is correct
-												 */
-												maxref = (int) Math.floor(10252743 / (double) (width * height));
-											} else {
-												/**
-												 * This is the math for level 4.1, which results in:
-												 *    - 4 for 1920x1080
-												 *    - 9 for 1280x720
-												 */
-												maxref = (int) Math.floor(8388608 / (double) (width * height));
-											}
-
-											if (referenceFrameCount > maxref) {
-												LOGGER.debug(
-													"The file \"{}\" is not compatible with this renderer because it " +
-													"can only take {} reference frames at this resolution while this " +
-													"file has {} reference frames",
-													f.getFilename(),
-													maxref, referenceFrameCount
-												);
-												videoWithinH264LevelLimits = false;
-											} else if (referenceFrameCount == -1) {
-												LOGGER.debug(
-													"The file \"{}\" may not be compatible with this renderer because " +
-													"we can't get its number of reference frames",
-													f.getFilename()
-												);
-												videoWithinH264LevelLimits = false;
-											}
-										}
-									} finally {
-										referenceFrameCountLock.readLock().unlock();
-										avcLevelLock.readLock().unlock();
+									if (referenceFrameCount > maxref) {
+										LOGGER.debug(
+											"The file \"{}\" is not compatible with this renderer because it " +
+											"can only take {} reference frames at this resolution while this " +
+											"file has {} reference frames",
+											f.getFilename(),
+											maxref, referenceFrameCount
+										);
+										videoWithinH264LevelLimits = false;
+									} else if (referenceFrameCount == -1) {
+										LOGGER.debug(
+											"The file \"{}\" may not be compatible with this renderer because " +
+											"we can't get its number of reference frames",
+											f.getFilename()
+										);
+										videoWithinH264LevelLimits = false;
 									}
-								} else {
-									LOGGER.debug(
-										"The H.264 stream inside the file \"{}\" is not compatible with this renderer",
-										f.getFilename()
-									);
-									videoWithinH264LevelLimits = false;
 								}
+							} finally {
+								referenceFrameCountLock.readLock().unlock();
+								avcLevelLock.readLock().unlock();
 							}
 						} else {
+							LOGGER.debug(
+								"The H.264 stream inside the file \"{}\" is not compatible with this renderer",
+								f.getFilename()
+							);
 							videoWithinH264LevelLimits = false;
 						}
 					}
@@ -1681,6 +1730,41 @@ public class DLNAMediaInfo implements Cloneable {
 		}
 	}
 
+	private boolean isH264ParameterSetsContainer() {
+		return container != null &&
+			(
+				container.equals("matroska") ||
+				container.equals("mkv") ||
+				container.equals("mov") ||
+				container.equals("mp4")
+			);
+	}
+
+	/**
+	 * Reads the H.264 parameter sets from the container headers of MP4/MOV
+	 * and Matroska files, and fills in the Annex B header along with the level
+	 * and reference frame count if MediaInfo didn't report them.
+	 *
+	 * @param f the file to read.
+	 */
+	public void parseH264ParameterSets(InputFile f) {
+		if (f == null || f.getFile() == null || !isH264() || !isH264ParameterSetsContainer()) {
+			return;
+		}
+		H264ParameterSets parameterSets = H264ParameterSets.parse(f.getFile());
+		if (parameterSets == null) {
+			LOGGER.debug("Could not read the H.264 parameter sets from the file: {}", f.getFilename());
+			return;
+		}
+		setH264AnnexB(parameterSets.getAnnexBHeader());
+		if (isBlank(getAvcLevel())) {
+			setAvcLevel(parameterSets.getLevel());
+		}
+		if (getReferenceFrameCount() == -1) {
+			setReferenceFrameCount((byte) Math.min(parameterSets.getMaxNumRefFrames(), Byte.MAX_VALUE));
+		}
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder result = new StringBuilder();
@@ -1882,93 +1966,6 @@ public class DLNAMediaInfo implements Cloneable {
 		return container != null && container.equals("mpegts");
 	}
 
-	public byte[][] getAnnexBFrameHeader(InputFile f) {
-		String[] cmdArray = new String[14];
-		cmdArray[0] = PlayerFactory.getPlayerExecutable(StandardPlayerId.FFMPEG_VIDEO);
-		if (cmdArray[0] == null) {
-			LOGGER.warn("Cannot process Annex B Frame Header is FFmpeg executable is undefined");
-			return null;
-		}
-		cmdArray[1] = "-i";
-
-		if (f.getPush() == null && f.getFilename() != null) {
-			cmdArray[2] = f.getFilename();
-		} else {
-			cmdArray[2] = "-";
-		}
-
-		cmdArray[3] = "-vframes";
-		cmdArray[4] = "1";
-		cmdArray[5] = "-c:v";
-		cmdArray[6] = "copy";
-		cmdArray[7] = "-f";
-		cmdArray[8] = "h264";
-		cmdArray[9] = "-bsf";
-		cmdArray[10] = "h264_mp4toannexb";
-		cmdArray[11] = "-an";
-		cmdArray[12] = "-y";
-		cmdArray[13] = "pipe:";
-
-		byte[][] returnData = new byte[2][];
-		OutputParams params = new OutputParams(CONFIGURATION);
-		params.setMaxBufferSize(1);
-		params.setStdIn(f.getPush());
-
-		final ProcessWrapperImpl pw = new ProcessWrapperImpl(cmdArray, true, params);
-
-		Runnable r = () -> {
-			try {
-				Thread.sleep(3000);
-				synchronized (ffmpegAnnexbFailureLock) {
-					ffmpegAnnexbFailure = true;
-				}
-			} catch (InterruptedException e) { }
-			pw.stopProcess();
-		};
-
-		Thread failsafe = new Thread(r, "FFMpeg AnnexB Frame Header Failsafe");
-		failsafe.start();
-		pw.runInSameThread();
-
-		synchronized (ffmpegAnnexbFailureLock) {
-			if (ffmpegAnnexbFailure) {
-				return null;
-			}
-		}
-
-		byte[] data = pw.getOutputByteArray().toByteArray();
-		returnData[0] = data;
-		int kf = 0;
-
-		for (int i = 3; i < data.length; i++) {
-			if (data[i - 3] == 1 && (data[i - 2] & 37) == 37 && (data[i - 1] & -120) == -120) {
-				kf = i - 2;
-				break;
-			}
-		}
-
-		int st = 0;
-		boolean found = false;
-
-		if (kf > 0) {
-			for (int i = kf; i >= 5; i--) {
-				if (data[i - 5] == 0 && data[i - 4] == 0 && data[i - 3] == 0 && (data[i - 2] & 1) == 1 && (data[i - 1] & 39) == 39) {
-					st = i - 5;
-					found = true;
-					break;
-				}
-			}
-		}
-
-		if (found) {
-			byte[] header = new byte[kf - st];
-			System.arraycopy(data, st, header, 0, kf - st);
-			returnData[1] = header;
-		}
-
-		return returnData;
-	}
-
 	@Override
 	protected DLNAMediaInfo clone() throws CloneNotSupportedException {
 		DLNAMediaInfo mediaCloned = (DLNAMediaInfo) super.clone();
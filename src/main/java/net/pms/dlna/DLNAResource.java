@@ -54,6 +54,7 @@ import java.util.StringTokenizer;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.text.StringEscapeUtils;
@@ -99,6 +100,7 @@ import net.pms.io.OutputParams;
 import net.pms.io.ProcessWrapper;
 import net.pms.io.SizeLimitInputStream;
 import net.pms.network.HTTPResource;
+import net.pms.network.mediaserver.GENAEventNotifier;
 import net.pms.network.mediaserver.MediaServer;
 import net.pms.network.mediaserver.Renderer;
 import net.pms.util.APIUtils;
@@ -110,6 +112,7 @@ import net.pms.util.FullyPlayed;
 import net.pms.util.GenericIcons;
 import net.pms.util.Iso639;
 import net.pms.util.MpegUtil;
+import net.pms.util.OpenSubtitle;
 import net.pms.util.StringUtil;
 import net.pms.util.SubtitleUtils;
 
@@ -131,7 +134,6 @@ public abstract class DLNAResource extends HTTPResource implements Cloneable, Ru
 	// private boolean subsAreValidForStreaming = false;
 
 	protected static final int MAX_ARCHIVE_ENTRY_SIZE = 10000000;
-	protected static final int MAX_ARCHIVE_SIZE_SEEK = 800000000;
 	protected static final double CONTAINER_OVERHEAD = 1.04;
 
 	// maximum characters for UI4 (Unsigned Integer 4-bytes)
@@ -207,6 +209,12 @@ public abstract class DLNAResource extends HTTPResource implements Cloneable, Ru
 	 * The last time refresh was called.
 	 */
 	private long lastRefreshTime;
+
+	/**
+	 * The ContainerUpdateID of this container, bumped whenever its children
+	 * change.
+	 */
+	private final AtomicInteger containerUpdateId = new AtomicInteger(1);
 	private VirtualFolder dynamicPls;
 	protected HashMap<String, Object> attachments = null;
 
@@ -1068,6 +1076,24 @@ public abstract class DLNAResource extends HTTPResource implements Cloneable, Ru
 		return getDLNAResources(objectId, children, start, count, renderer, null);
 	}
 
+	/**
+	 * Lets the metadata lookups for the files on the requested page run before
+	 * the lookups that were queued by scanning or browsing elsewhere.
+	 */
+	private static void prioritizeMetadataLookups(List<DLNAResource> children, int start, int count) {
+		File lastFolder = null;
+		for (int i = start; i < start + count && i < children.size(); i++) {
+			if (children.get(i) instanceof RealFile) {
+				File folder = ((RealFile) children.get(i)).getFile().getParentFile();
+				if (folder != null && !folder.equals(lastFolder)) {
+					APIUtils.prioritizeLookups(folder);
+					VideoThumbnailWorkers.prioritize(folder);
+					lastFolder = folder;
+				}
+			}
+		}
+	}
+
 	public synchronized List<DLNAResource> getDLNAResources(String objectId, boolean returnChildren, int start, int count,
 		RendererConfiguration renderer, String searchStr) {
 		ArrayList<DLNAResource> resources = new ArrayList<>();
@@ -1136,6 +1162,7 @@ public abstract class DLNAResource extends HTTPResource implements Cloneable, Ru
 					if (shouldDoAudioTrackSorting(dlna)) {
 						sortChildrenWithAudioElements(dlna);
 					}
+					prioritizeMetadataLookups(dlna.getChildren(), start, count);
 					for (int i = start; i < start + count && i < dlna.getChildren().size(); i++) {
 						final DLNAResource child = dlna.getChildren().get(i);
 						if (child != null) {
@@ -1251,6 +1278,7 @@ public abstract class DLNAResource extends HTTPResource implements Cloneable, Ru
 		if (isDiscovered() && shouldRefresh(search)) {
 			refreshChildren(search);
 			notifyRefresh();
+			notifyContainerUpdate();
 		}
 	}
 
@@ -1262,6 +1290,42 @@ public abstract class DLNAResource extends HTTPResource implements Cloneable, Ru
 		DLNAResource.bumpSystemUpdateId();
 	}
 
+	/**
+	 * Bumps the ContainerUpdateID of this container and queues it for the
+	 * next content directory event, so subscribed renderers only re-browse
+	 * this container. Call this when the children of this container have
+	 * changed.
+	 */
+	public void notifyContainerUpdate() {
+		int updateId = containerUpdateId.updateAndGet(id -> id >= MAX_UI4_VALUE ? 1 : id + 1);
+		String id = getResourceId();
+		if (id != null) {
+			GENAEventNotifier.getInstance().containerUpdated(id, updateId);
+		}
+		bumpSystemUpdateId();
+	}
+
+	/**
+	 * @return the ContainerUpdateID of this container.
+	 */
+	public int getContainerUpdateId() {
+		return containerUpdateId.get();
+	}
+
+	/**
+	 * Returns the UpdateID of a Browse or Search response: the
+	 * ContainerUpdateID of the browsed or searched container, which is what
+	 * renderers match the ContainerUpdateIDs events against, or the
+	 * SystemUpdateID for an item.
+	 *
+	 * @param resource the browsed or searched object, or {@code null} if it
+	 *            isn't known.
+	 * @return the UpdateID.
+	 */
+	public static int getUpdateId(DLNAResource resource) {
+		return resource != null && resource.isFolder() ? resource.getContainerUpdateId() : getSystemUpdateId();
+	}
+
 	final protected void discoverWithRenderer(RendererConfiguration renderer, int count, boolean forced, String searchStr) {
 		PmsConfiguration configurationSpecificToRenderer = PMS.getConfiguration(renderer);
 		// Discover children if it hasn't been done already
@@ -1305,6 +1369,7 @@ public abstract class DLNAResource extends HTTPResource implements Cloneable, Ru
 				// (refreshChildren is not overridden in MapFile)
 				if (refreshChildren(searchStr)) {
 					notifyRefresh();
+					notifyContainerUpdate();
 				}
 			} else {
 				// if not, then the regular isRefreshNeeded/doRefreshChildren
@@ -1312,6 +1377,7 @@ public abstract class DLNAResource extends HTTPResource implements Cloneable, Ru
 				if (shouldRefresh(searchStr)) {
 					doRefreshChildren(searchStr);
 					notifyRefresh();
+					notifyContainerUpdate();
 				}
 			}
 		}
@@ -3209,9 +3275,11 @@ public abstract class DLNAResource extends HTTPResource implements Cloneable, Ru
 		// Determine source of the stream
 		if (player == null && !isResume()) {
 			// No transcoding
-			if (this instanceof IPushOutput) {
+			InputStream fis = getInputStream();
+
+			if (fis == null && this instanceof IPushOutput) {
 				PipedOutputStream out = new PipedOutputStream();
-				InputStream fis = new PipedInputStream(out);
+				fis = new PipedInputStream(out);
 				((IPushOutput) this).push(out);
 
 				if (low > 0) {
@@ -3222,8 +3290,6 @@ public abstract class DLNAResource extends HTTPResource implements Cloneable, Ru
 				return wrap(fis, high, low);
 			}
 
-			InputStream fis = getInputStream();
-
 			if (fis != null) {
 				if (low > 0) {
 					fis.skip(low);
@@ -4330,6 +4396,7 @@ public abstract class DLNAResource extends HTTPResource implements Cloneable, Ru
 				MediaDatabase.close(connection);
 				LOCK_SYSTEM_UPDATE_ID.writeLock().unlock();
 			}
+			GENAEventNotifier.getInstance().systemUpdated();
 		}, 300, TimeUnit.MILLISECONDS);
 	}
 
@@ -4631,6 +4698,7 @@ public abstract class DLNAResource extends HTTPResource implements Cloneable, Ru
 			resume.stop(startTime, (long) (media.getDurationInSeconds() * 1000));
 			if (resume.isDone()) {
 				parent.getChildren().remove(this);
+				parent.notifyContainerUpdate();
 			} else if (getMedia() != null) {
 				media.setThumbready(false);
 			}
@@ -4640,6 +4708,7 @@ public abstract class DLNAResource extends HTTPResource implements Cloneable, Ru
 					res.resume.stop(startTime, (long) (media.getDurationInSeconds() * 1000));
 					if (res.resume.isDone()) {
 						parent.getChildren().remove(res);
+						parent.notifyContainerUpdate();
 						return null;
 					}
 
@@ -4662,6 +4731,7 @@ public abstract class DLNAResource extends HTTPResource implements Cloneable, Ru
 
 				clone.player = player;
 				parent.addChildInternal(clone);
+				parent.notifyContainerUpdate();
 				return clone;
 			}
 		}
@@ -5097,6 +5167,7 @@ public abstract class DLNAResource extends HTTPResource implements Cloneable, Ru
 		} finally {
 			// Attempt to enhance the metadata via our API.
 			APIUtils.backgroundLookupAndAddMetadata(file, media);
+			OpenSubtitle.backgroundLookupImdbIdByFileHash(file);
 		}
 	}
 
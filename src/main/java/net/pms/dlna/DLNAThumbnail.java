@@ -19,6 +19,7 @@ package net.pms.dlna;
 
 import java.awt.image.BufferedImage;
 import java.awt.image.ColorModel;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import org.slf4j.Logger;
@@ -397,6 +398,54 @@ public class DLNAThumbnail extends DLNAImage {
 		);
 	}
 
+	/**
+	 * Converts an image file to a {@link DLNAThumbnail}. Format support is
+	 * limited to that of {@link ImageIO}. {@code outputFormat} is limited to
+	 * JPEG or PNG format adhering to the DLNA restrictions for color space and
+	 * compression. If {@code outputFormat} doesn't qualify, the image will be
+	 * converted to a DLNA compliant JPEG. Preserves aspect ratio and
+	 * rotates/flips the image according to Exif orientation.
+	 * <p>
+	 * The file is read directly instead of into memory, and large images are
+	 * only decoded at the resolution needed for the thumbnail.
+	 *
+	 * @param inputFile the source image file in a supported format.
+	 * @param width the new width or 0 to disable scaling.
+	 * @param height the new height or 0 to disable scaling.
+	 * @param scaleType the {@link ScaleType} to use when scaling.
+	 * @param outputFormat the {@link ImageFormat} to generate or
+	 *            {@link ImageFormat#SOURCE} to preserve source format.
+	 * @param padToSize whether padding should be used if source aspect doesn't
+	 *            match target aspect.
+	 * @return The populated {@link DLNAThumbnail} or {@code null} if the source
+	 *         image is {@code null}.
+	 * @throws IOException if the operation fails.
+	 */
+	public static DLNAThumbnail toThumbnail(
+		File inputFile,
+		int width,
+		int height,
+		ScaleType scaleType,
+		ImageFormat outputFormat,
+		boolean padToSize
+	) throws IOException {
+		if (inputFile == null) {
+			return null;
+		}
+
+		return (DLNAThumbnail) ImagesUtil.transcodeImage(
+			inputFile,
+			width,
+			height,
+			scaleType,
+			outputFormat,
+			true,
+			true,
+			padToSize,
+			null
+		);
+	}
+
 	/**
 	 * Converts an image to a {@link DLNAThumbnail}. Format support is limited
 	 * to that of {@link ImageIO}. {@code outputFormat} is limited to JPEG or
@@ -3,6 +3,8 @@ package net.pms.dlna;
 import java.lang.ref.SoftReference;
 import java.lang.ref.ReferenceQueue;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
@@ -74,6 +76,28 @@ public class GlobalIdRepo {
 		}
 	}
 
+	/**
+	 * Performs the given action for each resource that is in scope and hasn't
+	 * been garbage collected. The action is called without holding the lock.
+	 *
+	 * @param action the action to perform.
+	 */
+	public void forEach(Consumer<DLNAResource> action) {
+		List<DLNAResource> resources = new ArrayList<>();
+		lock.readLock().lock();
+		try {
+			for (ID item : ids) {
+				DLNAResource resource = item.scope ? item.dlnaRef.get() : null;
+				if (resource != null) {
+					resources.add(resource);
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		resources.forEach(action);
+	}
+
 	public boolean exists(String id) {
 		return get(id) != null;
 	}
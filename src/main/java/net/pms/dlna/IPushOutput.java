@@ -5,6 +5,4 @@ import java.io.OutputStream;
 
 public interface IPushOutput {
 	public void push(OutputStream out) throws IOException;
-
-	public boolean isUnderlyingSeekSupported();
 }
@@ -13,9 +13,13 @@ import java.nio.charset.StandardCharsets;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.AbstractMap;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.annotation.Nullable;
@@ -26,7 +30,9 @@ import org.jaudiotagger.tag.FieldKey;
 import org.jaudiotagger.tag.Tag;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import net.pms.PMS;
 import net.pms.configuration.FormatConfiguration;
+import net.pms.configuration.PmsConfiguration;
 import net.pms.configuration.RendererConfiguration;
 import net.pms.dlna.MediaInfo.StreamType;
 import net.pms.formats.Format;
@@ -50,53 +56,162 @@ public class LibMediaInfoParser {
 	// Pattern to parse the year from a string
 	private static final Pattern YEAR_PATTERN = Pattern.compile(YEAR_REGEX);
 
-	private static final MediaInfo MI;
+	/**
+	 * The maximum number of {@link MediaInfo} handles when the configuration
+	 * isn't available yet.
+	 */
+	private static final int DEFAULT_MAX_HANDLES = 1;
+
+	/**
+	 * The idle {@link MediaInfo} handles, each of which can parse one file at
+	 * a time. Also the lock guarding {@link #openHandles}.
+	 */
+	private static final Deque<MediaInfo> IDLE_HANDLES = new ArrayDeque<>();
 	private static final Version VERSION;
+	private static final boolean VALID;
+
+	/** Whether the library can produce a {@link MediaInfoReport} */
+	private static final boolean REPORT_SUPPORTED;
+
+	/** The number of handles in use or idle, guarded by IDLE_HANDLES */
+	private static int openHandles;
+
+	/** Whether the pool has been closed, guarded by IDLE_HANDLES */
+	private static boolean closed;
 
 	static {
-		MI = new MediaInfo();
-
-		if (MI.isValid()) {
-			MI.Option("Internet", "No"); // avoid MediaInfoLib to try to connect to an Internet server for availability of newer software, anonymous statistics and retrieving information about a file
-			MI.Option("Complete", "1");
-			MI.Option("Language", "en");
-			MI.Option("File_TestContinuousFileNames", "0");
-			Matcher matcher = Pattern.compile("MediaInfoLib - v(\\S+)", Pattern.CASE_INSENSITIVE).matcher(MI.Option("Info_Version"));
+		MediaInfo mi = new MediaInfo();
+		VALID = mi.isValid();
+
+		if (VALID) {
+			Matcher matcher = Pattern.compile("MediaInfoLib - v(\\S+)", Pattern.CASE_INSENSITIVE).matcher(mi.Option("Info_Version"));
 			if (matcher.find() && isNotBlank(matcher.group(1))) {
 				VERSION = new Version(matcher.group(1));
 			} else {
 				VERSION = null;
 			}
 
-			if (VERSION != null)  {
-				if (VERSION.isGreaterThan(new Version("18.03"))) {
-					MI.Option("Language", "raw");
-					MI.Option("Cover_Data", "base64");
-				}
+			REPORT_SUPPORTED = VERSION != null && VERSION.isGreaterThan(new Version("18.03"));
+			initializeOptions(mi);
+			IDLE_HANDLES.add(mi);
+			openHandles = 1;
+//			LOGGER.debug(mi.Option("Info_Parameters_CSV")); // It can be used to export all current MediaInfo parameters
+		} else {
+			VERSION = null;
+			REPORT_SUPPORTED = false;
+		}
+	}
 
-				if (VERSION.isGreaterThan(new Version("18.5"))) {
-					MI.Option("LegacyStreamDisplay", "1");
-					MI.Option("File_HighestFormat", "0");
-					MI.Option("File_ChannelLayout", "1");
-					MI.Option("Legacy", "1");
-				}
+	/**
+	 * Sets the options used for parsing on a newly opened handle. Options
+	 * apply to a single handle, so every handle in the pool needs them.
+	 *
+	 * @param mi the {@link MediaInfo} handle to initialize.
+	 */
+	private static void initializeOptions(MediaInfo mi) {
+		mi.Option("Internet", "No"); // avoid MediaInfoLib to try to connect to an Internet server for availability of newer software, anonymous statistics and retrieving information about a file
+		mi.Option("Complete", "1");
+		mi.Option("Language", "en");
+		mi.Option("File_TestContinuousFileNames", "0");
+
+		if (VERSION != null) {
+			if (VERSION.isGreaterThan(new Version("18.03"))) {
+				mi.Option("Language", "raw");
+				mi.Option("Cover_Data", "base64");
 			}
 
-//			LOGGER.debug(MI.Option("Info_Parameters_CSV")); // It can be used to export all current MediaInfo parameters
-		} else {
-			VERSION = null;
+			if (VERSION.isGreaterThan(new Version("18.5"))) {
+				mi.Option("LegacyStreamDisplay", "1");
+				mi.Option("File_HighestFormat", "0");
+				mi.Option("File_ChannelLayout", "1");
+				mi.Option("Legacy", "1");
+			}
+		}
+	}
+
+	/**
+	 * @return The maximum number of files that can be parsed at the same
+	 *         time.
+	 */
+	private static int getMaxHandles() {
+		PmsConfiguration configuration = PMS.getConfiguration();
+		return configuration != null ? configuration.getMediaInfoParsers() : DEFAULT_MAX_HANDLES;
+	}
+
+	/**
+	 * Takes an idle handle from the pool, opening a new one if the pool
+	 * isn't full, or waits until another thread releases one.
+	 *
+	 * @return The {@link MediaInfo} handle or {@code null} if a new handle
+	 *         couldn't be opened or the pool is closed.
+	 * @throws InterruptedException If interrupted while waiting.
+	 */
+	@Nullable
+	private static MediaInfo acquireHandle() throws InterruptedException {
+		synchronized (IDLE_HANDLES) {
+			while (!closed && IDLE_HANDLES.isEmpty() && openHandles >= getMaxHandles()) {
+				IDLE_HANDLES.wait();
+			}
+			if (closed) {
+				return null;
+			}
+			if (!IDLE_HANDLES.isEmpty()) {
+				return IDLE_HANDLES.pop();
+			}
+			openHandles++;
+		}
+
+		// Opening a handle loads the library state, so it's done unlocked
+		MediaInfo mi = new MediaInfo();
+		if (mi.isValid()) {
+			initializeOptions(mi);
+			return mi;
+		}
+		synchronized (IDLE_HANDLES) {
+			openHandles--;
+			IDLE_HANDLES.notifyAll();
+		}
+		return null;
+	}
+
+	/**
+	 * Returns a handle to the pool, disposing of it instead if the pool has
+	 * been closed or shrunk by the configuration in the meantime.
+	 *
+	 * @param mi the {@link MediaInfo} handle to release.
+	 */
+	private static void releaseHandle(MediaInfo mi) {
+		synchronized (IDLE_HANDLES) {
+			if (closed || openHandles > getMaxHandles()) {
+				openHandles--;
+				mi.dispose();
+			} else {
+				IDLE_HANDLES.push(mi);
+			}
+			IDLE_HANDLES.notifyAll();
 		}
 	}
 
 	public static boolean isValid() {
-		return MI.isValid();
+		return VALID;
 	}
 
+	/**
+	 * Disposes of the idle handles. Handles in use are disposed of when
+	 * released, and no more files are parsed.
+	 */
 	public static void close() {
-		try {
-			MI.finalize();
-		} catch (Throwable e) {
-			LOGGER.debug("Caught exception", e);
+		synchronized (IDLE_HANDLES) {
+			closed = true;
+			while (!IDLE_HANDLES.isEmpty()) {
+				try {
+					IDLE_HANDLES.pop().dispose();
+				} catch (Throwable e) {
+					LOGGER.debug("Caught exception", e);
+				}
+				openHandles--;
+			}
+			IDLE_HANDLES.notifyAll();
 		}
 	}
 
@@ -111,11 +226,85 @@ public class LibMediaInfoParser {
 
 	/**
 	 * Parse media via MediaInfo.
+	 * <p>
+	 * Files are parsed in parallel, each with its own handle from a pool
+	 * sized by {@link PmsConfiguration#getMediaInfoParsers()}. The
+	 * {@link DLNAMediaInfo} is locked while it's parsed, so it's only ever
+	 * filled by one thread.
 	 */
-	public static synchronized void parse(DLNAMediaInfo media, InputFile inputFile, int type, RendererConfiguration renderer) {
+	public static void parse(DLNAMediaInfo media, InputFile inputFile, int type, RendererConfiguration renderer) {
+		if (media.isMediaparsed() || inputFile.getFile() == null || !VALID) {
+			return;
+		}
+
+		MediaInfo mi;
+		try {
+			mi = acquireHandle();
+		} catch (InterruptedException e) {
+			LOGGER.debug("Interrupted while waiting to parse \"{}\"", inputFile.getFile());
+			Thread.currentThread().interrupt();
+			return;
+		}
+		if (mi == null) {
+			return;
+		}
+
+		try {
+			synchronized (media) {
+				parse(mi, media, inputFile, type);
+			}
+		} finally {
+			releaseHandle(mi);
+		}
+	}
+
+	private static void parse(MediaInfo mi, DLNAMediaInfo media, InputFile inputFile, int type) {
+		if (media.isMediaparsed() || mi.Open(inputFile.getFile().getAbsolutePath()) <= 0) {
+			return;
+		}
+
+		try {
+			StreamValues values = null;
+			if (isReportParsing()) {
+				try {
+					// Only applies to Inform(), so the handles are left alone unless reports are used
+					mi.Option("Output", "JSON");
+					values = MediaInfoReport.parse(mi.Inform());
+				} catch (IOException e) {
+					LOGGER.debug("Could not read the MediaInfo report for \"{}\", reading the values one by one: {}", inputFile.getFile(), e.getMessage());
+					LOGGER.trace("", e);
+				}
+			}
+			if (values == null) {
+				values = new NativeValues(mi);
+			}
+			parse(values, media, inputFile, type);
+		} finally {
+			mi.Close();
+		}
+	}
+
+	/**
+	 * @return {@code true} if files should be parsed from a single
+	 *         {@link MediaInfoReport} instead of one native call per value.
+	 */
+	private static boolean isReportParsing() {
+		PmsConfiguration configuration = PMS.getConfiguration();
+		return REPORT_SUPPORTED && configuration != null && configuration.isMediaInfoReportParsing();
+	}
+
+	/**
+	 * Maps the values MediaInfo reports for a file to the {@link DLNAMediaInfo}.
+	 *
+	 * @param values the {@link StreamValues} of the file.
+	 * @param media the {@link DLNAMediaInfo} to fill.
+	 * @param inputFile the parsed file.
+	 * @param type the {@link Format} type of the file.
+	 */
+	protected static void parse(StreamValues values, DLNAMediaInfo media, InputFile inputFile, int type) {
 		File file = inputFile.getFile();
-		ParseLogger parseLogger = LOGGER.isTraceEnabled() ? new ParseLogger() : null;
-		if (!media.isMediaparsed() && file != null && MI.isValid() && MI.Open(file.getAbsolutePath()) > 0) {
+		ParseLogger parseLogger = LOGGER.isTraceEnabled() ? new ParseLogger(values) : null;
+		if (!media.isMediaparsed() && file != null) {
 			StreamType general = StreamType.General;
 			StreamType video = StreamType.Video;
 			StreamType audio = StreamType.Audio;
@@ -127,63 +316,58 @@ public class LibMediaInfoParser {
 			String value;
 
 			// set General
-			setFormat(general, media, currentAudioTrack, MI.Get(general, 0, "Format"), file);
-			setFormat(general, media, currentAudioTrack, MI.Get(general, 0, "CodecID").trim(), file);
-			media.setDuration(parseDuration(MI.Get(general, 0, "Duration")));
-			media.setBitrate(getBitrate(MI.Get(general, 0, "OverallBitRate")));
-			media.setStereoscopy(MI.Get(general, 0, "StereoscopicLayout"));
+			setFormat(general, media, currentAudioTrack, values.get(general, 0, "Format"), file);
+			setFormat(general, media, currentAudioTrack, values.get(general, 0, "CodecID").trim(), file);
+			media.setDuration(parseDuration(values.get(general, 0, "Duration")));
+			media.setBitrate(getBitrate(values.get(general, 0, "OverallBitRate")));
+			media.setStereoscopy(values.get(general, 0, "StereoscopicLayout"));
 			// set Chapters
-			if (MI.Count_Get(StreamType.Menu, 0) > 0) {
-				String chaptersPosBeginStr = MI.Get(StreamType.Menu, 0, "Chapters_Pos_Begin", MediaInfo.InfoType.Text);
-				String chaptersPosEndStr = MI.Get(StreamType.Menu, 0, "Chapters_Pos_End", MediaInfo.InfoType.Text);
-				if (!chaptersPosBeginStr.isEmpty() && !chaptersPosEndStr.isEmpty()) {
-					int chaptersPosBegin = Integer.valueOf(chaptersPosBeginStr);
-					int chaptersPosEnd = Integer.valueOf(chaptersPosEndStr);
-					List<DLNAMediaChapter> chapters = new ArrayList();
-					for (int i = chaptersPosBegin; i <= chaptersPosEnd; i++) {
-						String chapterName = MI.Get(StreamType.Menu, 0, i, MediaInfo.InfoType.Name);
-						String chapterTitle = MI.Get(StreamType.Menu, 0, i, MediaInfo.InfoType.Text);
-						if (!chapterName.isEmpty()) {
-							DLNAMediaChapter chapter = new DLNAMediaChapter();
-							LocalTime lt;
-							try {
-								lt = LocalTime.parse(chapterName, DateTimeFormatter.ofPattern("HH:mm:ss.SSS"));
-							} catch (DateTimeParseException e) {
-								LOGGER.debug("Skip chapter as time cannot be parsed: {}", chapterName);
-								continue;
-							}
-							chapter.setId(i - chaptersPosBegin);
-							chapter.setStart(lt.toNanoOfDay() / 1000_000_000D);
-							//set end for previous chapter
-							if (!chapters.isEmpty()) {
-								chapters.get(chapters.size() - 1).setEnd(chapter.getStart());
+			List<Map.Entry<String, String>> chapterMarks = values.getChapters();
+			if (!chapterMarks.isEmpty()) {
+				List<DLNAMediaChapter> chapters = new ArrayList<>();
+				for (int i = 0; i < chapterMarks.size(); i++) {
+					String chapterName = chapterMarks.get(i).getKey();
+					String chapterTitle = chapterMarks.get(i).getValue();
+					if (!chapterName.isEmpty()) {
+						DLNAMediaChapter chapter = new DLNAMediaChapter();
+						LocalTime lt;
+						try {
+							lt = LocalTime.parse(chapterName, DateTimeFormatter.ofPattern("HH:mm:ss.SSS"));
+						} catch (DateTimeParseException e) {
+							LOGGER.debug("Skip chapter as time cannot be parsed: {}", chapterName);
+							continue;
+						}
+						chapter.setId(i);
+						chapter.setStart(lt.toNanoOfDay() / 1000_000_000D);
+						//set end for previous chapter
+						if (!chapters.isEmpty()) {
+							chapters.get(chapters.size() - 1).setEnd(chapter.getStart());
+						}
+						if (!chapterTitle.isEmpty()) {
+							String lang = DLNAMediaLang.UND;
+							chapter.setLang(lang);
+							if (chapterTitle.startsWith(":")) {
+								chapterTitle = chapterTitle.substring(1);
+							} else if (chapterTitle.length() > 2 && ':' == chapterTitle.charAt(2) && (chapterTitle.length() < 15 || ':' != chapterTitle.charAt(5) || ':' == chapterTitle.charAt(8))) {
+								lang = chapterTitle.substring(0, 2);
+								chapterTitle = chapterTitle.substring(3);
 							}
-							if (!chapterTitle.isEmpty()) {
-								String lang = DLNAMediaLang.UND;
+							//do not set title if it is default, it will be filled automatically later
+							if (!DLNAMediaChapter.isTitleDefault(chapterTitle)) {
 								chapter.setLang(lang);
-								if (chapterTitle.startsWith(":")) {
-									chapterTitle = chapterTitle.substring(1);
-								} else if (chapterTitle.length() > 2 && ':' == chapterTitle.charAt(2) && (chapterTitle.length() < 15 || ':' != chapterTitle.charAt(5) || ':' == chapterTitle.charAt(8))) {
-									lang = chapterTitle.substring(0, 2);
-									chapterTitle = chapterTitle.substring(3);
-								}
-								//do not set title if it is default, it will be filled automatically later
-								if (!DLNAMediaChapter.isTitleDefault(chapterTitle)) {
-									chapter.setLang(lang);
-									chapter.setTitle(chapterTitle);
-								}
+								chapter.setTitle(chapterTitle);
 							}
-							chapters.add(chapter);
 						}
+						chapters.add(chapter);
 					}
-					//set end for previous chapter
-					if (!chapters.isEmpty()) {
-						chapters.get(chapters.size() - 1).setEnd(media.getDurationInSeconds());
-					}
-					media.setChapters(chapters);
 				}
+				//set end for previous chapter
+				if (!chapters.isEmpty()) {
+					chapters.get(chapters.size() - 1).setEnd(media.getDurationInSeconds());
+				}
+				media.setChapters(chapters);
 			}
-			value = MI.Get(general, 0, "Cover_Data");
+			value = values.get(general, 0, "Cover_Data");
 			if (!value.isEmpty()) {
 				try {
 					media.setThumb(DLNAThumbnail.toThumbnail(
@@ -207,7 +391,7 @@ public class LibMediaInfoParser {
 				}
 			}
 
-			value = MI.Get(general, 0, "Title");
+			value = values.get(general, 0, "Title");
 			if (!value.isEmpty()) {
 				media.setFileTitleFromMetadata(value);
 			}
@@ -218,7 +402,7 @@ public class LibMediaInfoParser {
 
 			// set Video
 			int videoTrackCount = 0;
-			value = MI.Get(video, 0, "StreamCount");
+			value = values.get(video, 0, "StreamCount");
 			if (!value.isEmpty()) {
 				videoTrackCount = Integer.parseInt(value);
 			}
@@ -227,59 +411,59 @@ public class LibMediaInfoParser {
 			if (videoTrackCount > 0) {
 				for (int i = 0; i < videoTrackCount; i++) {
 					// check for DXSA and DXSB subtitles (subs in video format)
-					if (MI.Get(video, i, "Title").startsWith("Subtitle")) {
+					if (values.get(video, i, "Title").startsWith("Subtitle")) {
 						currentSubTrack = new DLNAMediaSubtitle();
 						// First attempt to detect subtitle track format
-						currentSubTrack.setType(SubtitleType.valueOfMediaInfoValue(MI.Get(video, i, "Format")));
+						currentSubTrack.setType(SubtitleType.valueOfMediaInfoValue(values.get(video, i, "Format")));
 						// Second attempt to detect subtitle track format (CodecID usually is more accurate)
-						currentSubTrack.setType(SubtitleType.valueOfMediaInfoValue(MI.Get(video, i, "CodecID"),
+						currentSubTrack.setType(SubtitleType.valueOfMediaInfoValue(values.get(video, i, "CodecID"),
 							currentSubTrack.getType()
 						));
 						currentSubTrack.setId(media.getSubtitlesTracks().size());
 						addSub(currentSubTrack, media);
 					} else {
-						setFormat(video, media, currentAudioTrack, MI.Get(video, i, "Format"), file);
-						setFormat(video, media, currentAudioTrack, MI.Get(video, i, "Format_Version"), file);
-						setFormat(video, media, currentAudioTrack, MI.Get(video, i, "CodecID"), file);
-						media.setWidth(getPixelValue(MI.Get(video, i, "Width")));
-						media.setHeight(getPixelValue(MI.Get(video, i, "Height")));
-						media.setMatrixCoefficients(MI.Get(video, i, "matrix_coefficients"));
+						setFormat(video, media, currentAudioTrack, values.get(video, i, "Format"), file);
+						setFormat(video, media, currentAudioTrack, values.get(video, i, "Format_Version"), file);
+						setFormat(video, media, currentAudioTrack, values.get(video, i, "CodecID"), file);
+						media.setWidth(getPixelValue(values.get(video, i, "Width")));
+						media.setHeight(getPixelValue(values.get(video, i, "Height")));
+						media.setMatrixCoefficients(values.get(video, i, "matrix_coefficients"));
 						if (!media.is3d()) {
-							media.setStereoscopy(MI.Get(video, i, "MultiView_Layout"));
+							media.setStereoscopy(values.get(video, i, "MultiView_Layout"));
 						}
 
-						media.setPixelAspectRatio(MI.Get(video, i, "PixelAspectRatio"));
-						media.setScanType(MI.Get(video, i, "ScanType"));
-						media.setScanOrder(MI.Get(video, i, "ScanOrder"));
-						media.setAspectRatioContainer(MI.Get(video, i, "DisplayAspectRatio/String"));
-						media.setAspectRatioVideoTrack(MI.Get(video, i, "DisplayAspectRatio_Original/String"));
-						media.setFrameRate(getFPSValue(MI.Get(video, i, "FrameRate")));
-						media.setFrameRateOriginal(MI.Get(video, i, "FrameRate_Original"));
-						media.setFrameRateMode(getFrameRateModeValue(MI.Get(video, i, "FrameRate_Mode")));
-						media.setFrameRateModeRaw(MI.Get(video, i, "FrameRate_Mode"));
-						media.setReferenceFrameCount(getReferenceFrameCount(MI.Get(video, i, "Format_Settings_RefFrames/String")));
-						media.setVideoTrackTitleFromMetadata(MI.Get(video, i, "Title"));
-						value = MI.Get(video, i, "Format_Settings_QPel");
+						media.setPixelAspectRatio(values.get(video, i, "PixelAspectRatio"));
+						media.setScanType(values.get(video, i, "ScanType"));
+						media.setScanOrder(values.get(video, i, "ScanOrder"));
+						media.setAspectRatioContainer(values.get(video, i, "DisplayAspectRatio/String"));
+						media.setAspectRatioVideoTrack(values.get(video, i, "DisplayAspectRatio_Original/String"));
+						media.setFrameRate(getFPSValue(values.get(video, i, "FrameRate")));
+						media.setFrameRateOriginal(values.get(video, i, "FrameRate_Original"));
+						media.setFrameRateMode(getFrameRateModeValue(values.get(video, i, "FrameRate_Mode")));
+						media.setFrameRateModeRaw(values.get(video, i, "FrameRate_Mode"));
+						media.setReferenceFrameCount(getReferenceFrameCount(values.get(video, i, "Format_Settings_RefFrames/String")));
+						media.setVideoTrackTitleFromMetadata(values.get(video, i, "Title"));
+						value = values.get(video, i, "Format_Settings_QPel");
 						if (!value.isEmpty()) {
 							media.putExtra(FormatConfiguration.MI_QPEL, value);
 						}
 
-						value = MI.Get(video, i, "Format_Settings_GMC");
+						value = values.get(video, i, "Format_Settings_GMC");
 						if (!value.isEmpty()) {
 							media.putExtra(FormatConfiguration.MI_GMC, value);
 						}
 
-						value = MI.Get(video, i, "Format_Settings_GOP");
+						value = values.get(video, i, "Format_Settings_GOP");
 						if (!value.isEmpty()) {
 							media.putExtra(FormatConfiguration.MI_GOP, value);
 						}
 
-						media.setMuxingMode(MI.Get(video, i, "MuxingMode"));
+						media.setMuxingMode(values.get(video, i, "MuxingMode"));
 						if (!media.isEncrypted()) {
-							media.setEncrypted("encrypted".equals(MI.Get(video, i, "Encryption")));
+							media.setEncrypted("encrypted".equals(values.get(video, i, "Encryption")));
 						}
 
-						value = MI.Get(video, i, "BitDepth");
+						value = values.get(video, i, "BitDepth");
 						if (!value.isEmpty()) {
 							try {
 								media.setVideoBitDepth(Integer.parseInt(value));
@@ -288,7 +472,7 @@ public class LibMediaInfoParser {
 							}
 						}
 
-						value = MI.Get(video, i, "Format_Profile");
+						value = values.get(video, i, "Format_Profile");
 						if (!value.isEmpty() && media.getCodecV() != null && media.getCodecV().equals(FormatConfiguration.H264)) {
 							media.setAvcLevel(getAvcLevel(value));
 							media.setH264Profile(getAvcProfile(value));
@@ -303,7 +487,7 @@ public class LibMediaInfoParser {
 
 			// set Audio
 			int audioTracks = 0;
-			value = MI.Get(audio, 0, "StreamCount");
+			value = values.get(audio, 0, "StreamCount");
 			if (!value.isEmpty()) {
 				audioTracks = Integer.parseInt(value);
 			}
@@ -311,16 +495,16 @@ public class LibMediaInfoParser {
 			if (audioTracks > 0) {
 				for (int i = 0; i < audioTracks; i++) {
 					currentAudioTrack = new DLNAMediaAudio();
-					setFormat(audio, media, currentAudioTrack, MI.Get(audio, i, "Format/String"), file);
-					setFormat(audio, media, currentAudioTrack, MI.Get(audio, i, "Format_Version"), file);
-					setFormat(audio, media, currentAudioTrack, MI.Get(audio, i, "Format_Profile"), file);
-					setFormat(audio, media, currentAudioTrack, MI.Get(audio, i, "CodecID"), file);
-					value = MI.Get(audio, i, "CodecID_Description");
+					setFormat(audio, media, currentAudioTrack, values.get(audio, i, "Format/String"), file);
+					setFormat(audio, media, currentAudioTrack, values.get(audio, i, "Format_Version"), file);
+					setFormat(audio, media, currentAudioTrack, values.get(audio, i, "Format_Profile"), file);
+					setFormat(audio, media, currentAudioTrack, values.get(audio, i, "CodecID"), file);
+					value = values.get(audio, i, "CodecID_Description");
 					if (isNotBlank(value) && value.startsWith("Windows Media Audio 10")) {
 						currentAudioTrack.setCodecA(FormatConfiguration.WMA10);
 					}
 
-					value = MI.Get(audio, i, "Language/String");
+					value = values.get(audio, i, "Language/String");
 					String languageCode = null;
 					if (isNotBlank(value)) {
 						languageCode = Iso639.getISO639_2Code(value);
@@ -329,7 +513,7 @@ public class LibMediaInfoParser {
 						}
 					}
 
-					value = MI.Get(audio, i, "Title").trim();
+					value = values.get(audio, i, "Title").trim();
 					currentAudioTrack.setAudioTrackTitleFromMetadata(value);
 					// if language code is null try to recognize the language from Title
 					if (languageCode == null && isNotBlank(value)) {
@@ -341,15 +525,15 @@ public class LibMediaInfoParser {
 						currentAudioTrack.setLang(languageCode);
 					}
 
-					currentAudioTrack.getAudioProperties().setNumberOfChannels(MI.Get(audio, i, "Channel(s)"));
-					currentAudioTrack.setSampleFrequency(getSampleFrequency(MI.Get(audio, i, "SamplingRate")));
-					currentAudioTrack.setBitRate(getBitrate(MI.Get(audio, i, "BitRate")));
+					currentAudioTrack.getAudioProperties().setNumberOfChannels(values.get(audio, i, "Channel(s)"));
+					currentAudioTrack.setSampleFrequency(getSampleFrequency(values.get(audio, i, "SamplingRate")));
+					currentAudioTrack.setBitRate(getBitrate(values.get(audio, i, "BitRate")));
 
-					currentAudioTrack.setSongname(MI.Get(general, 0, "Track"));
-					currentAudioTrack.setAlbum(MI.Get(general, 0, "Album"));
-					currentAudioTrack.setAlbumArtist(MI.Get(general, 0, "Album/Performer"));
-					currentAudioTrack.setArtist(MI.Get(general, 0, "Performer"));
-					currentAudioTrack.setGenre(MI.Get(general, 0, "Genre"));
+					currentAudioTrack.setSongname(values.get(general, 0, "Track"));
+					currentAudioTrack.setAlbum(values.get(general, 0, "Album"));
+					currentAudioTrack.setAlbumArtist(values.get(general, 0, "Album/Performer"));
+					currentAudioTrack.setArtist(values.get(general, 0, "Performer"));
+					currentAudioTrack.setGenre(values.get(general, 0, "Genre"));
 					if (videoTrackCount == 0) {
 						try {
 							AudioFile af;
@@ -365,7 +549,7 @@ public class LibMediaInfoParser {
 						}
 					}
 
-					value = MI.Get(general, 0, "Track/Position");
+					value = values.get(general, 0, "Track/Position");
 					if (!value.isEmpty()) {
 						try {
 							currentAudioTrack.setTrack(Integer.parseInt(value));
@@ -374,7 +558,7 @@ public class LibMediaInfoParser {
 						}
 					}
 
-					value = MI.Get(general, 0, "Part");
+					value = values.get(general, 0, "Part");
 					if (!value.isEmpty()) {
 						try {
 							currentAudioTrack.setDisc(Integer.parseInt(value));
@@ -384,7 +568,7 @@ public class LibMediaInfoParser {
 					}
 
 					// Try to parse the year from the stored date
-					String recordedDate = MI.Get(general, 0, "Recorded_Date");
+					String recordedDate = values.get(general, 0, "Recorded_Date");
 					Matcher matcher = YEAR_PATTERN.matcher(recordedDate);
 					if (matcher.matches()) {
 						try {
@@ -395,7 +579,7 @@ public class LibMediaInfoParser {
 					}
 
 					// Special check for OGM: MediaInfo reports specific Audio/Subs IDs (0xn) while MEncoder does not
-					value = MI.Get(audio, i, "ID/String");
+					value = values.get(audio, i, "ID/String");
 					if (!value.isEmpty()) {
 						if (value.contains("(0x") && !FormatConfiguration.OGG.equals(media.getContainer())) {
 							currentAudioTrack.setId(getSpecificID(value));
@@ -404,7 +588,7 @@ public class LibMediaInfoParser {
 						}
 					}
 
-					value = MI.Get(audio, i, "BitDepth");
+					value = values.get(audio, i, "BitDepth");
 					if (!value.isEmpty()) {
 						try {
 							currentAudioTrack.setBitsperSample(Integer.parseInt(value));
@@ -422,7 +606,7 @@ public class LibMediaInfoParser {
 
 			// set Image
 			int imageCount = 0;
-			value = MI.Get(image, 0, "StreamCount");
+			value = values.get(image, 0, "StreamCount");
 			if (!value.isEmpty()) {
 				imageCount = Integer.parseInt(value);
 			}
@@ -434,7 +618,7 @@ public class LibMediaInfoParser {
 				try {
 					ImagesUtil.parseImage(file, media);
 					// This is a little hack. MediaInfo only recognizes a few image formats
-					// so that MI.Count_Get(image) might return 0 even if there is an image.
+					// so that MediaInfo.Count_Get(image) might return 0 even if there is an image.
 					if (media.getImageCount() == 0) {
 						media.setImageCount(1);
 					}
@@ -451,9 +635,9 @@ public class LibMediaInfoParser {
 				}
 
 				if (parseByMediainfo) {
-					setFormat(image, media, currentAudioTrack, MI.Get(image, 0, "Format"), file);
-					media.setWidth(getPixelValue(MI.Get(image, 0, "Width")));
-					media.setHeight(getPixelValue(MI.Get(image, 0, "Height")));
+					setFormat(image, media, currentAudioTrack, values.get(image, 0, "Format"), file);
+					media.setWidth(getPixelValue(values.get(image, 0, "Width")));
+					media.setHeight(getPixelValue(values.get(image, 0, "Height")));
 				}
 
 				if (parseLogger != null) {
@@ -463,7 +647,7 @@ public class LibMediaInfoParser {
 
 			// set Subs in text format
 			int subTracks = 0;
-			value = MI.Get(text, 0, "StreamCount");
+			value = values.get(text, 0, "StreamCount");
 			if (!value.isEmpty()) {
 				subTracks = Integer.parseInt(value);
 			}
@@ -471,11 +655,11 @@ public class LibMediaInfoParser {
 			if (subTracks > 0) {
 				for (int i = 0; i < subTracks; i++) {
 					currentSubTrack = new DLNAMediaSubtitle();
-					currentSubTrack.setType(SubtitleType.valueOfMediaInfoValue(MI.Get(text, i, "CodecID"),
-						SubtitleType.valueOfMediaInfoValue(MI.Get(text, i, "Format"))
+					currentSubTrack.setType(SubtitleType.valueOfMediaInfoValue(values.get(text, i, "CodecID"),
+						SubtitleType.valueOfMediaInfoValue(values.get(text, i, "Format"))
 					));
 
-					value = MI.Get(text, i, "Language/String");
+					value = values.get(text, i, "Language/String");
 					String languageCode = null;
 					if (isNotBlank(value)) {
 						languageCode = Iso639.getISO639_2Code(value.toLowerCase(Locale.ROOT));
@@ -484,7 +668,7 @@ public class LibMediaInfoParser {
 						}
 					}
 
-					value = MI.Get(text, i, "Title").trim();
+					value = values.get(text, i, "Title").trim();
 					currentSubTrack.setSubtitlesTrackTitleFromMetadata(value);
 					// if language code is null try to recognize the language from Title
 					if (languageCode == null && isNotBlank(value)) {
@@ -497,7 +681,7 @@ public class LibMediaInfoParser {
 					}
 
 					// Special check for OGM: MediaInfo reports specific Audio/Subs IDs (0xn) while mencoder/FFmpeg does not
-					value = MI.Get(text, i, "ID/String");
+					value = values.get(text, i, "ID/String");
 					if (isNotBlank(value)) {
 						if (value.contains("(0x") && !FormatConfiguration.OGG.equals(media.getContainer())) {
 							currentSubTrack.setId(getSpecificID(value));
@@ -610,7 +794,6 @@ public class LibMediaInfoParser {
 				LOGGER.trace("{}", parseLogger);
 			}
 
-			MI.Close();
 			if (media.getContainer() == null) {
 				media.setContainer(DLNAMediaLang.UND);
 			}
@@ -623,6 +806,66 @@ public class LibMediaInfoParser {
 		}
 	}
 
+	/**
+	 * The values MediaInfo reports for the streams of a file, either read one
+	 * by one from the native library or from a {@link MediaInfoReport}.
+	 */
+	protected interface StreamValues {
+
+		/**
+		 * Returns the value of a parameter of a stream, in the form
+		 * {@link MediaInfo#Get(StreamType, int, String)} returns it.
+		 *
+		 * @param streamType the {@link StreamType}.
+		 * @param streamNumber the index of the stream within its type.
+		 * @param parameter the parameter name.
+		 * @return The value or an empty {@link String} if there is none.
+		 */
+		String get(StreamType streamType, int streamNumber, String parameter);
+
+		/**
+		 * @return The chapter marks of the first menu, in order, as entries
+		 *         of the start time ({@code HH:mm:ss.SSS}) and the title.
+		 */
+		List<Map.Entry<String, String>> getChapters();
+	}
+
+	/**
+	 * Reads the values one by one from a native handle with an open file.
+	 */
+	private static class NativeValues implements StreamValues {
+		private final MediaInfo mi;
+
+		public NativeValues(MediaInfo mi) {
+			this.mi = mi;
+		}
+
+		@Override
+		public String get(StreamType streamType, int streamNumber, String parameter) {
+			return mi.Get(streamType, streamNumber, parameter);
+		}
+
+		@Override
+		public List<Map.Entry<String, String>> getChapters() {
+			List<Map.Entry<String, String>> chapters = new ArrayList<>();
+			if (mi.Count_Get(StreamType.Menu, 0) > 0) {
+				String chaptersPosBeginStr = mi.Get(StreamType.Menu, 0, "Chapters_Pos_Begin", MediaInfo.InfoType.Text);
+				String chaptersPosEndStr = mi.Get(StreamType.Menu, 0, "Chapters_Pos_End", MediaInfo.InfoType.Text);
+				if (!chaptersPosBeginStr.isEmpty() && !chaptersPosEndStr.isEmpty()) {
+					int chaptersPosBegin = Integer.parseInt(chaptersPosBeginStr);
+					int chaptersPosEnd = Integer.parseInt(chaptersPosEndStr);
+					for (int i = chaptersPosBegin; i <= chaptersPosEnd; i++) {
+						chapters.add(new AbstractMap.SimpleImmutableEntry<>(
+							mi.Get(StreamType.Menu, 0, i, MediaInfo.InfoType.Name),
+							mi.Get(StreamType.Menu, 0, i, MediaInfo.InfoType.Text)
+						));
+					}
+				}
+			}
+			return chapters;
+		}
+	}
+
 	private static void addMusicBrainzIDs(AudioFile af, File file, DLNAMediaAudio currentAudioTrack) {
 		try {
 			Tag t = af.getTag();
@@ -1235,10 +1478,20 @@ public class LibMediaInfoParser {
 
 	protected static class ParseLogger {
 
+		private final StreamValues values;
 		private final StringBuilder sb = new StringBuilder();
 		private final Columns generalColumns = new Columns(false, 2, 32, 62, 92);
 		private final Columns streamColumns = new Columns(false, 4, 34, 64, 94);
 
+		/**
+		 * Creates a new instance logging the specified values.
+		 *
+		 * @param values the {@link StreamValues} of the parsed file.
+		 */
+		public ParseLogger(StreamValues values) {
+			this.values = values;
+		}
+
 		/**
 		 * Appends a label and value to the internal {@link StringBuilder} at
 		 * the next column using the specified parameters.
@@ -1415,36 +1668,32 @@ public class LibMediaInfoParser {
 			} else {
 				sb.append("MediaInfo parsing results for \"").append(file.getAbsolutePath()).append("\":\n");
 			}
-			if (MI == null) {
-				sb.append("ERROR: LibMediaInfo instance is null");
-				return;
-			}
-			if (!MI.isValid()) {
-				sb.append("ERROR: LibMediaInfo instance not valid");
+			if (values == null) {
+				sb.append("ERROR: No values to log");
 				return;
 			}
 			sb.append("  ");
 			boolean first = true;
-			first &= !appendString("Title", MI.Get(StreamType.General, 0, "Title"), first, true, true);
-			first &= !appendString("Format", MI.Get(StreamType.General, 0, "Format"), first, true, false);
-			first &= !appendString("CodecID", MI.Get(StreamType.General, 0, "CodecID"), first, true, true);
-			Double durationSec = parseDuration(MI.Get(StreamType.General, 0, "Duration"));
+			first &= !appendString("Title", values.get(StreamType.General, 0, "Title"), first, true, true);
+			first &= !appendString("Format", values.get(StreamType.General, 0, "Format"), first, true, false);
+			first &= !appendString("CodecID", values.get(StreamType.General, 0, "CodecID"), first, true, true);
+			Double durationSec = parseDuration(values.get(StreamType.General, 0, "Duration"));
 			if (durationSec != null) {
 				first &= !appendString("Duration", StringUtil.formatDLNADuration(durationSec), first, false, true);
 			}
-			first &= !appendString("Overall Bitrate Mode", MI.Get(StreamType.General, 0, "OverallBitRate_Mode"), first, false, true);
-			first &= !appendString("Overall Bitrate", MI.Get(StreamType.General, 0, "OverallBitRate"), first, false, true);
-			first &= !appendString("Overall Bitrate Nom.", MI.Get(StreamType.General, 0, "OverallBitRate_Nominal"), first, false, true);
-			first &= !appendString("Overall Bitrate Max.", MI.Get(StreamType.General, 0, "OverallBitRate_Maximum"), first, false, true);
-			first &= !appendString("Stereoscopic", MI.Get(StreamType.General, 0, "StereoscopicLayout"), first, true, true);
-			appendExists("Cover", MI.Get(StreamType.General, 0, "Cover_Data"), first, false);
+			first &= !appendString("Overall Bitrate Mode", values.get(StreamType.General, 0, "OverallBitRate_Mode"), first, false, true);
+			first &= !appendString("Overall Bitrate", values.get(StreamType.General, 0, "OverallBitRate"), first, false, true);
+			first &= !appendString("Overall Bitrate Nom.", values.get(StreamType.General, 0, "OverallBitRate_Nominal"), first, false, true);
+			first &= !appendString("Overall Bitrate Max.", values.get(StreamType.General, 0, "OverallBitRate_Maximum"), first, false, true);
+			first &= !appendString("Stereoscopic", values.get(StreamType.General, 0, "StereoscopicLayout"), first, true, true);
+			appendExists("Cover", values.get(StreamType.General, 0, "Cover_Data"), first, false);
 			first = false;
-			appendString("FPS", MI.Get(StreamType.General, 0, "FrameRate"), first, false, true);
-			appendString("Track", MI.Get(StreamType.General, 0, "Track"), first, true, true);
-			appendString("Album", MI.Get(StreamType.General, 0, "Album"), first, true, true);
-			appendString("Performer", MI.Get(StreamType.General, 0, "Performer"), first, true, true);
-			appendString("Genre", MI.Get(StreamType.General, 0, "Genre"), first, true, true);
-			appendString("Rec Date", MI.Get(StreamType.General, 0, "Recorded_Date"), first, true, true);
+			appendString("FPS", values.get(StreamType.General, 0, "FrameRate"), first, false, true);
+			appendString("Track", values.get(StreamType.General, 0, "Track"), first, true, true);
+			appendString("Album", values.get(StreamType.General, 0, "Album"), first, true, true);
+			appendString("Performer", values.get(StreamType.General, 0, "Performer"), first, true, true);
+			appendString("Genre", values.get(StreamType.General, 0, "Genre"), first, true, true);
+			appendString("Rec Date", values.get(StreamType.General, 0, "Recorded_Date"), first, true, true);
 		}
 
 		public void logGeneralColumns(File file) {
@@ -1453,280 +1702,276 @@ public class LibMediaInfoParser {
 			} else {
 				sb.append("MediaInfo parsing results for \"").append(file.getAbsolutePath()).append("\":\n");
 			}
-			if (MI == null) {
-				sb.append("ERROR: LibMediaInfo instance is null");
-				return;
-			}
-			if (!MI.isValid()) {
-				sb.append("ERROR: LibMediaInfo instance not valid");
+			if (values == null) {
+				sb.append("ERROR: No values to log");
 				return;
 			}
 			generalColumns.reset();
-			appendStringNextColumn(generalColumns, "Title", MI.Get(StreamType.General, 0, "Title"), true, true);
-			appendStringNextColumn(generalColumns, "Format", MI.Get(StreamType.General, 0, "Format"), true, false);
-			appendStringNextColumn(generalColumns, "CodecID", MI.Get(StreamType.General, 0, "CodecID"), true, true);
-			Double durationSec = parseDuration(MI.Get(StreamType.General, 0, "Duration"));
+			appendStringNextColumn(generalColumns, "Title", values.get(StreamType.General, 0, "Title"), true, true);
+			appendStringNextColumn(generalColumns, "Format", values.get(StreamType.General, 0, "Format"), true, false);
+			appendStringNextColumn(generalColumns, "CodecID", values.get(StreamType.General, 0, "CodecID"), true, true);
+			Double durationSec = parseDuration(values.get(StreamType.General, 0, "Duration"));
 			if (durationSec != null) {
 				appendStringNextColumn(generalColumns, "Duration", StringUtil.formatDLNADuration(durationSec), false, true);
 			}
-			appendStringNextColumn(generalColumns, "Overall Bitrate Mode", MI.Get(StreamType.General, 0, "OverallBitRate_Mode"), false, true);
-			appendStringNextColumn(generalColumns, "Overall Bitrate", MI.Get(StreamType.General, 0, "OverallBitRate"), false, true);
-			appendStringNextColumn(generalColumns, "Overall Bitrate Nom.", MI.Get(StreamType.General, 0, "OverallBitRate_Nominal"), false, true);
-			appendStringNextColumn(generalColumns, "Overall Bitrate Max.", MI.Get(StreamType.General, 0, "OverallBitRate_Maximum"), false, true);
-			appendStringNextColumn(generalColumns, "Stereoscopic", MI.Get(StreamType.General, 0, "StereoscopicLayout"), true, true);
-			appendExistsNextColumn(generalColumns, "Cover", MI.Get(StreamType.General, 0, "Cover_Data"), false);
-			appendStringNextColumn(generalColumns, "FPS", MI.Get(StreamType.General, 0, "FrameRate"), false, true);
-			appendStringNextColumn(generalColumns, "Track", MI.Get(StreamType.General, 0, "Track"), true, true);
-			appendStringNextColumn(generalColumns, "Album", MI.Get(StreamType.General, 0, "Album"), true, true);
-			appendStringNextColumn(generalColumns, "Performer", MI.Get(StreamType.General, 0, "Performer"), true, true);
-			appendStringNextColumn(generalColumns, "Genre", MI.Get(StreamType.General, 0, "Genre"), true, true);
-			appendStringNextColumn(generalColumns, "Rec Date", MI.Get(StreamType.General, 0, "Recorded_Date"), true, true);
+			appendStringNextColumn(generalColumns, "Overall Bitrate Mode", values.get(StreamType.General, 0, "OverallBitRate_Mode"), false, true);
+			appendStringNextColumn(generalColumns, "Overall Bitrate", values.get(StreamType.General, 0, "OverallBitRate"), false, true);
+			appendStringNextColumn(generalColumns, "Overall Bitrate Nom.", values.get(StreamType.General, 0, "OverallBitRate_Nominal"), false, true);
+			appendStringNextColumn(generalColumns, "Overall Bitrate Max.", values.get(StreamType.General, 0, "OverallBitRate_Maximum"), false, true);
+			appendStringNextColumn(generalColumns, "Stereoscopic", values.get(StreamType.General, 0, "StereoscopicLayout"), true, true);
+			appendExistsNextColumn(generalColumns, "Cover", values.get(StreamType.General, 0, "Cover_Data"), false);
+			appendStringNextColumn(generalColumns, "FPS", values.get(StreamType.General, 0, "FrameRate"), false, true);
+			appendStringNextColumn(generalColumns, "Track", values.get(StreamType.General, 0, "Track"), true, true);
+			appendStringNextColumn(generalColumns, "Album", values.get(StreamType.General, 0, "Album"), true, true);
+			appendStringNextColumn(generalColumns, "Performer", values.get(StreamType.General, 0, "Performer"), true, true);
+			appendStringNextColumn(generalColumns, "Genre", values.get(StreamType.General, 0, "Genre"), true, true);
+			appendStringNextColumn(generalColumns, "Rec Date", values.get(StreamType.General, 0, "Recorded_Date"), true, true);
 		}
 
 		public void logVideoTrack(int idx) {
-			if (MI == null || !MI.isValid()) {
+			if (values == null) {
 				return;
 			}
 
 			sb.append("\n    - Video - ");
 			boolean first = true;
-			first &= !appendString("Format", MI.Get(StreamType.Video, idx, "Format"), first, true, true);
-			first &= !appendString("Version", MI.Get(StreamType.Video, idx, "Format_Version"), first, true, true);
-			first &= !appendString("Profile", MI.Get(StreamType.Video, idx, "Format_Profile"), first, true, true);
-			first &= !appendString("ID", MI.Get(StreamType.Video, idx, "ID"), first, false, true);
-			first &= !appendString("CodecID", MI.Get(StreamType.Video, idx, "CodecID"), first, true, true);
-			Double durationSec = parseDuration(MI.Get(StreamType.Video, 0, "Duration"));
+			first &= !appendString("Format", values.get(StreamType.Video, idx, "Format"), first, true, true);
+			first &= !appendString("Version", values.get(StreamType.Video, idx, "Format_Version"), first, true, true);
+			first &= !appendString("Profile", values.get(StreamType.Video, idx, "Format_Profile"), first, true, true);
+			first &= !appendString("ID", values.get(StreamType.Video, idx, "ID"), first, false, true);
+			first &= !appendString("CodecID", values.get(StreamType.Video, idx, "CodecID"), first, true, true);
+			Double durationSec = parseDuration(values.get(StreamType.Video, 0, "Duration"));
 			if (durationSec != null) {
 				first &= !appendString("Duration", StringUtil.formatDLNADuration(durationSec), first, false, true);
 			}
-			first &= !appendString("BitRate Mode", MI.Get(StreamType.Video, idx, "BitRate_Mode"), first, false, true);
-			first &= !appendString("Bitrate", MI.Get(StreamType.Video, idx, "BitRate"), first, false, true);
-			first &= !appendString("Bitrate Nominal", MI.Get(StreamType.Video, idx, "BitRate_Nominal"), first, false, true);
-			first &= !appendString("BitRate Maximum", MI.Get(StreamType.Video, idx, "BitRate_Maximum"), first, false, true);
-			first &= !appendString("Bitrate Encoded", MI.Get(StreamType.Video, idx, "BitRate_Encoded"), first, false, true);
-			first &= !appendString("Width", MI.Get(StreamType.Video, idx, "Width"), first, false, true);
-			first &= !appendString("Height", MI.Get(StreamType.Video, idx, "Height"), first, false, true);
-			first &= !appendString("Colorimetry", MI.Get(StreamType.Video, idx, "Colorimetry"), first, false, true);
-			first &= !appendString("Chroma", MI.Get(StreamType.Video, idx, "ChromaSubsampling"), first, false, true);
-			first &= !appendString("Matrix Co", MI.Get(StreamType.Video, idx, "matrix_coefficients"), first, false, true);
-			first &= !appendString("MultiView Layout", MI.Get(StreamType.Video, idx, "MultiView_Layout"), first, true, true);
-			first &= !appendString("PAR", MI.Get(StreamType.Video, idx, "PixelAspectRatio"), first, false, true);
-			first &= !appendString("DAR", MI.Get(StreamType.Video, idx, "DisplayAspectRatio/String"), first, false, true);
-			first &= !appendString("DAR Orig", MI.Get(StreamType.Video, idx, "DisplayAspectRatio_Original/String"), first, false, true);
-			first &= !appendString("Scan Type", MI.Get(StreamType.Video, idx, "ScanType"), first, false, true);
-			first &= !appendString("Scan Order", MI.Get(StreamType.Video, idx, "ScanOrder"), first, false, true);
-			first &= !appendString("FPS", MI.Get(StreamType.Video, idx, "FrameRate"), first, false, true);
-			first &= !appendString("FPS Orig", MI.Get(StreamType.Video, idx, "FrameRate_Original"), first, false, true);
-			first &= !appendString("Framerate Mode", MI.Get(StreamType.Video, idx, "FrameRate_Mode"), first, false, true);
-			first &= !appendString("RefFrames", MI.Get(StreamType.Video, idx, "Format_Settings_RefFrames"), first, false, true);
-			first &= !appendString("QPel", MI.Get(StreamType.Video, idx, "Format_Settings_QPel"), first, true, true);
-			first &= !appendString("GMC", MI.Get(StreamType.Video, idx, "Format_Settings_GMC"), first, true, true);
-			first &= !appendString("GOP", MI.Get(StreamType.Video, idx, "Format_Settings_GOP"), first, true, true);
-			first &= !appendString("Muxing Mode", MI.Get(StreamType.Video, idx, "MuxingMode"), first, true, true);
-			first &= !appendString("Encrypt", MI.Get(StreamType.Video, idx, "Encryption"), first, true, true);
-			first &= !appendString("Bit Depth", MI.Get(StreamType.Video, idx, "BitDepth"), first, false, true);
-			first &= !appendString("Delay", MI.Get(StreamType.Video, idx, "Delay"), first, false, true);
-			first &= !appendString("Delay Source", MI.Get(StreamType.Video, idx, "Delay_Source"), first, false, true);
-			first &= !appendString("Delay Original", MI.Get(StreamType.Video, idx, "Delay_Original"), first, false, true);
-			first &= !appendString("Delay O. Source", MI.Get(StreamType.Video, idx, "Delay_Original_Source"), first, false, true);
-			first &= !appendString("TimeStamp_FirstFrame", MI.Get(StreamType.Video, idx, "TimeStamp_FirstFrame"), first, false, true);
+			first &= !appendString("BitRate Mode", values.get(StreamType.Video, idx, "BitRate_Mode"), first, false, true);
+			first &= !appendString("Bitrate", values.get(StreamType.Video, idx, "BitRate"), first, false, true);
+			first &= !appendString("Bitrate Nominal", values.get(StreamType.Video, idx, "BitRate_Nominal"), first, false, true);
+			first &= !appendString("BitRate Maximum", values.get(StreamType.Video, idx, "BitRate_Maximum"), first, false, true);
+			first &= !appendString("Bitrate Encoded", values.get(StreamType.Video, idx, "BitRate_Encoded"), first, false, true);
+			first &= !appendString("Width", values.get(StreamType.Video, idx, "Width"), first, false, true);
+			first &= !appendString("Height", values.get(StreamType.Video, idx, "Height"), first, false, true);
+			first &= !appendString("Colorimetry", values.get(StreamType.Video, idx, "Colorimetry"), first, false, true);
+			first &= !appendString("Chroma", values.get(StreamType.Video, idx, "ChromaSubsampling"), first, false, true);
+			first &= !appendString("Matrix Co", values.get(StreamType.Video, idx, "matrix_coefficients"), first, false, true);
+			first &= !appendString("MultiView Layout", values.get(StreamType.Video, idx, "MultiView_Layout"), first, true, true);
+			first &= !appendString("PAR", values.get(StreamType.Video, idx, "PixelAspectRatio"), first, false, true);
+			first &= !appendString("DAR", values.get(StreamType.Video, idx, "DisplayAspectRatio/String"), first, false, true);
+			first &= !appendString("DAR Orig", values.get(StreamType.Video, idx, "DisplayAspectRatio_Original/String"), first, false, true);
+			first &= !appendString("Scan Type", values.get(StreamType.Video, idx, "ScanType"), first, false, true);
+			first &= !appendString("Scan Order", values.get(StreamType.Video, idx, "ScanOrder"), first, false, true);
+			first &= !appendString("FPS", values.get(StreamType.Video, idx, "FrameRate"), first, false, true);
+			first &= !appendString("FPS Orig", values.get(StreamType.Video, idx, "FrameRate_Original"), first, false, true);
+			first &= !appendString("Framerate Mode", values.get(StreamType.Video, idx, "FrameRate_Mode"), first, false, true);
+			first &= !appendString("RefFrames", values.get(StreamType.Video, idx, "Format_Settings_RefFrames"), first, false, true);
+			first &= !appendString("QPel", values.get(StreamType.Video, idx, "Format_Settings_QPel"), first, true, true);
+			first &= !appendString("GMC", values.get(StreamType.Video, idx, "Format_Settings_GMC"), first, true, true);
+			first &= !appendString("GOP", values.get(StreamType.Video, idx, "Format_Settings_GOP"), first, true, true);
+			first &= !appendString("Muxing Mode", values.get(StreamType.Video, idx, "MuxingMode"), first, true, true);
+			first &= !appendString("Encrypt", values.get(StreamType.Video, idx, "Encryption"), first, true, true);
+			first &= !appendString("Bit Depth", values.get(StreamType.Video, idx, "BitDepth"), first, false, true);
+			first &= !appendString("Delay", values.get(StreamType.Video, idx, "Delay"), first, false, true);
+			first &= !appendString("Delay Source", values.get(StreamType.Video, idx, "Delay_Source"), first, false, true);
+			first &= !appendString("Delay Original", values.get(StreamType.Video, idx, "Delay_Original"), first, false, true);
+			first &= !appendString("Delay O. Source", values.get(StreamType.Video, idx, "Delay_Original_Source"), first, false, true);
+			first &= !appendString("TimeStamp_FirstFrame", values.get(StreamType.Video, idx, "TimeStamp_FirstFrame"), first, false, true);
 		}
 
 		public void logVideoTrackColumns(int idx) {
-			if (MI == null || !MI.isValid()) {
+			if (values == null) {
 				return;
 			}
 
 			sb.append("\n  - Video track ");
-			appendString("ID", MI.Get(StreamType.Video, idx, "ID"), true, false, false);
+			appendString("ID", values.get(StreamType.Video, idx, "ID"), true, false, false);
 			streamColumns.reset();
 			sb.append("\n");
-			appendStringNextColumn(streamColumns, "Format", MI.Get(StreamType.Video, idx, "Format"), true, true);
-			appendStringNextColumn(streamColumns, "Version", MI.Get(StreamType.Video, idx, "Format_Version"), true, true);
-			appendStringNextColumn(streamColumns, "Profile", MI.Get(StreamType.Video, idx, "Format_Profile"), true, true);
-			appendStringNextColumn(streamColumns, "CodecID", MI.Get(StreamType.Video, idx, "CodecID"), true, true);
-			Double durationSec = parseDuration(MI.Get(StreamType.Video, 0, "Duration"));
+			appendStringNextColumn(streamColumns, "Format", values.get(StreamType.Video, idx, "Format"), true, true);
+			appendStringNextColumn(streamColumns, "Version", values.get(StreamType.Video, idx, "Format_Version"), true, true);
+			appendStringNextColumn(streamColumns, "Profile", values.get(StreamType.Video, idx, "Format_Profile"), true, true);
+			appendStringNextColumn(streamColumns, "CodecID", values.get(StreamType.Video, idx, "CodecID"), true, true);
+			Double durationSec = parseDuration(values.get(StreamType.Video, 0, "Duration"));
 			if (durationSec != null) {
 				appendStringNextColumn(streamColumns, "Duration", StringUtil.formatDLNADuration(durationSec), false, true);
 			}
-			appendStringNextColumn(streamColumns, "BitRate Mode", MI.Get(StreamType.Video, idx, "BitRate_Mode"), false, true);
-			appendStringNextColumn(streamColumns, "Bitrate", MI.Get(StreamType.Video, idx, "BitRate"), false, true);
-			appendStringNextColumn(streamColumns, "Bitrate Nominal", MI.Get(StreamType.Video, idx, "BitRate_Nominal"), false, true);
-			appendStringNextColumn(streamColumns, "BitRate Maximum", MI.Get(StreamType.Video, idx, "BitRate_Maximum"), false, true);
-			appendStringNextColumn(streamColumns, "Bitrate Encoded", MI.Get(StreamType.Video, idx, "BitRate_Encoded"), false, true);
-			appendStringNextColumn(streamColumns, "Width", MI.Get(StreamType.Video, idx, "Width"), false, true);
-			appendStringNextColumn(streamColumns, "Height", MI.Get(StreamType.Video, idx, "Height"), false, true);
-			appendStringNextColumn(streamColumns, "Colorimetry", MI.Get(StreamType.Video, idx, "Colorimetry"), false, true);
-			appendStringNextColumn(streamColumns, "Chroma", MI.Get(StreamType.Video, idx, "ChromaSubsampling"), false, true);
-			appendStringNextColumn(streamColumns, "Matrix Co", MI.Get(StreamType.Video, idx, "matrix_coefficients"), false, true);
-			appendStringNextColumn(streamColumns, "MultiView Layout", MI.Get(StreamType.Video, idx, "MultiView_Layout"), true, true);
-			appendStringNextColumn(streamColumns, "PAR", MI.Get(StreamType.Video, idx, "PixelAspectRatio"), false, true);
-			appendStringNextColumn(streamColumns, "DAR", MI.Get(StreamType.Video, idx, "DisplayAspectRatio/String"), false, true);
-			appendStringNextColumn(streamColumns, "DAR Orig", MI.Get(StreamType.Video, idx, "DisplayAspectRatio_Original/String"), false, true);
-			appendStringNextColumn(streamColumns, "Scan Type", MI.Get(StreamType.Video, idx, "ScanType"), false, true);
-			appendStringNextColumn(streamColumns, "Scan Order", MI.Get(StreamType.Video, idx, "ScanOrder"), false, true);
-			appendStringNextColumn(streamColumns, "FPS", MI.Get(StreamType.Video, idx, "FrameRate"), false, true);
-			appendStringNextColumn(streamColumns, "FPS Orig", MI.Get(StreamType.Video, idx, "FrameRate_Original"), false, true);
-			appendStringNextColumn(streamColumns, "Framerate Mode", MI.Get(StreamType.Video, idx, "FrameRate_Mode"), false, true);
-			appendStringNextColumn(streamColumns, "RefFrames", MI.Get(StreamType.Video, idx, "Format_Settings_RefFrames"), false, true);
-			appendStringNextColumn(streamColumns, "QPel", MI.Get(StreamType.Video, idx, "Format_Settings_QPel"), true, true);
-			appendStringNextColumn(streamColumns, "GMC", MI.Get(StreamType.Video, idx, "Format_Settings_GMC"), true, true);
-			appendStringNextColumn(streamColumns, "GOP", MI.Get(StreamType.Video, idx, "Format_Settings_GOP"), true, true);
-			appendStringNextColumn(streamColumns, "Muxing Mode", MI.Get(StreamType.Video, idx, "MuxingMode"), true, true);
-			appendStringNextColumn(streamColumns, "Encrypt", MI.Get(StreamType.Video, idx, "Encryption"), true, true);
-			appendStringNextColumn(streamColumns, "Bit Depth", MI.Get(StreamType.Video, idx, "BitDepth"), false, true);
-			appendStringNextColumn(streamColumns, "Delay", MI.Get(StreamType.Video, idx, "Delay"), false, true);
-			appendStringNextColumn(streamColumns, "Delay Source", MI.Get(StreamType.Video, idx, "Delay_Source"), false, true);
-			appendStringNextColumn(streamColumns, "Delay Original", MI.Get(StreamType.Video, idx, "Delay_Original"), false, true);
-			appendStringNextColumn(streamColumns, "Delay O. Source", MI.Get(StreamType.Video, idx, "Delay_Original_Source"), false, true);
-			appendStringNextColumn(streamColumns, "TimeStamp_FirstFrame", MI.Get(StreamType.Video, idx, "TimeStamp_FirstFrame"), false, true);
+			appendStringNextColumn(streamColumns, "BitRate Mode", values.get(StreamType.Video, idx, "BitRate_Mode"), false, true);
+			appendStringNextColumn(streamColumns, "Bitrate", values.get(StreamType.Video, idx, "BitRate"), false, true);
+			appendStringNextColumn(streamColumns, "Bitrate Nominal", values.get(StreamType.Video, idx, "BitRate_Nominal"), false, true);
+			appendStringNextColumn(streamColumns, "BitRate Maximum", values.get(StreamType.Video, idx, "BitRate_Maximum"), false, true);
+			appendStringNextColumn(streamColumns, "Bitrate Encoded", values.get(StreamType.Video, idx, "BitRate_Encoded"), false, true);
+			appendStringNextColumn(streamColumns, "Width", values.get(StreamType.Video, idx, "Width"), false, true);
+			appendStringNextColumn(streamColumns, "Height", values.get(StreamType.Video, idx, "Height"), false, true);
+			appendStringNextColumn(streamColumns, "Colorimetry", values.get(StreamType.Video, idx, "Colorimetry"), false, true);
+			appendStringNextColumn(streamColumns, "Chroma", values.get(StreamType.Video, idx, "ChromaSubsampling"), false, true);
+			appendStringNextColumn(streamColumns, "Matrix Co", values.get(StreamType.Video, idx, "matrix_coefficients"), false, true);
+			appendStringNextColumn(streamColumns, "MultiView Layout", values.get(StreamType.Video, idx, "MultiView_Layout"), true, true);
+			appendStringNextColumn(streamColumns, "PAR", values.get(StreamType.Video, idx, "PixelAspectRatio"), false, true);
+			appendStringNextColumn(streamColumns, "DAR", values.get(StreamType.Video, idx, "DisplayAspectRatio/String"), false, true);
+			appendStringNextColumn(streamColumns, "DAR Orig", values.get(StreamType.Video, idx, "DisplayAspectRatio_Original/String"), false, true);
+			appendStringNextColumn(streamColumns, "Scan Type", values.get(StreamType.Video, idx, "ScanType"), false, true);
+			appendStringNextColumn(streamColumns, "Scan Order", values.get(StreamType.Video, idx, "ScanOrder"), false, true);
+			appendStringNextColumn(streamColumns, "FPS", values.get(StreamType.Video, idx, "FrameRate"), false, true);
+			appendStringNextColumn(streamColumns, "FPS Orig", values.get(StreamType.Video, idx, "FrameRate_Original"), false, true);
+			appendStringNextColumn(streamColumns, "Framerate Mode", values.get(StreamType.Video, idx, "FrameRate_Mode"), false, true);
+			appendStringNextColumn(streamColumns, "RefFrames", values.get(StreamType.Video, idx, "Format_Settings_RefFrames"), false, true);
+			appendStringNextColumn(streamColumns, "QPel", values.get(StreamType.Video, idx, "Format_Settings_QPel"), true, true);
+			appendStringNextColumn(streamColumns, "GMC", values.get(StreamType.Video, idx, "Format_Settings_GMC"), true, true);
+			appendStringNextColumn(streamColumns, "GOP", values.get(StreamType.Video, idx, "Format_Settings_GOP"), true, true);
+			appendStringNextColumn(streamColumns, "Muxing Mode", values.get(StreamType.Video, idx, "MuxingMode"), true, true);
+			appendStringNextColumn(streamColumns, "Encrypt", values.get(StreamType.Video, idx, "Encryption"), true, true);
+			appendStringNextColumn(streamColumns, "Bit Depth", values.get(StreamType.Video, idx, "BitDepth"), false, true);
+			appendStringNextColumn(streamColumns, "Delay", values.get(StreamType.Video, idx, "Delay"), false, true);
+			appendStringNextColumn(streamColumns, "Delay Source", values.get(StreamType.Video, idx, "Delay_Source"), false, true);
+			appendStringNextColumn(streamColumns, "Delay Original", values.get(StreamType.Video, idx, "Delay_Original"), false, true);
+			appendStringNextColumn(streamColumns, "Delay O. Source", values.get(StreamType.Video, idx, "Delay_Original_Source"), false, true);
+			appendStringNextColumn(streamColumns, "TimeStamp_FirstFrame", values.get(StreamType.Video, idx, "TimeStamp_FirstFrame"), false, true);
 		}
 
 		public void logAudioTrack(int idx) {
-			if (MI == null || !MI.isValid()) {
+			if (values == null) {
 				return;
 			}
 
 			sb.append("\n    - Audio - ");
 			boolean first = true;
-			first &= !appendString("Title", MI.Get(StreamType.Audio, idx, "Title"), first, true, true);
-			first &= !appendString("Format", MI.Get(StreamType.Audio, idx, "Format"), first, true, true);
-			first &= !appendString("Version", MI.Get(StreamType.Audio, idx, "Format_Version"), first, true, true);
-			first &= !appendString("Profile", MI.Get(StreamType.Audio, idx, "Format_Profile"), first, true, true);
-			first &= !appendString("ID", MI.Get(StreamType.Audio, idx, "ID"), first, false, true);
-			first &= !appendString("CodecID", MI.Get(StreamType.Audio, idx, "CodecID"), first, true, true);
-			first &= !appendString("CodecID Desc", MI.Get(StreamType.Audio, idx, "CodecID_Description"), first, true, true);
-			Double durationSec = parseDuration(MI.Get(StreamType.Audio, 0, "Duration"));
+			first &= !appendString("Title", values.get(StreamType.Audio, idx, "Title"), first, true, true);
+			first &= !appendString("Format", values.get(StreamType.Audio, idx, "Format"), first, true, true);
+			first &= !appendString("Version", values.get(StreamType.Audio, idx, "Format_Version"), first, true, true);
+			first &= !appendString("Profile", values.get(StreamType.Audio, idx, "Format_Profile"), first, true, true);
+			first &= !appendString("ID", values.get(StreamType.Audio, idx, "ID"), first, false, true);
+			first &= !appendString("CodecID", values.get(StreamType.Audio, idx, "CodecID"), first, true, true);
+			first &= !appendString("CodecID Desc", values.get(StreamType.Audio, idx, "CodecID_Description"), first, true, true);
+			Double durationSec = parseDuration(values.get(StreamType.Audio, 0, "Duration"));
 			if (durationSec != null) {
 				first &= !appendString("Duration", StringUtil.formatDLNADuration(durationSec), first, false, true);
 			}
-			first &= !appendString("BitRate Mode", MI.Get(StreamType.Audio, idx, "BitRate_Mode"), first, false, true);
-			first &= !appendString("Bitrate", MI.Get(StreamType.Audio, idx, "BitRate"), first, false, true);
-			first &= !appendString("Bitrate Nominal", MI.Get(StreamType.Audio, idx, "BitRate_Nominal"), first, false, true);
-			first &= !appendString("BitRate Maximum", MI.Get(StreamType.Audio, idx, "BitRate_Maximum"), first, false, true);
-			first &= !appendString("Bitrate Encoded", MI.Get(StreamType.Audio, idx, "BitRate_Encoded"), first, false, true);
-			first &= !appendString("Language", MI.Get(StreamType.Audio, idx, "Language"), first, true, true);
-			first &= !appendString("Channel(s)", MI.Get(StreamType.Audio, idx, "Channel(s)_Original"), first, false, true);
-			first &= !appendString("Samplerate", MI.Get(StreamType.Audio, idx, "SamplingRate"), first, false, true);
-			first &= !appendString("Track", MI.Get(StreamType.General, idx, "Track/Position"), first, false, true);
-			first &= !appendString("Bit Depth", MI.Get(StreamType.Audio, idx, "BitDepth"), first, false, true);
-			first &= !appendString("Delay", MI.Get(StreamType.Audio, idx, "Delay"), first, false, true);
-			first &= !appendString("Delay Source", MI.Get(StreamType.Audio, idx, "Delay_Source"), first, false, true);
-			first &= !appendString("Delay Original", MI.Get(StreamType.Audio, idx, "Delay_Original"), first, false, true);
-			first &= !appendString("Delay O. Source", MI.Get(StreamType.Audio, idx, "Delay_Original_Source"), first, false, true);
+			first &= !appendString("BitRate Mode", values.get(StreamType.Audio, idx, "BitRate_Mode"), first, false, true);
+			first &= !appendString("Bitrate", values.get(StreamType.Audio, idx, "BitRate"), first, false, true);
+			first &= !appendString("Bitrate Nominal", values.get(StreamType.Audio, idx, "BitRate_Nominal"), first, false, true);
+			first &= !appendString("BitRate Maximum", values.get(StreamType.Audio, idx, "BitRate_Maximum"), first, false, true);
+			first &= !appendString("Bitrate Encoded", values.get(StreamType.Audio, idx, "BitRate_Encoded"), first, false, true);
+			first &= !appendString("Language", values.get(StreamType.Audio, idx, "Language"), first, true, true);
+			first &= !appendString("Channel(s)", values.get(StreamType.Audio, idx, "Channel(s)_Original"), first, false, true);
+			first &= !appendString("Samplerate", values.get(StreamType.Audio, idx, "SamplingRate"), first, false, true);
+			first &= !appendString("Track", values.get(StreamType.General, idx, "Track/Position"), first, false, true);
+			first &= !appendString("Bit Depth", values.get(StreamType.Audio, idx, "BitDepth"), first, false, true);
+			first &= !appendString("Delay", values.get(StreamType.Audio, idx, "Delay"), first, false, true);
+			first &= !appendString("Delay Source", values.get(StreamType.Audio, idx, "Delay_Source"), first, false, true);
+			first &= !appendString("Delay Original", values.get(StreamType.Audio, idx, "Delay_Original"), first, false, true);
+			first &= !appendString("Delay O. Source", values.get(StreamType.Audio, idx, "Delay_Original_Source"), first, false, true);
 		}
 
 		public void logAudioTrackColumns(int idx) {
-			if (MI == null || !MI.isValid()) {
+			if (values == null) {
 				return;
 			}
 
 			sb.append("\n  - Audio track ");
-			appendString("ID", MI.Get(StreamType.Audio, idx, "ID"), true, false, false);
-			appendString("Title", MI.Get(StreamType.Audio, idx, "Title"), false, true, true);
+			appendString("ID", values.get(StreamType.Audio, idx, "ID"), true, false, false);
+			appendString("Title", values.get(StreamType.Audio, idx, "Title"), false, true, true);
 			streamColumns.reset();
 			sb.append("\n");
-			appendStringNextColumn(streamColumns, "Format", MI.Get(StreamType.Audio, idx, "Format/String"), true, true);
-			appendStringNextColumn(streamColumns, "Version", MI.Get(StreamType.Audio, idx, "Format_Version"), true, true);
-			appendStringNextColumn(streamColumns, "Profile", MI.Get(StreamType.Audio, idx, "Format_Profile"), true, true);
-			appendStringNextColumn(streamColumns, "CodecID", MI.Get(StreamType.Audio, idx, "CodecID"), true, true);
-			appendStringNextColumn(streamColumns, "CodecID Desc", MI.Get(StreamType.Audio, idx, "CodecID_Description"), true, true);
-			Double durationSec = parseDuration(MI.Get(StreamType.Audio, 0, "Duration"));
+			appendStringNextColumn(streamColumns, "Format", values.get(StreamType.Audio, idx, "Format/String"), true, true);
+			appendStringNextColumn(streamColumns, "Version", values.get(StreamType.Audio, idx, "Format_Version"), true, true);
+			appendStringNextColumn(streamColumns, "Profile", values.get(StreamType.Audio, idx, "Format_Profile"), true, true);
+			appendStringNextColumn(streamColumns, "CodecID", values.get(StreamType.Audio, idx, "CodecID"), true, true);
+			appendStringNextColumn(streamColumns, "CodecID Desc", values.get(StreamType.Audio, idx, "CodecID_Description"), true, true);
+			Double durationSec = parseDuration(values.get(StreamType.Audio, 0, "Duration"));
 			if (durationSec != null) {
 				appendStringNextColumn(streamColumns, "Duration", StringUtil.formatDLNADuration(durationSec), false, true);
 			}
-			appendStringNextColumn(streamColumns, "BitRate Mode", MI.Get(StreamType.Audio, idx, "BitRate_Mode"), false, true);
-			appendStringNextColumn(streamColumns, "Bitrate", MI.Get(StreamType.Audio, idx, "BitRate"), false, true);
-			appendStringNextColumn(streamColumns, "Bitrate Nominal", MI.Get(StreamType.Audio, idx, "BitRate_Nominal"), false, true);
-			appendStringNextColumn(streamColumns, "BitRate Maximum", MI.Get(StreamType.Audio, idx, "BitRate_Maximum"), false, true);
-			appendStringNextColumn(streamColumns, "Bitrate Encoded", MI.Get(StreamType.Audio, idx, "BitRate_Encoded"), false, true);
-			appendStringNextColumn(streamColumns, "Language", MI.Get(StreamType.Audio, idx, "Language"), true, true);
-			appendStringNextColumn(streamColumns, "Channel(s)", MI.Get(StreamType.Audio, idx, "Channel(s)"), false, true);
-			appendStringNextColumn(streamColumns, "Samplerate", MI.Get(StreamType.Audio, idx, "SamplingRate"), false, true);
-			appendStringNextColumn(streamColumns, "Track", MI.Get(StreamType.General, idx, "Track/Position"), false, true);
-			appendStringNextColumn(streamColumns, "Bit Depth", MI.Get(StreamType.Audio, idx, "BitDepth"), false, true);
-			appendStringNextColumn(streamColumns, "Delay", MI.Get(StreamType.Audio, idx, "Delay"), false, true);
-			appendStringNextColumn(streamColumns, "Delay Source", MI.Get(StreamType.Audio, idx, "Delay_Source"), false, true);
-			appendStringNextColumn(streamColumns, "Delay Original", MI.Get(StreamType.Audio, idx, "Delay_Original"), false, true);
-			appendStringNextColumn(streamColumns, "Delay O. Source", MI.Get(StreamType.Audio, idx, "Delay_Original_Source"), false, true);
+			appendStringNextColumn(streamColumns, "BitRate Mode", values.get(StreamType.Audio, idx, "BitRate_Mode"), false, true);
+			appendStringNextColumn(streamColumns, "Bitrate", values.get(StreamType.Audio, idx, "BitRate"), false, true);
+			appendStringNextColumn(streamColumns, "Bitrate Nominal", values.get(StreamType.Audio, idx, "BitRate_Nominal"), false, true);
+			appendStringNextColumn(streamColumns, "BitRate Maximum", values.get(StreamType.Audio, idx, "BitRate_Maximum"), false, true);
+			appendStringNextColumn(streamColumns, "Bitrate Encoded", values.get(StreamType.Audio, idx, "BitRate_Encoded"), false, true);
+			appendStringNextColumn(streamColumns, "Language", values.get(StreamType.Audio, idx, "Language"), true, true);
+			appendStringNextColumn(streamColumns, "Channel(s)", values.get(StreamType.Audio, idx, "Channel(s)"), false, true);
+			appendStringNextColumn(streamColumns, "Samplerate", values.get(StreamType.Audio, idx, "SamplingRate"), false, true);
+			appendStringNextColumn(streamColumns, "Track", values.get(StreamType.General, idx, "Track/Position"), false, true);
+			appendStringNextColumn(streamColumns, "Bit Depth", values.get(StreamType.Audio, idx, "BitDepth"), false, true);
+			appendStringNextColumn(streamColumns, "Delay", values.get(StreamType.Audio, idx, "Delay"), false, true);
+			appendStringNextColumn(streamColumns, "Delay Source", values.get(StreamType.Audio, idx, "Delay_Source"), false, true);
+			appendStringNextColumn(streamColumns, "Delay Original", values.get(StreamType.Audio, idx, "Delay_Original"), false, true);
+			appendStringNextColumn(streamColumns, "Delay O. Source", values.get(StreamType.Audio, idx, "Delay_Original_Source"), false, true);
 		}
 
 		public void logImage(int idx) {
-			if (MI == null || !MI.isValid()) {
+			if (values == null) {
 				return;
 			}
 
 			sb.append("\n    - Image - ");
 			boolean first = true;
-			first &= !appendString("Format", MI.Get(StreamType.Image, idx, "Format"), first, true, true);
-			first &= !appendString("Version", MI.Get(StreamType.Image, idx, "Format_Version"), first, true, true);
-			first &= !appendString("Profile", MI.Get(StreamType.Image, idx, "Format_Profile"), first, true, true);
-			first &= !appendString("ID", MI.Get(StreamType.Image, idx, "ID"), first, false, true);
-			first &= !appendString("Width", MI.Get(StreamType.Image, idx, "Width"), first, false, true);
-			first &= !appendString("Height", MI.Get(StreamType.Image, idx, "Height"), first, false, true);
+			first &= !appendString("Format", values.get(StreamType.Image, idx, "Format"), first, true, true);
+			first &= !appendString("Version", values.get(StreamType.Image, idx, "Format_Version"), first, true, true);
+			first &= !appendString("Profile", values.get(StreamType.Image, idx, "Format_Profile"), first, true, true);
+			first &= !appendString("ID", values.get(StreamType.Image, idx, "ID"), first, false, true);
+			first &= !appendString("Width", values.get(StreamType.Image, idx, "Width"), first, false, true);
+			first &= !appendString("Height", values.get(StreamType.Image, idx, "Height"), first, false, true);
 		}
 
 		public void logImageColumns(int idx) {
-			if (MI == null || !MI.isValid()) {
+			if (values == null) {
 				return;
 			}
 
 			sb.append("\n  - Image ");
-			appendString("ID", MI.Get(StreamType.Image, idx, "ID"), true, false, false);
+			appendString("ID", values.get(StreamType.Image, idx, "ID"), true, false, false);
 			streamColumns.reset();
 			sb.append("\n");
-			appendStringNextColumn(streamColumns, "Format", MI.Get(StreamType.Image, idx, "Format"), true, true);
-			appendStringNextColumn(streamColumns, "Version", MI.Get(StreamType.Image, idx, "Format_Version"), true, true);
-			appendStringNextColumn(streamColumns, "Profile", MI.Get(StreamType.Image, idx, "Format_Profile"), true, true);
-			appendStringNextColumn(streamColumns, "Width", MI.Get(StreamType.Image, idx, "Width"), false, true);
-			appendStringNextColumn(streamColumns, "Height", MI.Get(StreamType.Image, idx, "Height"), false, true);
+			appendStringNextColumn(streamColumns, "Format", values.get(StreamType.Image, idx, "Format"), true, true);
+			appendStringNextColumn(streamColumns, "Version", values.get(StreamType.Image, idx, "Format_Version"), true, true);
+			appendStringNextColumn(streamColumns, "Profile", values.get(StreamType.Image, idx, "Format_Profile"), true, true);
+			appendStringNextColumn(streamColumns, "Width", values.get(StreamType.Image, idx, "Width"), false, true);
+			appendStringNextColumn(streamColumns, "Height", values.get(StreamType.Image, idx, "Height"), false, true);
 		}
 
 		public void logSubtitleTrack(int idx, boolean videoSubtitle) {
-			if (MI == null || !MI.isValid()) {
+			if (values == null) {
 				return;
 			}
 
 			sb.append("\n    - Sub - ");
 			boolean first = true;
 			if (videoSubtitle) {
-				first &= !appendString("Title", MI.Get(StreamType.Video, idx, "Title"), first, true, true);
-				first &= !appendString("Format", MI.Get(StreamType.Video, idx, "Format"), first, true, true);
-				first &= !appendString("Version", MI.Get(StreamType.Video, idx, "Format_Version"), first, true, true);
-				first &= !appendString("Profile", MI.Get(StreamType.Video, idx, "Format_Profile"), first, true, true);
-				first &= !appendString("ID", MI.Get(StreamType.Video, idx, "ID"), first, false, true);
+				first &= !appendString("Title", values.get(StreamType.Video, idx, "Title"), first, true, true);
+				first &= !appendString("Format", values.get(StreamType.Video, idx, "Format"), first, true, true);
+				first &= !appendString("Version", values.get(StreamType.Video, idx, "Format_Version"), first, true, true);
+				first &= !appendString("Profile", values.get(StreamType.Video, idx, "Format_Profile"), first, true, true);
+				first &= !appendString("ID", values.get(StreamType.Video, idx, "ID"), first, false, true);
 			} else {
-				first &= !appendString("Title", MI.Get(StreamType.Text, idx, "Title"), first, true, true);
-				first &= !appendString("Format", MI.Get(StreamType.Text, idx, "Format"), first, true, true);
-				first &= !appendString("Version", MI.Get(StreamType.Text, idx, "Format_Version"), first, true, true);
-				first &= !appendString("Profile", MI.Get(StreamType.Text, idx, "Format_Profile"), first, true, true);
-				first &= !appendString("ID", MI.Get(StreamType.Text, idx, "ID"), first, false, true);
-				first &= !appendString("Language", MI.Get(StreamType.Text, idx, "Language"), first, true, true);
+				first &= !appendString("Title", values.get(StreamType.Text, idx, "Title"), first, true, true);
+				first &= !appendString("Format", values.get(StreamType.Text, idx, "Format"), first, true, true);
+				first &= !appendString("Version", values.get(StreamType.Text, idx, "Format_Version"), first, true, true);
+				first &= !appendString("Profile", values.get(StreamType.Text, idx, "Format_Profile"), first, true, true);
+				first &= !appendString("ID", values.get(StreamType.Text, idx, "ID"), first, false, true);
+				first &= !appendString("Language", values.get(StreamType.Text, idx, "Language"), first, true, true);
 			}
 		}
 
 		public void logSubtitleTrackColumns(int idx, boolean videoSubtitle) {
-			if (MI == null || !MI.isValid()) {
+			if (values == null) {
 				return;
 			}
 
 			sb.append("\n  - Subtitle ");
 			streamColumns.reset();
 			if (videoSubtitle) {
-				appendString("ID", MI.Get(StreamType.Video, idx, "ID"), true, false, false);
-				appendString("Title", MI.Get(StreamType.Video, idx, "Title"), false, true, true);
+				appendString("ID", values.get(StreamType.Video, idx, "ID"), true, false, false);
+				appendString("Title", values.get(StreamType.Video, idx, "Title"), false, true, true);
 				sb.append("\n");
-				appendStringNextColumn(streamColumns, "Format", MI.Get(StreamType.Video, idx, "Format"), true, true);
-				appendStringNextColumn(streamColumns, "Version", MI.Get(StreamType.Video, idx, "Format_Version"), true, true);
-				appendStringNextColumn(streamColumns, "Profile", MI.Get(StreamType.Video, idx, "Format_Profile"), true, true);
+				appendStringNextColumn(streamColumns, "Format", values.get(StreamType.Video, idx, "Format"), true, true);
+				appendStringNextColumn(streamColumns, "Version", values.get(StreamType.Video, idx, "Format_Version"), true, true);
+				appendStringNextColumn(streamColumns, "Profile", values.get(StreamType.Video, idx, "Format_Profile"), true, true);
 			} else {
-				appendString("ID", MI.Get(StreamType.Text, idx, "ID"), true, false, false);
-				appendString("Title", MI.Get(StreamType.Text, idx, "Title"), false, true, true);
+				appendString("ID", values.get(StreamType.Text, idx, "ID"), true, false, false);
+				appendString("Title", values.get(StreamType.Text, idx, "Title"), false, true, true);
 				sb.append("\n");
-				appendStringNextColumn(streamColumns, "Format", MI.Get(StreamType.Text, idx, "Format"), true, true);
-				appendStringNextColumn(streamColumns, "Version", MI.Get(StreamType.Text, idx, "Format_Version"), true, true);
-				appendStringNextColumn(streamColumns, "Profile", MI.Get(StreamType.Text, idx, "Format_Profile"), true, true);
-				appendStringNextColumn(streamColumns, "Language", MI.Get(StreamType.Text, idx, "Language"), true, true);
+				appendStringNextColumn(streamColumns, "Format", values.get(StreamType.Text, idx, "Format"), true, true);
+				appendStringNextColumn(streamColumns, "Version", values.get(StreamType.Text, idx, "Format_Version"), true, true);
+				appendStringNextColumn(streamColumns, "Profile", values.get(StreamType.Text, idx, "Format_Profile"), true, true);
+				appendStringNextColumn(streamColumns, "Language", values.get(StreamType.Text, idx, "Language"), true, true);
 			}
 		}
 
@@ -0,0 +1,273 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.dlna;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import net.pms.dlna.LibMediaInfoParser.StreamValues;
+import net.pms.dlna.MediaInfo.StreamType;
+
+/**
+ * The complete MediaInfo report of a file, as returned by a single call to
+ * {@link MediaInfo#Inform()} with the JSON output, instead of one native
+ * call per value.
+ * <p>
+ * The report is read with a streaming parser. Its values are returned in the
+ * form {@link MediaInfo#Get(StreamType, int, String)} returns them, so that
+ * {@link LibMediaInfoParser} maps both the same way. The report differs in
+ * that:
+ * <ul>
+ * <li>{@code /} in parameter names is written {@code _}, and derived
+ * {@code /String} values may be missing, in which case the base value is
+ * used.</li>
+ * <li>durations are in seconds instead of milliseconds.</li>
+ * <li>the video level is separate from the profile, and audio profiles like
+ * AAC LC are additional features.</li>
+ * <li>format versions are bare numbers, like {@code 1} for
+ * {@code Version 1}.</li>
+ * <li>chapters are named after their start time in the {@code extra} object
+ * of the menu, like {@code _00_05_00_000}.</li>
+ * </ul>
+ */
+public class MediaInfoReport implements StreamValues {
+
+	private static final Pattern CHAPTER_MARK = Pattern.compile("_(\\d+)_(\\d{2})_(\\d{2})_(\\d{3})");
+
+	/** Parameter names that differ in the report, other than by {@code /} */
+	private static final Map<String, String> ALIASES = Collections.singletonMap("Channel(s)", "Channels");
+
+	private final Map<StreamType, List<Map<String, String>>> streams = new EnumMap<>(StreamType.class);
+	private final List<Map.Entry<String, String>> chapters = new ArrayList<>();
+
+	private MediaInfoReport() {
+	}
+
+	/**
+	 * Parses a JSON MediaInfo report.
+	 *
+	 * @param json the report.
+	 * @return The parsed {@link MediaInfoReport}.
+	 * @throws IOException If the report isn't valid JSON or not a MediaInfo
+	 *             report.
+	 */
+	public static MediaInfoReport parse(String json) throws IOException {
+		return parse(new StringReader(json));
+	}
+
+	/**
+	 * Parses a JSON MediaInfo report.
+	 *
+	 * @param reader the {@link Reader} to read the report from.
+	 * @return The parsed {@link MediaInfoReport}.
+	 * @throws IOException If the report isn't valid JSON or not a MediaInfo
+	 *             report.
+	 */
+	public static MediaInfoReport parse(Reader reader) throws IOException {
+		MediaInfoReport report = new MediaInfoReport();
+		try (JsonReader jsonReader = new JsonReader(reader)) {
+			jsonReader.beginObject();
+			while (jsonReader.hasNext()) {
+				if ("media".equals(jsonReader.nextName()) && jsonReader.peek() == JsonToken.BEGIN_OBJECT) {
+					report.readMedia(jsonReader);
+				} else {
+					jsonReader.skipValue();
+				}
+			}
+			jsonReader.endObject();
+		} catch (IllegalStateException | NumberFormatException e) {
+			throw new IOException("Invalid MediaInfo report: " + e.getMessage(), e);
+		}
+		return report;
+	}
+
+	private void readMedia(JsonReader reader) throws IOException {
+		reader.beginObject();
+		while (reader.hasNext()) {
+			if ("track".equals(reader.nextName()) && reader.peek() == JsonToken.BEGIN_ARRAY) {
+				reader.beginArray();
+				while (reader.hasNext()) {
+					readStream(reader);
+				}
+				reader.endArray();
+			} else {
+				reader.skipValue();
+			}
+		}
+		reader.endObject();
+	}
+
+	private void readStream(JsonReader reader) throws IOException {
+		Map<String, String> values = new HashMap<>();
+		List<Map.Entry<String, String>> marks = new ArrayList<>();
+		String type = null;
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+			switch (reader.peek()) {
+				case STRING:
+				case NUMBER:
+					if ("@type".equals(name)) {
+						type = reader.nextString();
+					} else {
+						values.put(name, reader.nextString());
+					}
+					break;
+				case BOOLEAN:
+					values.put(name, Boolean.toString(reader.nextBoolean()));
+					break;
+				case BEGIN_OBJECT:
+					if ("extra".equals(name)) {
+						readExtra(reader, values, marks);
+					} else {
+						reader.skipValue();
+					}
+					break;
+				default:
+					reader.skipValue();
+			}
+		}
+		reader.endObject();
+
+		StreamType streamType = toStreamType(type);
+		if (streamType == null) {
+			return;
+		}
+		List<Map<String, String>> streamsOfType = streams.computeIfAbsent(streamType, key -> new ArrayList<>());
+		streamsOfType.add(values);
+		if (streamType == StreamType.Menu && streamsOfType.size() == 1) {
+			chapters.addAll(marks);
+		}
+	}
+
+	/**
+	 * Reads the {@code extra} object of a stream, which holds the chapter
+	 * marks of menus and the values MediaInfo has no name for.
+	 */
+	private static void readExtra(JsonReader reader, Map<String, String> values, List<Map.Entry<String, String>> marks) throws IOException {
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+			JsonToken token = reader.peek();
+			if (token != JsonToken.STRING && token != JsonToken.NUMBER) {
+				reader.skipValue();
+				continue;
+			}
+			String value = reader.nextString();
+			Matcher matcher = CHAPTER_MARK.matcher(name);
+			if (matcher.matches()) {
+				marks.add(new AbstractMap.SimpleImmutableEntry<>(
+					matcher.group(1) + ":" + matcher.group(2) + ":" + matcher.group(3) + "." + matcher.group(4),
+					value
+				));
+			} else {
+				values.putIfAbsent(name, value);
+			}
+		}
+		reader.endObject();
+	}
+
+	private static StreamType toStreamType(String type) {
+		if (type != null) {
+			for (StreamType streamType : StreamType.values()) {
+				if (streamType.name().equals(type)) {
+					return streamType;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @param streamType the {@link StreamType}.
+	 * @return The number of streams of the specified type in the report.
+	 */
+	public int getStreamCount(StreamType streamType) {
+		List<Map<String, String>> streamsOfType = streams.get(streamType);
+		return streamsOfType == null ? 0 : streamsOfType.size();
+	}
+
+	@Override
+	public String get(StreamType streamType, int streamNumber, String parameter) {
+		List<Map<String, String>> streamsOfType = streams.get(streamType);
+		if (streamsOfType == null || streamNumber < 0 || streamNumber >= streamsOfType.size()) {
+			return "";
+		}
+		Map<String, String> values = streamsOfType.get(streamNumber);
+		String value = lookup(values, parameter);
+		if (value == null && streamType == StreamType.Audio && "Format_Profile".equals(parameter)) {
+			value = values.get("Format_AdditionalFeatures");
+		}
+		if (value == null) {
+			return "StreamCount".equals(parameter) ? Integer.toString(streamsOfType.size()) : "";
+		}
+
+		switch (parameter) {
+			case "Duration":
+				return toMilliseconds(value);
+			case "Format_Profile":
+				String level = values.get("Format_Level");
+				if (streamType == StreamType.Video && level != null && !value.contains("@")) {
+					return value + "@L" + level;
+				}
+				return value;
+			case "Format_Version":
+				return !value.isEmpty() && Character.isDigit(value.charAt(0)) ? "Version " + value : value;
+			default:
+				return value;
+		}
+	}
+
+	private static String lookup(Map<String, String> values, String parameter) {
+		String value = values.get(parameter);
+		if (value == null && ALIASES.containsKey(parameter)) {
+			value = values.get(ALIASES.get(parameter));
+		}
+		if (value == null && parameter.indexOf('/') > 0) {
+			value = values.get(parameter.replace('/', '_'));
+			if (value == null && parameter.endsWith("/String")) {
+				value = values.get(parameter.substring(0, parameter.length() - "/String".length()));
+			}
+		}
+		return value;
+	}
+
+	private static String toMilliseconds(String seconds) {
+		try {
+			return new BigDecimal(seconds).movePointRight(3).toPlainString();
+		} catch (NumberFormatException e) {
+			return seconds;
+		}
+	}
+
+	@Override
+	public List<Map.Entry<String, String>> getChapters() {
+		return Collections.unmodifiableList(chapters);
+	}
+}
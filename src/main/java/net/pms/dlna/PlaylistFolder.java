@@ -4,8 +4,13 @@ import java.io.*;
 import java.net.URL;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import net.pms.PMS;
 import net.pms.formats.Format;
 import net.pms.formats.FormatFactory;
@@ -20,12 +25,34 @@ import org.slf4j.LoggerFactory;
 public final class PlaylistFolder extends DLNAResource {
 
 	private static final Logger LOGGER = LoggerFactory.getLogger(PlaylistFolder.class);
+
+	/** The number of parsed playlist files that are kept */
+	private static final int MAX_PARSED_PLAYLISTS = 64;
+
+	/** The parsed playlist files by path, in least recently used order */
+	private static final Map<String, ParsedPlaylist> PARSED_PLAYLISTS = Collections.synchronizedMap(
+		new LinkedHashMap<String, ParsedPlaylist>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, ParsedPlaylist> eldest) {
+				return size() > MAX_PARSED_PLAYLISTS;
+			}
+		}
+	);
+
 	private final String name;
 	private final String uri;
 	private final boolean isweb;
 	private final int defaultContent;
 	private boolean valid = true;
 
+	/** The length of the playlist file when the children were discovered */
+	private long playlistLength;
+
+	/** The entries that haven't been added as children yet */
+	private Deque<Entry> discoverable;
+
 	public File getPlaylistfile() {
 		return isweb ? null : new File(uri);
 	}
@@ -35,6 +62,7 @@ public final class PlaylistFolder extends DLNAResource {
 		this.uri = uri;
 		isweb = FileUtil.isUrl(uri);
 		super.setLastModified(isweb ? 0 : new File(uri).lastModified());
+		playlistLength = isweb ? 0 : new File(uri).length();
 		defaultContent = (type != 0 && type != Format.UNKNOWN) ? type : Format.VIDEO;
 	}
 
@@ -43,6 +71,7 @@ public final class PlaylistFolder extends DLNAResource {
 		uri = f.getAbsolutePath();
 		isweb = false;
 		super.setLastModified(f.lastModified());
+		playlistLength = f.length();
 		defaultContent = Format.VIDEO;
 	}
 
@@ -135,19 +164,111 @@ public final class PlaylistFolder extends DLNAResource {
 		return null;
 	}
 
+	/**
+	 * The children are discovered when the playlist is browsed, so resolving
+	 * only has to forget them if the playlist file has been changed since.
+	 */
 	@Override
 	public void resolve() {
+		if (isRefreshNeeded()) {
+			reset();
+		}
+	}
+
+	@Override
+	public boolean isRefreshNeeded() {
+		if (isweb) {
+			return false;
+		}
+		File playlistfile = getPlaylistfile();
+		return playlistfile.lastModified() != getLastModified() || playlistfile.length() != playlistLength;
+	}
+
+	@Override
+	public void doRefreshChildren() {
+		reset();
+		discoverChildren();
+		analyzeChildren(-1);
+	}
+
+	private void reset() {
 		getChildren().clear();
-		setLastModified(getPlaylistfile().lastModified());
-		resolveOnce();
+		discoverable = null;
+		setDiscovered(false);
+		if (!isweb) {
+			setLastModified(getPlaylistfile().lastModified());
+			playlistLength = getPlaylistfile().length();
+		}
 	}
 
 	@Override
-	protected void resolveOnce() {
+	public void discoverChildren() {
+		if (discoverable == null) {
+			List<Entry> entries = getEntries();
+			if (!isweb) {
+				storeFileInCache(getPlaylistfile(), Format.PLAYLIST);
+			}
+			if (configuration.getSortMethod(getPlaylistfile()) == UMSUtils.SORT_RANDOM) {
+				entries = new ArrayList<>(entries);
+				Collections.shuffle(entries);
+			}
+			discoverable = new ArrayDeque<>(entries);
+		}
+	}
+
+	/**
+	 * Adds the next {@code count} entries as children, so that a renderer
+	 * that browses a large playlist a page at a time only gets the entries
+	 * of the pages it has requested resolved.
+	 *
+	 * @param count the number of entries to add, or -1 for all.
+	 * @return {@code true} if all entries have been added.
+	 */
+	@Override
+	public boolean analyzeChildren(int count) {
+		if (discoverable == null) {
+			discoverChildren();
+		}
+		int added = 0;
+		while (!discoverable.isEmpty() && (count == -1 || added < count)) {
+			if (addEntry(discoverable.poll())) {
+				added++;
+			}
+		}
+		return discoverable.isEmpty();
+	}
+
+	/**
+	 * Gets the entries of the playlist. The entries of playlist files are
+	 * kept as long as the file isn't modified, so browsing a playlist again
+	 * doesn't read and parse it again.
+	 *
+	 * @return The entries.
+	 */
+	List<Entry> getEntries() {
+		if (isweb) {
+			return readEntries();
+		}
+		File playlistfile = getPlaylistfile();
+		long modified = playlistfile.lastModified();
+		long length = playlistfile.length();
+		ParsedPlaylist parsed = PARSED_PLAYLISTS.get(uri);
+		if (parsed != null && parsed.modified == modified && parsed.length == length) {
+			return parsed.entries;
+		}
+		List<Entry> entries = readEntries();
+		PARSED_PLAYLISTS.put(uri, new ParsedPlaylist(modified, length, entries));
+		return entries;
+	}
+
+	private List<Entry> readEntries() {
 		ArrayList<Entry> entries = new ArrayList<>();
 		boolean m3u = false;
 		boolean pls = false;
 		try (BufferedReader br = getBufferedReader()) {
+			if (br == null) {
+				return Collections.emptyList();
+			}
 			String line;
 			while (!m3u && !pls && (line = br.readLine()) != null) {
 				line = line.trim();
@@ -220,58 +341,58 @@ public final class PlaylistFolder extends DLNAResource {
 			LOGGER.error(null, e);
 		}
 
+		ArrayList<Entry> result = new ArrayList<>(entries.size());
 		for (Entry entry : entries) {
-			if (entry == null) {
+			if (entry == null || entry.fileName == null) {
 				continue;
 			}
 			if (entry.title == null) {
 				entry.title = new File(entry.fileName).getName();
 			}
-			LOGGER.debug("Adding " + (pls ? "PLS " : (m3u ? "M3U " : "")) + "entry: " + entry);
+			result.add(entry);
+		}
+		LOGGER.debug("Read {} entries from {}playlist: {}", result.size(), pls ? "PLS " : (m3u ? "M3U " : ""), getName());
+		return Collections.unmodifiableList(result);
+	}
 
-			String ext = "." + FileUtil.getUrlExtension(entry.fileName);
-			Format f = FormatFactory.getAssociatedFormat(ext);
-			int type = f == null ? defaultContent : f.getType();
+	private boolean addEntry(Entry entry) {
+		LOGGER.trace("Adding entry: " + entry);
 
-			if (!isweb && !FileUtil.isUrl(entry.fileName)) {
-				File en = new File(FilenameUtils.concat(getPlaylistfile().getParent(), entry.fileName));
-				if (en.exists()) {
-					addChild(type == Format.PLAYLIST ? new PlaylistFolder(en) : new RealFile(en, entry.title));
-					valid = true;
-				}
-			} else {
-				String u = FileUtil.urlJoin(uri, entry.fileName);
-				if (type == Format.PLAYLIST && !entry.fileName.endsWith(ext)) {
-					// If the filename continues past the "extension" (i.e. has
-					// a query string) it's
-					// likely not a nested playlist but a media item, for
-					// instance Twitch TV media urls:
-					// 'http://video10.iad02.hls.twitch.tv/.../index-live.m3u8?token=id=235...'
-					type = defaultContent;
-				}
-				DLNAResource d = type == Format.VIDEO ? new WebVideoStream(entry.title, u, null) :
-					type == Format.AUDIO ? new WebAudioStream(entry.title, u, null) :
-						type == Format.IMAGE ? new FeedItem(entry.title, u, null, null, Format.IMAGE) :
-							type == Format.PLAYLIST ? getPlaylist(entry.title, u, 0) : null;
-				if (d != null) {
-					addChild(d);
-					valid = true;
-				}
-			}
-		}
-		if (!isweb) {
-			storeFileInCache(getPlaylistfile(), Format.PLAYLIST);
-		}
-		if (configuration.getSortMethod(getPlaylistfile()) == UMSUtils.SORT_RANDOM) {
-			Collections.shuffle(getChildren());
-		}
+		String ext = "." + FileUtil.getUrlExtension(entry.fileName);
+		Format f = FormatFactory.getAssociatedFormat(ext);
+		int type = f == null ? defaultContent : f.getType();
 
-		for (DLNAResource r : getChildren()) {
-			r.syncResolve();
+		if (!isweb && !FileUtil.isUrl(entry.fileName)) {
+			File en = new File(FilenameUtils.concat(getPlaylistfile().getParent(), entry.fileName));
+			if (en.exists()) {
+				addChild(type == Format.PLAYLIST ? new PlaylistFolder(en) : new RealFile(en, entry.title));
+				valid = true;
+				return true;
+			}
+		} else {
+			String u = FileUtil.urlJoin(uri, entry.fileName);
+			if (type == Format.PLAYLIST && !entry.fileName.endsWith(ext)) {
+				// If the filename continues past the "extension" (i.e. has
+				// a query string) it's
+				// likely not a nested playlist but a media item, for
+				// instance Twitch TV media urls:
+				// 'http://video10.iad02.hls.twitch.tv/.../index-live.m3u8?token=id=235...'
+				type = defaultContent;
+			}
+			DLNAResource d = type == Format.VIDEO ? new WebVideoStream(entry.title, u, null) :
+				type == Format.AUDIO ? new WebAudioStream(entry.title, u, null) :
+					type == Format.IMAGE ? new FeedItem(entry.title, u, null, null, Format.IMAGE) :
+						type == Format.PLAYLIST ? getPlaylist(entry.title, u, 0) : null;
+			if (d != null) {
+				addChild(d);
+				valid = true;
+				return true;
+			}
 		}
+		return false;
 	}
 
-	private static class Entry {
+	static class Entry {
 
 		public String fileName;
 		public String title;
@@ -282,6 +403,18 @@ public final class PlaylistFolder extends DLNAResource {
 		}
 	}
 
+	private static class ParsedPlaylist {
+		private final long modified;
+		private final long length;
+		private final List<Entry> entries;
+
+		private ParsedPlaylist(long modified, long length, List<Entry> entries) {
+			this.modified = modified;
+			this.length = length;
+			this.entries = entries;
+		}
+	}
+
 	public static DLNAResource getPlaylist(String name, String uri, int type) {
 		Format f = FormatFactory.getAssociatedFormat("." + FileUtil.getUrlExtension(uri));
 		if (f != null && f.getType() == Format.PLAYLIST) {
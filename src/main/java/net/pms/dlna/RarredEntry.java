@@ -36,6 +36,8 @@ public class RarredEntry extends DLNAResource implements IPushOutput {
 	private File file;
 	private String fileHeaderName;
 	private long length;
+	private StoredArchiveEntry storedEntry;
+	private boolean storedEntryResolved;
 
 	@Override
 	protected String getThumbnailURL(DLNAImageProfile profile) {
@@ -55,7 +57,20 @@ public class RarredEntry extends DLNAResource implements IPushOutput {
 
 	@Override
 	public InputStream getInputStream() throws IOException {
-		return null;
+		StoredArchiveEntry stored = getStoredEntry();
+		return stored == null ? null : stored.getInputStream();
+	}
+
+	/**
+	 * @return The location of the entry data if it is stored uncompressed,
+	 *         {@code null} otherwise.
+	 */
+	private synchronized StoredArchiveEntry getStoredEntry() {
+		if (!storedEntryResolved) {
+			storedEntry = StoredArchiveEntry.forRarEntry(file, fileHeaderName);
+			storedEntryResolved = true;
+		}
+		return storedEntry;
 	}
 
 	@Override
@@ -88,13 +103,14 @@ public class RarredEntry extends DLNAResource implements IPushOutput {
 		return getFormat() != null;
 	}
 
-	@Override
-	public boolean isUnderlyingSeekSupported() {
-		return length() < MAX_ARCHIVE_SIZE_SEEK;
-	}
-
 	@Override
 	public void push(final OutputStream out) throws IOException {
+		StoredArchiveEntry stored = getStoredEntry();
+		if (stored != null) {
+			stored.push(out);
+			return;
+		}
+
 		Runnable r = () -> {
 			Archive rarFile = null;
 			try {
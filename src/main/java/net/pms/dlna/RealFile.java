@@ -132,7 +132,16 @@ public class RealFile extends MapFile {
 
 			// XXX isMediaInfoThumbnailGeneration is only true for the "default renderer"
 			if (getParent().getDefaultRenderer().isMediaInfoThumbnailGeneration()) {
-				checkThumbnail();
+				// Video thumbnails are generated in the background, so that
+				// scanning and browsing don't wait for FFmpeg
+				if (
+					getType() != Format.VIDEO ||
+					getMedia() == null ||
+					getMedia().isThumbready() ||
+					!VideoThumbnailWorkers.queue(this)
+				) {
+					checkThumbnail();
+				}
 			}
 		} else if (this.getType() == Format.UNKNOWN && !this.isFolder()) {
 			getConf().getFiles().remove(file);
@@ -9,6 +9,12 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
 import net.pms.PMS;
 import net.pms.configuration.PmsConfiguration;
 import org.slf4j.Logger;
@@ -20,24 +26,62 @@ public class ResumeObj {
 	private static final int DAYS = 3600 * 24 * 1000;
 
 	public static final String CLEAN_REG = "_hash_(\\d+)";
+	private static final Pattern NAME_CLEANUP = Pattern.compile("[:\\[\\]\n\r]");
+
+	/**
+	 * The resume positions as {@code [offset, duration]} by resume file name,
+	 * loaded from the resume folder on first use so that checking whether a
+	 * resource can be resumed doesn't need any file access.
+	 */
+	private static volatile Map<String, long[]> index;
+	private static File resumePath;
 
 	private File file;
 	private long offsetTime;
 	private long resDuration;
 	private long minDur;
 
-	private static File resumePath() {
-		File path = new File(CONFIGURATION.getDataFile("resume"));
-		path.mkdirs();
-		return path;
+	private static synchronized File resumePath() {
+		if (resumePath == null) {
+			resumePath = new File(CONFIGURATION.getDataFile("resume"));
+			resumePath.mkdirs();
+		}
+		return resumePath;
 	}
 
 	private static File resumeFile(DLNAResource r) {
-		String wName = r.getName().replaceAll("[:\\[\\]\n\r]", "").trim();
+		String wName = NAME_CLEANUP.matcher(r.getName()).replaceAll("").trim();
 		String fName = wName + "_hash_" + r.resumeHash() + ".resume";
 		return new File(resumePath(), fName);
 	}
 
+	private static Map<String, long[]> getIndex() {
+		Map<String, long[]> result = index;
+		if (result == null) {
+			synchronized (ResumeObj.class) {
+				result = index;
+				if (result == null) {
+					result = new ConcurrentHashMap<>();
+					File[] files = resumePath().listFiles();
+					if (files != null) {
+						for (File f : files) {
+							if (!f.getName().endsWith(".resume")) {
+								continue;
+							}
+							long[] position = readPosition(f);
+							if (position != null) {
+								result.put(f.getName(), position);
+							}
+						}
+					}
+					LOGGER.debug("Loaded {} resume positions", result.size());
+					index = result;
+				}
+			}
+		}
+		return result;
+	}
+
 	public static File[] resumeFiles() {
 		File path = resumePath();
 		return path.listFiles();
@@ -58,12 +102,19 @@ public class ResumeObj {
 
 		// no file no resume
 		File resumeFile = resumeFile(originalResource);
+		long[] position = getIndex().get(resumeFile.getName());
+		if (position == null) {
+			return null;
+		}
 		if (!resumeFile.exists()) {
+			// Deleted by the temporary file manager or the user
+			index.remove(resumeFile.getName());
 			return null;
 		}
 
 		ResumeObj res = new ResumeObj(resumeFile);
-		res.read();
+		res.offsetTime = position[0];
+		res.resDuration = position[1];
 		if (res.noResume()) {
 			return null;
 		}
@@ -106,31 +157,46 @@ public class ResumeObj {
 	}
 
 	public void read() {
-		try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
-			String str;
-			while ((str = in.readLine()) != null) {
+		long[] position = resumePath().equals(file.getParentFile()) ? getIndex().get(file.getName()) : null;
+		if (position == null) {
+			position = readPosition(file);
+		}
+		if (position != null) {
+			offsetTime = position[0];
+			resDuration = position[1];
+		}
+	}
+
+	private static long[] readPosition(File f) {
+		try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(f), StandardCharsets.UTF_8))) {
+			String str = in.readLine();
+			if (str != null) {
 				String[] tmp = str.split(",");
-				offsetTime = Long.parseLong(tmp[0]);
-				if (tmp.length > 1) {
-					resDuration = Long.parseLong(tmp[1]);
-				}
-				break;
+				return new long[] {Long.parseLong(tmp[0]), tmp.length > 1 ? Long.parseLong(tmp[1]) : 0};
 			}
-		} catch (IOException e) {
+		} catch (IOException | NumberFormatException e) {
 		}
+		return null;
 	}
 
 	private static void write(long time, long duration, File f) {
 		try {
-			try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(f), StandardCharsets.UTF_8))) {
+			// Write to a temporary file first so that a crash can't leave a truncated resume file
+			File tmp = new File(f.getParentFile(), f.getName() + ".tmp");
+			try (BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8))) {
 				out.write(time + "," + duration);
-				out.flush();
-				out.close();
-				if (CONFIGURATION.getResumeKeepTime() > 0) {
-					PMS.get().addTempFile(f, CONFIGURATION.getResumeKeepTime() * DAYS);
-				}
+			}
+			try {
+				Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			getIndex().put(f.getName(), new long[] {time, duration});
+			if (CONFIGURATION.getResumeKeepTime() > 0) {
+				PMS.get().addTempFile(f, CONFIGURATION.getResumeKeepTime() * DAYS);
 			}
 		} catch (IOException e) {
+			LOGGER.debug("Failed to write resume file \"{}\": {}", f, e.getMessage());
 		}
 	}
 
@@ -173,6 +239,7 @@ public class ResumeObj {
 		if (expDuration > minDur && duration >= (expDuration * CONFIGURATION.getResumeBackFactor())) {
 			// We've seen the whole video (likely)
 			file.delete();
+			getIndex().remove(file.getName());
 			return;
 		}
 		if (thisPlay < CONFIGURATION.getResumeRewind()) {
@@ -60,6 +60,7 @@ import net.pms.platform.windows.CSIDL;
 import net.pms.platform.windows.GUID;
 import net.pms.platform.windows.KnownFolders;
 import net.pms.util.CodeDb;
+import net.pms.util.EmbeddedSubtitlesCache;
 import net.pms.util.FilePermissions;
 import net.pms.util.FileUtil;
 import net.pms.util.FileWatcher;
@@ -315,7 +316,9 @@ public class RootFolder extends DLNAResource {
 					}
 
 					if (child.isDiscovered()) {
-						child.refreshChildren();
+						if (child.refreshChildren()) {
+							child.notifyContainerUpdate();
+						}
 					} else {
 						if (child instanceof DVDISOFile || child instanceof DVDISOTitle) { // ugly hack
 							child.syncResolve();
@@ -331,6 +334,10 @@ public class RootFolder extends DLNAResource {
 						continue;
 					}
 
+					for (DLNAResource grandchild : child.getChildren()) {
+						EmbeddedSubtitlesCache.extractInBackground(grandchild);
+					}
+
 					scan(child);
 					child.getChildren().clear();
 				} else if (!running) {
@@ -555,6 +562,7 @@ public class RootFolder extends DLNAResource {
 			FileWatcher.add(new FileWatcher.Watch(webConf.getPath(), ROOT_WATCHER, this, RELOAD_WEB_CONF));
 		}
 		setLastModified(1);
+		notifyContainerUpdate();
 	}
 
 	/**
@@ -1359,6 +1367,7 @@ public class RootFolder extends DLNAResource {
 								f.delete();
 							}
 							getParent().getChildren().remove(this);
+							getParent().notifyContainerUpdate();
 							return false;
 						}
 					});
@@ -1370,6 +1379,7 @@ public class RootFolder extends DLNAResource {
 							public boolean enable() {
 								f.delete();
 								getParent().getChildren().remove(this);
+								getParent().notifyContainerUpdate();
 								return false;
 							}
 						});
@@ -1543,6 +1553,7 @@ public class RootFolder extends DLNAResource {
 
 	public void reset() {
 		setDiscovered(false);
+		notifyContainerUpdate();
 	}
 
 	public void stopPlaying(DLNAResource res) {
@@ -1646,6 +1657,7 @@ public class RootFolder extends DLNAResource {
 		if (rf.isValid()) {
 			LOGGER.info("New file {} was detected and added to the Media Library", file.getName());
 			bumpSystemUpdateId();
+			EmbeddedSubtitlesCache.extractInBackground(rf);
 
 			/*
 			 * Something about this process causes Java to hold onto the
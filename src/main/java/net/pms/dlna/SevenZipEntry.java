@@ -41,6 +41,8 @@ public class SevenZipEntry extends DLNAResource implements IPushOutput {
 	private File file;
 	private String zeName;
 	private long length;
+	private StoredArchiveEntry storedEntry;
+	private boolean storedEntryResolved;
 	private IInArchive arc;
 
 	@Override
@@ -61,7 +63,20 @@ public class SevenZipEntry extends DLNAResource implements IPushOutput {
 
 	@Override
 	public InputStream getInputStream() throws IOException {
-		return null;
+		StoredArchiveEntry stored = getStoredEntry();
+		return stored == null ? null : stored.getInputStream();
+	}
+
+	/**
+	 * @return The location of the entry data if it is stored uncompressed,
+	 *         {@code null} otherwise.
+	 */
+	private synchronized StoredArchiveEntry getStoredEntry() {
+		if (!storedEntryResolved) {
+			storedEntry = StoredArchiveEntry.forSevenZipEntry(file, zeName);
+			storedEntryResolved = true;
+		}
+		return storedEntry;
 	}
 
 	@Override
@@ -94,13 +109,14 @@ public class SevenZipEntry extends DLNAResource implements IPushOutput {
 		return getFormat() != null;
 	}
 
-	@Override
-	public boolean isUnderlyingSeekSupported() {
-		return length() < MAX_ARCHIVE_SIZE_SEEK;
-	}
-
 	@Override
 	public void push(final OutputStream out) throws IOException {
+		StoredArchiveEntry stored = getStoredEntry();
+		if (stored != null) {
+			stored.push(out);
+			return;
+		}
+
 		Runnable r = () -> {
 			try {
 				// byte data[] = new byte[65536];
@@ -0,0 +1,620 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.dlna;
+
+import com.github.junrar.Archive;
+import com.github.junrar.exception.RarException;
+import com.github.junrar.rarfile.FileHeader;
+import com.github.junrar.volume.FileVolume;
+import com.github.junrar.volume.FileVolumeManager;
+import com.github.junrar.volume.Volume;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import net.pms.util.BasicThreadFactory;
+import net.sf.sevenzipjbinding.ArchiveFormat;
+import net.sf.sevenzipjbinding.IInArchive;
+import net.sf.sevenzipjbinding.PropID;
+import net.sf.sevenzipjbinding.SevenZip;
+import net.sf.sevenzipjbinding.SevenZipException;
+import net.sf.sevenzipjbinding.impl.RandomAccessFileInStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The location of an archive entry that is stored without compression, as
+ * one or more segments of the archive file(s). Such entries can be read
+ * directly from the archive with random access, without an extractor.
+ * <p>
+ * The locations of all the stored entries of an archive are resolved at once
+ * the first time one of them is requested, and cached, keyed by the archive
+ * path, size and modification time. Resolving every entry of an archive thus
+ * only parses the archive once.
+ */
+public class StoredArchiveEntry {
+	private static final Logger LOGGER = LoggerFactory.getLogger(StoredArchiveEntry.class);
+	private static final int MAX_CACHED_ARCHIVES = 64;
+	private static final int MAX_READERS = 4;
+	private static final int ZIP_LOCAL_HEADER_SIGNATURE = 0x04034b50;
+	private static final int ZIP_CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+	private static final int ZIP_END_SIGNATURE = 0x06054b50;
+	private static final int ZIP64_END_LOCATOR_SIGNATURE = 0x07064b50;
+	private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+	private static final int ZIP64_EXTRA_FIELD_ID = 0x0001;
+	private static final long ZIP64_MAGIC = 0xFFFFFFFFL;
+	private static final byte RAR_METHOD_STORE = 0x30;
+	private static final String SEVEN_ZIP_METHOD_COPY = "Copy";
+	private static final int SEVEN_ZIP_SIGNATURE_HEADER_SIZE = 32;
+	private static final int SEVEN_ZIP_HEADER = 0x01;
+	private static final int SEVEN_ZIP_MAIN_STREAMS_INFO = 0x04;
+	private static final int SEVEN_ZIP_PACK_INFO = 0x06;
+	private static final int SEVEN_ZIP_ENCODED_HEADER = 0x17;
+
+	/** The stored entries of the recently used archives, by entry name */
+	private static final Map<String, Map<String, StoredArchiveEntry>> CACHE = Collections.synchronizedMap(
+		new LinkedHashMap<String, Map<String, StoredArchiveEntry>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Map<String, StoredArchiveEntry>> eldest) {
+				return size() > MAX_CACHED_ARCHIVES;
+			}
+		}
+	);
+
+	/**
+	 * The threads copying entries to the pushed streams. When all of them are
+	 * busy, the thread calling {@link #push} copies the entry itself.
+	 */
+	private static final ThreadPoolExecutor READERS = new ThreadPoolExecutor(
+		0,
+		MAX_READERS,
+		30,
+		TimeUnit.SECONDS,
+		new SynchronousQueue<>(),
+		new BasicThreadFactory("Stored Archive Entry Reader %d"),
+		new ThreadPoolExecutor.CallerRunsPolicy()
+	);
+
+	private final List<Segment> segments;
+	private final long length;
+
+	private StoredArchiveEntry(List<Segment> segments) {
+		this.segments = Collections.unmodifiableList(segments);
+		long total = 0;
+		for (Segment segment : segments) {
+			total += segment.length;
+		}
+		this.length = total;
+	}
+
+	/**
+	 * @return The segments holding the entry data, in order.
+	 */
+	public List<Segment> getSegments() {
+		return segments;
+	}
+
+	/**
+	 * @return The length of the entry data.
+	 */
+	public long length() {
+		return length;
+	}
+
+	/**
+	 * @return A new seekable {@link InputStream} reading the entry data
+	 *         directly from the archive file(s).
+	 */
+	public InputStream getInputStream() {
+		return new SegmentsInputStream(segments, length);
+	}
+
+	/**
+	 * Copies the entry data to {@code out}.
+	 *
+	 * @param out the {@link OutputStream} to write to.
+	 * @throws IOException If an error occurs during the operation.
+	 */
+	public void copyTo(OutputStream out) throws IOException {
+		byte[] buffer = new byte[65536];
+		try (InputStream in = getInputStream()) {
+			int n;
+			while ((n = in.read(buffer)) > -1) {
+				out.write(buffer, 0, n);
+			}
+		}
+	}
+
+	/**
+	 * Copies the entry data to {@code out} on a shared reader thread and
+	 * closes {@code out} when done, as required by {@link IPushOutput#push}.
+	 * If every reader is busy, the data is copied before this returns.
+	 *
+	 * @param out the {@link OutputStream} to write to.
+	 */
+	public void push(final OutputStream out) {
+		Runnable r = () -> {
+			try {
+				copyTo(out);
+			} catch (IOException e) {
+				LOGGER.debug("Error reading stored archive entry, maybe it's normal, as backend can be terminated: {}", e.getMessage());
+			} finally {
+				try {
+					out.close();
+				} catch (IOException e) {
+					LOGGER.debug("Caught exception", e);
+				}
+			}
+		};
+
+		READERS.execute(r);
+	}
+
+	/**
+	 * Resolves the location of a stored entry in a zip file.
+	 *
+	 * @param zipFile the zip file.
+	 * @param entryName the entry name.
+	 * @return The {@link StoredArchiveEntry} or {@code null} if the entry is
+	 *         compressed, encrypted or can't be located.
+	 */
+	public static StoredArchiveEntry forZipEntry(File zipFile, String entryName) {
+		return resolve("zip", zipFile, entryName, () -> indexZip(zipFile));
+	}
+
+	/**
+	 * Resolves the location of a stored entry in a rar archive, following it
+	 * over the next volumes if the entry is split.
+	 *
+	 * @param rarFile the (first volume of the) rar archive.
+	 * @param fileHeaderName the entry name.
+	 * @return The {@link StoredArchiveEntry} or {@code null} if the entry is
+	 *         compressed, encrypted or can't be located.
+	 */
+	public static StoredArchiveEntry forRarEntry(File rarFile, String fileHeaderName) {
+		return resolve("rar", rarFile, fileHeaderName, () -> indexRar(rarFile));
+	}
+
+	/**
+	 * Resolves the location of a stored entry in a 7-Zip archive. This only
+	 * succeeds if the archive handler reports the data offset of the entry.
+	 *
+	 * @param archiveFile the archive file.
+	 * @param path the entry path.
+	 * @return The {@link StoredArchiveEntry} or {@code null} if the entry is
+	 *         compressed, encrypted or can't be located.
+	 */
+	public static StoredArchiveEntry forSevenZipEntry(File archiveFile, String path) {
+		return resolve("7z", archiveFile, path, () -> indexSevenZip(archiveFile));
+	}
+
+	private static StoredArchiveEntry resolve(String type, File archive, String entryName, Indexer indexer) {
+		String key = type + ">" + archive.getAbsolutePath() + ">" + archive.length() + ">" + archive.lastModified();
+		Map<String, StoredArchiveEntry> index = CACHE.get(key);
+		if (index == null) {
+			try {
+				index = indexer.index();
+				LOGGER.trace("\"{}\" has {} stored entries", archive, index.size());
+			} catch (IOException | RarException | RuntimeException e) {
+				LOGGER.debug("Couldn't index the stored entries of \"{}\": {}", archive, e.getMessage());
+				LOGGER.trace("", e);
+				index = Collections.emptyMap();
+			}
+			CACHE.put(key, index);
+		}
+		return index.get(entryName);
+	}
+
+	private static Map<String, StoredArchiveEntry> indexZip(File file) throws IOException {
+		Map<String, StoredArchiveEntry> index = new HashMap<>();
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			long size = channel.size();
+			int tailLength = (int) Math.min(size, 22 + 65535);
+			ByteBuffer tail = read(channel, size - tailLength, tailLength);
+			int end = -1;
+			for (int i = tailLength - 22; i >= 0; i--) {
+				if (tail.getInt(i) == ZIP_END_SIGNATURE) {
+					end = i;
+					break;
+				}
+			}
+			if (end < 0) {
+				return index;
+			}
+
+			long entries = tail.getShort(end + 10) & 0xFFFF;
+			long directorySize = tail.getInt(end + 12) & ZIP64_MAGIC;
+			long directoryOffset = tail.getInt(end + 16) & ZIP64_MAGIC;
+			if ((entries == 0xFFFF || directorySize == ZIP64_MAGIC || directoryOffset == ZIP64_MAGIC) && end >= 20) {
+				if (tail.getInt(end - 20) == ZIP64_END_LOCATOR_SIGNATURE) {
+					ByteBuffer zip64End = read(channel, tail.getLong(end - 20 + 8), 56);
+					if (zip64End.getInt(0) != ZIP64_END_SIGNATURE) {
+						return index;
+					}
+					entries = zip64End.getLong(32);
+					directorySize = zip64End.getLong(40);
+					directoryOffset = zip64End.getLong(48);
+				}
+			}
+			if (directorySize > Integer.MAX_VALUE) {
+				return index;
+			}
+
+			ByteBuffer directory = read(channel, directoryOffset, (int) directorySize);
+			int position = 0;
+			for (long i = 0; i < entries && position + 46 <= directory.limit(); i++) {
+				if (directory.getInt(position) != ZIP_CENTRAL_HEADER_SIGNATURE) {
+					break;
+				}
+				int flags = directory.getShort(position + 8) & 0xFFFF;
+				int method = directory.getShort(position + 10) & 0xFFFF;
+				long compressedSize = directory.getInt(position + 20) & ZIP64_MAGIC;
+				long uncompressedSize = directory.getInt(position + 24) & ZIP64_MAGIC;
+				int nameLength = directory.getShort(position + 28) & 0xFFFF;
+				int extraLength = directory.getShort(position + 30) & 0xFFFF;
+				int commentLength = directory.getShort(position + 32) & 0xFFFF;
+				long localHeaderOffset = directory.getInt(position + 42) & ZIP64_MAGIC;
+				int next = position + 46 + nameLength + extraLength + commentLength;
+
+				if (method != 0 || (flags & 1) != 0) {
+					position = next;
+					continue;
+				}
+
+				// ZipFile decodes all names as UTF-8, so the entry names of
+				// ZippedEntry are too
+				byte[] name = new byte[nameLength];
+				for (int j = 0; j < nameLength; j++) {
+					name[j] = directory.get(position + 46 + j);
+				}
+
+				// Read the real values from the Zip64 extended information
+				int extra = position + 46 + nameLength;
+				int extraEnd = extra + extraLength;
+				while (extra + 4 <= extraEnd) {
+					int id = directory.getShort(extra) & 0xFFFF;
+					int dataSize = directory.getShort(extra + 2) & 0xFFFF;
+					if (id == ZIP64_EXTRA_FIELD_ID) {
+						int field = extra + 4;
+						if (uncompressedSize == ZIP64_MAGIC) {
+							uncompressedSize = directory.getLong(field);
+							field += 8;
+						}
+						if (compressedSize == ZIP64_MAGIC) {
+							compressedSize = directory.getLong(field);
+							field += 8;
+						}
+						if (localHeaderOffset == ZIP64_MAGIC) {
+							localHeaderOffset = directory.getLong(field);
+						}
+						break;
+					}
+					extra += 4 + dataSize;
+				}
+				position = next;
+				if (compressedSize != uncompressedSize) {
+					continue;
+				}
+
+				ByteBuffer localHeader = read(channel, localHeaderOffset, 30);
+				if (localHeader.getInt(0) != ZIP_LOCAL_HEADER_SIGNATURE) {
+					continue;
+				}
+				long dataOffset = localHeaderOffset + 30 +
+					(localHeader.getShort(26) & 0xFFFF) +
+					(localHeader.getShort(28) & 0xFFFF);
+				if (dataOffset + compressedSize > size) {
+					continue;
+				}
+				List<Segment> segments = new ArrayList<>(1);
+				segments.add(new Segment(file, dataOffset, compressedSize));
+				index.put(new String(name, StandardCharsets.UTF_8), new StoredArchiveEntry(segments));
+			}
+		}
+		return index;
+	}
+
+	private static Map<String, StoredArchiveEntry> indexRar(File file) throws IOException, RarException {
+		Map<String, StoredArchiveEntry> index = new HashMap<>();
+		try (Archive rarFile = new Archive(new FileVolumeManager(file), null, null)) {
+			if (rarFile.isEncrypted()) {
+				return index;
+			}
+
+			// The stored entries that continue in the next volume
+			Map<String, List<Segment>> split = new HashMap<>();
+			Volume volume = rarFile.getVolume();
+			while (true) {
+				Map<String, List<Segment>> nextSplit = new HashMap<>();
+				for (FileHeader header : rarFile.getFileHeaders()) {
+					List<Segment> segments = header.isSplitBefore() ? split.get(header.getFileName()) : new ArrayList<>();
+					if (
+						segments == null ||
+						!(volume instanceof FileVolume) ||
+						header.isEncrypted() ||
+						header.getUnpMethod() != RAR_METHOD_STORE
+					) {
+						continue;
+					}
+					segments.add(new Segment(
+						((FileVolume) volume).getFile(),
+						header.getPositionInFile() + header.getHeaderSize(false),
+						header.getFullPackSize()
+					));
+					if (header.isSplitAfter()) {
+						nextSplit.put(header.getFileName(), segments);
+					} else {
+						index.put(header.getFileName(), new StoredArchiveEntry(segments));
+					}
+				}
+				if (nextSplit.isEmpty()) {
+					break;
+				}
+				volume = rarFile.getVolumeManager().nextVolume(rarFile, volume);
+				if (volume == null) {
+					break;
+				}
+				rarFile.setVolume(volume);
+				split = nextSplit;
+			}
+		}
+		return index;
+	}
+
+	private static Map<String, StoredArchiveEntry> indexSevenZip(File file) throws IOException {
+		Map<String, StoredArchiveEntry> index = new HashMap<>();
+		try (
+			RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+			IInArchive archive = SevenZip.openInArchive(null, new RandomAccessFileInStream(randomAccessFile))
+		) {
+			// The 7z handler doesn't report the item offsets, but the packed
+			// streams of the items follow each other in item order
+			boolean sevenZip = archive.getArchiveFormat() == ArchiveFormat.SEVEN_ZIP;
+			long packedPosition = 0;
+			for (int i = 0; i < archive.getNumberOfItems(); i++) {
+				Object path = archive.getProperty(i, PropID.PATH);
+				Object method = archive.getProperty(i, PropID.METHOD);
+				Object encrypted = archive.getProperty(i, PropID.ENCRYPTED);
+				Object offset = archive.getProperty(i, PropID.OFFSET);
+				Object size = archive.getProperty(i, PropID.SIZE);
+				Object packedSize = archive.getProperty(i, PropID.PACKED_SIZE);
+				long itemOffset = -1;
+				if (offset instanceof Number) {
+					itemOffset = ((Number) offset).longValue();
+				} else if (sevenZip) {
+					itemOffset = SEVEN_ZIP_SIGNATURE_HEADER_SIZE + packedPosition;
+				}
+				if (packedSize instanceof Number) {
+					packedPosition += ((Number) packedSize).longValue();
+				}
+				if (
+					!(path instanceof String) ||
+					!SEVEN_ZIP_METHOD_COPY.equals(method) ||
+					Boolean.TRUE.equals(encrypted) ||
+					itemOffset < 0 ||
+					!(size instanceof Number) ||
+					!size.equals(packedSize)
+				) {
+					continue;
+				}
+				List<Segment> segments = new ArrayList<>(1);
+				segments.add(new Segment(file, itemOffset, ((Number) size).longValue()));
+				index.put((String) path, new StoredArchiveEntry(segments));
+			}
+			if (sevenZip && !index.isEmpty() && !isSevenZipPackedSize(randomAccessFile, packedPosition)) {
+				LOGGER.debug("Unexpected layout of \"{}\", its entries will be extracted", file);
+				index.clear();
+			}
+		} catch (SevenZipException e) {
+			throw new IOException(e);
+		}
+		return index;
+	}
+
+	/**
+	 * Checks that the packed streams of the items of a 7z archive start right
+	 * after the signature header and take {@code packedSize} bytes, which is
+	 * what the computed item offsets rely on. The check is made against the
+	 * pack position in the next header, which is either the position of the
+	 * item streams or, if the header is encoded, that of the header stream
+	 * that follows the item streams.
+	 */
+	private static boolean isSevenZipPackedSize(RandomAccessFile file, long packedSize) throws IOException {
+		ByteBuffer signatureHeader = ByteBuffer.allocate(SEVEN_ZIP_SIGNATURE_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+		file.seek(0);
+		file.readFully(signatureHeader.array());
+		long nextHeaderOffset = signatureHeader.getLong(12);
+		if (nextHeaderOffset < packedSize) {
+			return false;
+		}
+		file.seek(SEVEN_ZIP_SIGNATURE_HEADER_SIZE + nextHeaderOffset);
+		int type = file.read();
+		if (type == SEVEN_ZIP_HEADER && file.read() != SEVEN_ZIP_MAIN_STREAMS_INFO) {
+			return false;
+		}
+		if ((type != SEVEN_ZIP_HEADER && type != SEVEN_ZIP_ENCODED_HEADER) || file.read() != SEVEN_ZIP_PACK_INFO) {
+			return false;
+		}
+		long packPosition = readSevenZipNumber(file);
+		return type == SEVEN_ZIP_HEADER ? packPosition == 0 : packPosition == packedSize;
+	}
+
+	private static long readSevenZipNumber(RandomAccessFile file) throws IOException {
+		int first = file.readUnsignedByte();
+		int mask = 0x80;
+		long value = 0;
+		for (int i = 0; i < 8; i++) {
+			if ((first & mask) == 0) {
+				return value + ((long) (first & (mask - 1)) << (8 * i));
+			}
+			value |= (long) file.readUnsignedByte() << (8 * i);
+			mask >>= 1;
+		}
+		return value;
+	}
+
+	private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new EOFException("Unexpected end of archive");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	@FunctionalInterface
+	private interface Indexer {
+		Map<String, StoredArchiveEntry> index() throws IOException, RarException;
+	}
+
+	/**
+	 * A contiguous part of the entry data in an archive file.
+	 */
+	public static class Segment {
+		private final File file;
+		private final long offset;
+		private final long length;
+
+		public Segment(File file, long offset, long length) {
+			this.file = file;
+			this.offset = offset;
+			this.length = length;
+		}
+
+		public File getFile() {
+			return file;
+		}
+
+		public long getOffset() {
+			return offset;
+		}
+
+		public long getLength() {
+			return length;
+		}
+	}
+
+	/**
+	 * An {@link InputStream} reading a list of {@link Segment}s as one
+	 * stream, using positional {@link FileChannel} reads so that
+	 * {@link #skip(long)} costs nothing.
+	 */
+	private static class SegmentsInputStream extends InputStream {
+		private final List<Segment> segments;
+		private final long length;
+		private FileChannel channel;
+		private int channelSegment = -1;
+		private long position;
+		private boolean closed;
+
+		public SegmentsInputStream(List<Segment> segments, long length) {
+			this.segments = segments;
+			this.length = length;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) < 1 ? -1 : b[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (closed) {
+				throw new IOException("Stream closed");
+			}
+			if (len == 0) {
+				return 0;
+			}
+			if (position >= length) {
+				return -1;
+			}
+
+			// Find the segment holding the current position
+			long segmentStart = 0;
+			int index = 0;
+			while (segmentStart + segments.get(index).length <= position) {
+				segmentStart += segments.get(index).length;
+				index++;
+			}
+			Segment segment = segments.get(index);
+			if (channelSegment != index) {
+				closeChannel();
+				channel = FileChannel.open(segment.file.toPath(), StandardOpenOption.READ);
+				channelSegment = index;
+			}
+
+			long inSegment = position - segmentStart;
+			int toRead = (int) Math.min(len, segment.length - inSegment);
+			int n = channel.read(ByteBuffer.wrap(b, off, toRead), segment.offset + inSegment);
+			if (n < 0) {
+				throw new EOFException("Unexpected end of archive volume \"" + segment.file + "\"");
+			}
+			position += n;
+			return n;
+		}
+
+		@Override
+		public long skip(long n) {
+			if (n <= 0) {
+				return 0;
+			}
+			long skipped = Math.min(n, length - position);
+			position += skipped;
+			return skipped;
+		}
+
+		@Override
+		public int available() {
+			return (int) Math.min(Integer.MAX_VALUE, length - position);
+		}
+
+		@Override
+		public void close() throws IOException {
+			closed = true;
+			closeChannel();
+		}
+
+		private void closeChannel() throws IOException {
+			if (channel != null) {
+				channel.close();
+				channel = null;
+				channelSegment = -1;
+			}
+		}
+	}
+}
@@ -0,0 +1,113 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; version 2
+ * of the License only.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package net.pms.dlna;
+
+import java.io.File;
+import java.util.concurrent.RejectedExecutionException;
+import net.pms.util.MetadataLookupExecutor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Generates video thumbnails on a bounded pool of worker threads, so that
+ * library scans and browsing don't wait for FFmpeg, and so that a fresh
+ * library gets its thumbnails several at a time instead of one by one.
+ * <p>
+ * The number of workers is half the processors, since each FFmpeg thumbnail
+ * process decodes with a single thread and the rest is left for transcoding.
+ * Thumbnails for the folders that are being browsed are generated first.
+ * Generated thumbnails are stored in the thumbnails table by
+ * {@link DLNAResource#checkThumbnail()}, and the container of the resource is
+ * updated so that renderers fetch the new thumbnail.
+ */
+public class VideoThumbnailWorkers {
+	private static final Logger LOGGER = LoggerFactory.getLogger(VideoThumbnailWorkers.class);
+	private static final int MAX_WORKERS = 8;
+	private static final MetadataLookupExecutor EXECUTOR = new MetadataLookupExecutor(
+		getWorkerCount(Runtime.getRuntime().availableProcessors()),
+		"Thumbnail Worker %d"
+	);
+
+	/**
+	 * Not to be instantiated.
+	 */
+	private VideoThumbnailWorkers() {
+	}
+
+	/**
+	 * Calculates the number of workers for the CPU budget.
+	 *
+	 * @param processors the number of available processors.
+	 * @return The number of workers.
+	 */
+	static int getWorkerCount(int processors) {
+		return Math.max(1, Math.min(MAX_WORKERS, processors / 2));
+	}
+
+	/**
+	 * Queues the generation of the thumbnail of a resource unless it's
+	 * already queued.
+	 *
+	 * @param resource the resource.
+	 * @return {@code true} if the thumbnail is generated in the background,
+	 *         {@code false} if the workers are shut down and the caller should
+	 *         generate it.
+	 */
+	public static boolean queue(RealFile resource) {
+		File file = resource.getFile();
+		try {
+			EXECUTOR.execute(file.getAbsolutePath(), file.getParentFile(), () -> generate(resource));
+			return true;
+		} catch (RejectedExecutionException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Generates the queued thumbnails of the given folder before the others.
+	 *
+	 * @param folder the folder that is being browsed.
+	 */
+	public static void prioritize(File folder) {
+		EXECUTOR.prioritize(folder);
+	}
+
+	/**
+	 * @return The number of thumbnails that are queued or being generated.
+	 */
+	public static int getPendingCount() {
+		return EXECUTOR.getPendingCount();
+	}
+
+	private static void generate(RealFile resource) {
+		DLNAMediaInfo media = resource.getMedia();
+		if (media == null || media.isThumbready()) {
+			return;
+		}
+		try {
+			resource.checkThumbnail();
+		} catch (RuntimeException e) {
+			LOGGER.debug("Error generating thumbnail for \"{}\": {}", resource.getFile(), e.getMessage());
+			LOGGER.trace("", e);
+			return;
+		}
+		if (media.getThumb() != null && resource.getParent() != null) {
+			resource.getParent().notifyContainerUpdate();
+		}
+	}
+}
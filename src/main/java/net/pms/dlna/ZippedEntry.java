@@ -34,6 +34,8 @@ public class ZippedEntry extends DLNAResource implements IPushOutput {
 	private String zeName;
 	private long length;
 	private ZipFile zipFile;
+	private StoredArchiveEntry storedEntry;
+	private boolean storedEntryResolved;
 
 	@Override
 	protected String getThumbnailURL(DLNAImageProfile profile) {
@@ -53,7 +55,20 @@ public class ZippedEntry extends DLNAResource implements IPushOutput {
 
 	@Override
 	public InputStream getInputStream() {
-		return null;
+		StoredArchiveEntry stored = getStoredEntry();
+		return stored == null ? null : stored.getInputStream();
+	}
+
+	/**
+	 * @return The location of the entry data if it is stored uncompressed,
+	 *         {@code null} otherwise.
+	 */
+	private synchronized StoredArchiveEntry getStoredEntry() {
+		if (!storedEntryResolved) {
+			storedEntry = StoredArchiveEntry.forZipEntry(file, zeName);
+			storedEntryResolved = true;
+		}
+		return storedEntry;
 	}
 
 	@Override
@@ -86,13 +101,14 @@ public class ZippedEntry extends DLNAResource implements IPushOutput {
 		return getFormat() != null;
 	}
 
-	@Override
-	public boolean isUnderlyingSeekSupported() {
-		return length() < MAX_ARCHIVE_SIZE_SEEK;
-	}
-
 	@Override
 	public void push(final OutputStream out) throws IOException {
+		StoredArchiveEntry stored = getStoredEntry();
+		if (stored != null) {
+			stored.push(out);
+			return;
+		}
+
 		Runnable r = () -> {
 			try {
 				int n = -1;
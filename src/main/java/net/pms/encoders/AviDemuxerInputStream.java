@@ -19,6 +19,7 @@ package net.pms.encoders;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Arrays;
 import net.pms.PMS;
 import net.pms.configuration.PmsConfiguration;
 import net.pms.io.*;
@@ -47,6 +48,10 @@ public class AviDemuxerInputStream extends InputStream {
 	private Thread parsing;
 	private OutputParams params;
 
+	/** The movi chunks are read into this buffer, which grows as needed */
+	private byte[] chunk = new byte[64 * 1024];
+	private final byte[] word = new byte[4];
+
 	@Override
 	public void close() throws IOException {
 		if (process != null) {
@@ -158,7 +163,18 @@ public class AviDemuxerInputStream extends InputStream {
 		LOGGER.trace("Ready to mux");
 	}
 
-	private void parseHeader() throws IOException {
+	/**
+	 * Only demuxes the stream into the given outputs when
+	 * {@link #parseHeader()} is called, without tsMuxeR. Used by tests.
+	 */
+	AviDemuxerInputStream(InputStream fin, OutputParams params, OutputStream vOut, OutputStream aOut) {
+		stream = fin;
+		this.params = params;
+		this.vOut = vOut;
+		this.aOut = aOut;
+	}
+
+	void parseHeader() throws IOException {
 		LOGGER.trace("Parsing AVI stream");
 		String id = getString(stream, 4);
 		getBytes(stream, 4);
@@ -283,7 +299,7 @@ public class AviDemuxerInputStream extends InputStream {
 			String command;
 
 			try {
-				command = getString(stream, 4);
+				command = readFourCC();
 			} catch (Exception e) {
 				LOGGER.trace("Error reading stream: " + e.getMessage());
 				break;
@@ -294,7 +310,7 @@ public class AviDemuxerInputStream extends InputStream {
 			}
 
 			command = command.toUpperCase();
-			int size = readBytes(stream, 4);
+			int size = readLe32();
 			boolean framed = false;
 
 			while (
@@ -306,9 +322,9 @@ public class AviDemuxerInputStream extends InputStream {
 					size = 4;
 				}
 
-				getBytes(stream, "RIFF".equals(command) ? 4 : size);
-				command = getString(stream, 4).toUpperCase();
-				size = readBytes(stream, 4);
+				readChunk("RIFF".equals(command) ? 4 : size);
+				command = readFourCC().toUpperCase();
+				size = readLe32();
 
 				if (("LIST".equals(command) || "RIFF".equals(command) || "JUNK".equals(command)) && (size % 2 != 0)) {
 					readByte(stream);
@@ -318,10 +334,10 @@ public class AviDemuxerInputStream extends InputStream {
 			String videoTag = streamVideoTag.substring(0, 3);
 
 			if (command.substring(0, 3).equalsIgnoreCase(videoTag) && (command.charAt(3) == 'B' || command.charAt(3) == 'C')) {
-				byte[] buffer = getBytes(stream, size);
+				byte[] buffer = readChunk(size);
 
 				if (!command.equalsIgnoreCase("IDX1")) {
-					vOut.write(buffer);
+					vOut.write(buffer, 0, size);
 					videosize += size;
 				}
 
@@ -330,7 +346,7 @@ public class AviDemuxerInputStream extends InputStream {
 
 			if (!framed) {
 				for (int i = 0; i < numberOfAudioChannels; i++) {
-					byte[] buffer = getBytes(stream, size);
+					byte[] buffer = readChunk(size);
 
 					if (!command.equalsIgnoreCase("IDX1")) {
 						aOut.write(buffer, init ? 4 : 0, init ? (size - 4) : size);
@@ -356,6 +372,56 @@ public class AviDemuxerInputStream extends InputStream {
 		vOut.close();
 	}
 
+	/**
+	 * Reads a chunk into the reusable chunk buffer. Like
+	 * {@link #getBytes(InputStream, int)}, a chunk cut short by the end of the
+	 * stream is padded with zeros.
+	 *
+	 * @param size the chunk size.
+	 * @return The chunk buffer, holding the chunk from index 0.
+	 */
+	private byte[] readChunk(int size) throws IOException {
+		if (size < 0) {
+			throw new IOException("Invalid chunk size: " + size);
+		}
+		if (chunk.length < size) {
+			chunk = new byte[Math.max(size, chunk.length * 2)];
+		}
+		readFully(stream, chunk, size);
+		return chunk;
+	}
+
+	private String readFourCC() throws IOException {
+		readFully(stream, word, 4);
+		return new String(word, 0, 4);
+	}
+
+	private int readLe32() throws IOException {
+		int read = stream.read(word, 0, 4);
+		if (read < 0) {
+			throw new IOException("End of stream");
+		}
+		for (int i = read; i < 4; i++) {
+			word[i] = (byte) readByte(stream);
+		}
+		return str2ulong(word, 0);
+	}
+
+	private static void readFully(InputStream input, byte[] buffer, int size) throws IOException {
+		int n = input.read(buffer, 0, size);
+		if (n < 0) {
+			throw new EOFException();
+		}
+		while (n < size) {
+			int u = input.read(buffer, n, size - n);
+			if (u == -1) {
+				Arrays.fill(buffer, n, size, (byte) 0);
+				break;
+			}
+			n += u;
+		}
+	}
+
 	private static String getString(InputStream input, int sz) throws IOException {
 		byte[] bb = getBytes(input, sz);
 		return new String(bb);
@@ -31,6 +31,7 @@ import net.pms.Messages;
 import net.pms.PMS;
 import net.pms.configuration.ConfigurableProgramPaths;
 import net.pms.configuration.ExecutableInfo;
+import net.pms.configuration.ExecutableInfoCache;
 import net.pms.configuration.ExternalProgramInfo;
 import net.pms.configuration.PmsConfiguration;
 import net.pms.configuration.ProgramExecutableType;
@@ -893,10 +894,15 @@ public abstract class Player {
 					return true;
 				}
 
-				ExecutableInfo result = testExecutable(executableInfo);
+				// Unchanged executables aren't tested again
+				ExecutableInfo result = ExecutableInfoCache.get(executableInfo);
 				if (result == null) {
-					// Executable test not implemented
-					return false;
+					result = testExecutable(executableInfo);
+					if (result == null) {
+						// Executable test not implemented
+						return false;
+					}
+					ExecutableInfoCache.put(result);
 				}
 				if (result.getAvailable() == null) {
 					throw new AssertionError("Player test for " + name() + " failed to return availability");
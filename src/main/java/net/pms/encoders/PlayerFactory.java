@@ -25,7 +25,14 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -37,6 +44,7 @@ import net.pms.configuration.ProgramExecutableType;
 import net.pms.configuration.ProgramExecutableType.DefaultExecutableType;
 import net.pms.dlna.DLNAResource;
 import net.pms.formats.FormatFactory;
+import net.pms.util.BasicThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -62,6 +70,12 @@ public final class PlayerFactory {
 
 	private static PmsConfiguration configuration = PMS.getConfiguration();
 
+	/**
+	 * The maximum number of transcoding engine executables tested at the same
+	 * time.
+	 */
+	private static final int MAX_TEST_THREADS = 4;
+
 	/**
 	 * This sorts {@link Player}s according to their configured priorities.
 	 */
@@ -108,24 +122,79 @@ public final class PlayerFactory {
 	 * @throws InterruptedException
 	 */
 	private static void registerPlayers() throws InterruptedException {
+		ArrayList<Player> players = new ArrayList<>();
 		if (Platform.isWindows()) {
-			registerPlayer(new AviSynthFFmpeg());
-			registerPlayer(new AviSynthMEncoder());
-		}
-
-		registerPlayer(new FFmpegAudio());
-		registerPlayer(new MEncoderVideo());
-		registerPlayer(new FFMpegVideo());
-		registerPlayer(new VLCVideo());
-		registerPlayer(new FFmpegWebVideo());
-		registerPlayer(new MEncoderWebVideo());
-		registerPlayer(new VLCWebVideo());
-		registerPlayer(new TsMuxeRVideo());
-		registerPlayer(new TsMuxeRAudio());
-		registerPlayer(new VideoLanAudioStreaming());
-		registerPlayer(new VideoLanVideoStreaming());
-		registerPlayer(new DCRaw());
-		registerPlayer(new YoutubeDl());
+			players.add(new AviSynthFFmpeg());
+			players.add(new AviSynthMEncoder());
+		}
+
+		players.add(new FFmpegAudio());
+		players.add(new MEncoderVideo());
+		players.add(new FFMpegVideo());
+		players.add(new VLCVideo());
+		players.add(new FFmpegWebVideo());
+		players.add(new MEncoderWebVideo());
+		players.add(new VLCWebVideo());
+		players.add(new TsMuxeRVideo());
+		players.add(new TsMuxeRAudio());
+		players.add(new VideoLanAudioStreaming());
+		players.add(new VideoLanVideoStreaming());
+		players.add(new DCRaw());
+		players.add(new YoutubeDl());
+
+		// Registration uses the test results
+		testPlayers(players);
+		for (Player player : players) {
+			registerPlayer(player);
+		}
+	}
+
+	/**
+	 * Tests the executables of {@code players} concurrently, since each test
+	 * starts one or more processes. {@link Player}s that share an
+	 * {@link ExternalProgramInfo} are tested in order by the same task, so
+	 * that the later ones use the results of the first.
+	 *
+	 * @param players the {@link Player}s to test.
+	 * @throws InterruptedException If the operation is interrupted.
+	 */
+	private static void testPlayers(List<Player> players) throws InterruptedException {
+		Map<ExternalProgramInfo, List<Player>> groups = new IdentityHashMap<>();
+		for (Player player : players) {
+			configuration.capitalizeEngineId(player);
+			if (!isPlayerRegistered(player.id())) {
+				groups.computeIfAbsent(player.getProgramInfo(), programInfo -> new ArrayList<>()).add(player);
+			}
+		}
+		if (groups.isEmpty()) {
+			return;
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(
+			Math.min(groups.size(), MAX_TEST_THREADS),
+			new BasicThreadFactory("Transcoding Engine Tester %d")
+		);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (List<Player> group : groups.values()) {
+				futures.add(executor.submit(() -> {
+					for (Player player : group) {
+						testPlayer(player);
+					}
+				}));
+			}
+			for (Future<?> future : futures) {
+				try {
+					future.get();
+				} catch (ExecutionException e) {
+					// The players will be tested again during registration
+					LOGGER.error("Unexpected error while testing transcoding engines: {}", e.getCause().getMessage());
+					LOGGER.trace("", e.getCause());
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
 	}
 
 	/**
@@ -151,24 +220,7 @@ public final class PlayerFactory {
 			PLAYERS.add(player);
 			player.setEnabled(configuration.isEngineEnabled(player), false);
 
-			ExternalProgramInfo programInfo = player.getProgramInfo();
-			ReentrantReadWriteLock programInfoLock = programInfo.getLock();
-			// Lock for consistency during tests, need write in case setAvailabe() needs to modify or a custom path is set
-			programInfoLock.writeLock().lock();
-			try {
-				if (configuration.isCustomProgramPathsSupported()) {
-					LOGGER.trace("Registering custom executable path for transcoding engine {}", player);
-					Path customPath = configuration.getPlayerCustomPath(player);
-					player.initCustomExecutablePath(customPath);
-				}
-
-				for (ProgramExecutableType executableType : programInfo.getExecutableTypes()) {
-					testPlayerExecutableType(player, executableType);
-				}
-				player.determineCurrentExecutableType();
-			} finally {
-				programInfoLock.writeLock().unlock();
-			}
+			testPlayer(player);
 
 			if (player.isAvailable()) {
 				LOGGER.info("Transcoding engine \"{}\" is available", player);
@@ -186,6 +238,34 @@ public final class PlayerFactory {
 		}
 	}
 
+	/**
+	 * Initializes the custom executable path of {@code player} and tests all
+	 * its executables. Executables that have already been tested aren't
+	 * tested again.
+	 *
+	 * @param player the {@link Player} to test.
+	 */
+	private static void testPlayer(Player player) {
+		ExternalProgramInfo programInfo = player.getProgramInfo();
+		ReentrantReadWriteLock programInfoLock = programInfo.getLock();
+		// Lock for consistency during tests, need write in case setAvailabe() needs to modify or a custom path is set
+		programInfoLock.writeLock().lock();
+		try {
+			if (configuration.isCustomProgramPathsSupported()) {
+				LOGGER.trace("Registering custom executable path for transcoding engine {}", player);
+				Path customPath = configuration.getPlayerCustomPath(player);
+				player.initCustomExecutablePath(customPath);
+			}
+
+			for (ProgramExecutableType executableType : programInfo.getExecutableTypes()) {
+				testPlayerExecutableType(player, executableType);
+			}
+			player.determineCurrentExecutableType();
+		} finally {
+			programInfoLock.writeLock().unlock();
+		}
+	}
+
 	/**
 	 * Runs tests on the executable of the specified
 	 * {@link ProgramExecutableType} for the specified {@link Player}.
@@ -17,16 +17,17 @@
  */
 package net.pms.gui;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 import net.pms.PMS;
 import net.pms.configuration.RendererConfiguration;
 import net.pms.newgui.LooksFrame;
 
 public class GuiManager {
-	private static final List<String> LOG_BUFFER = Collections.synchronizedList(new ArrayList<>());
 	private static final int LOG_BUFFER_SIZE = 5000;
+	private static final LogRingBuffer LOG_BUFFER = new LogRingBuffer(LOG_BUFFER_SIZE);
+
+	/** How often, in milliseconds, new log lines are passed to the GUI in one batch */
+	private static final int LOG_DRAIN_INTERVAL = 100;
 	private static IGui swingFrame;
 
 	private static EConnectionState connectionState = EConnectionState.UNKNOWN;
@@ -38,14 +39,13 @@ public class GuiManager {
 	private static int bufferMemory;
 	private static boolean reloadable = false;
 	private static boolean serverReady = false;
-	private static boolean needLogFile = false;
 
 	public static void addGui(IGui gui) {
 		if (gui != null) {
 			if (gui instanceof LooksFrame) {
-				// fill the log
-				dumpCurrentLog(gui);
 				swingFrame = gui;
+				// fill the log
+				startLogDrainThread();
 			} else {
 				return;
 			}
@@ -71,38 +71,22 @@ public class GuiManager {
 		return (swingFrame != null);
 	}
 
-	// fill gui with current log
-	private static void dumpCurrentLog(IGui gui) {
-		synchronized (LOG_BUFFER) {
-			if (!LOG_BUFFER.isEmpty()) {
-				for (String buffered : LOG_BUFFER) { // drain the buffer
-					gui.appendLog(buffered);
-				}
-			}
-		}
-	}
-
+	/**
+	 * Adds a log message to the buffer. This never blocks, the GUI receives
+	 * the new messages in batches from the log drain thread.
+	 *
+	 * @param msg the formatted log message.
+	 */
 	public static void appendLog(String msg) {
-		synchronized (LOG_BUFFER) {
-			LOG_BUFFER.add(msg);
-			if (LOG_BUFFER.size() > LOG_BUFFER_SIZE) {
-				needLogFile = true;
-				LOG_BUFFER.remove(0);
-			}
-		}
-		if (swingFrame != null) {
-			swingFrame.appendLog(msg);
-		}
+		LOG_BUFFER.add(msg);
 	}
 
 	public static String[] getLogLines() {
-		synchronized (LOG_BUFFER) {
-			return LOG_BUFFER.toArray(String[]::new);
-		}
+		return LOG_BUFFER.snapshot();
 	}
 
 	public static boolean hasMoreLogLines() {
-		return needLogFile;
+		return LOG_BUFFER.getWritten() > LOG_BUFFER_SIZE;
 	}
 
 	public static void setConnectionState(EConnectionState value) {
@@ -278,4 +262,37 @@ public class GuiManager {
 
 	private static final Thread UPDATE_MEMORY_USAGE_THREAD = new Thread(UPDATE_MEMORY_USAGE_RUNNABLE, "GuiManager Memory Usage Updater");
 
+	private static synchronized void startLogDrainThread() {
+		if (!LOG_DRAIN_THREAD.isAlive()) {
+			LOG_DRAIN_THREAD.setDaemon(true);
+			LOG_DRAIN_THREAD.start();
+		}
+	}
+
+	private static final Runnable LOG_DRAIN_RUNNABLE = () -> {
+		// Start with what is already buffered
+		long cursor = LOG_BUFFER.getOldest();
+		StringBuilder batch = new StringBuilder();
+		while (true) {
+			long dropped = LOG_BUFFER.getDropped();
+			cursor = LOG_BUFFER.drain(cursor, batch);
+			dropped = LOG_BUFFER.getDropped() - dropped;
+			if (dropped > 0) {
+				batch.insert(0, "[" + dropped + " log messages were dropped]\n");
+			}
+			if (batch.length() > 0 && swingFrame != null) {
+				swingFrame.appendLog(batch.toString());
+				batch.setLength(0);
+			}
+			try {
+				Thread.sleep(LOG_DRAIN_INTERVAL);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	};
+
+	private static final Thread LOG_DRAIN_THREAD = new Thread(LOG_DRAIN_RUNNABLE, "GuiManager Log Drainer");
+
 }
\ No newline at end of file
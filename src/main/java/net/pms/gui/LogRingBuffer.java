@@ -0,0 +1,146 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; version 2
+ * of the License only.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package net.pms.gui;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded buffer of the most recent log lines that never blocks the
+ * threads adding to it. Every line gets a sequence number; once the buffer
+ * is full a new line overwrites the oldest one. Readers identify lines by
+ * their sequence number, so a line overwritten while being read is skipped
+ * instead of being returned out of order.
+ */
+class LogRingBuffer {
+	private final int capacity;
+	private final AtomicReferenceArray<Entry> slots;
+	private final AtomicLong next = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+
+	LogRingBuffer(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+		this.capacity = capacity;
+		slots = new AtomicReferenceArray<>(capacity);
+	}
+
+	/**
+	 * Adds a line, overwriting the oldest one if the buffer is full. A writer
+	 * that was preempted long enough for the slot to be claimed again by a
+	 * newer line gives up, its line was overwritten already.
+	 *
+	 * @param line the line to add.
+	 */
+	void add(String line) {
+		long sequence = next.getAndIncrement();
+		int index = (int) (sequence % capacity);
+		Entry entry = new Entry(sequence, line);
+		Entry current;
+		do {
+			current = slots.get(index);
+			if (current != null && current.sequence > sequence) {
+				return;
+			}
+		} while (!slots.compareAndSet(index, current, entry));
+	}
+
+	/**
+	 * @return The number of lines added since the buffer was created.
+	 */
+	long getWritten() {
+		return next.get();
+	}
+
+	/**
+	 * @return The number of lines that were overwritten before
+	 *         {@link #drain} got to them.
+	 */
+	long getDropped() {
+		return dropped.get();
+	}
+
+	/**
+	 * @return The sequence number of the oldest line that is still buffered.
+	 */
+	long getOldest() {
+		return Math.max(0, next.get() - capacity);
+	}
+
+	/**
+	 * Returns the buffered lines, oldest first, without blocking writers.
+	 *
+	 * @return The lines in the buffer.
+	 */
+	String[] snapshot() {
+		long end = next.get();
+		List<String> result = new ArrayList<>((int) Math.min(end, capacity));
+		for (long sequence = Math.max(0, end - capacity); sequence < end; sequence++) {
+			Entry entry = slots.get((int) (sequence % capacity));
+			if (entry != null && entry.sequence == sequence) {
+				result.add(entry.line);
+			}
+		}
+		return result.toArray(new String[0]);
+	}
+
+	/**
+	 * Appends the lines from {@code cursor} up to the most recent one to
+	 * {@code target}. Lines that have already been overwritten are counted
+	 * as dropped.
+	 *
+	 * @param cursor the sequence number of the first line to drain.
+	 * @param target the {@link StringBuilder} to append to.
+	 * @return The cursor to use for the next call.
+	 */
+	long drain(long cursor, StringBuilder target) {
+		long end = next.get();
+		long oldest = Math.max(0, end - capacity);
+		if (cursor < oldest) {
+			dropped.addAndGet(oldest - cursor);
+			cursor = oldest;
+		}
+		while (cursor < end) {
+			Entry entry = slots.get((int) (cursor % capacity));
+			if (entry == null || entry.sequence < cursor) {
+				// Claimed but not yet written, pick it up on the next call
+				break;
+			}
+			if (entry.sequence == cursor) {
+				target.append(entry.line);
+			} else {
+				dropped.incrementAndGet();
+			}
+			cursor++;
+		}
+		return cursor;
+	}
+
+	private static class Entry {
+		private final long sequence;
+		private final String line;
+
+		private Entry(long sequence, String line) {
+			this.sequence = sequence;
+			this.line = line;
+		}
+	}
+}
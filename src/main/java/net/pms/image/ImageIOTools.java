@@ -325,5 +325,21 @@ public class ImageIOTools {
 			this.width = bufferedImage == null ? -1 : bufferedImage.getWidth();
 			this.height = bufferedImage == null ? -1 : bufferedImage.getHeight();
 		}
+
+		/**
+		 * Creates a new instance where {@code bufferedImage} might be a
+		 * reduced version of the source image.
+		 *
+		 * @param bufferedImage the decoded image.
+		 * @param imageFormat the {@link ImageFormat} of the source image.
+		 * @param width the width of the source image.
+		 * @param height the height of the source image.
+		 */
+		public ImageReaderResult(BufferedImage bufferedImage, ImageFormat imageFormat, int width, int height) {
+			this.bufferedImage = bufferedImage;
+			this.imageFormat = imageFormat;
+			this.width = width;
+			this.height = height;
+		}
 	}
 }
@@ -24,6 +24,9 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.imageio.IIOException;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import net.coobird.thumbnailator.Thumbnails;
 import net.coobird.thumbnailator.filters.Canvas;
 import net.coobird.thumbnailator.geometry.Positions;
@@ -42,6 +45,7 @@ import net.pms.util.Iso639;
 import net.pms.util.ParseException;
 import net.pms.util.ResettableInputStream;
 import net.pms.util.UnknownFormatException;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -76,6 +80,12 @@ public class ImagesUtil {
 
 	private static final HashMap<String, WeakReference<BufferedImage>> LANGUAGE_FLAGS_CACHE = new HashMap<>();
 
+	/**
+	 * How many times larger than the target resolution a reduced image is
+	 * decoded.
+	 */
+	private static final int DECODE_MARGIN = 2;
+
 	/**
 	 * Parses an image file and stores the results in the given
 	 * {@link DLNAMediaInfo}. Parsing is performed using both
@@ -913,6 +923,7 @@ public class ImagesUtil {
 			null,
 			inputImage,
 			null,
+			null,
 			width,
 			height,
 			scaleType,
@@ -970,6 +981,7 @@ public class ImagesUtil {
 			null,
 			null,
 			inputStream,
+			null,
 			width,
 			height,
 			scaleType,
@@ -1025,6 +1037,7 @@ public class ImagesUtil {
 			inputByteArray,
 			null,
 			null,
+			null,
 			width,
 			height,
 			scaleType,
@@ -1079,6 +1092,7 @@ public class ImagesUtil {
 			null,
 			inputImage,
 			null,
+			null,
 			width,
 			height,
 			scaleType,
@@ -1135,6 +1149,7 @@ public class ImagesUtil {
 			null,
 			null,
 			inputStream,
+			null,
 			width,
 			height,
 			scaleType,
@@ -1189,6 +1204,7 @@ public class ImagesUtil {
 			inputByteArray,
 			null,
 			null,
+			null,
 			width,
 			height,
 			scaleType,
@@ -1205,15 +1221,129 @@ public class ImagesUtil {
 	 * Converts and scales an image in one operation. Scaling can be with or
 	 * without padding. Preserves aspect ratio and rotates/flips the image
 	 * according to Exif orientation. Format support is limited to that of
-	 * {@link ImageIO}. Only one of the three input arguments may be used in any
+	 * {@link ImageIO}. The image is read directly from {@code inputFile}
+	 * and is only decoded at the resolution needed for the output.
+	 *
+	 * @param inputFile the source image file in a supported format.
+	 * @param width the new width or 0 to disable scaling.
+	 * @param height the new height or 0 to disable scaling.
+	 * @param scaleType the {@link ScaleType} to use when scaling.
+	 * @param outputFormat the {@link ImageFormat} to convert to or
+	 *            {@link ImageFormat#SOURCE} to preserve source format.
+	 * @param dlnaCompliant whether or not the output image should be restricted
+	 *            to DLNA compliance. This also means that the output can be
+	 *            safely cast to {@link DLNAImage}.
+	 * @param dlnaThumbnail whether or not the output image should be restricted
+	 *            to DLNA thumbnail compliance. This also means that the output
+	 *            can be safely cast to {@link DLNAThumbnail}.
+	 * @param padToSize whether padding should be used if source aspect doesn't
+	 *            match target aspect.
+	 * @param filterChain a {@link BufferedImageFilterChain} to apply during the
+	 *            operation or {@code null}.
+	 * @return The scaled and/or converted image or {@code null} if the source
+	 *         is {@code null}.
+	 * @throws IOException if the operation fails.
+	 */
+	public static Image transcodeImage(
+		File inputFile,
+		int width,
+		int height,
+		ScaleType scaleType,
+		ImageFormat outputFormat,
+		boolean dlnaCompliant,
+		boolean dlnaThumbnail,
+		boolean padToSize,
+		BufferedImageFilterChain filterChain
+	) throws IOException {
+		return transcodeImage(
+			null,
+			null,
+			null,
+			inputFile,
+			width,
+			height,
+			scaleType,
+			outputFormat,
+			null,
+			dlnaCompliant,
+			dlnaThumbnail,
+			padToSize,
+			filterChain
+		);
+	}
+
+	/**
+	 * Converts and scales an image in one operation. Scaling can be with or
+	 * without padding. Preserves aspect ratio and rotates/flips the image
+	 * according to Exif orientation. Format support is limited to that of
+	 * {@link ImageIO}. The image is read directly from {@code inputFile}
+	 * and is only decoded at the resolution needed for the output.
+	 *
+	 * @param inputFile the source image file in a supported format.
+	 * @param width the new width or 0 to disable scaling.
+	 * @param height the new height or 0 to disable scaling.
+	 * @param scaleType the {@link ScaleType} to use when scaling.
+	 * @param outputProfile the {@link DLNAImageProfile} to convert to.
+	 * @param dlnaCompliant whether or not the output image should be restricted
+	 *            to DLNA compliance. This also means that the output can be
+	 *            safely cast to {@link DLNAImage}.
+	 * @param dlnaThumbnail whether or not the output image should be restricted
+	 *            to DLNA thumbnail compliance. This also means that the output
+	 *            can be safely cast to {@link DLNAThumbnail}.
+	 * @param padToSize whether padding should be used if source aspect doesn't
+	 *            match target aspect.
+	 * @param filterChain a {@link BufferedImageFilterChain} to apply during the
+	 *            operation or {@code null}.
+	 * @return The scaled and/or converted image or {@code null} if the source
+	 *         is {@code null}.
+	 * @throws IOException if the operation fails.
+	 */
+	public static Image transcodeImage(
+		File inputFile,
+		int width,
+		int height,
+		ScaleType scaleType,
+		DLNAImageProfile outputProfile,
+		boolean dlnaCompliant,
+		boolean dlnaThumbnail,
+		boolean padToSize,
+		BufferedImageFilterChain filterChain
+	) throws IOException {
+		return transcodeImage(
+			null,
+			null,
+			null,
+			inputFile,
+			width,
+			height,
+			scaleType,
+			null,
+			outputProfile,
+			dlnaCompliant,
+			dlnaThumbnail,
+			padToSize,
+			filterChain
+		);
+	}
+
+	/**
+	 * Converts and scales an image in one operation. Scaling can be with or
+	 * without padding. Preserves aspect ratio and rotates/flips the image
+	 * according to Exif orientation. Format support is limited to that of
+	 * {@link ImageIO}. Only one of the four input arguments may be used in any
 	 * given call. Note that {@code outputProfile} overrides
 	 * {@code outputFormat}.
 	 * <p>
+	 * When the image is scaled down, it's decoded at a reduced resolution,
+	 * either by using an embedded thumbnail that is large enough or by source
+	 * subsampling, so that the full resolution image is never held in memory.
+	 * <p>
 	 * <b> This method consumes and closes {@code inputStream}. </b>
 	 *
 	 * @param inputByteArray the source image in a supported format.
 	 * @param inputImage the source {@link Image}.
 	 * @param inputStream the source image in a supported format.
+	 * @param inputFile the source image file in a supported format.
 	 * @param width the new width or 0 to disable scaling.
 	 * @param height the new height or 0 to disable scaling.
 	 * @param scaleType the {@link ScaleType} to use when scaling.
@@ -1240,6 +1370,7 @@ public class ImagesUtil {
 		byte[] inputByteArray,
 		Image inputImage,
 		InputStream inputStream,
+		File inputFile,
 		int width,
 		int height,
 		ScaleType scaleType,
@@ -1250,15 +1381,16 @@ public class ImagesUtil {
 		boolean padToSize,
 		BufferedImageFilterChain filterChain
 	) throws IOException {
-		if (inputByteArray == null && inputStream == null && inputImage == null) {
+		int inputs =
+			(inputByteArray != null ? 1 : 0) +
+			(inputImage != null ? 1 : 0) +
+			(inputStream != null ? 1 : 0) +
+			(inputFile != null ? 1 : 0);
+		if (inputs == 0) {
 			return null;
 		}
-		if (
-			(inputByteArray != null && inputImage != null) ||
-			(inputByteArray != null && inputStream != null) ||
-			(inputImage != null && inputStream != null)
-		) {
-			throw new IllegalArgumentException("Use either inputByteArray, inputImage or inputStream");
+		if (inputs > 1) {
+			throw new IllegalArgumentException("Use either inputByteArray, inputImage, inputStream or inputFile");
 		}
 
 		boolean trace = LOGGER.isTraceEnabled();
@@ -1291,7 +1423,7 @@ public class ImagesUtil {
 			}
 			LOGGER.trace(
 				"Converting {} image source to {} format and type {} using the following parameters: {}",
-				inputByteArray != null ? "byte array" : inputImage != null ? "Image" : "input stream",
+				inputByteArray != null ? "byte array" : inputImage != null ? "Image" : inputStream != null ? "input stream" : "file",
 				outputProfile != null ? outputProfile : outputFormat,
 				dlnaThumbnail ? "DLNAThumbnail" : dlnaCompliant ? "DLNAImage" : "Image",
 				sb
@@ -1327,13 +1459,16 @@ public class ImagesUtil {
 			scaleType = ScaleType.MAX;
 		}
 
-		ImageReaderResult inputResult;
-		try {
-			inputResult = ImageIOTools.read(new ByteArrayInputStream(inputByteArray));
-		} catch (IIOException e) {
-			throw new UnknownFormatException("Unable to read image format", e);
+		ExifOrientation orientation = null;
+		if (inputImage != null && inputImage.getImageInfo() != null) {
+			orientation = inputImage.getImageInfo().getExifOrientation();
 		}
 
+		DecodedImage decodedImage = decodeImage(inputByteArray, inputFile, orientation, width, height, scaleType);
+		ImageReaderResult inputResult = decodedImage.result;
+		Metadata metadata = decodedImage.metadata;
+		orientation = decodedImage.orientation;
+
 		if (inputResult.bufferedImage == null || inputResult.imageFormat == null) { // ImageIO doesn't support the image format
 			throw new UnknownFormatException("Failed to transform image because the source format is unknown");
 		}
@@ -1343,7 +1478,8 @@ public class ImagesUtil {
 		}
 
 		BufferedImage bufferedImage = inputResult.bufferedImage;
-		boolean reencode = filterChain != null && !filterChain.isEmpty();
+		// A reduced image must be encoded even if no further scaling is needed
+		boolean reencode = decodedImage.reduced || (filterChain != null && !filterChain.isEmpty());
 
 		if (outputProfile == null && dlnaCompliant) {
 			// Override output format to one valid for DLNA, defaulting to PNG
@@ -1366,24 +1502,6 @@ public class ImagesUtil {
 			}
 		}
 
-		Metadata metadata = null;
-		ExifOrientation orientation;
-		if (inputImage != null && inputImage.getImageInfo() != null) {
-			orientation = inputImage.getImageInfo().getExifOrientation();
-		} else {
-			try {
-				metadata = getMetadata(inputByteArray, inputResult.imageFormat);
-			} catch (IOException | ImageProcessingException e) {
-				LOGGER.error("Failed to read input image metadata: {}", e.getMessage());
-				LOGGER.trace("", e);
-				metadata = new Metadata();
-			}
-			if (metadata == null) {
-				metadata = new Metadata();
-			}
-			orientation = parseExifOrientation(metadata);
-		}
-
 		if (orientation != ExifOrientation.TOP_LEFT) {
 			// Rotate the image before doing all the other checks
 			BufferedImage oldBufferedImage = bufferedImage;
@@ -1393,7 +1511,9 @@ public class ImagesUtil {
 				.asBufferedImage();
 			oldBufferedImage.flush();
 			// Re-parse the metadata after rotation as these are newly generated.
-			ByteArrayOutputStream tmpOutputStream = new ByteArrayOutputStream(inputByteArray.length);
+			ByteArrayOutputStream tmpOutputStream = inputByteArray != null ?
+				new ByteArrayOutputStream(inputByteArray.length) :
+				new ByteArrayOutputStream();
 			Thumbnails.of(bufferedImage).scale(1.0d).outputFormat(outputFormat.toString()).toOutputStream(tmpOutputStream);
 			try {
 				metadata = getMetadata(tmpOutputStream.toByteArray(), outputFormat);
@@ -1541,6 +1661,9 @@ public class ImagesUtil {
 			//No resize, just convert
 			if (!reencode && inputResult.imageFormat == outputFormat) {
 				// Nothing to do, just return source
+				if (inputFile != null) {
+					inputByteArray = FileUtils.readFileToByteArray(inputFile);
+				}
 
 				// metadata is only null at this stage if inputImage != null
 				Image result;
@@ -1673,6 +1796,211 @@ public class ImagesUtil {
 		return result;
 	}
 
+	/**
+	 * Decodes the source image, at a reduced resolution if it's to be scaled
+	 * down to {@code width} x {@code height}. An embedded thumbnail is used if
+	 * the reader supports it and it's large enough, otherwise the image is
+	 * read with source subsampling. The decoded image is kept at least
+	 * {@link #DECODE_MARGIN} times the target resolution so that the final
+	 * scaling still has enough pixels to filter.
+	 *
+	 * @param inputByteArray the source image or {@code null}.
+	 * @param inputFile the source image file or {@code null}.
+	 * @param orientation the known {@link ExifOrientation} of the image or
+	 *            {@code null} to parse it from the image metadata.
+	 * @param width the target width or 0 to decode at full resolution.
+	 * @param height the target height or 0 to decode at full resolution.
+	 * @param scaleType the {@link ScaleType} to use when scaling.
+	 * @return The {@link DecodedImage}.
+	 * @throws IOException if the image can't be read.
+	 */
+	private static DecodedImage decodeImage(
+		byte[] inputByteArray,
+		File inputFile,
+		ExifOrientation orientation,
+		int width,
+		int height,
+		ScaleType scaleType
+	) throws IOException {
+		ImageInputStream stream = ImageIOTools.createImageInputStream(
+			inputFile != null ? inputFile : new ByteArrayInputStream(inputByteArray)
+		);
+		if (stream == null) {
+			throw new UnknownFormatException("Unable to read image format");
+		}
+		try {
+			Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+			if (!readers.hasNext()) {
+				throw new UnknownFormatException("Unable to find a suitable image reader");
+			}
+			ImageReader reader = readers.next();
+			try {
+				ImageFormat format = ImageFormat.toImageFormat(reader.getFormatName());
+				// Metadata is needed for embedded thumbnails
+				reader.setInput(stream, true, false);
+
+				Metadata metadata = null;
+				if (orientation == null) {
+					metadata = readMetadata(inputByteArray, inputFile, format);
+					orientation = parseExifOrientation(metadata);
+				}
+
+				int sourceWidth = reader.getWidth(0);
+				int sourceHeight = reader.getHeight(0);
+				BufferedImage bufferedImage = null;
+				if (width > 0 && height > 0 && sourceWidth > 0 && sourceHeight > 0) {
+					// The target resolution applies to the rotated image
+					boolean swap = isExifAxesSwapNeeded(orientation);
+					Dimension target;
+					if (scaleType == ScaleType.EXACT) {
+						target = new Dimension(width, height);
+					} else {
+						target = calculateScaledResolution(
+							swap ? sourceHeight : sourceWidth,
+							swap ? sourceWidth : sourceHeight,
+							scaleType,
+							width,
+							height
+						);
+					}
+					int targetWidth = swap ? target.height : target.width;
+					int targetHeight = swap ? target.width : target.height;
+
+					bufferedImage = readThumbnail(reader, sourceWidth, sourceHeight, targetWidth, targetHeight);
+					if (bufferedImage == null) {
+						int subsampling = Math.min(
+							sourceWidth / (DECODE_MARGIN * targetWidth),
+							sourceHeight / (DECODE_MARGIN * targetHeight)
+						);
+						if (subsampling > 1) {
+							ImageReadParam param = reader.getDefaultReadParam();
+							param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+							bufferedImage = reader.read(0, param);
+							if (LOGGER.isTraceEnabled()) {
+								LOGGER.trace(
+									"Decoded {}x{} image with subsampling {} to {}x{}",
+									sourceWidth,
+									sourceHeight,
+									subsampling,
+									bufferedImage.getWidth(),
+									bufferedImage.getHeight()
+								);
+							}
+						}
+					}
+				}
+				boolean reduced = bufferedImage != null;
+				if (bufferedImage == null) {
+					bufferedImage = reader.read(0, reader.getDefaultReadParam());
+				}
+				return new DecodedImage(
+					new ImageReaderResult(bufferedImage, format, sourceWidth, sourceHeight),
+					metadata,
+					orientation,
+					reduced
+				);
+			} finally {
+				reader.dispose();
+			}
+		} catch (IIOException e) {
+			throw new UnknownFormatException("Unable to read image format", e);
+		} catch (RuntimeException e) {
+			throw new ImageIORuntimeException("An error occurred while trying to read image: " + e.getMessage(), e);
+		} finally {
+			stream.close();
+		}
+	}
+
+	/**
+	 * Reads the smallest embedded thumbnail that has the same aspect ratio as
+	 * the image and is at least {@code targetWidth} x {@code targetHeight}.
+	 *
+	 * @param reader the {@link ImageReader} to read from.
+	 * @param sourceWidth the width of the image.
+	 * @param sourceHeight the height of the image.
+	 * @param targetWidth the minimum width.
+	 * @param targetHeight the minimum height.
+	 * @return The thumbnail or {@code null} if there is no suitable thumbnail.
+	 * @throws IOException if an error occurs during reading.
+	 */
+	private static BufferedImage readThumbnail(
+		ImageReader reader,
+		int sourceWidth,
+		int sourceHeight,
+		int targetWidth,
+		int targetHeight
+	) throws IOException {
+		if (!reader.readerSupportsThumbnails()) {
+			return null;
+		}
+		int index = -1;
+		int indexWidth = Integer.MAX_VALUE;
+		try {
+			for (int i = 0; i < reader.getNumThumbnails(0); i++) {
+				int thumbnailWidth = reader.getThumbnailWidth(0, i);
+				int thumbnailHeight = reader.getThumbnailHeight(0, i);
+				if (
+					thumbnailWidth >= targetWidth &&
+					thumbnailHeight >= targetHeight &&
+					thumbnailWidth < indexWidth &&
+					// Thumbnails are often letterboxed, which would show as black bars
+					Math.abs((long) thumbnailWidth * sourceHeight - (long) thumbnailHeight * sourceWidth) <=
+						Math.max(sourceWidth, sourceHeight)
+				) {
+					index = i;
+					indexWidth = thumbnailWidth;
+				}
+			}
+			if (index < 0) {
+				return null;
+			}
+			BufferedImage thumbnail = reader.readThumbnail(0, index);
+			LOGGER.trace("Using embedded {}x{} thumbnail instead of decoding the image", thumbnail.getWidth(), thumbnail.getHeight());
+			return thumbnail;
+		} catch (IIOException e) {
+			// A broken thumbnail shouldn't prevent reading the image
+			LOGGER.debug("Failed to read embedded thumbnail: {}", e.getMessage());
+			LOGGER.trace("", e);
+			return null;
+		}
+	}
+
+	private static Metadata readMetadata(byte[] inputByteArray, File inputFile, ImageFormat format) {
+		Metadata metadata;
+		try {
+			if (inputFile != null) {
+				try (InputStream inputStream = new BufferedInputStream(Files.newInputStream(inputFile.toPath()))) {
+					metadata = getMetadata(inputStream, format);
+				}
+			} else {
+				metadata = getMetadata(inputByteArray, format);
+			}
+		} catch (IOException | ImageProcessingException e) {
+			LOGGER.error("Failed to read input image metadata: {}", e.getMessage());
+			LOGGER.trace("", e);
+			metadata = null;
+		}
+		return metadata != null ? metadata : new Metadata();
+	}
+
+	/**
+	 * A simple container for the results of
+	 * {@link ImagesUtil#decodeImage}.
+	 */
+	private static class DecodedImage {
+		private final ImageReaderResult result;
+		private final Metadata metadata;
+		private final ExifOrientation orientation;
+		private final boolean reduced;
+
+		public DecodedImage(ImageReaderResult result, Metadata metadata, ExifOrientation orientation, boolean reduced) {
+			this.result = result;
+			this.metadata = metadata;
+			this.orientation = orientation;
+			this.reduced = reduced;
+		}
+	}
+
 	/**
 	 * Extracts an embedded Exif thumbnail from a {@link Metadata} instance.
 	 *
@@ -24,14 +24,20 @@ import java.io.OutputStream;
 import java.text.NumberFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Locale;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.WeakHashMap;
 import net.pms.PMS;
 import net.pms.configuration.PmsConfiguration;
 import net.pms.configuration.RendererConfiguration;
 import net.pms.gui.GuiManager;
 import net.pms.util.UMSUtils;
+import net.pms.util.metrics.Counter;
+import net.pms.util.metrics.Histogram;
+import net.pms.util.metrics.Metrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -49,6 +55,33 @@ import org.slf4j.LoggerFactory;
  */
 public class BufferedOutputFileImpl extends OutputStream implements BufferedOutputFile {
 	private static final Logger LOGGER = LoggerFactory.getLogger(BufferedOutputFileImpl.class);
+	private static final Set<BufferedOutputFileImpl> ACTIVE_BUFFERS = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<>()));
+	private static final Counter READER_STALLS = Metrics.counter(
+		"ums_transcode_buffer_reader_stalls_total",
+		"Number of reads that had to wait for the transcoding process to fill the buffer"
+	);
+	private static final Histogram READER_STALL_TIME = Metrics.histogram(
+		"ums_transcode_buffer_reader_stall_seconds",
+		"Time spent by reads waiting for the transcoding process to fill the buffer"
+	);
+
+	static {
+		Metrics.gauge(
+			"ums_transcode_buffers",
+			"Number of transcoding buffers in use",
+			null,
+			null,
+			() -> ACTIVE_BUFFERS.size()
+		);
+		Metrics.gauge(
+			"ums_transcode_buffer_fill_bytes",
+			"Data buffered ahead of the readers in all transcoding buffers",
+			null,
+			null,
+			BufferedOutputFileImpl::getTotalFillLevel
+		);
+	}
+
 	private PmsConfiguration configuration;
 
 	/**
@@ -223,6 +256,25 @@ public class BufferedOutputFileImpl extends OutputStream implements BufferedOutp
 		}
 
 		inputStreams = new ArrayList<>();
+		ACTIVE_BUFFERS.add(this);
+	}
+
+	/**
+	 * @return The amount of data buffered ahead of the current reader.
+	 */
+	private long getFillLevel() {
+		WaitBufferedInputStream input = getCurrentInputStream();
+		return writeCount - (input != null ? input.getReadCount() : 0);
+	}
+
+	private static long getTotalFillLevel() {
+		long total = 0;
+		synchronized (ACTIVE_BUFFERS) {
+			for (BufferedOutputFileImpl buffer : ACTIVE_BUFFERS) {
+				total += Math.max(0, buffer.getFillLevel());
+			}
+		}
+		return total;
 	}
 
 	@Override
@@ -299,6 +351,9 @@ public class BufferedOutputFileImpl extends OutputStream implements BufferedOutp
 
 	@Override
 	public void write(byte[] b, int off, int len) throws IOException {
+		if (writeCount == 0 && len > 0) {
+			firstByteWritten();
+		}
 		if (debugOutput != null) {
 			debugOutput.write(b, off, len);
 			debugOutput.flush();
@@ -381,6 +436,12 @@ public class BufferedOutputFileImpl extends OutputStream implements BufferedOutp
 		}
 	}
 
+	private void firstByteWritten() {
+		if (attachedThread instanceof ProcessWrapperImpl) {
+			((ProcessWrapperImpl) attachedThread).firstByteReceived();
+		}
+	}
+
 	/**
 	 * Determine a modulo value that is guaranteed to be zero or positive,
 	 * as opposed to the standard Java % operator which can return a
@@ -399,6 +460,9 @@ public class BufferedOutputFileImpl extends OutputStream implements BufferedOutp
 
 	@Override
 	public void write(int b) throws IOException {
+		if (writeCount == 0) {
+			firstByteWritten();
+		}
 		boolean bb = b % 100000 == 0;
 		WaitBufferedInputStream input = getCurrentInputStream();
 		while (bb && ((input != null && (writeCount - input.getReadCount() > bufferOverflowWarning)) || (input == null && writeCount == bufferOverflowWarning))) {
@@ -668,10 +732,12 @@ public class BufferedOutputFileImpl extends OutputStream implements BufferedOutp
 		}
 
 		int c = 0;
+		long stallStart = 0;
 		int minBufferS = firstRead ? minMemorySize : secondReadMinSize;
 		while (writeCount - readCount <= minBufferS && !eof && c < 15) {
 			if (c == 0) {
 				LOGGER.trace("Suspend Read: readCount=" + readCount + " / writeCount=" + writeCount);
+				stallStart = System.nanoTime();
 			}
 
 			c++;
@@ -685,6 +751,8 @@ public class BufferedOutputFileImpl extends OutputStream implements BufferedOutp
 
 		if (c > 0) {
 			LOGGER.trace("Resume Read: readCount=" + readCount + " / writeCount=" + writeCount);
+			READER_STALLS.increment();
+			READER_STALL_TIME.recordSince(stallStart);
 		}
 
 		if (buffer == null || !buffered) {
@@ -740,11 +808,13 @@ public class BufferedOutputFileImpl extends OutputStream implements BufferedOutp
 		}
 
 		int c = 0;
+		long stallStart = 0;
 		int minBufferS = firstRead ? minMemorySize : secondReadMinSize;
 
 		while (writeCount - readCount <= minBufferS && !eof && c < 15) {
 			if (c == 0) {
 				LOGGER.trace("Suspend Read: readCount=" + readCount + " / writeCount=" + writeCount);
+				stallStart = System.nanoTime();
 			}
 
 			c++;
@@ -758,6 +828,8 @@ public class BufferedOutputFileImpl extends OutputStream implements BufferedOutp
 
 		if (c > 0) {
 			LOGGER.trace("Resume Read: readCount=" + readCount + " / writeCount=" + writeCount);
+			READER_STALLS.increment();
+			READER_STALL_TIME.recordSince(stallStart);
 		}
 
 		if (buffer == null || !buffered) {
@@ -865,6 +937,7 @@ public class BufferedOutputFileImpl extends OutputStream implements BufferedOutp
 		}
 
 		buffered = false;
+		ACTIVE_BUFFERS.remove(this);
 
 		if (renderer != null) {
 			renderer.setBuffer(0);
@@ -24,6 +24,7 @@ import java.io.InputStream;
 import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.util.ArrayList;
+import net.pms.util.ByteArrayPool;
 import net.pms.util.DTSAudioOutputStream;
 import net.pms.util.H264AnnexBInputStream;
 import net.pms.util.IEC61937AudioOutputStream;
@@ -53,7 +54,7 @@ public class PipeIPCProcess extends Thread implements ProcessWrapper {
 
 	@Override
 	public void run() {
-		byte[] b = new byte[512 * 1024];
+		byte[] b = ByteArrayPool.acquire(512 * 1024);
 		int n = -1;
 		InputStream in = null;
 		OutputStream out = null;
@@ -114,6 +115,7 @@ public class PipeIPCProcess extends Thread implements ProcessWrapper {
 				LOGGER.debug("Error closing IPC pipe streams: {}" + e.getMessage());
 				LOGGER.trace("", e);
 			}
+			ByteArrayPool.release(b);
 		}
 	}
 
@@ -24,11 +24,15 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 import net.pms.PMS;
 import net.pms.encoders.AviDemuxerInputStream;
 import net.pms.util.ProcessUtil;
+import net.pms.util.metrics.Histogram;
+import net.pms.util.metrics.Metrics;
+import net.pms.util.metrics.Metrics.Family;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,6 +42,11 @@ public class ProcessWrapperImpl extends Thread implements ProcessWrapper {
 	/** FONTCONFIG_PATH environment variable name */
 	private static final String FONTCONFIG_PATH = "FONTCONFIG_PATH";
 	private static final AtomicInteger PROCESS_COUNTER = new AtomicInteger(1);
+	private static final Family<Histogram> SPAWN_TO_FIRST_BYTE = Metrics.histograms(
+		"ums_transcode_first_byte_seconds",
+		"Time from starting a transcoding process to the first byte of its output",
+		"executable"
+	);
 
 	private Process process;
 	private OutputConsumer stdoutConsumer;
@@ -52,6 +61,8 @@ public class ProcessWrapperImpl extends Thread implements ProcessWrapper {
 	private boolean keepStderr;
 	private volatile boolean success;
 	private final boolean useByteArrayStdConsumer;
+	private final String executableName;
+	private volatile long spawnNanos;
 
 	@Override
 	public String toString() {
@@ -110,6 +121,7 @@ public class ProcessWrapperImpl extends Thread implements ProcessWrapper {
 		}
 
 		setName(threadName + "-" + PROCESS_COUNTER.getAndIncrement());
+		executableName = threadName.toLowerCase(Locale.ROOT).replaceFirst("\\.exe$", "");
 
 		File exec = new File(cmdArray[0]);
 
@@ -124,6 +136,18 @@ public class ProcessWrapperImpl extends Thread implements ProcessWrapper {
 		attachedProcesses = new ArrayList<>();
 	}
 
+	/**
+	 * Called by the output buffer when the process has produced its first
+	 * byte of output.
+	 */
+	void firstByteReceived() {
+		long start = spawnNanos;
+		if (start != 0) {
+			spawnNanos = 0;
+			SPAWN_TO_FIRST_BYTE.labels(executableName).recordSince(start);
+		}
+	}
+
 	public void attachProcess(ProcessWrapper process) {
 		attachedProcesses.add(process);
 	}
@@ -184,6 +208,7 @@ public class ProcessWrapperImpl extends Thread implements ProcessWrapper {
 			// separate stdout and stderr and can merge them by uncommenting the
 			// following line:
 			// pb.redirectErrorStream(true);
+			spawnNanos = System.nanoTime();
 			process = pb.start();
 			PMS.get().currentProcesses.add(process);
 
@@ -118,6 +118,16 @@ public class SizeLimitInputStream extends InputStream {
 		return maxBytesToRead;
 	}
 
+	/**
+	 * Get the stream that is being limited, for callers that can transfer
+	 * the remaining bytes more efficiently than by reading them.
+	 *
+	 * @return The underlying input stream.
+	 */
+	public InputStream getWrappedInputStream() {
+		return in;
+	}
+
 	/**
 	 * Create a new size limit input stream from another stream given a size
 	 * limit.
@@ -59,7 +59,7 @@ public class GuiManagerAppender<E> extends UnsynchronizedAppenderBase<E> {
 	 * @see ch.qos.logback.core.UnsynchronizedAppenderBase#append(java.lang.Object)
 	 */
 	@Override
-	protected synchronized void append(E eventObject) {
+	protected void append(E eventObject) {
 		String msg = new String(encoder.encode(eventObject), StandardCharsets.UTF_8);
 		GuiManager.appendLog(msg);
 	}
@@ -0,0 +1,90 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; version 2
+ * of the License only.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package net.pms.network;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * An {@link OutputStream} reporting the time spent in blocking writes to a
+ * {@link TransferMeter}.
+ */
+public class MeteredOutputStream extends FilterOutputStream {
+	/** The size of each zero-copy transfer, small enough for regular meter updates */
+	private static final long TRANSFER_CHUNK_SIZE = 8 * 1024 * 1024;
+
+	private final TransferMeter meter;
+
+	public MeteredOutputStream(OutputStream out, InetAddress receiver) {
+		super(out);
+		meter = SpeedStats.createMeter(receiver);
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		meter.writeStarted();
+		out.write(b);
+		meter.writeCompleted(1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		meter.writeStarted();
+		out.write(b, off, len);
+		meter.writeCompleted(len);
+	}
+
+	/**
+	 * Flushes this stream and transfers a region of a file directly to the
+	 * channel this stream writes to, without copying the bytes through the
+	 * heap.
+	 *
+	 * @param source the {@link FileChannel} to transfer from.
+	 * @param position the position in {@code source} to start at.
+	 * @param count the maximum number of bytes to transfer.
+	 * @param target the {@link WritableByteChannel} of the underlying stream.
+	 * @return The number of bytes transferred, less than {@code count} if the
+	 *         end of the file was reached.
+	 * @throws IOException If an error occurs.
+	 */
+	public long transferFrom(FileChannel source, long position, long count, WritableByteChannel target) throws IOException {
+		flush();
+		long transferred = 0;
+		while (transferred < count) {
+			meter.writeStarted();
+			long bytes = source.transferTo(position + transferred, Math.min(count - transferred, TRANSFER_CHUNK_SIZE), target);
+			meter.writeCompleted(bytes);
+			if (bytes <= 0) {
+				break;
+			}
+			transferred += bytes;
+		}
+		return transferred;
+	}
+
+	@Override
+	public void flush() throws IOException {
+		meter.writeStarted();
+		out.flush();
+		meter.writeCompleted(0);
+	}
+}
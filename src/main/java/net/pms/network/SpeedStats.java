@@ -18,227 +18,140 @@
 package net.pms.network;
 
 import java.net.InetAddress;
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
-import net.pms.io.BasicSystemUtils;
-import net.pms.io.OutputParams;
-import net.pms.io.ProcessWrapperImpl;
-import net.pms.io.SystemUtils;
-import net.pms.util.UMSUtils;
+import net.pms.PMS;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Network speed tester class. This can be used in an asynchronous way, as it returns Future objects.
- *
- * {@link Future<Integer>} speed = SpeedStats.getSpeedInMBits(addr);
- *
- * @see Future
- *
- * @author zsombor <gzsombor@gmail.com>
- *
+ * Passive network throughput estimator.
+ * <p>
+ * Instead of probing the renderers, the media servers report the data they
+ * send to each renderer through a {@link TransferMeter}, and a smoothed
+ * bandwidth estimate is kept per renderer address. The estimate follows
+ * increases quickly and decreases more slowly, so a renderer that
+ * temporarily reads slower than its link allows doesn't immediately drag
+ * down the estimate, while a link change (e.g. a Wi-Fi renderer switching
+ * access point) is still followed within a few samples.
  */
 public class SpeedStats {
-	private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool();
-
 	private static final Logger LOGGER = LoggerFactory.getLogger(SpeedStats.class);
 
-	private static final Map<String, Future<Integer>> SPEED_STATS = new HashMap<>();
+	/** The weight of a sample higher than the current estimate. */
+	private static final double RISING_WEIGHT = 0.5;
+
+	/** The weight of a sample lower than the current estimate. */
+	private static final double FALLING_WEIGHT = 0.125;
+
+	/** Estimates not updated for this long are discarded. */
+	private static final long ESTIMATE_EXPIRATION_NANOS = TimeUnit.MINUTES.toNanos(30);
+
+	private static final Map<String, Estimate> ESTIMATES = new ConcurrentHashMap<>();
 
 	/**
-	 * Returns the estimated networks throughput for the given IP address in
-	 * Mb/s from the cache as a {@link Future}. If no value is cached for
-	 * {@code addr}, {@code null} is returned.
-	 *
-	 * @param addr the {@link InetAddress} to lookup.
-	 * @return The {@link Future} with the estimated network throughput or
-	 *         {@code null}.
+	 * This class is not meant to be instantiated.
 	 */
-	public static Future<Integer> getSpeedInMBitsStored(InetAddress addr) {
-		// only look in the store
-		// if no pings are done resort to conf values
-		synchronized (SPEED_STATS) {
-			return SPEED_STATS.get(addr.getHostAddress());
-		}
+	private SpeedStats() {
 	}
 
 	/**
-	 * Return the network throughput for the given IP address in MBits. It is calculated in the background, and cached,
-	 * so only a reference is given to the result, which can be retrieved by calling the get() method on it.
+	 * Creates a {@link TransferMeter} reporting to the estimate of the given
+	 * address.
 	 *
-	 * @param addr
-	 * @param rendererName
-	 *
-	 * @return The network throughput
+	 * @param addr the {@link InetAddress} of the receiver.
+	 * @return The new {@link TransferMeter}.
 	 */
-	public static Future<Integer> getSpeedInMBits(InetAddress addr, String rendererName) {
-		synchronized (SPEED_STATS) {
-			Future<Integer> value = SPEED_STATS.get(addr.getHostAddress());
-			if (value != null) {
-				return value;
-			}
-			value = EXECUTOR.submit(new MeasureSpeed(addr, rendererName));
-			SPEED_STATS.put(addr.getHostAddress(), value);
-			return value;
-		}
+	public static TransferMeter createMeter(InetAddress addr) {
+		return new TransferMeter(addr.getHostAddress());
 	}
 
-	private static class MeasureSpeed implements Callable<Integer> {
-		private final InetAddress addr;
-		private final String rendererName;
+	/**
+	 * Returns the estimated network throughput for the given IP address in
+	 * Mb/s.
+	 *
+	 * @param addr the {@link InetAddress} to lookup.
+	 * @return The estimated network throughput or {@code -1} if there is no
+	 *         (recent) estimate for {@code addr}.
+	 */
+	public static int getSpeedInMBits(InetAddress addr) {
+		return getSpeedInMBits(addr.getHostAddress());
+	}
 
-		public MeasureSpeed(InetAddress addr, String rendererName) {
-			this.addr = addr;
-			this.rendererName = rendererName != null ? rendererName.replaceAll("\n", "") : "Unknown";
+	static int getSpeedInMBits(String hostAddress) {
+		Estimate estimate = ESTIMATES.get(hostAddress);
+		if (estimate == null) {
+			return -1;
 		}
-
-		@Override
-		public Integer call() throws Exception {
-			try {
-				return doCall();
-			} catch (Exception e) {
-				LOGGER.warn("Error measuring network throughput : " + e.getMessage(), e);
-				throw e;
+		synchronized (estimate) {
+			if (System.nanoTime() - estimate.updated > ESTIMATE_EXPIRATION_NANOS) {
+				ESTIMATES.remove(hostAddress, estimate);
+				return -1;
 			}
+			int speedInMbits = (int) (estimate.bitsPerSecond / 1000000);
+			return speedInMbits < 1 ? -1 : speedInMbits;
 		}
+	}
 
-		private Integer doCall() throws Exception {
-			String ip = addr.getHostAddress();
-			LOGGER.info("Checking IP: {} for {}", ip, rendererName);
-			// calling the canonical host name the first time is slow, so we call it in a separate thread
-			String hostname = addr.getCanonicalHostName();
-			synchronized (SPEED_STATS) {
-				Future<Integer> otherTask = SPEED_STATS.get(hostname);
-				if (otherTask != null) {
-					// wait a little bit
-					try {
-						// probably we are waiting for ourself to finish the work...
-						Integer value = otherTask.get(200, TimeUnit.MILLISECONDS);
-						// if the other task already calculated the speed, we get the result,
-						// unless we do it now
-						if (value != null) {
-							return value;
-						}
-					} catch (TimeoutException e) {
-						LOGGER.trace("We couldn't get the value based on the canonical name");
-					}
-				}
-			}
-
-			if (!ip.equals(hostname)) {
-				LOGGER.info("Renderer {} found on address: {} ({})", rendererName, hostname, ip);
-			} else {
-				LOGGER.info("Renderer {} found on address: {}", rendererName, ip);
-			}
-
-			int[] sizes = {512, 1476, 9100, 32000, 64000};
-			double bps = 0;
-			int cnt = 0;
+	/**
+	 * Forgets all estimates.
+	 */
+	public static void reset() {
+		ESTIMATES.clear();
+	}
 
-			for (int i = 0; i < sizes.length; i++) {
-				double p = doPing(sizes[i]);
-				if (p != 0) {
-					bps += p;
-					cnt++;
-				}
-			}
-			double speedInMbits1 = bps / (cnt * 1000000);
-			LOGGER.info("Renderer {} has an estimated network speed of {} Mb/s", rendererName, speedInMbits1);
-			int speedInMbits = (int) speedInMbits1;
-			if (speedInMbits1 < 1.0) {
-				speedInMbits = -1;
-			}
-			synchronized (SPEED_STATS) {
-				CompletedFuture<Integer> result = new CompletedFuture<>(speedInMbits);
-				// update the statistics with a computed future value
-				SPEED_STATS.put(ip, result);
-				SPEED_STATS.put(hostname, result);
+	/**
+	 * Adds a throughput sample to the estimate of the given address.
+	 *
+	 * @param hostAddress the address of the receiver.
+	 * @param bitsPerSecond the measured throughput.
+	 * @param lowerBound {@code true} if the transfer wasn't limited by the
+	 *            network, so that the real throughput is at least
+	 *            {@code bitsPerSecond}.
+	 */
+	static void addSample(String hostAddress, double bitsPerSecond, boolean lowerBound) {
+		if (bitsPerSecond <= 0 || Double.isInfinite(bitsPerSecond) || Double.isNaN(bitsPerSecond)) {
+			return;
+		}
+		Estimate estimate;
+		if (lowerBound) {
+			// A lower bound alone would lock the estimate at the rate the
+			// transcoder happened to produce, so only refine known estimates
+			estimate = ESTIMATES.get(hostAddress);
+			if (estimate == null) {
+				return;
 			}
-			return speedInMbits;
+		} else {
+			estimate = ESTIMATES.computeIfAbsent(hostAddress, key -> new Estimate());
 		}
-
-		private double doPing(int size) {
-			// let's get that speed
-			OutputParams op = new OutputParams(null);
-			op.setLog(true);
-			op.setMaxBufferSize(1);
-			SystemUtils sysUtil = BasicSystemUtils.instance;
-			final ProcessWrapperImpl pw = new ProcessWrapperImpl(sysUtil.getPingCommand(addr.getHostAddress(), 5, size), op, true, false);
-			Runnable r = () -> {
-				UMSUtils.sleep(3000);
-				pw.stopProcess();
-			};
-
-			Thread failsafe = new Thread(r, "SpeedStats Failsafe");
-			failsafe.start();
-			pw.runInSameThread();
-			List<String> ls = pw.getOtherResults();
-			double time = 0;
-			int c = 0;
-			String timeString;
-
-			for (String line : ls) {
-				timeString = sysUtil.parsePingLine(line);
-				if (timeString == null) {
-					continue;
-				}
-				try {
-					time += Double.parseDouble(timeString);
-					c++;
-				} catch (NumberFormatException e) {
-					// no big deal
-					LOGGER.debug("Could not estimate network speed from time: \"" + timeString + "\"");
+		synchronized (estimate) {
+			long now = System.nanoTime();
+			if (estimate.bitsPerSecond == 0 || now - estimate.updated > ESTIMATE_EXPIRATION_NANOS) {
+				if (lowerBound) {
+					return;
 				}
+				estimate.bitsPerSecond = bitsPerSecond;
+			} else if (bitsPerSecond > estimate.bitsPerSecond) {
+				estimate.bitsPerSecond += RISING_WEIGHT * (bitsPerSecond - estimate.bitsPerSecond);
+			} else if (!lowerBound) {
+				estimate.bitsPerSecond += FALLING_WEIGHT * (bitsPerSecond - estimate.bitsPerSecond);
 			}
-
-			if (c > 0) {
-				time /= c;
-				int frags = sysUtil.getPingPacketFragments(size);
-				LOGGER.debug("Estimated speed from ICMP packet size {} in {} fragment(s) is {} bit/s", size, frags, ((size + 8 + (frags * 32)) * 8000 * 2) / time);
-				return ((size + 8 + (frags * 32)) * 8000 * 2) / time;
+			estimate.updated = now;
+			if (PMS.getConfiguration() != null && PMS.getConfiguration().isSpeedDbg()) {
+				LOGGER.debug(
+					"Throughput sample for {}: {} Mb/s{}, estimate is now {} Mb/s",
+					hostAddress,
+					String.format("%.1f", bitsPerSecond / 1000000),
+					lowerBound ? " (lower bound)" : "",
+					String.format("%.1f", estimate.bitsPerSecond / 1000000)
+				);
 			}
-			return time;
 		}
 	}
 
-	static class CompletedFuture<X> implements Future<X> {
-		X value;
-
-		public CompletedFuture(X value) {
-			this.value = value;
-		}
-
-		@Override
-		public boolean cancel(boolean mayInterruptIfRunning) {
-			return false;
-		}
-
-		@Override
-		public boolean isCancelled() {
-			return false;
-		}
-
-		@Override
-		public boolean isDone() {
-			return true;
-		}
-
-		@Override
-		public X get() throws InterruptedException, ExecutionException {
-			return value;
-		}
-
-		@Override
-		public X get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
-			return value;
-		}
+	private static class Estimate {
+		private double bitsPerSecond;
+		private long updated;
 	}
 }
@@ -0,0 +1,114 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; version 2
+ * of the License only.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package net.pms.network;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the data sent over one connection and reports throughput samples
+ * to {@link SpeedStats}.
+ * <p>
+ * The sender calls {@link #writeStarted()} when a write is handed to the
+ * network and {@link #writeCompleted(long)} when it has been accepted. The
+ * time during which at least one write is pending is considered "busy" time.
+ * When most of the time is spent waiting for the network, the throughput is
+ * the transferred amount divided by the busy time. Otherwise the sender is
+ * the limiting factor (e.g. a transcoder producing data at the playback
+ * rate), and the measured throughput is only reported as a lower bound.
+ * <p>
+ * This class is thread-safe.
+ */
+public class TransferMeter {
+
+	/** The minimum amount of data to base a sample on. */
+	static final long SAMPLE_MIN_BYTES = 1024 * 1024;
+
+	/** The minimum duration to base a sample on. */
+	static final long SAMPLE_MIN_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+	/** Windows idle for longer than this are discarded. */
+	private static final long WINDOW_MAX_IDLE_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+	private final String hostAddress;
+	private int pending;
+	private long busyStart;
+	private long busyNanos;
+	private long windowStart;
+	private long windowBytes;
+	private long lastActivity;
+
+	TransferMeter(String hostAddress) {
+		this.hostAddress = hostAddress;
+	}
+
+	/**
+	 * Registers that a write has been handed to the network.
+	 */
+	public void writeStarted() {
+		writeStarted(System.nanoTime());
+	}
+
+	synchronized void writeStarted(long now) {
+		if (pending == 0 && windowStart != 0 && now - lastActivity > WINDOW_MAX_IDLE_NANOS) {
+			// The window would mostly consist of the pause, start over
+			resetWindow();
+		}
+		if (windowStart == 0) {
+			windowStart = now;
+		}
+		if (pending++ == 0) {
+			busyStart = now;
+		}
+		lastActivity = now;
+	}
+
+	/**
+	 * Registers that a write has been accepted by the network.
+	 *
+	 * @param bytes the number of bytes written.
+	 */
+	public void writeCompleted(long bytes) {
+		writeCompleted(bytes, System.nanoTime());
+	}
+
+	synchronized void writeCompleted(long bytes, long now) {
+		if (pending == 0) {
+			return;
+		}
+		windowBytes += bytes;
+		if (--pending == 0) {
+			busyNanos += now - busyStart;
+		}
+		lastActivity = now;
+
+		long wallNanos = now - windowStart;
+		if (pending > 0 || windowBytes < SAMPLE_MIN_BYTES || wallNanos < SAMPLE_MIN_NANOS) {
+			return;
+		}
+		boolean networkLimited = busyNanos * 2 >= wallNanos;
+		long nanos = networkLimited ? busyNanos : wallNanos;
+		SpeedStats.addSample(hostAddress, windowBytes * 8d * TimeUnit.SECONDS.toNanos(1) / nanos, !networkLimited);
+		resetWindow();
+	}
+
+	private void resetWindow() {
+		windowStart = 0;
+		windowBytes = 0;
+		busyNanos = 0;
+	}
+}
@@ -0,0 +1,561 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; version 2
+ * of the License only.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package net.pms.network.mediaserver;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import net.pms.dlna.DLNAResource;
+import net.pms.util.BasicThreadFactory;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultHttpRequestRetryHandler;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the GENA event subscriptions of the built-in media servers and sends
+ * their event messages.
+ * <p>
+ * Content directory changes are moderated: the container update IDs reported
+ * while an event is pending are coalesced, so a subscriber receives at most
+ * one event per moderation interval, listing each changed container once with
+ * its latest update ID. Events are sent over pooled HTTP/1.1 connections that
+ * are kept open between notifications.
+ * <p>
+ * Each subscription has its own queue of events, sent in order by one of a
+ * small pool of sender threads, so a subscriber that doesn't answer only
+ * delays its own events.
+ */
+public class GENAEventNotifier {
+	private static final Logger LOGGER = LoggerFactory.getLogger(GENAEventNotifier.class);
+
+	/**
+	 * The minimum time between two content directory events. ContentDirectory
+	 * moderates ContainerUpdateIDs and SystemUpdateID to 0.5 Hz.
+	 */
+	public static final long MODERATION_INTERVAL = 2000;
+
+	/**
+	 * Requirement [7.2.22.1]: UPnP devices must send events to all properly
+	 * subscribed UPnP control points. The device must enforce a subscription
+	 * TIMEOUT value of 5 minutes.
+	 */
+	public static final int SUBSCRIPTION_TIMEOUT = 300;
+
+	private static final String CONTENT_DIRECTORY = "content_directory";
+	private static final String CONNECTION_MANAGER = "connection_manager";
+	private static final String MEDIA_RECEIVER_REGISTRAR = "x_ms_mediareceiverregistrar";
+	private static final Pattern CALLBACK_PATTERN = Pattern.compile("<([^>]+)>");
+	private static final int CONNECT_TIMEOUT = 5000;
+	private static final int SOCKET_TIMEOUT = 15000;
+	private static final int MAX_SENDERS = 4;
+
+	/**
+	 * The number of events queued for a subscriber that doesn't keep up
+	 * before the oldest are dropped
+	 */
+	private static final int MAX_QUEUED_EVENTS = 16;
+
+	private static GENAEventNotifier instance;
+
+	private final long moderationInterval;
+	private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+	private final ScheduledThreadPoolExecutor executor;
+	private final ThreadPoolExecutor senders;
+	private final PoolingHttpClientConnectionManager connectionManager;
+	private final CloseableHttpClient httpClient;
+
+	// Guarded by this
+	private final Map<String, Integer> pendingContainerUpdates = new LinkedHashMap<>();
+	private boolean systemUpdatePending;
+	private ScheduledFuture<?> pendingEvent;
+	private long lastEventTime;
+	private String containerUpdateIds = "";
+
+	GENAEventNotifier(long moderationInterval) {
+		this.moderationInterval = moderationInterval;
+		// Only times the moderated events, sending them is up to the senders
+		executor = new ScheduledThreadPoolExecutor(1, new BasicThreadFactory("GENA Event Notifier"));
+		executor.setKeepAliveTime(30, TimeUnit.SECONDS);
+		executor.allowCoreThreadTimeOut(true);
+		senders = new ThreadPoolExecutor(
+			MAX_SENDERS,
+			MAX_SENDERS,
+			30,
+			TimeUnit.SECONDS,
+			new LinkedBlockingQueue<>(),
+			new BasicThreadFactory("GENA Event Sender %d")
+		);
+		senders.allowCoreThreadTimeOut(true);
+		connectionManager = new PoolingHttpClientConnectionManager(30, TimeUnit.SECONDS);
+		connectionManager.setMaxTotal(20);
+		connectionManager.setDefaultMaxPerRoute(2);
+		httpClient = HttpClients.custom()
+			.setConnectionManager(connectionManager)
+			.setDefaultRequestConfig(RequestConfig.custom()
+				.setConnectTimeout(CONNECT_TIMEOUT)
+				.setSocketTimeout(SOCKET_TIMEOUT)
+				.setExpectContinueEnabled(false)
+				.build())
+			// A resent event would repeat its sequence number
+			.setRetryHandler(new DefaultHttpRequestRetryHandler(0, false))
+			.build();
+	}
+
+	/**
+	 * @return the notifier shared by the media servers.
+	 */
+	public static synchronized GENAEventNotifier getInstance() {
+		if (instance == null) {
+			instance = new GENAEventNotifier(MODERATION_INTERVAL);
+		}
+		return instance;
+	}
+
+	/**
+	 * Adds a subscription. Its initial event is only sent by
+	 * {@link #sendInitialEvent}, since the subscriber rejects events for a
+	 * SID it hasn't received yet.
+	 *
+	 * @param callback the CALLBACK header of the SUBSCRIBE request.
+	 * @param service the path of the service that is subscribed to.
+	 * @return the new subscription or {@code null} if the callback isn't a
+	 *         valid HTTP URL.
+	 */
+	public Subscription subscribe(String callback, String service) {
+		URI uri = parseCallback(callback);
+		if (uri == null) {
+			LOGGER.debug("Ignoring subscription to \"{}\" with invalid callback \"{}\"", service, callback);
+			return null;
+		}
+		Subscription subscription = new Subscription(uri, service);
+		subscriptions.put(subscription.sid, subscription);
+		LOGGER.trace("Added subscription {} to \"{}\" for {}", subscription.sid, service, uri);
+		return subscription;
+	}
+
+	/**
+	 * Sends the initial event of a new subscription. Call this once the
+	 * response to the SUBSCRIBE request, with the SID, has been sent.
+	 *
+	 * @param subscription the subscription returned by {@link #subscribe}.
+	 */
+	public void sendInitialEvent(Subscription subscription) {
+		String body = getInitialEvent(subscription.service);
+		if (body != null) {
+			queue(subscription, new Event(body));
+		}
+	}
+
+	/**
+	 * Renews a subscription. Like new subscriptions, it is extended by
+	 * {@link #SUBSCRIPTION_TIMEOUT} regardless of the requested duration.
+	 *
+	 * @param sid the SID header of the SUBSCRIBE request.
+	 * @return the subscription or {@code null} if it doesn't exist or has
+	 *         expired.
+	 */
+	public Subscription renew(String sid) {
+		Subscription subscription = sid == null ? null : subscriptions.get(sid.trim());
+		if (subscription == null || subscription.isExpired()) {
+			return null;
+		}
+		subscription.renew();
+		return subscription;
+	}
+
+	/**
+	 * Removes a subscription.
+	 *
+	 * @param sid the SID header of the UNSUBSCRIBE request.
+	 * @return whether the subscription existed.
+	 */
+	public boolean unsubscribe(String sid) {
+		return sid != null && subscriptions.remove(sid.trim()) != null;
+	}
+
+	/**
+	 * Queues a ContainerUpdateIDs change for the next content directory
+	 * event. Earlier pending updates of the same container are replaced.
+	 *
+	 * @param containerId the object ID of the container.
+	 * @param updateId the new update ID of the container.
+	 */
+	public synchronized void containerUpdated(String containerId, int updateId) {
+		pendingContainerUpdates.put(containerId, updateId);
+		scheduleContentDirectoryEvent();
+	}
+
+	/**
+	 * Queues a SystemUpdateID change for the next content directory event.
+	 */
+	public synchronized void systemUpdated() {
+		systemUpdatePending = true;
+		scheduleContentDirectoryEvent();
+	}
+
+	/**
+	 * @return the value of ContainerUpdateIDs in the last content directory
+	 *         event.
+	 */
+	public synchronized String getContainerUpdateIds() {
+		return containerUpdateIds;
+	}
+
+	/**
+	 * Stops sending events and closes the connections.
+	 */
+	void shutdown() {
+		executor.shutdownNow();
+		senders.shutdownNow();
+		try {
+			httpClient.close();
+		} catch (IOException e) {
+			LOGGER.trace("", e);
+		}
+	}
+
+	private void scheduleContentDirectoryEvent() {
+		if (pendingEvent == null) {
+			// Collect the rest of a burst of changes even after a quiet period
+			long delay = Math.max(lastEventTime + moderationInterval - System.currentTimeMillis(), moderationInterval / 4);
+			pendingEvent = executor.schedule(this::sendContentDirectoryEvent, delay, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private void sendContentDirectoryEvent() {
+		Map<String, Integer> containerUpdates;
+		synchronized (this) {
+			pendingEvent = null;
+			lastEventTime = System.currentTimeMillis();
+			if (pendingContainerUpdates.isEmpty() && !systemUpdatePending) {
+				return;
+			}
+			containerUpdates = new LinkedHashMap<>(pendingContainerUpdates);
+			if (!containerUpdates.isEmpty()) {
+				containerUpdateIds = getUpdateIds(containerUpdates);
+			}
+			pendingContainerUpdates.clear();
+			systemUpdatePending = false;
+		}
+
+		int systemUpdateId = DLNAResource.getSystemUpdateId();
+		for (Subscription subscription : getSubscriptions(CONTENT_DIRECTORY)) {
+			queue(subscription, new Event(containerUpdates, systemUpdateId));
+		}
+	}
+
+	/**
+	 * @return the value of ContainerUpdateIDs listing the given containers.
+	 */
+	private static String getUpdateIds(Map<String, Integer> containerUpdates) {
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<String, Integer> entry : containerUpdates.entrySet()) {
+			if (sb.length() > 0) {
+				sb.append(',');
+			}
+			sb.append(entry.getKey()).append(',').append(entry.getValue());
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Queues an event for a subscription, and starts sending its queue if
+	 * no sender is already doing so. If the oldest event is dropped, its
+	 * container updates are passed on to the next content directory event,
+	 * so the subscriber still learns about every changed container.
+	 */
+	private void queue(Subscription subscription, Event event) {
+		synchronized (subscription.queue) {
+			if (subscription.queue.size() >= MAX_QUEUED_EVENTS) {
+				Event dropped = subscription.queue.poll();
+				LOGGER.debug("Subscriber {} doesn't keep up, dropping its oldest event", subscription.callback);
+				if (dropped.containerUpdates != null && !dropped.containerUpdates.isEmpty()) {
+					Event next = event;
+					for (Event queued : subscription.queue) {
+						if (queued.containerUpdates != null) {
+							next = queued;
+							break;
+						}
+					}
+					if (next.containerUpdates != null) {
+						next.addOlderUpdates(dropped.containerUpdates);
+					}
+				}
+			}
+			subscription.queue.add(event);
+			if (subscription.sending) {
+				return;
+			}
+			subscription.sending = true;
+		}
+		try {
+			senders.execute(() -> sendQueue(subscription));
+		} catch (RejectedExecutionException e) {
+			// Shut down
+			synchronized (subscription.queue) {
+				subscription.sending = false;
+			}
+		}
+	}
+
+	/**
+	 * Sends the queued events of a subscription in order, until the queue is
+	 * empty.
+	 */
+	private void sendQueue(Subscription subscription) {
+		while (true) {
+			String body;
+			synchronized (subscription.queue) {
+				Event event = subscription.queue.poll();
+				if (event == null) {
+					subscription.sending = false;
+					return;
+				}
+				body = event.getBody();
+			}
+			send(subscription, body);
+		}
+	}
+
+	private List<Subscription> getSubscriptions(String service) {
+		List<Subscription> result = new ArrayList<>();
+		for (Subscription subscription : subscriptions.values()) {
+			if (subscription.isExpired()) {
+				subscriptions.remove(subscription.sid);
+				LOGGER.trace("Subscription {} has expired", subscription.sid);
+			} else if (subscription.service.contains(service)) {
+				result.add(subscription);
+			}
+		}
+		return result;
+	}
+
+	private String getInitialEvent(String service) {
+		StringBuilder body = new StringBuilder();
+		if (service.contains(CONNECTION_MANAGER)) {
+			body.append(HTTPXMLHelper.eventHeader("urn:schemas-upnp-org:service:ConnectionManager:1"));
+			body.append(HTTPXMLHelper.eventProp("SinkProtocolInfo"));
+			body.append(HTTPXMLHelper.eventProp("SourceProtocolInfo"));
+			body.append(HTTPXMLHelper.eventProp("CurrentConnectionIDs"));
+		} else if (service.contains(CONTENT_DIRECTORY)) {
+			body.append(HTTPXMLHelper.eventHeader("urn:schemas-upnp-org:service:ContentDirectory:1"));
+			body.append(HTTPXMLHelper.eventProp("TransferIDs"));
+			body.append(HTTPXMLHelper.eventProp("ContainerUpdateIDs", getContainerUpdateIds()));
+			body.append(HTTPXMLHelper.eventProp("SystemUpdateID", Integer.toString(DLNAResource.getSystemUpdateId())));
+		} else if (service.contains(MEDIA_RECEIVER_REGISTRAR)) {
+			String systemUpdateId = Integer.toString(DLNAResource.getSystemUpdateId());
+			body.append(HTTPXMLHelper.eventHeader("urn:microsoft.com:service:X_MS_MediaReceiverRegistrar:1"));
+			// though this is only a 'potemkin' implementation of an MRR,
+			// keep the MMR-related update ids in-sync with the system update id
+			body.append(HTTPXMLHelper.eventProp("AuthorizationGrantedUpdateID", systemUpdateId));
+			body.append(HTTPXMLHelper.eventProp("AuthorizationDeniedUpdateID", systemUpdateId));
+			body.append(HTTPXMLHelper.eventProp("ValidationSucceededUpdateID", systemUpdateId));
+			body.append(HTTPXMLHelper.eventProp("ValidationRevokedUpdateID", systemUpdateId));
+		} else {
+			return null;
+		}
+		body.append(HTTPXMLHelper.EVENT_FOOTER);
+		return body.toString();
+	}
+
+	/**
+	 * Sends an event message. This must only run in {@link #sendQueue}, which
+	 * is never running twice for the same subscription.
+	 */
+	private void send(Subscription subscription, String body) {
+		if (subscription.isExpired()) {
+			subscriptions.remove(subscription.sid);
+			return;
+		}
+		HttpNotify request = new HttpNotify(subscription.callback);
+		request.setHeader("NT", "upnp:event");
+		request.setHeader("NTS", "upnp:propchange");
+		request.setHeader("SID", subscription.sid);
+		request.setHeader("SEQ", Long.toString(subscription.nextSeq()));
+		request.setHeader("Content-Type", "text/xml; charset=\"utf-8\"");
+		request.setEntity(new ByteArrayEntity(body.getBytes(StandardCharsets.UTF_8)));
+		try (CloseableHttpResponse response = httpClient.execute(request)) {
+			// Consuming the response releases the connection for reuse
+			EntityUtils.consume(response.getEntity());
+			int status = response.getStatusLine().getStatusCode();
+			if (status == HttpStatus.SC_PRECONDITION_FAILED) {
+				LOGGER.debug("Subscriber {} doesn't know subscription {}, removing it", subscription.callback, subscription.sid);
+				subscriptions.remove(subscription.sid);
+			} else if (status != HttpStatus.SC_OK) {
+				LOGGER.debug("Subscriber {} answered event with status {}", subscription.callback, status);
+			}
+		} catch (IOException e) {
+			LOGGER.debug("Could not send event to {}: {}", subscription.callback, e.getMessage());
+			LOGGER.trace("", e);
+		}
+	}
+
+	private static URI parseCallback(String callback) {
+		if (callback == null) {
+			return null;
+		}
+		// The header can list several URLs, the first usable one is taken
+		Matcher matcher = CALLBACK_PATTERN.matcher(callback);
+		while (matcher.find()) {
+			try {
+				URI uri = new URI(matcher.group(1).trim());
+				if ("http".equalsIgnoreCase(uri.getScheme()) && uri.getHost() != null) {
+					return uri;
+				}
+			} catch (URISyntaxException e) {
+				LOGGER.trace("Invalid callback URL \"{}\"", matcher.group(1));
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * A GENA event subscription.
+	 */
+	public static class Subscription {
+		private final String sid = "uuid:" + UUID.randomUUID();
+		private final URI callback;
+		private final String service;
+		private volatile long expires;
+		private long seq;
+
+		// The events waiting to be sent, and whether a sender is sending them
+		private final Deque<Event> queue = new ArrayDeque<>();
+		private boolean sending;
+
+		private Subscription(URI callback, String service) {
+			this.callback = callback;
+			this.service = service;
+			renew();
+		}
+
+		/**
+		 * @return the subscription identifier.
+		 */
+		public String getSid() {
+			return sid;
+		}
+
+		/**
+		 * @return the value of the TIMEOUT header of the response.
+		 */
+		public String getTimeoutHeader() {
+			return "Second-" + SUBSCRIPTION_TIMEOUT;
+		}
+
+		private void renew() {
+			expires = System.currentTimeMillis() + SUBSCRIPTION_TIMEOUT * 1000L;
+		}
+
+		private boolean isExpired() {
+			return System.currentTimeMillis() > expires;
+		}
+
+		private long nextSeq() {
+			long result = seq;
+			// SEQ wraps around to 1, 0 is only used for the initial event
+			seq = seq == 4294967295L ? 1 : seq + 1;
+			return result;
+		}
+	}
+
+	/**
+	 * A queued event. The body of a content directory event is only built
+	 * when it is sent, since the container updates of a dropped event may be
+	 * added to it in the meantime.
+	 */
+	private static class Event {
+		private final String body;
+		private final int systemUpdateId;
+
+		// Guarded by the queue of the subscription
+		private Map<String, Integer> containerUpdates;
+
+		private Event(String body) {
+			this.body = body;
+			this.systemUpdateId = 0;
+		}
+
+		private Event(Map<String, Integer> containerUpdates, int systemUpdateId) {
+			this.body = null;
+			this.systemUpdateId = systemUpdateId;
+			this.containerUpdates = containerUpdates;
+		}
+
+		/**
+		 * Adds the container updates of an older event. The update IDs of
+		 * this event are newer, so they are kept.
+		 */
+		private void addOlderUpdates(Map<String, Integer> olderUpdates) {
+			Map<String, Integer> merged = new LinkedHashMap<>(olderUpdates);
+			merged.putAll(containerUpdates);
+			containerUpdates = merged;
+		}
+
+		private String getBody() {
+			if (body != null) {
+				return body;
+			}
+			StringBuilder sb = new StringBuilder();
+			sb.append(HTTPXMLHelper.eventHeader("urn:schemas-upnp-org:service:ContentDirectory:1"));
+			if (!containerUpdates.isEmpty()) {
+				sb.append(HTTPXMLHelper.eventProp("ContainerUpdateIDs", getUpdateIds(containerUpdates)));
+			}
+			sb.append(HTTPXMLHelper.eventProp("SystemUpdateID", Integer.toString(systemUpdateId)));
+			sb.append(HTTPXMLHelper.EVENT_FOOTER);
+			return sb.toString();
+		}
+	}
+
+	private static class HttpNotify extends HttpEntityEnclosingRequestBase {
+		private HttpNotify(URI uri) {
+			setURI(uri);
+		}
+
+		@Override
+		public String getMethod() {
+			return "NOTIFY";
+		}
+	}
+}
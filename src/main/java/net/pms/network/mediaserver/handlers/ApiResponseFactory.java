@@ -2,6 +2,7 @@ package net.pms.network.mediaserver.handlers;
 
 import net.pms.network.mediaserver.handlers.api.FolderScanner;
 import net.pms.network.mediaserver.handlers.api.LikeMusic;
+import net.pms.network.mediaserver.handlers.api.MetricsApi;
 import net.pms.network.mediaserver.handlers.api.playlist.PlaylistService;
 import net.pms.network.mediaserver.handlers.api.starrating.StarRating;
 
@@ -17,6 +18,8 @@ public class ApiResponseFactory {
 				return new StarRating();
 			case PlaylistService.PATH_MATCH:
 				return new PlaylistService();
+			case MetricsApi.PATH_MATCH:
+				return new MetricsApi();
 		}
 
 		throw new RuntimeException("No api Handler found");
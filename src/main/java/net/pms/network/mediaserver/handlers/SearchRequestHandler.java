@@ -9,13 +9,13 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import net.pms.PMS;
 import net.pms.configuration.RendererConfiguration;
 import net.pms.database.MediaDatabase;
 import net.pms.dlna.DLNAResource;
@@ -49,8 +49,6 @@ public class SearchRequestHandler {
 	private static final Pattern TOKENIZER_PATTERN = Pattern
 		.compile("(?<property>((\\bdc\\b)|(\\bupnp\\b)):[A-Za-z]+)\\s+(?<op>[A-Za-z=!<>]+)\\s+\"(?<val>.*?)\"", Pattern.CASE_INSENSITIVE);
 
-	private final AtomicInteger updateID = new AtomicInteger(1);
-
 	public SearchRequestHandler() {
 	}
 
@@ -100,7 +98,9 @@ public class SearchRequestHandler {
 		}
 
 		// Build response message
-		StringBuilder response = buildEnvelope(numberReturned, totalMatches, updateID.getAndIncrement(), dlnaItems);
+		DLNAResource container = requestMessage.getContainerId() == null ? null :
+			PMS.get().getRootFolder(mediaRenderer).getDLNAResource(requestMessage.getContainerId(), mediaRenderer);
+		StringBuilder response = buildEnvelope(numberReturned, totalMatches, DLNAResource.getUpdateId(container), dlnaItems);
 		return createResponse(response.toString());
 	}
 
@@ -0,0 +1,40 @@
+package net.pms.network.mediaserver.handlers.api;
+
+import org.jboss.netty.handler.codec.http.HttpHeaders;
+import org.jboss.netty.handler.codec.http.HttpResponse;
+import org.jboss.netty.handler.codec.http.HttpResponseStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import net.pms.network.mediaserver.handlers.ApiResponseHandler;
+import net.pms.util.metrics.Metrics;
+
+/**
+ * Exposes the built-in metrics.
+ *
+ * <pre>
+ * api/metrics/json        the metrics as a JSON object
+ * api/metrics/prometheus  the metrics in the Prometheus text exposition format
+ * </pre>
+ */
+public class MetricsApi implements ApiResponseHandler {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(MetricsApi.class);
+	public static final String PATH_MATCH = "metrics";
+
+	@Override
+	public String handleRequest(String uri, String content, HttpResponse output) {
+		output.setStatus(HttpResponseStatus.OK);
+		switch (uri) {
+			case "json":
+				output.headers().set(HttpHeaders.Names.CONTENT_TYPE, "application/json; charset=UTF-8");
+				return Metrics.toJson().toString();
+			case "prometheus":
+				output.headers().set(HttpHeaders.Names.CONTENT_TYPE, "text/plain; version=0.0.4; charset=UTF-8");
+				return Metrics.toPrometheus();
+			default:
+				LOGGER.warn("Invalid API call. Unknown path : " + uri);
+				output.setStatus(HttpResponseStatus.NOT_FOUND);
+				return null;
+		}
+	}
+}
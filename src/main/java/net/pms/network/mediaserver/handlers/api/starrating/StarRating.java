@@ -1,7 +1,5 @@
 package net.pms.network.mediaserver.handlers.api.starrating;
 
-import java.io.File;
-import java.io.IOException;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -11,15 +9,8 @@ import java.util.ArrayList;
 import java.util.List;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.math.NumberUtils;
-import org.jaudiotagger.audio.AudioFile;
-import org.jaudiotagger.audio.AudioFileIO;
-import org.jaudiotagger.audio.exceptions.CannotReadException;
-import org.jaudiotagger.audio.exceptions.CannotWriteException;
-import org.jaudiotagger.audio.exceptions.InvalidAudioFrameException;
-import org.jaudiotagger.audio.exceptions.ReadOnlyFileException;
 import org.jaudiotagger.tag.FieldKey;
 import org.jaudiotagger.tag.Tag;
-import org.jaudiotagger.tag.TagException;
 import org.jaudiotagger.tag.flac.FlacTag;
 import org.jaudiotagger.tag.id3.AbstractID3v2Tag;
 import org.jaudiotagger.tag.id3.ID3v11Tag;
@@ -31,6 +22,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import net.pms.PMS;
 import net.pms.database.MediaDatabase;
+import net.pms.dlna.DLNAMediaAudio;
+import net.pms.dlna.DLNAMediaInfo;
+import net.pms.dlna.GlobalIdRepo;
 import net.pms.network.mediaserver.handlers.ApiResponseHandler;
 
 /**
@@ -81,6 +75,9 @@ public class StarRating implements ApiResponseHandler {
 					RequestVO request = parseSetRatingRequest(content);
 					setDatabaseRatingByMusicbrainzId(connection, request.stars, request.trackID);
 					List<FilenameIdVO> dbSongs = getFilenameIdList(connection, request.trackID);
+					for (FilenameIdVO dbSong : dbSongs) {
+						setRatingInMemory(request.stars, dbSong);
+					}
 					if (PMS.getConfiguration().isAudioUpdateTag()) {
 						for (FilenameIdVO dbSong : dbSongs) {
 							setRatingInFile(request.stars, dbSong);
@@ -106,8 +103,9 @@ public class StarRating implements ApiResponseHandler {
 					if (NumberUtils.isParsable(request.trackID)) {
 						Integer audiotrackId = Integer.parseInt(request.trackID);
 						setDatabaseRatingByAudiotracksId(connection, request.stars, audiotrackId);
+						FilenameIdVO dbSong = getFilenameIdForAudiotrackId(connection, audiotrackId);
+						setRatingInMemory(request.stars, dbSong);
 						if (PMS.getConfiguration().isAudioUpdateTag()) {
-							FilenameIdVO dbSong = getFilenameIdForAudiotrackId(connection, audiotrackId);
 							setRatingInFile(request.stars, dbSong);
 						}
 					}
@@ -163,16 +161,42 @@ public class StarRating implements ApiResponseHandler {
 		return request;
 	}
 
+	/**
+	 * Queues the rating to be written to the audio file by the
+	 * {@link StarRatingWriter}, so that the request doesn't wait for the file
+	 * to be written.
+	 *
+	 * @param ratingInStars number of stars (0 - 5)
+	 * @param dbSong the file
+	 */
 	public void setRatingInFile(int ratingInStars, FilenameIdVO dbSong) {
-		AudioFile audioFile;
-		try {
-			audioFile = AudioFileIO.read(new File(dbSong.filename));
-			Tag tag = audioFile.getTag();
-			tag.setField(FieldKey.RATING, getRatingValue(tag, ratingInStars));
-			audioFile.commit();
-		} catch (CannotReadException | IOException | TagException | ReadOnlyFileException | InvalidAudioFrameException | CannotWriteException e) {
-			LOG.warn("Error writing Tag info.", e);
+		StarRatingWriter.getInstance().queue(dbSong.filename, ratingInStars);
+	}
+
+	/**
+	 * Updates the rating of the resources of a file that are in memory, so
+	 * that browsing shows the new rating before the file has been written and
+	 * parsed again.
+	 *
+	 * @param ratingInStars number of stars (0 - 5)
+	 * @param dbSong the file
+	 */
+	public void setRatingInMemory(int ratingInStars, FilenameIdVO dbSong) {
+		GlobalIdRepo repo = PMS.getGlobalRepo();
+		if (repo == null) {
+			return;
 		}
+		repo.forEach(resource -> {
+			DLNAMediaInfo media = resource.getMedia();
+			if (media != null && dbSong.filename.equals(resource.getSystemName())) {
+				for (DLNAMediaAudio audio : media.getAudioTracksList()) {
+					audio.setRating(ratingInStars);
+				}
+				if (resource.getParent() != null) {
+					resource.getParent().notifyContainerUpdate();
+				}
+			}
+		});
 	}
 
 	public void setDatabaseRatingByMusicbrainzId(Connection connection, int ratingInStars, String musicBrainzTrackId) throws SQLException {
@@ -250,7 +274,7 @@ public class StarRating implements ApiResponseHandler {
 	 * @param stars number of stars (0 - 5)
 	 * @return
 	 */
-	public String getRatingValue(Tag tag, int stars) {
+	public static String getRatingValue(Tag tag, int stars) {
 		int num = 0;
 		if (tag instanceof FlacTag || tag instanceof VorbisCommentTag) {
 			num = convertStarsToVorbis(stars);
@@ -270,7 +294,7 @@ public class StarRating implements ApiResponseHandler {
 	 * @param rating
 	 * @return
 	 */
-	public int convertStarsToID3(int rating) {
+	public static int convertStarsToID3(int rating) {
 		if (rating == 0) {
 			return 0;
 		} else if (rating == 1) {
@@ -292,7 +316,7 @@ public class StarRating implements ApiResponseHandler {
 	 * @param rating
 	 * @return
 	 */
-	public int convertStarsToVorbis(int rating) {
+	public static int convertStarsToVorbis(int rating) {
 		return rating * 20;
 	}
 
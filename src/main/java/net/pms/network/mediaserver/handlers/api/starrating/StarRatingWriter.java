@@ -0,0 +1,326 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.network.mediaserver.handlers.api.starrating;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import net.pms.PMS;
+import net.pms.configuration.RendererConfiguration;
+import net.pms.dlna.DLNAResource;
+import net.pms.util.BasicThreadFactory;
+import org.apache.commons.io.FilenameUtils;
+import org.jaudiotagger.audio.AudioFile;
+import org.jaudiotagger.audio.AudioFileIO;
+import org.jaudiotagger.tag.FieldKey;
+import org.jaudiotagger.tag.Tag;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writes star ratings to the tags of audio files in the background.
+ * <p>
+ * Ratings are queued per file, so repeated edits of the same file before it
+ * is written only write the last rating. Queued ratings are written in
+ * batches, files that are being streamed are skipped until they are no
+ * longer playing, and failed writes are retried with an increasing delay.
+ * <p>
+ * A rating is written to a copy of the file that then replaces the file, so
+ * a crash or a failed write never leaves a partly written audio file. The
+ * copy has an extension that isn't scanned as media, and its path is kept in
+ * a journal in the profile folder while it exists, so that a copy left by a
+ * crash is removed at the next startup. Symbolic links are resolved first,
+ * and files with more than one hard link are written in place, since
+ * replacing them would break the links.
+ */
+public class StarRatingWriter {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(StarRatingWriter.class);
+
+	/** How long to wait for more ratings before writing a batch */
+	private static final long BATCH_DELAY = 2000;
+
+	/** The delay before the first retry, doubled for every failed attempt */
+	private static final long RETRY_DELAY = 5000;
+
+	private static final int MAX_ATTEMPTS = 5;
+
+	/** The extension of the copies the ratings are written to */
+	static final String COPY_EXTENSION = ".ums-rating";
+
+	/** The journal with the path of the copy that is being written */
+	private static final String JOURNAL_NAME = "star-rating-copy.txt";
+
+	private static StarRatingWriter instance;
+
+	private final long batchDelay;
+	private final long retryDelay;
+	private final Predicate<String> inUse;
+	private final Path journal;
+	private final Map<String, PendingRating> pending = new ConcurrentHashMap<>();
+	private final ScheduledThreadPoolExecutor executor;
+	private final AtomicInteger writeCount = new AtomicInteger();
+
+	/** The next scheduled batch, guarded by this */
+	private ScheduledFuture<?> scheduled;
+	private long scheduledTime;
+
+	/**
+	 * Creates a new writer.
+	 *
+	 * @param batchDelay how long to wait for more ratings before writing a
+	 *            batch in milliseconds.
+	 * @param retryDelay the delay before the first retry of a failed or
+	 *            postponed write in milliseconds.
+	 * @param inUse tells whether a file is in use and shouldn't be written
+	 *            now.
+	 * @param journal the file that holds the path of the copy that is being
+	 *            written.
+	 */
+	StarRatingWriter(long batchDelay, long retryDelay, Predicate<String> inUse, Path journal) {
+		this.batchDelay = batchDelay;
+		this.retryDelay = retryDelay;
+		this.inUse = inUse;
+		this.journal = journal;
+		executor = new ScheduledThreadPoolExecutor(1, new BasicThreadFactory("Star Rating Writer", Thread.NORM_PRIORITY - 1));
+		executor.setRemoveOnCancelPolicy(true);
+	}
+
+	/**
+	 * @return The shared {@link StarRatingWriter}.
+	 */
+	public static synchronized StarRatingWriter getInstance() {
+		if (instance == null) {
+			instance = new StarRatingWriter(
+				BATCH_DELAY,
+				RETRY_DELAY,
+				StarRatingWriter::isStreaming,
+				Paths.get(PMS.getConfiguration().getProfileDirectory(), JOURNAL_NAME)
+			);
+		}
+		return instance;
+	}
+
+	/**
+	 * Removes the copy that was being written when the server last stopped,
+	 * if it was left behind by a crash. Called when the server starts.
+	 */
+	public void removeStaleCopy() {
+		try {
+			if (!Files.exists(journal)) {
+				return;
+			}
+			String copy = new String(Files.readAllBytes(journal), StandardCharsets.UTF_8).trim();
+			if (copy.endsWith(COPY_EXTENSION) && Files.deleteIfExists(Paths.get(copy))) {
+				LOGGER.debug("Removed \"{}\" left by an interrupted star rating write", copy);
+			}
+			Files.delete(journal);
+		} catch (IOException e) {
+			LOGGER.debug("Couldn't remove the copy left by an interrupted star rating write: {}", e.getMessage());
+			LOGGER.trace("", e);
+		}
+	}
+
+	/**
+	 * Queues a rating to be written to a file, replacing any rating for the
+	 * same file that hasn't been written yet.
+	 *
+	 * @param filename the path of the audio file.
+	 * @param stars the rating in stars (0 - 5).
+	 */
+	public void queue(String filename, int stars) {
+		pending.put(filename, new PendingRating(stars));
+		schedule(System.currentTimeMillis() + batchDelay);
+	}
+
+	/**
+	 * @return The number of files with a rating that hasn't been written yet.
+	 */
+	public int getPendingCount() {
+		return pending.size();
+	}
+
+	/**
+	 * Writes the queued ratings that are due now and stops the writer. Called
+	 * when the server shuts down.
+	 */
+	public void shutdown() {
+		if (!pending.isEmpty()) {
+			LOGGER.debug("Writing {} queued star ratings before shutting down", pending.size());
+		}
+		try {
+			executor.submit(this::writePending).get(30, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException | TimeoutException e) {
+			LOGGER.debug("Couldn't write the queued star ratings: {}", e.getMessage());
+			LOGGER.trace("", e);
+		}
+		executor.shutdownNow();
+		if (!pending.isEmpty()) {
+			LOGGER.info("{} star ratings weren't written to the audio files", pending.size());
+		}
+	}
+
+	/**
+	 * Writes the queued ratings that are due now and waits until they are
+	 * written, for testing.
+	 */
+	void flush() throws InterruptedException, ExecutionException {
+		executor.submit(this::writePending).get();
+	}
+
+	/**
+	 * @return The number of ratings that have been written, for testing.
+	 */
+	int getWriteCount() {
+		return writeCount.get();
+	}
+
+	private synchronized void schedule(long time) {
+		if (scheduled != null && !scheduled.isDone()) {
+			if (scheduledTime <= time) {
+				return;
+			}
+			scheduled.cancel(false);
+		}
+		scheduledTime = time;
+		scheduled = executor.schedule(this::writePending, Math.max(0, time - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+	}
+
+	private void writePending() {
+		long now = System.currentTimeMillis();
+		long next = Long.MAX_VALUE;
+		for (Map.Entry<String, PendingRating> entry : pending.entrySet()) {
+			String filename = entry.getKey();
+			PendingRating rating = entry.getValue();
+			if (rating.notBefore > now) {
+				next = Math.min(next, rating.notBefore);
+				continue;
+			}
+			if (inUse.test(filename)) {
+				LOGGER.debug("Postponing writing the star rating to \"{}\" since it's being streamed", filename);
+				rating.notBefore = now + retryDelay;
+				next = Math.min(next, rating.notBefore);
+				continue;
+			}
+			try {
+				writeRating(new File(filename), rating.stars);
+				writeCount.incrementAndGet();
+				LOGGER.trace("Wrote star rating {} to \"{}\"", rating.stars, filename);
+				// A newer rating queued during the write is kept
+				pending.remove(filename, rating);
+			} catch (Exception e) {
+				rating.attempts++;
+				if (rating.attempts >= MAX_ATTEMPTS) {
+					LOGGER.warn("Giving up writing the star rating to \"{}\": {}", filename, e.getMessage());
+					LOGGER.trace("", e);
+					pending.remove(filename, rating);
+				} else {
+					LOGGER.debug("Error writing the star rating to \"{}\", will retry: {}", filename, e.getMessage());
+					LOGGER.trace("", e);
+					rating.notBefore = now + (retryDelay << (rating.attempts - 1));
+					next = Math.min(next, rating.notBefore);
+				}
+			}
+		}
+		if (next != Long.MAX_VALUE) {
+			schedule(next);
+		}
+	}
+
+	/**
+	 * Writes a rating to the tag of an audio file. The tag is written to a
+	 * copy in the same folder as the real file, which then atomically
+	 * replaces it, unless the file has more than one hard link.
+	 *
+	 * @param file the audio file.
+	 * @param stars the rating in stars (0 - 5).
+	 * @throws Exception If the file can't be read or written.
+	 */
+	private void writeRating(File file, int stars) throws Exception {
+		Path path = file.toPath().toRealPath();
+		String extension = FilenameUtils.getExtension(path.getFileName().toString());
+		if (getLinkCount(path) > 1) {
+			LOGGER.trace("Writing the star rating to \"{}\" in place since it has more than one hard link", path);
+			writeTag(AudioFileIO.readAs(path.toFile(), extension), stars);
+			return;
+		}
+
+		Path copy = path.resolveSibling("." + path.getFileName() + COPY_EXTENSION);
+		Files.write(journal, copy.toString().getBytes(StandardCharsets.UTF_8));
+		try {
+			Files.copy(path, copy, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+			// jaudiotagger tells the format by the extension, which the copy doesn't have
+			writeTag(AudioFileIO.readAs(copy.toFile(), extension), stars);
+			Files.move(copy, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(copy);
+			Files.deleteIfExists(journal);
+		}
+	}
+
+	private static void writeTag(AudioFile audioFile, int stars) throws Exception {
+		Tag tag = audioFile.getTagOrCreateAndSetDefault();
+		tag.setField(FieldKey.RATING, StarRating.getRatingValue(tag, stars));
+		audioFile.commit();
+	}
+
+	private static int getLinkCount(Path path) {
+		try {
+			return (Integer) Files.getAttribute(path, "unix:nlink");
+		} catch (UnsupportedOperationException | IllegalArgumentException | IOException e) {
+			// Not a file system with hard links we can tell
+			return 1;
+		}
+	}
+
+	private static boolean isStreaming(String filename) {
+		for (RendererConfiguration renderer : RendererConfiguration.getConnectedRenderersConfigurations()) {
+			DLNAResource resource = renderer.getPlayingRes();
+			if (resource != null && filename.equals(resource.getSystemName())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static class PendingRating {
+		private final int stars;
+
+		// Only used by the writer thread
+		private int attempts;
+		private long notBefore;
+
+		private PendingRating(int stars) {
+			this.stars = stars;
+		}
+	}
+}
@@ -33,9 +33,6 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
-import java.net.MalformedURLException;
-import java.net.Socket;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.text.SimpleDateFormat;
@@ -83,6 +80,8 @@ import net.pms.dlna.DbIdMediaType;
 import net.pms.dlna.DbIdResourceLocator;
 import net.pms.encoders.HlsHelper;
 import net.pms.network.HTTPResource;
+import net.pms.network.MeteredOutputStream;
+import net.pms.network.mediaserver.GENAEventNotifier;
 import net.pms.network.mediaserver.HTTPXMLHelper;
 import net.pms.network.mediaserver.MediaServer;
 import net.pms.network.mediaserver.handlers.SearchRequestHandler;
@@ -112,6 +111,7 @@ public class RequestHandler implements HttpHandler {
 	private static final String HEAD = "HEAD";
 	private static final String POST = "POST";
 	private static final String SUBSCRIBE = "SUBSCRIBE";
+	private static final String UNSUBSCRIBE = "UNSUBSCRIBE";
 	private static final String NOTIFY = "NOTIFY";
 	private static final String CRLF = "\r\n";
 	private static final String CONTENT_TYPE_XML_UTF8 = "text/xml; charset=\"utf-8\"";
@@ -245,8 +245,8 @@ public class RequestHandler implements HttpHandler {
 				} else {
 					LOGGER.debug("Unsupported action received: " + requestBody);
 				}
-			} else if (SUBSCRIBE.equals(method)) {
-				sendResponse(exchange, renderer, 200, subscribeHandler(exchange, uri, soapaction), "text/xml");
+			} else if (SUBSCRIBE.equals(method) || UNSUBSCRIBE.equals(method)) {
+				subscribeHandler(exchange, renderer, method, uri, soapaction);
 			} else if (NOTIFY.equals(method)) {
 				sendResponse(exchange, renderer, 200, notifyHandler(exchange), "text/xml");
 			}
@@ -338,7 +338,7 @@ public class RequestHandler implements HttpHandler {
 			// Send the response body to the client in chunks.
 			byte[] buf = new byte[BUFFER_SIZE];
 			int length;
-			try (OutputStream outputStream = exchange.getResponseBody()) {
+			try (OutputStream outputStream = new MeteredOutputStream(exchange.getResponseBody(), exchange.getRemoteAddress().getAddress())) {
 				int lengthSent = 0;
 				try {
 					while ((length = inputStream.read(buf)) > 0) {
@@ -537,7 +537,8 @@ public class RequestHandler implements HttpHandler {
 				exchange.getResponseHeaders().set("Expires", getFutureDate() + " GMT");
 				exchange.getResponseHeaders().set("Connection", "keep-alive");
 				try {
-					InputStream imageInputStream;
+					InputStream imageInputStream = null;
+					File imageFile = null;
 					if (dlna.getPlayer() instanceof ImagePlayer) {
 						ProcessWrapper transcodeProcess = dlna.getPlayer().launchTranscode(
 								dlna,
@@ -545,13 +546,18 @@ public class RequestHandler implements HttpHandler {
 								new OutputParams(CONFIGURATION)
 						);
 						imageInputStream = transcodeProcess != null ? transcodeProcess.getInputStream(0) : null;
+					} else if (dlna instanceof RealFile && ((RealFile) dlna).getFile() != null && ((RealFile) dlna).getFile().isFile()) {
+						// Read the file directly so that large images aren't loaded into memory
+						imageFile = ((RealFile) dlna).getFile();
 					} else {
 						imageInputStream = dlna.getInputStream();
 					}
-					if (imageInputStream == null) {
+					if (imageInputStream == null && imageFile == null) {
 						LOGGER.warn("Input stream returned for \"{}\" was null, no image will be sent to renderer", fileName);
 					} else {
-						inputStream = DLNAImageInputStream.toImageInputStream(imageInputStream, imageProfile, false);
+						inputStream = imageFile != null ?
+							DLNAImageInputStream.toImageInputStream(imageFile, imageProfile, false) :
+							DLNAImageInputStream.toImageInputStream(imageInputStream, imageProfile, false);
 						if (contentFeatures != null) {
 							exchange.getResponseHeaders().set(
 									"ContentFeatures.DLNA.ORG",
@@ -1202,31 +1208,11 @@ public class RequestHandler implements HttpHandler {
 		}
 		response.append(CRLF);
 
-		/**
-		 * From page 95, section 5.5.8.2 of
-		 * http://www.upnp.org/specs/av/UPnP-av-ContentDirectory-v4-Service.pdf
-		 *
-		 * UpdateID: The value returned in the UpdateID argument shall be the
-		 * SystemUpdateID state variable value at the time the Browse() response
-		 * was generated. If a control point finds that the current
-		 * SystemUpdateID state variable value is not equal to the value
-		 * returned in the UpdateID argument, then a change within the
-		 * ContentDirectory service has occurred between the time the result was
-		 * generated and the time that the control point is processing the
-		 * result. The control point might therefore want to re-invoke the
-		 * Browse() action to ensure that it has the latest property values.
-		 * Note however that the change in the value of the SystemUpdateID state
-		 * variable could have been caused by a change that occurred in a
-		 * location in the ContentDirectory tree hierarchy that is not part of
-		 * the returned result. In this case, the re-invocation of the Browse()
-		 * action will return the exact same result. Note: This definition is
-		 * not backwards compatible with previous versions of this
-		 * specification. However, the previous definition did not indicate
-		 * changes to properties of child containers. Therefore the control
-		 * point would not have been aware that it had stale data.
-		 */
+		// The ContainerUpdateID of the browsed container, as ContentDirectory:1
+		// defines it. Renderers match it against the ContainerUpdateIDs events.
+		DLNAResource browsed = browseDirectChildren ? parentFolder : (files != null && filessize > 0 ? files.get(0) : null);
 		response.append("<UpdateID>");
-		response.append(DLNAResource.getSystemUpdateId());
+		response.append(DLNAResource.getUpdateId(browsed));
 		response.append("</UpdateID>");
 		response.append(CRLF);
 
@@ -1264,73 +1250,38 @@ public class RequestHandler implements HttpHandler {
 		return result;
 	}
 
-	private String subscribeHandler(HttpExchange exchange, String uri, String soapaction) throws IOException {
-		exchange.getResponseHeaders().set("SID", PMS.get().usn());
-
-		/**
-		 * Requirement [7.2.22.1]: UPnP devices must send events to all properly
-		 * subscribed UPnP control points. The device must enforce a
-		 * subscription TIMEOUT value of 5 minutes. The UPnP device behavior of
-		 * enforcing this 5 minutes TIMEOUT value is implemented by specifying
-		 * "TIMEOUT: second-300" as an HTTP header/value pair.
-		 */
-		exchange.getResponseHeaders().set("TIMEOUT", "Second-300");
-
-		if (soapaction != null) {
-			String cb = soapaction.replace("<", "").replace(">", "");
-
-			try {
-				URL soapActionUrl = new URL(cb);
-				String addr = soapActionUrl.getHost();
-				int port = soapActionUrl.getPort();
-				try (
-						Socket sock = new Socket(addr, port);
-						OutputStream out = sock.getOutputStream()) {
-					out.write(("NOTIFY /" + uri + " HTTP/1.1").getBytes(StandardCharsets.UTF_8));
-					out.write(CRLF.getBytes(StandardCharsets.UTF_8));
-					out.write(("SID: " + PMS.get().usn()).getBytes(StandardCharsets.UTF_8));
-					out.write(CRLF.getBytes(StandardCharsets.UTF_8));
-					out.write(("SEQ: " + 0).getBytes(StandardCharsets.UTF_8));
-					out.write(CRLF.getBytes(StandardCharsets.UTF_8));
-					out.write(("NT: upnp:event").getBytes(StandardCharsets.UTF_8));
-					out.write(CRLF.getBytes(StandardCharsets.UTF_8));
-					out.write(("NTS: upnp:propchange").getBytes(StandardCharsets.UTF_8));
-					out.write(CRLF.getBytes(StandardCharsets.UTF_8));
-					out.write(("HOST: " + addr + ":" + port).getBytes(StandardCharsets.UTF_8));
-					out.write(CRLF.getBytes(StandardCharsets.UTF_8));
-					out.flush();
-				}
-			} catch (MalformedURLException ex) {
-				LOGGER.debug("Cannot parse address and port from soap action \"" + soapaction + "\"", ex);
-			}
+	private static void subscribeHandler(HttpExchange exchange, RendererConfiguration renderer, String method, String uri, String soapaction) throws IOException {
+		GENAEventNotifier notifier = GENAEventNotifier.getInstance();
+		String sid = exchange.getRequestHeaders().getFirst("SID");
+		GENAEventNotifier.Subscription newSubscription = null;
+		boolean success;
+		if (UNSUBSCRIBE.equals(method)) {
+			success = notifier.unsubscribe(sid);
 		} else {
-			LOGGER.debug("Expected soap action in request");
+			// A SUBSCRIBE with a callback is a new subscription, otherwise a renewal
+			GENAEventNotifier.Subscription subscription;
+			if (soapaction != null) {
+				newSubscription = notifier.subscribe(soapaction, uri);
+				subscription = newSubscription;
+			} else {
+				subscription = notifier.renew(sid);
+			}
+			success = subscription != null;
+			if (success) {
+				exchange.getResponseHeaders().set("SID", subscription.getSid());
+				exchange.getResponseHeaders().set("TIMEOUT", subscription.getTimeoutHeader());
+			}
 		}
-
-		StringBuilder response = new StringBuilder();
-		if (uri.contains("connection_manager")) {
-			response.append(HTTPXMLHelper.eventHeader("urn:schemas-upnp-org:service:ConnectionManager:1"));
-			response.append(HTTPXMLHelper.eventProp("SinkProtocolInfo"));
-			response.append(HTTPXMLHelper.eventProp("SourceProtocolInfo"));
-			response.append(HTTPXMLHelper.eventProp("CurrentConnectionIDs"));
-			response.append(HTTPXMLHelper.EVENT_FOOTER);
-		} else if (uri.contains("content_directory")) {
-			response.append(HTTPXMLHelper.eventHeader("urn:schemas-upnp-org:service:ContentDirectory:1"));
-			response.append(HTTPXMLHelper.eventProp("TransferIDs"));
-			response.append(HTTPXMLHelper.eventProp("ContainerUpdateIDs"));
-			response.append(HTTPXMLHelper.eventProp("SystemUpdateID", "" + DLNAResource.getSystemUpdateId()));
-			response.append(HTTPXMLHelper.EVENT_FOOTER);
-		} else if (uri.contains("x_ms_mediareceiverregistrar")) {
-			response.append(HTTPXMLHelper.eventHeader("urn:schemas-upnp-org:service:ContentDirectory:1"));
-			// though this is only a 'potemkin' implementation of an MRR,
-			// keep the MMR-related update ids in-sync with the system update id
-			response.append(HTTPXMLHelper.eventProp("AuthorizationGrantedUpdateID", "" + DLNAResource.getSystemUpdateId()));
-			response.append(HTTPXMLHelper.eventProp("AuthorizationDeniedUpdateID", "" + DLNAResource.getSystemUpdateId()));
-			response.append(HTTPXMLHelper.eventProp("ValidationSucceededUpdateID", "" + DLNAResource.getSystemUpdateId()));
-			response.append(HTTPXMLHelper.eventProp("ValidationRevokedUpdateID", "" + DLNAResource.getSystemUpdateId()));
-			response.append(HTTPXMLHelper.EVENT_FOOTER);
+		exchange.getResponseHeaders().set("Server", PMS.get().getServerName());
+		exchange.sendResponseHeaders(success ? 200 : 412, -1);
+		exchange.close();
+		if (newSubscription != null) {
+			// The subscriber must know the SID before the initial event
+			notifier.sendInitialEvent(newSubscription);
+		}
+		if (LOGGER.isTraceEnabled()) {
+			logMessageSent(exchange, null, null, renderer);
 		}
-		return response.toString();
 	}
 
 	private static String notifyHandler(HttpExchange exchange) {
@@ -1344,7 +1295,7 @@ public class RequestHandler implements HttpHandler {
 		response.append("<TransferIDs></TransferIDs>");
 		response.append("</e:property>");
 		response.append("<e:property>");
-		response.append("<ContainerUpdateIDs></ContainerUpdateIDs>");
+		response.append("<ContainerUpdateIDs>").append(GENAEventNotifier.getInstance().getContainerUpdateIds()).append("</ContainerUpdateIDs>");
 		response.append("</e:property>");
 		response.append("<e:property>");
 		response.append("<SystemUpdateID>").append(DLNAResource.getSystemUpdateId()).append("</SystemUpdateID>");
@@ -163,6 +163,8 @@ public class RequestHandlerV2 extends SimpleChannelUpstreamHandler {
 					request.setSoapaction(s.nextToken());
 				} else if (temp.toUpperCase().equals("CALLBACK:")) {
 					request.setSoapaction(s.nextToken());
+				} else if (temp.toUpperCase().equals("SID:")) {
+					request.setSid(s.nextToken());
 				} else if (headerLine.toUpperCase().contains("RANGE: BYTES=")) {
 					String nums = headerLine.substring(
 						headerLine.toUpperCase().indexOf(
@@ -18,6 +18,7 @@
 package net.pms.network.mediaserver.nettyserver;
 
 import net.pms.network.mediaserver.handlers.SearchRequestHandler;
+import net.pms.network.mediaserver.GENAEventNotifier;
 import net.pms.network.mediaserver.HTTPXMLHelper;
 import jakarta.xml.bind.JAXBContext;
 import jakarta.xml.bind.JAXBException;
@@ -30,10 +31,6 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.net.MalformedURLException;
-import java.net.Socket;
-import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
 import java.text.SimpleDateFormat;
@@ -90,6 +87,9 @@ import net.pms.util.FullyPlayed;
 import net.pms.util.StringUtil;
 import net.pms.util.SubtitleUtils;
 import net.pms.util.UMSUtils;
+import net.pms.util.metrics.Histogram;
+import net.pms.util.metrics.Metrics;
+import net.pms.util.metrics.Metrics.Family;
 import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 import org.apache.commons.text.StringEscapeUtils;
@@ -117,6 +117,16 @@ import org.xml.sax.SAXException;
 public class RequestV2 extends HTTPResource {
 	private static final Logger LOGGER = LoggerFactory.getLogger(RequestV2.class);
 	private static final String CRLF = "\r\n";
+	private static final Family<Histogram> BROWSE_LATENCY = Metrics.histograms(
+		"ums_browse_seconds",
+		"Time spent answering ContentDirectory Browse requests",
+		"renderer"
+	);
+	private static final Family<Histogram> SEARCH_LATENCY = Metrics.histograms(
+		"ums_search_seconds",
+		"Time spent answering ContentDirectory Search requests",
+		"renderer"
+	);
 	private static final Pattern DIDL_PATTERN = Pattern.compile("<Result>(&lt;DIDL-Lite.*?)</Result>");
 	private static final SimpleDateFormat SDF = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss", Locale.US);
 	private static final int BUFFER_SIZE = 8 * 1024;
@@ -134,6 +144,8 @@ public class RequestV2 extends HTTPResource {
 	 */
 	private String uri;
 	private String soapaction;
+	private String sid;
+	private GENAEventNotifier.Subscription newSubscription;
 	private String content;
 	private int startingIndex;
 	private int requestCount;
@@ -249,6 +261,14 @@ public class RequestV2 extends HTTPResource {
 		this.soapaction = soapaction;
 	}
 
+	/**
+	 * @param sid the subscription identifier of a SUBSCRIBE or UNSUBSCRIBE
+	 *            request.
+	 */
+	public void setSid(String sid) {
+		this.sid = sid;
+	}
+
 	public String getTextContent() {
 		return content;
 	}
@@ -484,7 +504,8 @@ public class RequestV2 extends HTTPResource {
 						output.headers().set(HttpHeaders.Names.EXPIRES, getFutureDate() + " GMT");
 						output.headers().set(HttpHeaders.Names.CONNECTION, HttpHeaders.Values.KEEP_ALIVE);
 						try {
-							InputStream imageInputStream;
+							InputStream imageInputStream = null;
+							File imageFile = null;
 							if (dlna.getPlayer() instanceof ImagePlayer) {
 								ProcessWrapper transcodeProcess = dlna.getPlayer().launchTranscode(
 									dlna,
@@ -492,13 +513,18 @@ public class RequestV2 extends HTTPResource {
 									new OutputParams(configuration)
 								);
 								imageInputStream = transcodeProcess != null ? transcodeProcess.getInputStream(0) : null;
+							} else if (dlna instanceof RealFile && ((RealFile) dlna).getFile() != null && ((RealFile) dlna).getFile().isFile()) {
+								// Read the file directly so that large images aren't loaded into memory
+								imageFile = ((RealFile) dlna).getFile();
 							} else {
 								imageInputStream = dlna.getInputStream();
 							}
-							if (imageInputStream == null) {
+							if (imageInputStream == null && imageFile == null) {
 								LOGGER.warn("Input stream returned for \"{}\" was null, no image will be sent to renderer", fileName);
 							} else {
-								inputStream = DLNAImageInputStream.toImageInputStream(imageInputStream, imageProfile, false);
+								inputStream = imageFile != null ?
+									DLNAImageInputStream.toImageInputStream(imageFile, imageProfile, false) :
+									DLNAImageInputStream.toImageInputStream(imageInputStream, imageProfile, false);
 								if (contentFeatures != null) {
 									output.headers().set(
 										"ContentFeatures.DLNA.ORG",
@@ -759,14 +785,18 @@ public class RequestV2 extends HTTPResource {
 				} else if (soapaction != null && soapaction.contains("ContentDirectory:1#GetSearchCapabilities")) {
 					response.append(getSearchCapabilitiesHandler(mediaRenderer));
 				} else if (soapaction != null && soapaction.contains("ContentDirectory:1#Browse")) {
+					long start = System.nanoTime();
 					response.append(browseHandler());
+					BROWSE_LATENCY.labels(getMetricsRendererName()).recordSince(start);
 				} else if (soapaction != null && soapaction.contains("ContentDirectory:1#Search")) {
+					long start = System.nanoTime();
 					response.append(searchHandler());
+					SEARCH_LATENCY.labels(getMetricsRendererName()).recordSince(start);
 				} else {
 					LOGGER.debug("Unsupported action received: " + content);
 				}
-			} else if (method.getName().equals("SUBSCRIBE")) {
-				response.append(subscribeHandler(output));
+			} else if (method.getName().equals("SUBSCRIBE") || method.getName().equals("UNSUBSCRIBE")) {
+				subscribeHandler(output);
 			} else if (method.getName().equals("NOTIFY")) {
 				response.append(notifyHandler(output));
 			}
@@ -860,11 +890,23 @@ public class RequestV2 extends HTTPResource {
 			} else {
 				// No response data and no input stream. Seems we are merely serving up headers.
 				output.headers().set(HttpHeaders.Names.CONTENT_LENGTH, "0");
-				output.setStatus(HttpResponseStatus.NO_CONTENT);
+				if (!method.getName().endsWith("SUBSCRIBE")) {
+					output.setStatus(HttpResponseStatus.NO_CONTENT);
+				}
 
 				// Send the response headers to the client.
 				future = event.getChannel().write(output);
 
+				if (newSubscription != null) {
+					// The subscriber must know the SID before the initial event
+					GENAEventNotifier.Subscription subscription = newSubscription;
+					future.addListener((ChannelFuture written) -> {
+						if (written.isSuccess()) {
+							GENAEventNotifier.getInstance().sendInitialEvent(subscription);
+						}
+					});
+				}
+
 				if (close) {
 					// Close the channel after the response is sent.
 					future.addListener(ChannelFutureListener.CLOSE);
@@ -968,74 +1010,29 @@ public class RequestV2 extends HTTPResource {
 		return result;
 	}
 
-	private String subscribeHandler(HttpResponse output) throws IOException {
-		StringBuilder response = new StringBuilder();
-		output.headers().set("SID", PMS.get().usn());
-
-		/**
-		 * Requirement [7.2.22.1]: UPnP devices must send events to all properly
-		 * subscribed UPnP control points. The device must enforce a subscription
-		 * TIMEOUT value of 5 minutes.
-		 * The UPnP device behavior of enforcing this 5 minutes TIMEOUT value is
-		 * implemented by specifying "TIMEOUT: second-300" as an HTTP header/value pair.
-		 */
-		output.headers().set("TIMEOUT", "Second-300");
-
-		if (soapaction != null) {
-			String cb = soapaction.replace("<", "").replace(">", "");
-
-			try {
-				URL soapActionUrl = new URL(cb);
-				String addr = soapActionUrl.getHost();
-				int port = soapActionUrl.getPort();
-				try (
-						Socket sock = new Socket(addr, port);
-						OutputStream out = sock.getOutputStream()
-				) {
-					out.write(("NOTIFY /" + uri + " HTTP/1.1").getBytes(StandardCharsets.UTF_8));
-					out.write(CRLF.getBytes(StandardCharsets.UTF_8));
-					out.write(("SID: " + PMS.get().usn()).getBytes(StandardCharsets.UTF_8));
-					out.write(CRLF.getBytes(StandardCharsets.UTF_8));
-					out.write(("SEQ: " + 0).getBytes(StandardCharsets.UTF_8));
-					out.write(CRLF.getBytes(StandardCharsets.UTF_8));
-					out.write(("NT: upnp:event").getBytes(StandardCharsets.UTF_8));
-					out.write(CRLF.getBytes(StandardCharsets.UTF_8));
-					out.write(("NTS: upnp:propchange").getBytes(StandardCharsets.UTF_8));
-					out.write(CRLF.getBytes(StandardCharsets.UTF_8));
-					out.write(("HOST: " + addr + ":" + port).getBytes(StandardCharsets.UTF_8));
-					out.write(CRLF.getBytes(StandardCharsets.UTF_8));
-					out.flush();
-				}
-			} catch (MalformedURLException ex) {
-				LOGGER.debug("Cannot parse address and port from soap action \"" + soapaction + "\"", ex);
-			}
+	private void subscribeHandler(HttpResponse output) {
+		GENAEventNotifier notifier = GENAEventNotifier.getInstance();
+		boolean success;
+		if (method.getName().equals("UNSUBSCRIBE")) {
+			success = notifier.unsubscribe(sid);
 		} else {
-			LOGGER.debug("Expected soap action in request");
+			// A SUBSCRIBE with a callback is a new subscription, otherwise a renewal
+			GENAEventNotifier.Subscription subscription;
+			if (soapaction != null) {
+				newSubscription = notifier.subscribe(soapaction, uri);
+				subscription = newSubscription;
+			} else {
+				subscription = notifier.renew(sid);
+			}
+			success = subscription != null;
+			if (success) {
+				output.headers().set("SID", subscription.getSid());
+				output.headers().set("TIMEOUT", subscription.getTimeoutHeader());
+			}
 		}
-
-		if (uri.contains("connection_manager")) {
-			response.append(HTTPXMLHelper.eventHeader("urn:schemas-upnp-org:service:ConnectionManager:1"));
-			response.append(HTTPXMLHelper.eventProp("SinkProtocolInfo"));
-			response.append(HTTPXMLHelper.eventProp("SourceProtocolInfo"));
-			response.append(HTTPXMLHelper.eventProp("CurrentConnectionIDs"));
-			response.append(HTTPXMLHelper.EVENT_FOOTER);
-		} else if (uri.contains("content_directory")) {
-			response.append(HTTPXMLHelper.eventHeader("urn:schemas-upnp-org:service:ContentDirectory:1"));
-			response.append(HTTPXMLHelper.eventProp("TransferIDs"));
-			response.append(HTTPXMLHelper.eventProp("ContainerUpdateIDs"));
-			response.append(HTTPXMLHelper.eventProp("SystemUpdateID", "" + DLNAResource.getSystemUpdateId()));
-			response.append(HTTPXMLHelper.EVENT_FOOTER);
-		} else if (uri.contains("x_ms_mediareceiverregistrar")) {
-			response.append(HTTPXMLHelper.eventHeader("urn:schemas-upnp-org:service:ContentDirectory:1"));
-			// though this is only a 'potemkin' implementation of an MRR,
-			// keep the MMR-related update ids in-sync with the system update id
-			response.append(HTTPXMLHelper.eventProp("AuthorizationGrantedUpdateID", "" + DLNAResource.getSystemUpdateId()));
-			response.append(HTTPXMLHelper.eventProp("AuthorizationDeniedUpdateID", "" + DLNAResource.getSystemUpdateId()));
-			response.append(HTTPXMLHelper.eventProp("ValidationSucceededUpdateID", "" + DLNAResource.getSystemUpdateId()));
-			response.append(HTTPXMLHelper.eventProp("ValidationRevokedUpdateID", "" + DLNAResource.getSystemUpdateId()));
-			response.append(HTTPXMLHelper.EVENT_FOOTER);
+		if (!success) {
+			output.setStatus(HttpResponseStatus.PRECONDITION_FAILED);
 		}
-		return response.toString();
 	}
 
 	private String notifyHandler(HttpResponse output) {
@@ -1051,7 +1048,7 @@ public class RequestV2 extends HTTPResource {
 		response.append("<TransferIDs></TransferIDs>");
 		response.append("</e:property>");
 		response.append("<e:property>");
-		response.append("<ContainerUpdateIDs></ContainerUpdateIDs>");
+		response.append("<ContainerUpdateIDs>").append(GENAEventNotifier.getInstance().getContainerUpdateIds()).append("</ContainerUpdateIDs>");
 		response.append("</e:property>");
 		response.append("<e:property>");
 		response.append("<SystemUpdateID>").append(DLNAResource.getSystemUpdateId()).append("</SystemUpdateID>");
@@ -1167,6 +1164,10 @@ public class RequestV2 extends HTTPResource {
 		return rendererName;
 	}
 
+	private String getMetricsRendererName() {
+		return mediaRenderer != null && isNotBlank(mediaRenderer.getRendererName()) ? mediaRenderer.getRendererName() : "Unknown";
+	}
+
 	private StringBuilder samsungGetFeaturesListHandler() {
 		StringBuilder features = new StringBuilder();
 		String rootFolderId = PMS.get().getRootFolder(mediaRenderer).getResourceId();
@@ -1369,27 +1370,11 @@ public class RequestV2 extends HTTPResource {
 		}
 		response.append(CRLF);
 
-		/**
-		 * From page 95, section 5.5.8.2 of http://www.upnp.org/specs/av/UPnP-av-ContentDirectory-v4-Service.pdf
-		 *
-		 * UpdateID: The value returned in the UpdateID argument shall be the SystemUpdateID
-		 * state variable value at the time the Browse() response was generated. If a control point
-		 * finds that the current SystemUpdateID state variable value is not equal to the value
-		 * returned in the UpdateID argument, then a change within the ContentDirectory service has
-		 * occurred between the time the result was generated and the time that the control point is
-		 * processing the result. The control point might therefore want to re-invoke the Browse()
-		 * action to ensure that it has the latest property values. Note however that the change in the
-		 * value of the SystemUpdateID state variable could have been caused by a change that
-		 * occurred in a location in the ContentDirectory tree hierarchy that is not part of the returned
-		 * result. In this case, the re-invocation of the Browse() action will return the exact same
-		 * result.
-		 * Note: This definition is not backwards compatible with previous versions of this
-		 * specification. However, the previous definition did not indicate changes to properties
-		 * of child containers. Therefore the control point would not have been aware that it had
-		 * stale data.
-		 */
+		// The ContainerUpdateID of the browsed container, as ContentDirectory:1
+		// defines it. Renderers match it against the ContainerUpdateIDs events.
+		DLNAResource browsed = browseDirectChildren ? parentFolder : (files != null && filessize > 0 ? files.get(0) : null);
 		response.append("<UpdateID>");
-		response.append(DLNAResource.getSystemUpdateId());
+		response.append(DLNAResource.getUpdateId(browsed));
 		response.append("</UpdateID>");
 		response.append(CRLF);
 
@@ -0,0 +1,63 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; version 2
+ * of the License only.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package net.pms.network.mediaserver.nettyserver;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import net.pms.network.SpeedStats;
+import net.pms.network.TransferMeter;
+import org.jboss.netty.buffer.ChannelBuffer;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.ChannelHandlerContext;
+import org.jboss.netty.channel.MessageEvent;
+import org.jboss.netty.channel.SimpleChannelDownstreamHandler;
+
+/**
+ * Reports the encoded data written to the channel to a {@link TransferMeter}
+ * so that {@link SpeedStats} can estimate the throughput to the renderer.
+ * Must be the first handler of the pipeline to see the data as it is sent.
+ */
+public class ThroughputMeteringHandler extends SimpleChannelDownstreamHandler {
+	private TransferMeter meter;
+
+	@Override
+	public void writeRequested(ChannelHandlerContext ctx, MessageEvent e) throws Exception {
+		if (e.getMessage() instanceof ChannelBuffer) {
+			final TransferMeter transferMeter = getMeter(e.getRemoteAddress() != null ? e.getRemoteAddress() : e.getChannel().getRemoteAddress());
+			final int bytes = ((ChannelBuffer) e.getMessage()).readableBytes();
+			if (transferMeter != null && bytes > 0) {
+				transferMeter.writeStarted();
+				e.getFuture().addListener(new ChannelFutureListener() {
+					@Override
+					public void operationComplete(ChannelFuture future) {
+						transferMeter.writeCompleted(future.isSuccess() ? bytes : 0);
+					}
+				});
+			}
+		}
+		super.writeRequested(ctx, e);
+	}
+
+	private synchronized TransferMeter getMeter(SocketAddress remoteAddress) {
+		if (meter == null && remoteAddress instanceof InetSocketAddress && ((InetSocketAddress) remoteAddress).getAddress() != null) {
+			meter = SpeedStats.createMeter(((InetSocketAddress) remoteAddress).getAddress());
+		}
+		return meter;
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; version 2
+ * of the License only.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package net.pms.network.mediaserver.socketchannelserver;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A byte level reader for HTTP requests on a persistent connection. Header
+ * lines are found by scanning the buffered bytes for line feeds and request
+ * bodies are read as raw bytes, so {@code Content-Length} is honored exactly
+ * and any pipelined request following a body stays in the buffer for the next
+ * read.
+ */
+class HttpRequestReader {
+	private static final int INITIAL_BUFFER_SIZE = 8192;
+	private static final int MAX_LINE_LENGTH = 65536;
+
+	private final InputStream in;
+	private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+	private int position;
+	private int limit;
+
+	HttpRequestReader(InputStream in) {
+		this.in = in;
+	}
+
+	/**
+	 * Reads a line terminated by {@code LF} or {@code CRLF}.
+	 *
+	 * @return The line without the line terminator, or {@code null} if the
+	 *         end of the stream was reached before any byte was read.
+	 * @throws IOException If an error occurs or if the line is too long.
+	 */
+	String readLine() throws IOException {
+		int scanned = position;
+		while (true) {
+			for (int i = scanned; i < limit; i++) {
+				if (buffer[i] == '\n') {
+					int end = i > position && buffer[i - 1] == '\r' ? i - 1 : i;
+					String line = new String(buffer, position, end - position, StandardCharsets.UTF_8);
+					position = i + 1;
+					return line;
+				}
+			}
+			scanned = limit - position;
+			compact();
+			if (limit == buffer.length) {
+				if (buffer.length >= MAX_LINE_LENGTH) {
+					throw new IOException("HTTP header line exceeds " + MAX_LINE_LENGTH + " bytes");
+				}
+				buffer = Arrays.copyOf(buffer, buffer.length * 2);
+			}
+			int read = in.read(buffer, limit, buffer.length - limit);
+			if (read < 0) {
+				if (limit == position) {
+					return null;
+				}
+				String line = new String(buffer, position, limit - position, StandardCharsets.UTF_8);
+				position = limit;
+				return line;
+			}
+			limit += read;
+		}
+	}
+
+	/**
+	 * Reads exactly {@code length} bytes, starting with any buffered bytes.
+	 *
+	 * @param length the number of bytes to read.
+	 * @return The bytes read.
+	 * @throws EOFException If the stream ends before {@code length} bytes were
+	 *             read.
+	 * @throws IOException If an error occurs.
+	 */
+	byte[] readFully(int length) throws IOException {
+		byte[] result = new byte[length];
+		int count = Math.min(length, limit - position);
+		System.arraycopy(buffer, position, result, 0, count);
+		position += count;
+		while (count < length) {
+			int read = in.read(result, count, length - count);
+			if (read < 0) {
+				throw new EOFException("Request body ended after " + count + " of " + length + " bytes");
+			}
+			count += read;
+		}
+		return result;
+	}
+
+	/**
+	 * @return {@code true} if bytes of a pipelined request are already
+	 *         buffered.
+	 */
+	boolean hasBufferedData() {
+		return position < limit;
+	}
+
+	private void compact() {
+		if (position > 0) {
+			System.arraycopy(buffer, position, buffer, 0, limit - position);
+			limit -= position;
+			position = 0;
+		}
+	}
+}
@@ -17,11 +17,11 @@
  */
 package net.pms.network.mediaserver.socketchannelserver;
 
+import net.pms.network.mediaserver.GENAEventNotifier;
 import net.pms.network.mediaserver.HTTPXMLHelper;
 import java.io.*;
-import java.net.MalformedURLException;
-import java.net.Socket;
-import java.net.URL;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -55,6 +55,8 @@ import net.pms.image.BufferedImageFilterChain;
 import net.pms.image.ImagesUtil;
 import net.pms.io.OutputParams;
 import net.pms.io.ProcessWrapper;
+import net.pms.io.SizeLimitInputStream;
+import net.pms.network.MeteredOutputStream;
 import net.pms.network.mediaserver.handlers.HTMLConsole;
 import net.pms.network.HTTPResource;
 import net.pms.network.mediaserver.MediaServer;
@@ -82,6 +84,8 @@ public class Request extends HTTPResource {
 	private static final String HTTP_204_NO_CONTENT_10 = "HTTP/1.0 204 No content";
 	private static final String HTTP_206_OK = "HTTP/1.1 206 Partial Content";
 	private static final String HTTP_206_OK_10 = "HTTP/1.0 206 Partial Content";
+	private static final String HTTP_412_PRECONDITION_FAILED = "HTTP/1.1 412 Precondition Failed";
+	private static final String HTTP_412_PRECONDITION_FAILED_10 = "HTTP/1.0 412 Precondition Failed";
 	private static final String HTTP_415_UNSUPPORTED_MEDIA_TYPE = "HTTP/1.1 415 Unsupported Media Type";
 	private static final String HTTP_415_UNSUPPORTED_MEDIA_TYPE_10 = "HTTP/1.0 415 Unsupported Media Type";
 	private static final String HTTP_500 = "HTTP/1.1 500 Internal Server Error";
@@ -105,6 +109,7 @@ public class Request extends HTTPResource {
 	 */
 	private String argument;
 	private String soapaction;
+	private String sid;
 	private String content;
 	private OutputStream output;
 	private String objectID;
@@ -128,6 +133,8 @@ public class Request extends HTTPResource {
 	 */
 	private long highRange;
 	private boolean http10;
+	private SocketChannel channel;
+	private boolean keepAlive;
 
 	public RendererConfiguration getMediaRenderer() {
 		return mediaRenderer;
@@ -216,6 +223,25 @@ public class Request extends HTTPResource {
 		this.http10 = http10;
 	}
 
+	/**
+	 * Sets the {@link SocketChannel} of the connection, which allows file
+	 * responses to be sent without copying them through the heap.
+	 *
+	 * @param channel the {@link SocketChannel} or {@code null}.
+	 */
+	public void setChannel(SocketChannel channel) {
+		this.channel = channel;
+	}
+
+	/**
+	 * @return Whether the response sent by {@link #answer} was completely
+	 *         delimited, so that the connection can be used for another
+	 *         request.
+	 */
+	public boolean isKeepAlive() {
+		return keepAlive;
+	}
+
 	/**
 	 * This class will construct and transmit a proper HTTP response to a given HTTP request.
 	 * @param method The {@link String} that defines the HTTP method to be used.
@@ -235,6 +261,14 @@ public class Request extends HTTPResource {
 		this.soapaction = soapaction;
 	}
 
+	/**
+	 * @param sid the subscription identifier of a SUBSCRIBE or UNSUBSCRIBE
+	 *            request.
+	 */
+	public void setSid(String sid) {
+		this.sid = sid;
+	}
+
 	public String getTextContent() {
 		return content;
 	}
@@ -422,17 +456,23 @@ public class Request extends HTTPResource {
 						appendToHeader(responseHeader, "Expires: " + getFUTUREDATE() + " GMT");
 						appendToHeader(responseHeader, "Connection: keep-alive");
 						try {
-							InputStream imageInputStream;
+							InputStream imageInputStream = null;
+							File imageFile = null;
 							if (dlna.getPlayer() instanceof ImagePlayer) {
 								ProcessWrapper transcodeProcess = dlna.getPlayer().launchTranscode(dlna, dlna.getMedia(), new OutputParams(configuration));
 								imageInputStream = transcodeProcess != null ? transcodeProcess.getInputStream(0) : null;
+							} else if (dlna instanceof RealFile && ((RealFile) dlna).getFile() != null && ((RealFile) dlna).getFile().isFile()) {
+								// Read the file directly so that large images aren't loaded into memory
+								imageFile = ((RealFile) dlna).getFile();
 							} else {
 								imageInputStream = dlna.getInputStream();
 							}
-							if (imageInputStream == null) {
+							if (imageInputStream == null && imageFile == null) {
 								LOGGER.warn("Input stream returned for \"{}\" was null, no image will be sent to renderer", fileName);
 							} else {
-								inputStream = DLNAImageInputStream.toImageInputStream(imageInputStream, imageProfile, false);
+								inputStream = imageFile != null ?
+									DLNAImageInputStream.toImageInputStream(imageFile, imageProfile, false) :
+									DLNAImageInputStream.toImageInputStream(imageInputStream, imageProfile, false);
 								if (contentFeatures != null) {
 									appendToHeader(
 										responseHeader,
@@ -890,27 +930,11 @@ public class Request extends HTTPResource {
 					}
 					response.append(CRLF);
 
-					/**
-					 * From page 95, section 5.5.8.2 of http://www.upnp.org/specs/av/UPnP-av-ContentDirectory-v4-Service.pdf
-					 *
-					 * UpdateID: The value returned in the UpdateID argument shall be the SystemUpdateID
-					 * state variable value at the time the Browse() response was generated. If a control point
-					 * finds that the current SystemUpdateID state variable value is not equal to the value
-					 * returned in the UpdateID argument, then a change within the ContentDirectory service has
-					 * occurred between the time the result was generated and the time that the control point is
-					 * processing the result. The control point might therefore want to re-invoke the Browse()
-					 * action to ensure that it has the latest property values. Note however that the change in the
-					 * value of the SystemUpdateID state variable could have been caused by a change that
-					 * occurred in a location in the ContentDirectory tree hierarchy that is not part of the returned
-					 * result. In this case, the re-invocation of the Browse() action will return the exact same
-					 * result.
-					 * Note: This definition is not backwards compatible with previous versions of this
-					 * specification. However, the previous definition did not indicate changes to properties
-					 * of child containers. Therefore the control point would not have been aware that it had
-					 * stale data.
-					 */
+					// The ContainerUpdateID of the browsed container, as ContentDirectory:1
+					// defines it. Renderers match it against the ContainerUpdateIDs events.
+					DLNAResource browsed = browseDirectChildren ? parentFolder : (files != null && filessize > 0 ? files.get(0) : null);
 					response.append("<UpdateID>");
-					response.append(DLNAResource.getSystemUpdateId());
+					response.append(DLNAResource.getUpdateId(browsed));
 					response.append("</UpdateID>");
 					response.append(CRLF);
 
@@ -923,74 +947,47 @@ public class Request extends HTTPResource {
 					response.append(HTTPXMLHelper.SOAP_ENCODING_FOOTER);
 					response.append(CRLF);
 				}
-			} else if (method.equals("SUBSCRIBE")) {
-				if (soapaction == null) {
-					// Ignore this
-					return;
+			} else if (method.equals("SUBSCRIBE") || method.equals("UNSUBSCRIBE")) {
+				GENAEventNotifier notifier = GENAEventNotifier.getInstance();
+				GENAEventNotifier.Subscription newSubscription = null;
+				boolean success;
+				if (method.equals("UNSUBSCRIBE")) {
+					success = notifier.unsubscribe(sid);
+				} else {
+					// A SUBSCRIBE with a callback is a new subscription, otherwise a renewal
+					GENAEventNotifier.Subscription subscription;
+					if (soapaction != null) {
+						newSubscription = notifier.subscribe(soapaction, argument);
+						subscription = newSubscription;
+					} else {
+						subscription = notifier.renew(sid);
+					}
+					success = subscription != null;
+					if (success) {
+						appendToHeader(responseHeader, "SID: " + subscription.getSid());
+						appendToHeader(responseHeader, "Timeout: " + subscription.getTimeoutHeader());
+					}
+				}
+				if (!success) {
+					responseHeader.set(0, http10 ? HTTP_412_PRECONDITION_FAILED_10 : HTTP_412_PRECONDITION_FAILED);
 				}
-				appendToHeader(responseHeader, CONTENT_TYPE_UTF8);
-				appendToHeader(responseHeader, "Content-Length: 0");
-				appendToHeader(responseHeader, "Connection: close");
-				appendToHeader(responseHeader, "SID: " + PMS.get().usn());
 				appendToHeader(responseHeader, "Server: " + PMS.get().getServerName());
-				appendToHeader(responseHeader, "Timeout: Second-1800");
+				appendToHeader(responseHeader, "Content-Length: 0");
 				appendToHeader(responseHeader, "");
 				sendHeader(responseHeader);
-				responseHeader.clear();
-
-				if (soapaction != null) {
-					String cb = soapaction.replace("<", "").replace(">", "");
-
-					try {
-						URL soapActionUrl = new URL(cb);
-						String addr = soapActionUrl.getHost();
-						int port = soapActionUrl.getPort();
-						try (Socket sock = new Socket(addr, port)) {
-							OutputStream out = sock.getOutputStream();
-
-							sendLine(out, "NOTIFY /" + argument + " HTTP/1.1");
-							sendLine(out, "SID: " + PMS.get().usn());
-							sendLine(out, "SEQ: " + 0);
-							sendLine(out, "NT: upnp:event");
-							sendLine(out, "NTS: upnp:propchange");
-							sendLine(out, "HOST: " + addr + ":" + port);
-							sendLine(out, CONTENT_TYPE_UTF8);
-						}
-					} catch (MalformedURLException ex) {
-						LOGGER.debug("Cannot parse address and port from soap action \"" + soapaction + "\"", ex);
-					}
-				} else {
-					LOGGER.debug("Expected soap action in request");
-				}
-
-				if (argument.contains("connection_manager")) {
-					response.append(HTTPXMLHelper.eventHeader("urn:schemas-upnp-org:service:ConnectionManager:1"));
-					response.append(HTTPXMLHelper.eventProp("SinkProtocolInfo"));
-					response.append(HTTPXMLHelper.eventProp("SourceProtocolInfo"));
-					response.append(HTTPXMLHelper.eventProp("CurrentConnectionIDs"));
-					response.append(HTTPXMLHelper.EVENT_FOOTER);
-				} else if (argument.contains("content_directory")) {
-					response.append(HTTPXMLHelper.eventHeader("urn:schemas-upnp-org:service:ContentDirectory:1"));
-					response.append(HTTPXMLHelper.eventProp("TransferIDs"));
-					response.append(HTTPXMLHelper.eventProp("ContainerUpdateIDs"));
-					response.append(HTTPXMLHelper.eventProp("SystemUpdateID", "" + DLNAResource.getSystemUpdateId()));
-					response.append(HTTPXMLHelper.EVENT_FOOTER);
-				} else if (argument.contains("x_ms_mediareceiverregistrar")) {
-					response.append(HTTPXMLHelper.eventHeader("urn:schemas-upnp-org:service:ContentDirectory:1"));
-					// though this is only a 'potemkin' implementation of an MRR,
-					// keep the MMR-related update ids in-sync with the system update id
-					response.append(HTTPXMLHelper.eventProp("AuthorizationGrantedUpdateID", "" + DLNAResource.getSystemUpdateId()));
-					response.append(HTTPXMLHelper.eventProp("AuthorizationDeniedUpdateID", "" + DLNAResource.getSystemUpdateId()));
-					response.append(HTTPXMLHelper.eventProp("ValidationSucceededUpdateID", "" + DLNAResource.getSystemUpdateId()));
-					response.append(HTTPXMLHelper.eventProp("ValidationRevokedUpdateID", "" + DLNAResource.getSystemUpdateId()));
-					response.append(HTTPXMLHelper.EVENT_FOOTER);
+				keepAlive = !http10;
+				if (newSubscription != null) {
+					// The response with the SID is flushed, the subscriber can accept the initial event
+					notifier.sendInitialEvent(newSubscription);
 				}
+				return;
 			}
 
 			appendToHeader(responseHeader, "Server: " + PMS.get().getServerName());
 
 			if (response.length() > 0) {
 				// A response message was constructed; convert it to data ready to be sent.
+				keepAlive = true;
 				byte[] responseData = response.toString().getBytes(StandardCharsets.UTF_8);
 				appendToHeader(responseHeader, "Content-Length: " + responseData.length);
 				appendToHeader(responseHeader, "");
@@ -1003,20 +1000,26 @@ public class Request extends HTTPResource {
 				}
 			} else if (inputStream != null) {
 				// There is an input stream to send as a response.
-
+				long contentLength = -1;
 				if (cLoverride > -2) {
 					// Content-Length override has been set, send or omit as appropriate
 					if (cLoverride > -1 && cLoverride != DLNAMediaInfo.TRANS_SIZE) {
 						// Since PS3 firmware 2.50, it is wiser not to send an arbitrary Content-Length,
 						// as the PS3 will display a network error and request the last seconds of the
 						// transcoded video. Better to send no Content-Length at all.
+						contentLength = cLoverride;
 						appendToHeader(responseHeader, "Content-Length: " + cLoverride);
 					}
 				} else {
 					int cl = inputStream.available();
 					LOGGER.trace("Available Content-Length: " + cl);
+					contentLength = cl;
 					appendToHeader(responseHeader, "Content-Length: " + cl);
 				}
+				if (contentLength < 0) {
+					// The end of the response is signaled by closing the connection
+					responseHeader.replaceAll(headerLine -> "Connection: keep-alive".equals(headerLine) ? "Connection: close" : headerLine);
+				}
 
 				if (timeseek > 0 && dlna != null) {
 					// Add timeseek information headers.
@@ -1035,6 +1038,8 @@ public class Request extends HTTPResource {
 					sendB = sendBytes(inputStream); //, ((lowRange > 0 && highRange > 0)?(highRange-lowRange):-1)
 				}
 
+				// Only a response of the announced length leaves the connection usable
+				keepAlive = contentLength > -1 && (method.equals("HEAD") || sendB == contentLength);
 				if (sendB > -1) {
 					LOGGER.trace("Sending stream: {} bytes of {}", sendB, argument);
 				} else {
@@ -1042,11 +1047,13 @@ public class Request extends HTTPResource {
 					startStopListenerDelegate.stop();
 				}
 			} else { // inputStream is null
+				keepAlive = true;
 				appendToHeader(responseHeader, "Content-Length: 0");
 				appendToHeader(responseHeader, "");
 				responseHeader.set(0, http10 ? HTTP_204_NO_CONTENT_10 : HTTP_204_NO_CONTENT);
 				sendHeader(responseHeader);
 			}
+			keepAlive &= !http10 && !responseHeader.contains("Connection: close");
 			if (LOGGER.isTraceEnabled()) {
 				// Log trace information
 				StringBuilder header = new StringBuilder();
@@ -1125,11 +1132,6 @@ public class Request extends HTTPResource {
 		responseHeader.add(line);
 	}
 
-	private static void sendLine(OutputStream output, String line) throws IOException {
-		output.write((line + CRLF).getBytes(StandardCharsets.UTF_8));
-		LOGGER.trace("Wrote on socket: " + line);
-	}
-
 	private void sendHeader(List<String> responseHeader) throws IOException {
 		for (String line : responseHeader) {
 			output.write((line + CRLF).getBytes(StandardCharsets.UTF_8));
@@ -1143,12 +1145,22 @@ public class Request extends HTTPResource {
 	}
 
 	// VISTA tip ?: netsh interface tcp set global autotuninglevel=disabled
-	private int sendBytes(InputStream fis) throws IOException {
-		byte[] buffer = new byte[32 * 1024];
-		int bytes;
-		int sendBytes = 0;
+	private long sendBytes(InputStream fis) throws IOException {
+		long sendBytes = 0;
 
 		try {
+			// Files are transferred by the kernel straight to the socket
+			InputStream source = fis instanceof SizeLimitInputStream ? ((SizeLimitInputStream) fis).getWrappedInputStream() : fis;
+			if (source instanceof FileInputStream && channel != null && output instanceof MeteredOutputStream) {
+				FileChannel fileChannel = ((FileInputStream) source).getChannel();
+				long count = fis instanceof SizeLimitInputStream ?
+					((SizeLimitInputStream) fis).getBytesLeft() :
+					fileChannel.size() - fileChannel.position();
+				return ((MeteredOutputStream) output).transferFrom(fileChannel, fileChannel.position(), Math.max(count, 0), channel);
+			}
+
+			byte[] buffer = new byte[32 * 1024];
+			int bytes;
 			while ((bytes = fis.read(buffer)) != -1) {
 				output.write(buffer, 0, bytes);
 				sendBytes += bytes;
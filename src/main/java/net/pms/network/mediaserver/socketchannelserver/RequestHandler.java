@@ -17,19 +17,19 @@
  */
 package net.pms.network.mediaserver.socketchannelserver;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.StringTokenizer;
+import java.util.function.BooleanSupplier;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.TransformerException;
 import javax.xml.xpath.XPathExpressionException;
@@ -37,6 +37,7 @@ import net.pms.PMS;
 import net.pms.configuration.RendererConfiguration;
 import net.pms.dlna.protocolinfo.PanasonicDmpProfiles;
 import net.pms.external.StartStopListenerDelegate;
+import net.pms.network.MeteredOutputStream;
 import net.pms.network.mediaserver.MediaServer;
 import net.pms.util.StringUtil;
 import static net.pms.util.StringUtil.convertStringToTime;
@@ -50,9 +51,26 @@ import org.xml.sax.SAXException;
 public class RequestHandler implements Runnable {
 	private static final Logger LOGGER = LoggerFactory.getLogger(RequestHandler.class);
 	public final static int SOCKET_BUF_SIZE = 32768;
+
+	/** How long an idle persistent connection waits for the next request */
+	private static final int KEEP_ALIVE_TIMEOUT = 5000;
+
+	/**
+	 * How long a client can take to send the request line of its first
+	 * request, and the headers and content of every request
+	 */
+	private static final int REQUEST_TIMEOUT = 20000;
+
+	/** The maximum number of requests served on one connection */
+	private static final int MAX_KEEP_ALIVE_REQUESTS = 1000;
+
 	private final Socket socket;
 	private final OutputStream output;
-	private final BufferedReader br;
+	private final HttpRequestReader input;
+	private final BooleanSupplier othersWaiting;
+
+	private static int keepAliveTimeout = KEEP_ALIVE_TIMEOUT;
+	private static int requestTimeout = REQUEST_TIMEOUT;
 
 	// Used to filter out known headers when the renderer is not recognized
 	private final static String[] KNOWN_HEADERS = {
@@ -74,18 +92,93 @@ public class RequestHandler implements Runnable {
 	private static final String HTTPSERVER_REQUEST_END =    "================================== HTTPSERVER REQUEST END =======================================";
 
 	public RequestHandler(Socket socket) throws IOException {
+		this(socket, () -> false);
+	}
+
+	/**
+	 * Creates a handler serving the requests of a persistent connection.
+	 *
+	 * @param socket the accepted {@link Socket}.
+	 * @param othersWaiting tells whether other connections are waiting for a
+	 *            worker, in which case an idle connection is closed instead of
+	 *            kept open.
+	 * @throws IOException If an error occurs.
+	 */
+	public RequestHandler(Socket socket, BooleanSupplier othersWaiting) throws IOException {
 		this.socket = socket;
-		this.output = socket.getOutputStream();
-		this.br = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+		this.output = new MeteredOutputStream(socket.getOutputStream(), socket.getInetAddress());
+		this.input = new HttpRequestReader(socket.getInputStream());
+		this.othersWaiting = othersWaiting;
+	}
+
+	/**
+	 * Only for tests, sets the timeouts used instead of
+	 * {@link #KEEP_ALIVE_TIMEOUT} and {@link #REQUEST_TIMEOUT}.
+	 */
+	static void setTimeouts(int keepAlive, int request) {
+		keepAliveTimeout = keepAlive;
+		requestTimeout = request;
 	}
 
 	@Override
 	public void run() {
+		try {
+			socket.setTcpNoDelay(true);
+			int served = 0;
+			while (handleRequest(served > 0) && ++served < MAX_KEEP_ALIVE_REQUESTS) {
+				if (!input.hasBufferedData() && othersWaiting.getAsBoolean()) {
+					// Give the worker to a waiting connection, the client will reconnect
+					break;
+				}
+			}
+		} catch (IOException e) {
+			LOGGER.debug("Error setting up connection: {}", e.getMessage());
+		} finally {
+			try {
+				output.close();
+				socket.close();
+			} catch (IOException e) {
+				LOGGER.error("Error closing connection: {}", e.getMessage());
+				LOGGER.trace("", e);
+			}
+		}
+	}
+
+	/**
+	 * Reads and answers one request on the connection.
+	 *
+	 * @param idle whether the connection has already served a request, in
+	 *            which case the wait for the next one is limited to
+	 *            {@link #KEEP_ALIVE_TIMEOUT} instead of
+	 *            {@link #REQUEST_TIMEOUT}.
+	 * @return {@code true} if the connection can be used for another request.
+	 */
+	private boolean handleRequest(boolean idle) {
 		Request request = null;
 		StartStopListenerDelegate startStopListenerDelegate = new StartStopListenerDelegate(socket.getInetAddress().getHostAddress());
+		boolean keepAlive = false;
 
 		try {
+			// Wait for the request line, skipping any empty lines before it
+			socket.setSoTimeout(idle ? keepAliveTimeout : requestTimeout);
+			String line;
+			try {
+				do {
+					line = input.readLine();
+				} while (line != null && line.isEmpty());
+			} catch (SocketTimeoutException e) {
+				return false;
+			}
+			if (line == null) {
+				return false;
+			}
+			if (idle) {
+				// The rest of the request must not pin the worker either
+				socket.setSoTimeout(requestTimeout);
+			}
+
 			int receivedContentLength = -1;
+			boolean connectionClose = false;
 			String userAgentString = null;
 			ArrayList<String> identifiers = new ArrayList<>();
 
@@ -114,13 +207,12 @@ public class RequestHandler implements Runnable {
 
 			// Gather all the headers
 			ArrayList<String> headerLines = new ArrayList<>();
-			String line = br.readLine();
 			while (line != null && line.length() > 0) {
 				headerLines.add(line);
 				if (sortedHeaders != null) {
 					sortedHeaders.put(line);
 				}
-				line = br.readLine();
+				line = input.readLine();
 			}
 
 			if (unrecognized) {
@@ -137,7 +229,7 @@ public class RequestHandler implements Runnable {
 					// Is the request from our own JUPnP service, i.e. self-originating?
 					if (isSelf && headerLine.contains("UMS/")) {
 						//LOGGER.trace("Ignoring self-originating request from {}:{}", ia, remoteAddress.getPort());
-						return;
+						return false;
 					}
 					userAgentString = headerLine.substring(headerLine.indexOf(':') + 1).trim();
 				} else if (renderer != null && headerLine.startsWith("X-PANASONIC-DMP-Profile:")) {
@@ -147,7 +239,7 @@ public class RequestHandler implements Runnable {
 				try {
 					StringTokenizer s = new StringTokenizer(headerLine);
 					String temp = s.nextToken();
-					if (temp.equals("SUBSCRIBE") || temp.equals("GET") || temp.equals("POST") || temp.equals("HEAD")) {
+					if (temp.equals("SUBSCRIBE") || temp.equals("UNSUBSCRIBE") || temp.equals("GET") || temp.equals("POST") || temp.equals("HEAD")) {
 						request = new Request(temp, s.nextToken().substring(1));
 						if (s.hasMoreTokens() && s.nextToken().equals("HTTP/1.0")) {
 							request.setHttp10(true);
@@ -156,6 +248,10 @@ public class RequestHandler implements Runnable {
 						request.setSoapaction(s.nextToken());
 					} else if (request != null && temp.toUpperCase().equals("SOAPACTION:")) {
 						request.setSoapaction(s.nextToken());
+					} else if (request != null && temp.toUpperCase().equals("SID:")) {
+						request.setSid(s.nextToken());
+					} else if (temp.toUpperCase().equals("CONNECTION:")) {
+						connectionClose = headerLine.toLowerCase().contains("close");
 					} else if (headerLine.toUpperCase().contains("CONTENT-LENGTH:")) {
 						receivedContentLength = Integer.parseInt(headerLine.substring(headerLine.toUpperCase().indexOf("CONTENT-LENGTH: ") + 16));
 					} else if (headerLine.toUpperCase().contains("RANGE: BYTES=")) {
@@ -257,7 +353,7 @@ public class RequestHandler implements Runnable {
 					} else {
 						// If RendererConfiguration.resolve() didn't return the default renderer
 						// it means we know via upnp that it's not really a renderer.
-						return;
+						return false;
 					}
 				} else if (LOGGER.isDebugEnabled()) {
 					LOGGER.debug("Recognized media renderer \"{}\"", renderer.getRendererName());
@@ -265,10 +361,9 @@ public class RequestHandler implements Runnable {
 			}
 
 			if (receivedContentLength > 0) {
-				char[] buf = new char[receivedContentLength];
-				br.read(buf);
+				byte[] buf = input.readFully(receivedContentLength);
 				if (request != null) {
-					String textContent = new String(buf);
+					String textContent = new String(buf, StandardCharsets.UTF_8);
 					request.setTextContent(textContent);
 					if (LOGGER.isTraceEnabled()) {
 						logMessageReceived(headerLines, textContent, socket.getRemoteSocketAddress(), renderer);
@@ -279,14 +374,21 @@ public class RequestHandler implements Runnable {
 			}
 
 			if (request != null) {
+				request.setChannel(socket.getChannel());
 				request.answer(output, startStopListenerDelegate);
+				output.flush();
+				keepAlive = request.isKeepAlive() && !connectionClose;
 			}
 
 			if (request != null && request.getInputStream() != null) {
 				request.getInputStream().close();
 			}
 		} catch (IOException e) {
-			LOGGER.error("Unexpected IO error in {}: {}", getClass().getName(), e.getMessage());
+			if (e instanceof SocketTimeoutException) {
+				LOGGER.debug("Timed out reading the request from {}", socket.getInetAddress().getHostAddress());
+			} else {
+				LOGGER.error("Unexpected IO error in {}: {}", getClass().getName(), e.getMessage());
+			}
 			// "An established connection was aborted by the software in your host machine"
 			// is localized on Windows so there's no way to differentiate it
 			// from other IOExceptions.
@@ -300,18 +402,11 @@ public class RequestHandler implements Runnable {
 					LOGGER.trace("", e1);
 				}
 			}
+			keepAlive = false;
 		} finally {
-			try {
-				output.close();
-				br.close();
-				socket.close();
-			} catch (IOException e) {
-				LOGGER.error("Error closing connection: {}", e.getMessage());
-				LOGGER.trace("", e);
-			}
-
 			startStopListenerDelegate.stop();
 		}
+		return keepAlive;
 	}
 
 	private static void logMessageReceived(List<String> headerLines, String content, SocketAddress remote, RendererConfiguration renderer) {
@@ -22,8 +22,13 @@ import java.io.IOException;
 import java.net.*;
 import java.nio.channels.ClosedByInterruptException;
 import java.nio.channels.ServerSocketChannel;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import net.pms.PMS;
 import net.pms.configuration.PmsConfiguration;
+import net.pms.util.BasicThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -31,10 +36,17 @@ public class SocketChannelServer extends HttpMediaServer implements Runnable {
 	private static final Logger LOGGER = LoggerFactory.getLogger(SocketChannelServer.class);
 	private static final PmsConfiguration CONFIGURATION = PMS.getConfiguration();
 
+	/**
+	 * The maximum number of connections served at the same time. Further
+	 * connections wait in the order they were accepted.
+	 */
+	private static final int MAX_WORKERS = 64;
+
 	private ServerSocketChannel serverSocketChannel;
 	private ServerSocket serverSocket;
 	private boolean shouldStop;
 	private Thread runnable;
+	private ThreadPoolExecutor workers;
 
 	public SocketChannelServer(InetAddress inetAddress, int port) {
 		super(inetAddress, port);
@@ -56,6 +68,16 @@ public class SocketChannelServer extends HttpMediaServer implements Runnable {
 		localPort = serverSocket.getLocalPort();
 		MediaServer.setPort(localPort);
 
+		workers = new ThreadPoolExecutor(
+			MAX_WORKERS,
+			MAX_WORKERS,
+			30,
+			TimeUnit.SECONDS,
+			new LinkedBlockingQueue<>(),
+			new BasicThreadFactory("HTTPv1 Request Worker %d")
+		);
+		workers.allowCoreThreadTimeOut(true);
+
 		runnable = new Thread(this, "HTTPv1 Request Handler");
 		runnable.setDaemon(false);
 		runnable.start();
@@ -78,6 +100,10 @@ public class SocketChannelServer extends HttpMediaServer implements Runnable {
 			runnable.interrupt();
 		}
 
+		if (workers != null) {
+			workers.shutdownNow();
+		}
+
 		if (serverSocket != null) { // HTTP Engine V1
 			try {
 				serverSocket.close();
@@ -93,7 +119,6 @@ public class SocketChannelServer extends HttpMediaServer implements Runnable {
 	@Override
 	public void run() {
 		LOGGER.trace("Starting Runnable for HTTP server (SocketChannel) on host {} and port {}", hostname, localPort);
-		int count = 0;
 		while (!shouldStop) {
 			try {
 				Socket socket = serverSocket.accept();
@@ -109,14 +134,13 @@ public class SocketChannelServer extends HttpMediaServer implements Runnable {
 				}
 
 				if (!ignore) {
-					if (count == Integer.MAX_VALUE) {
-						count = 1;
-					} else {
-						count++;
+					ThreadPoolExecutor pool = workers;
+					try {
+						pool.execute(new RequestHandler(socket, () -> !pool.getQueue().isEmpty()));
+					} catch (RejectedExecutionException e) {
+						// The server is stopping
+						socket.close();
 					}
-					RequestHandler request = new RequestHandler(socket);
-					Thread thread = new Thread(request, "HTTPv1 Request Worker " + count);
-					thread.start();
 				}
 			} catch (ClosedByInterruptException e) {
 				shouldStop = true;
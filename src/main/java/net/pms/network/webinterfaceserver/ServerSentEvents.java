@@ -2,18 +2,82 @@ package net.pms.network.webinterfaceserver;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import net.pms.util.BasicThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * An event stream to a web client. Events are queued per client and written
+ * by a small shared pool of writer threads, so a slow browser never blocks the
+ * thread sending the event. A client that falls {@link #MAX_QUEUED_EVENTS}
+ * events behind, or that doesn't accept a write for {@link #MAX_STALL_TIME}
+ * milliseconds, is closed. A writer blocked on a stalled client is held until
+ * the client is closed, so while other clients wait for a writer, a client may
+ * only block a write for {@link #MAX_BUSY_STALL_TIME} milliseconds. All open
+ * clients are pinged once a second by a single shared scheduler, which also
+ * closes the streams of the evicted clients.
+ * <p>
+ * A message that can't be written to the client, because the stream fails or
+ * is closed before it gets to the message, is reported to the failure callback
+ * passed with it.
+ */
 public class ServerSentEvents {
 	private static final Logger LOGGER = LoggerFactory.getLogger(ServerSentEvents.class);
 
+	/** The number of events a client may fall behind before it is closed */
+	private static final int MAX_QUEUED_EVENTS = 1024;
+
+	/** How long a write to a client may block before the client is closed */
+	private static final long MAX_STALL_TIME = 30000;
+
+	/**
+	 * How long a write to a client may block before the client is closed,
+	 * when every writer is busy and other clients wait for one
+	 */
+	private static final long MAX_BUSY_STALL_TIME = 1000;
+
+	private static final int MAX_WRITERS = 4;
+
+	private static final Set<ServerSentEvents> CLIENTS = ConcurrentHashMap.newKeySet();
+	private static final ThreadPoolExecutor WRITERS;
+	private static ScheduledExecutorService scheduler;
+
+	static {
+		WRITERS = new ThreadPoolExecutor(
+			MAX_WRITERS,
+			MAX_WRITERS,
+			30,
+			TimeUnit.SECONDS,
+			new LinkedBlockingQueue<>(),
+			new BasicThreadFactory("ServerSentEvents Writer %d")
+		);
+		WRITERS.allowCoreThreadTimeOut(true);
+	}
+
 	private final Object osLock = new Object();
 	private final String language;
+	private final Queue<Event> queue = new ArrayBlockingQueue<>(MAX_QUEUED_EVENTS);
+	private final AtomicBoolean draining = new AtomicBoolean();
+	private volatile long writeStarted;
+
+	/** Whether the stream is closed once the queued events are written */
+	private boolean finishing;
 
-	private Thread pingThread;
-	private OutputStream os;
+	private volatile OutputStream os;
 
 	public ServerSentEvents(OutputStream os, String language) {
 		addEventStream(os);
@@ -22,11 +86,13 @@ public class ServerSentEvents {
 
 	public final void addEventStream(OutputStream os) {
 		//clean current OutputStream in case of....
-		stopPing();
 		close();
 		synchronized (osLock) {
+			queue.clear();
+			finishing = false;
 			this.os = os;
 		}
+		CLIENTS.add(this);
 		LOGGER.debug("ServerSentEvents OutputStream was set");
 		startPing();
 	}
@@ -35,80 +101,223 @@ public class ServerSentEvents {
 		return this.os != null;
 	}
 
-	public boolean sendMessage(String message) {
-		String response = "event: message\n";
-		response += "data: " + message + "\n\n";
+	/**
+	 * Queues a message for this client.
+	 *
+	 * @param message the message.
+	 * @param onFailure the callback to run if the message is queued but can't
+	 *            be written to the client, or {@code null}.
+	 * @return {@code true} if the message was queued, {@code false} if the
+	 *         stream is closed or was closed because the client fell too far
+	 *         behind.
+	 */
+	public boolean sendMessage(String message, Runnable onFailure) {
 		LOGGER.trace("ServerSentEvents send message: {}", message);
-		return send(response);
+		return send(new Event(encodeMessage(message), onFailure));
 	}
 
 	public void close() {
+		OutputStream stream = detach();
+		if (stream != null) {
+			closeStream(stream);
+		}
+	}
+
+	/**
+	 * Closes the stream once the messages queued so far are written. No more
+	 * messages are accepted.
+	 */
+	public void finish() {
 		synchronized (osLock) {
-			if (os != null) {
-				LOGGER.debug("ServerSentEvents close OutputStream");
-				try {
-					os.close();
-				} catch (IOException ex) {
-				}
-				os = null;
+			if (os == null) {
+				return;
 			}
+			finishing = true;
+		}
+		CLIENTS.remove(this);
+		if (draining.compareAndSet(false, true)) {
+			WRITERS.execute(this::drain);
 		}
 	}
 
-	private boolean send(String response) {
-		return send(response.getBytes());
+	/**
+	 * Takes the stream away from this client and reports the events that
+	 * won't be written.
+	 *
+	 * @return The stream or {@code null} if it was already closed.
+	 */
+	private OutputStream detach() {
+		CLIENTS.remove(this);
+		OutputStream stream;
+		List<Event> undelivered;
+		synchronized (osLock) {
+			stream = os;
+			os = null;
+			undelivered = new ArrayList<>(queue);
+			queue.clear();
+		}
+		for (Event event : undelivered) {
+			event.failed();
+		}
+		return stream;
 	}
 
-	private boolean send(byte[] response) {
+	private static void closeStream(OutputStream stream) {
+		LOGGER.debug("ServerSentEvents close OutputStream");
 		try {
-			if (isOpened()) {
-				synchronized (osLock) {
-					os.write(response);
-					os.flush();
-				}
-				return true;
-			}
+			stream.close();
 		} catch (IOException ex) {
-			LOGGER.debug("ServerSentEvents OutputStream seems closed");
-			stopPing();
-			close();
 		}
-		return false;
 	}
 
-	private void startPing() {
-		if (pingThread != null && pingThread.isAlive()) {
-			LOGGER.trace("ServerSentEvents pingThread already running");
-			return;
+	private static byte[] encodeMessage(String message) {
+		return ("event: message\ndata: " + message + "\n\n").getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static void broadcast(Event event) {
+		for (ServerSentEvents client : CLIENTS) {
+			client.send(event);
 		}
-		Runnable rPing = () -> {
-			while (isOpened()) {
-				try {
-					Thread.sleep(1000);
-				} catch (InterruptedException e) {
-					close();
-					return;
+	}
+
+	private boolean send(Event event) {
+		synchronized (osLock) {
+			if (os == null || finishing) {
+				return false;
+			}
+			if (queue.offer(event)) {
+				event = null;
+			}
+		}
+		if (event != null) {
+			LOGGER.debug("ServerSentEvents client is {} events behind, closing it", MAX_QUEUED_EVENTS);
+			evict();
+			return false;
+		}
+		if (draining.compareAndSet(false, true)) {
+			WRITERS.execute(this::drain);
+		}
+		if (!WRITERS.getQueue().isEmpty()) {
+			// Clients wait for a writer, free the ones blocked by stalled clients
+			evictStalledClients(MAX_BUSY_STALL_TIME);
+		}
+		return true;
+	}
+
+	/**
+	 * Closes the clients whose current write has been blocked for longer
+	 * than {@code maxStallTime} milliseconds.
+	 */
+	private static void evictStalledClients(long maxStallTime) {
+		long stalledSince = System.currentTimeMillis() - maxStallTime;
+		for (ServerSentEvents client : CLIENTS) {
+			long started = client.writeStarted;
+			if (started > 0 && started < stalledSince) {
+				LOGGER.debug("ServerSentEvents client didn't accept data for {} ms, closing it", System.currentTimeMillis() - started);
+				client.evict();
+			}
+		}
+	}
+
+	/**
+	 * Closes a client that doesn't keep up. A writer may be blocked on the
+	 * stream, so closing it may block too. The client is detached right away,
+	 * and the stream closed by the scheduler instead of a writer, since all
+	 * the writers may be blocked.
+	 */
+	private void evict() {
+		OutputStream stream = detach();
+		if (stream != null) {
+			closeLater(stream);
+		}
+	}
+
+	private static synchronized void closeLater(OutputStream stream) {
+		scheduler.execute(() -> closeStream(stream));
+	}
+
+	/**
+	 * Writes the queued events to the stream. Only one drain runs at a time
+	 * for each client.
+	 */
+	private void drain() {
+		do {
+			OutputStream stream = os;
+			Event event = null;
+			try {
+				while (stream != null && (event = poll()) != null) {
+					writeStarted = System.currentTimeMillis();
+					stream.write(event.data);
+				}
+				if (stream != null) {
+					writeStarted = System.currentTimeMillis();
+					stream.flush();
+				}
+			} catch (IOException ex) {
+				LOGGER.debug("ServerSentEvents OutputStream seems closed");
+				if (event != null) {
+					event.failed();
 				}
-				sendPing();
+				close();
+			} finally {
+				writeStarted = 0;
 			}
-		};
-		pingThread = new Thread(rPing, "ServerSentEvents ping");
-		pingThread.start();
+			if (stream != null && isFinished()) {
+				close();
+			}
+			draining.set(false);
+			// An event may have been queued after the last poll
+		} while (!queue.isEmpty() && draining.compareAndSet(false, true));
 	}
 
-	private void stopPing() {
-		if (pingThread != null) {
-			pingThread.interrupt();
+	private Event poll() {
+		synchronized (osLock) {
+			return queue.poll();
 		}
 	}
 
-	private boolean sendPing() {
-		String response = "event: ping\n";
-		response += "data: " + new Timestamp(System.currentTimeMillis()) + "\n\n";
-		return send(response);
+	private boolean isFinished() {
+		synchronized (osLock) {
+			return finishing && queue.isEmpty();
+		}
+	}
+
+	private static synchronized void startPing() {
+		if (scheduler == null) {
+			scheduler = Executors.newSingleThreadScheduledExecutor(new BasicThreadFactory("ServerSentEvents ping"));
+			scheduler.scheduleAtFixedRate(ServerSentEvents::sendPing, 1, 1, TimeUnit.SECONDS);
+		}
+	}
+
+	private static void sendPing() {
+		if (!CLIENTS.isEmpty()) {
+			evictStalledClients(WRITERS.getQueue().isEmpty() ? MAX_STALL_TIME : MAX_BUSY_STALL_TIME);
+			String response = "event: ping\n";
+			response += "data: " + new Timestamp(System.currentTimeMillis()) + "\n\n";
+			broadcast(new Event(response.getBytes(StandardCharsets.UTF_8), null));
+		}
 	}
 
 	public String getMsgString(String key) {
 		return WebInterfaceServerUtil.getMsgString(key, language);
 	}
+
+	/**
+	 * An encoded event, which may be queued for several clients.
+	 */
+	private static class Event {
+		private final byte[] data;
+		private final Runnable onFailure;
+
+		private Event(byte[] data, Runnable onFailure) {
+			this.data = data;
+			this.onFailure = onFailure;
+		}
+
+		private void failed() {
+			if (onFailure != null) {
+				onFailure.run();
+			}
+		}
+	}
 }
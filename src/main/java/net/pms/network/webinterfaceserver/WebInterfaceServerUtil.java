@@ -35,9 +35,23 @@ import java.net.URL;
 import java.net.URLClassLoader;
 import java.net.URLConnection;
 import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 import java.sql.Connection;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
 import net.pms.Messages;
 import net.pms.PMS;
 import net.pms.configuration.IpFilter;
@@ -52,6 +66,7 @@ import net.pms.dlna.Range;
 import net.pms.dlna.RootFolder;
 import net.pms.network.HTTPResource;
 import net.pms.util.APIUtils;
+import net.pms.util.BasicThreadFactory;
 import net.pms.util.FileUtil;
 import net.pms.util.FileWatcher;
 import net.pms.util.Languages;
@@ -76,6 +91,14 @@ public class WebInterfaceServerUtil {
 	private static final String HTTPSERVER_RESPONSE_BEGIN = "============================= INTERFACE HTTPSERVER RESPONSE BEGIN ===============================";
 	private static final String HTTPSERVER_RESPONSE_END =   "============================= INTERFACE HTTPSERVER RESPONSE END =================================";
 
+	/** Writes the streams of unknown length that would tie up a server thread */
+	private static final ExecutorService STREAM_WRITERS = Executors.newCachedThreadPool(new BasicThreadFactory("Web Stream Writer %d"));
+
+	/** Returned by {@link #getByteRange} for a range that can't be satisfied */
+	static final long[] UNSATISFIABLE_RANGE = new long[0];
+
+	private static byte[] logo;
+
 	public static void respond(HttpExchange t, String response, int status, String mime) {
 		if (response != null) {
 			if (mime != null) {
@@ -115,43 +138,291 @@ public class WebInterfaceServerUtil {
 		if (!f.exists()) {
 			throw new IOException("no file");
 		}
-		t.sendResponseHeaders(200, f.length());
-		InputStream in = new FileInputStream(f);
-		if (LOGGER.isTraceEnabled()) {
-			logMessageSent(t, "", in);
-		}
-		dump(in, t.getResponseBody());
+		sendFile(t, f, null);
 		LOGGER.debug("dump of " + f.getName() + " done");
 	}
 
+	/**
+	 * Copies the stream to the response body on a pooled writer thread and
+	 * closes both streams when done. This is meant for streams of unknown
+	 * length like transcoded media, regular files should be sent with
+	 * {@link #sendFile} instead.
+	 *
+	 * @param in the stream to send.
+	 * @param os the response body.
+	 */
 	public static void dump(final InputStream in, final OutputStream os) {
-		Runnable r = () -> {
-			byte[] buffer = new byte[32 * 1024];
-			int bytes;
-			int sendBytes = 0;
+		STREAM_WRITERS.execute(() -> copy(in, os));
+	}
 
+	/**
+	 * Copies the stream to the response body on the calling thread and closes
+	 * both streams when done.
+	 *
+	 * @param in the stream to send.
+	 * @param os the response body.
+	 */
+	public static void copy(InputStream in, OutputStream os) {
+		byte[] buffer = new byte[32 * 1024];
+		int bytes;
+		long sendBytes = 0;
+
+		try {
+			while ((bytes = in.read(buffer)) != -1) {
+				sendBytes += bytes;
+				os.write(buffer, 0, bytes);
+				os.flush();
+			}
+			LOGGER.trace("Sending stream finished after: " + sendBytes + " bytes.");
+		} catch (IOException e) {
+			LOGGER.trace("Sending stream with premature end: " + sendBytes + " bytes. Reason: " + e.getMessage());
+		} finally {
 			try {
-				while ((bytes = in.read(buffer)) != -1) {
-					sendBytes += bytes;
-					os.write(buffer, 0, bytes);
-					os.flush();
+				in.close();
+			} catch (IOException e) {
+			}
+		}
+
+		try {
+			os.close();
+		} catch (IOException e) {
+		}
+	}
+
+	/**
+	 * Sends a file on the calling thread. The response carries an ETag and a
+	 * Last-Modified header computed from the file metadata, is answered with
+	 * 304 when the client's copy is still valid, and honors a single byte
+	 * range. The body is transferred from a {@link FileChannel}.
+	 *
+	 * @param t the exchange.
+	 * @param file the file to send.
+	 * @param mime the content type or {@code null} to leave it unset.
+	 * @throws IOException If the response headers can't be sent.
+	 */
+	public static void sendFile(HttpExchange t, File file, String mime) throws IOException {
+		long length = file.length();
+		long lastModified = file.lastModified();
+		String etag = getETag(lastModified, length);
+		Headers hdr = t.getResponseHeaders();
+		if (mime != null && !hdr.containsKey("Content-Type")) {
+			hdr.add("Content-Type", mime);
+		}
+		hdr.set("Accept-Ranges", "bytes");
+		if (isNotModified(t, etag, lastModified)) {
+			return;
+		}
+
+		long start = 0;
+		long count = length;
+		int status = 200;
+		String range = t.getRequestHeaders().getFirst("Range");
+		String ifRange = t.getRequestHeaders().getFirst("If-Range");
+		if (range != null && (ifRange == null || ifRange.equals(etag))) {
+			long[] byteRange = getByteRange(range, length);
+			if (byteRange == UNSATISFIABLE_RANGE) {
+				hdr.set("Content-Range", "bytes */" + length);
+				t.sendResponseHeaders(416, -1);
+				return;
+			}
+			if (byteRange != null) {
+				start = byteRange[0];
+				count = byteRange[1] - byteRange[0] + 1;
+				status = 206;
+				hdr.set("Content-Range", "bytes " + byteRange[0] + "-" + byteRange[1] + "/" + length);
+			}
+		}
+
+		if ("HEAD".equals(t.getRequestMethod())) {
+			hdr.set("Content-Length", Long.toString(count));
+			t.sendResponseHeaders(status, -1);
+			return;
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			t.sendResponseHeaders(status, count == 0 ? -1 : count);
+			if (LOGGER.isTraceEnabled()) {
+				logMessageSent(t, "", null);
+			}
+			try (OutputStream os = t.getResponseBody()) {
+				WritableByteChannel out = Channels.newChannel(os);
+				long position = start;
+				long remaining = count;
+				while (remaining > 0) {
+					long sent = channel.transferTo(position, remaining, out);
+					if (sent <= 0) {
+						break;
+					}
+					position += sent;
+					remaining -= sent;
 				}
-				LOGGER.trace("Sending stream finished after: " + sendBytes + " bytes.");
+				LOGGER.trace("Sending file \"{}\" finished after: {} bytes.", file, count - remaining);
 			} catch (IOException e) {
-				LOGGER.trace("Sending stream with premature end: " + sendBytes + " bytes. Reason: " + e.getMessage());
-			} finally {
-				try {
-					in.close();
-				} catch (IOException e) {
+				LOGGER.trace("Sending file \"{}\" with premature end. Reason: {}", file, e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Sends an in-memory response on the calling thread, answering with 304
+	 * when the client already has it.
+	 *
+	 * @param t the exchange.
+	 * @param bytes the response body.
+	 * @param etag the entity tag of the response.
+	 * @param lastModified the modification time of the response or 0 if it
+	 *            isn't known.
+	 * @param mime the content type or {@code null} to leave it unset.
+	 * @throws IOException If the response headers can't be sent.
+	 */
+	public static void sendBytes(HttpExchange t, byte[] bytes, String etag, long lastModified, String mime) throws IOException {
+		Headers hdr = t.getResponseHeaders();
+		if (mime != null && !hdr.containsKey("Content-Type")) {
+			hdr.add("Content-Type", mime);
+		}
+		if (isNotModified(t, etag, lastModified)) {
+			return;
+		}
+		if ("HEAD".equals(t.getRequestMethod())) {
+			hdr.set("Content-Length", Integer.toString(bytes.length));
+			t.sendResponseHeaders(200, -1);
+			return;
+		}
+		t.sendResponseHeaders(200, bytes.length == 0 ? -1 : bytes.length);
+		if (LOGGER.isTraceEnabled()) {
+			logMessageSent(t, "", null);
+		}
+		try (OutputStream os = t.getResponseBody()) {
+			os.write(bytes);
+		} catch (IOException e) {
+			LOGGER.trace("Sending response with premature end. Reason: {}", e.getMessage());
+		}
+	}
+
+	/**
+	 * Sets the validators of the response and, if the request's conditions
+	 * show that the client's copy is current, sends a 304 response.
+	 *
+	 * @param t the exchange.
+	 * @param etag the entity tag of the response.
+	 * @param lastModified the modification time of the response or 0 if it
+	 *            isn't known.
+	 * @return {@code true} if a 304 response was sent.
+	 * @throws IOException If the response headers can't be sent.
+	 */
+	public static boolean isNotModified(HttpExchange t, String etag, long lastModified) throws IOException {
+		Headers hdr = t.getResponseHeaders();
+		hdr.set("ETag", etag);
+		if (lastModified > 0) {
+			hdr.set("Last-Modified", formatHttpDate(lastModified));
+		}
+		boolean notModified;
+		String ifNoneMatch = t.getRequestHeaders().getFirst("If-None-Match");
+		if (ifNoneMatch != null) {
+			// If-None-Match takes precedence over If-Modified-Since
+			notModified = false;
+			for (String tag : ifNoneMatch.split(",")) {
+				tag = tag.trim();
+				if (tag.startsWith("W/")) {
+					tag = tag.substring(2);
+				}
+				if (tag.equals("*") || tag.equals(etag)) {
+					notModified = true;
+					break;
 				}
 			}
+		} else {
+			long ifModifiedSince = parseHttpDate(t.getRequestHeaders().getFirst("If-Modified-Since"));
+			// HTTP dates only have a resolution of one second
+			notModified = lastModified > 0 && ifModifiedSince >= 0 && lastModified / 1000 <= ifModifiedSince / 1000;
+		}
+		if (notModified) {
+			t.sendResponseHeaders(304, -1);
+		}
+		return notModified;
+	}
 
-			try {
-				os.close();
-			} catch (IOException e) {
+	/**
+	 * @return an entity tag for content with the given modification time and
+	 *         length.
+	 */
+	public static String getETag(long lastModified, long length) {
+		return "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(length) + "\"";
+	}
+
+	/**
+	 * @return an entity tag for the given content.
+	 */
+	public static String getETag(byte[] bytes) {
+		CRC32 crc = new CRC32();
+		crc.update(bytes);
+		return getETag(crc.getValue(), bytes.length);
+	}
+
+	/**
+	 * Parses a single range of a {@code Range} header.
+	 *
+	 * @param range the header value.
+	 * @param length the length of the content.
+	 * @return the first and last position (both inclusive) of the range,
+	 *         {@code null} if the header isn't a usable byte range or
+	 *         {@link #UNSATISFIABLE_RANGE} if it can't be satisfied. As
+	 *         RFC 7233 section 3.1 requires, an invalid range, like one
+	 *         ending before its start, is ignored.
+	 */
+	static long[] getByteRange(String range, long length) {
+		if (range == null || !range.startsWith("bytes=") || range.indexOf(',') > -1) {
+			return null;
+		}
+		String spec = range.substring(6).trim();
+		int dash = spec.indexOf('-');
+		if (dash < 0) {
+			return null;
+		}
+		try {
+			long start;
+			long end;
+			if (dash == 0) {
+				// A suffix range: the last n bytes
+				long suffix = Long.parseLong(spec.substring(1));
+				if (suffix <= 0) {
+					return UNSATISFIABLE_RANGE;
+				}
+				start = Math.max(0, length - suffix);
+				end = length - 1;
+			} else {
+				start = Long.parseLong(spec.substring(0, dash));
+				if (dash == spec.length() - 1) {
+					end = length - 1;
+				} else {
+					end = Long.parseLong(spec.substring(dash + 1));
+					if (end < start) {
+						return null;
+					}
+					end = Math.min(end, length - 1);
+				}
 			}
-		};
-		new Thread(r).start();
+			if (start >= length) {
+				return UNSATISFIABLE_RANGE;
+			}
+			return new long[] {start, end};
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	private static String formatHttpDate(long time) {
+		return DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(time).atZone(ZoneOffset.UTC));
+	}
+
+	private static long parseHttpDate(String date) {
+		if (date == null) {
+			return -1;
+		}
+		try {
+			return ZonedDateTime.parse(date.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+		} catch (DateTimeParseException e) {
+			return -1;
+		}
 	}
 
 	public static void logMessageSent(HttpExchange exchange, String response, InputStream iStream) {
@@ -307,10 +578,22 @@ public class WebInterfaceServerUtil {
 	}
 
 	public static void sendLogo(HttpExchange t) throws IOException {
-		InputStream in = PMS.class.getResourceAsStream("/resources/images/logo.png");
-		t.sendResponseHeaders(200, 0);
-		OutputStream os = t.getResponseBody();
-		dump(in, os);
+		byte[] logo = getLogo();
+		if (logo == null) {
+			throw new IOException("Logo not found");
+		}
+		sendBytes(t, logo, getETag(logo), 0, HTTPResource.PNG_TYPEMIME);
+	}
+
+	private static synchronized byte[] getLogo() throws IOException {
+		if (logo == null) {
+			try (InputStream in = PMS.class.getResourceAsStream("/resources/images/logo.png")) {
+				if (in != null) {
+					logo = IOUtils.toByteArray(in);
+				}
+			}
+		}
+		return logo;
 	}
 
 	/**
@@ -600,6 +883,7 @@ public class WebInterfaceServerUtil {
 	public static class ResourceManager extends URLClassLoader {
 		private final HashSet<File> files;
 		private final HashMap<String, Template> templates;
+		private final Map<String, StaticResource> staticResources = new ConcurrentHashMap<>();
 
 		public ResourceManager(String... urls) {
 			super(new URL[]{}, null);
@@ -678,32 +962,108 @@ public class WebInterfaceServerUtil {
 
 		/**
 		 * Write the given resource as an http response body.
+		 * <p>
+		 * Web resources are read once and kept with their validators and, for
+		 * text, a gzip compressed copy. Registered files are sent with
+		 * {@link WebInterfaceServerUtil#sendFile}.
+		 *
 		 * @param filename
 		 * @param t
 		 * @return
 		 * @throws java.io.IOException
 		 */
 		public boolean write(String filename, HttpExchange t) throws IOException {
-			InputStream stream = getInputStream(filename);
-			if (stream != null) {
-				Headers headers = t.getResponseHeaders();
-				if (!headers.containsKey("Content-Type")) {
-					String mime = getContentType(filename);
-					if (mime != null) {
-						headers.add("Content-Type", mime);
-					}
+			URL url = getResource(filename);
+			File file = url == null ? getFile(filename) : null;
+			if (url == null && (file == null || !file.isFile())) {
+				return false;
+			}
+			Headers headers = t.getResponseHeaders();
+			String mime = getContentType(filename);
+			if (!headers.containsKey("Content-Type") && mime != null) {
+				headers.add("Content-Type", mime);
+			}
+			//add cache for js and css versionned
+			if (filename.startsWith("util/") && t.getRequestURI() != null && t.getRequestURI().getQuery() != null && t.getRequestURI().getQuery().startsWith("v=")) {
+				headers.add("Cache-Control", "public, max-age=604800");
+			}
+			if (file != null) {
+				sendFile(t, file, null);
+				return true;
+			}
+
+			StaticResource resource = getStaticResource(filename, url, mime);
+			byte[] bytes = resource.bytes;
+			String etag = resource.etag;
+			if (resource.gzipped != null) {
+				headers.add("Vary", "Accept-Encoding");
+				String acceptEncoding = t.getRequestHeaders().getFirst("Accept-Encoding");
+				if (acceptEncoding != null && acceptEncoding.contains("gzip")) {
+					headers.add("Content-Encoding", "gzip");
+					bytes = resource.gzipped;
+					// Each encoding needs its own entity tag
+					etag = etag.substring(0, etag.length() - 1) + "-gzip\"";
+				}
+			}
+			sendBytes(t, bytes, etag, resource.lastModified, null);
+			return true;
+		}
+
+		private StaticResource getStaticResource(String filename, URL url, String mime) throws IOException {
+			URLConnection connection = url.openConnection();
+			connection.setUseCaches(false);
+			long lastModified = connection.getLastModified();
+			StaticResource resource = staticResources.get(filename);
+			if (resource != null && resource.lastModified == lastModified && lastModified != 0) {
+				// The connection was only needed for the modification time
+				connection.getInputStream().close();
+				return resource;
+			}
+			byte[] bytes;
+			try (InputStream in = connection.getInputStream()) {
+				bytes = IOUtils.toByteArray(in);
+			}
+			byte[] gzipped = null;
+			if (isCompressible(mime) && bytes.length > 256) {
+				ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2);
+				try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+					gzip.write(bytes);
 				}
-				//add cache for js and css versionned
-				if (filename.startsWith("util/") && t.getRequestURI() != null && t.getRequestURI().getQuery() != null && t.getRequestURI().getQuery().startsWith("v=")) {
-					headers.add("Cache-Control", "public, max-age=604800");
+				if (out.size() < bytes.length) {
+					gzipped = out.toByteArray();
 				}
-				// Note: available() isn't officially guaranteed to return the full
-				// stream length but effectively seems to do so in our context.
-				t.sendResponseHeaders(200, stream.available());
-				dump(stream, t.getResponseBody());
-				return true;
 			}
-			return false;
+			resource = new StaticResource(bytes, gzipped, lastModified);
+			staticResources.put(filename, resource);
+			return resource;
+		}
+
+		private static boolean isCompressible(String mime) {
+			return mime != null && (
+				mime.startsWith("text/") ||
+				mime.endsWith("javascript") ||
+				mime.endsWith("json") ||
+				mime.endsWith("xml") ||
+				mime.equals("font/truetype")
+			);
+		}
+
+		/**
+		 * A web resource with its validators and an optional gzip compressed
+		 * copy.
+		 */
+		private static class StaticResource {
+			private final byte[] bytes;
+			private final byte[] gzipped;
+			private final long lastModified;
+			private final String etag;
+
+			private StaticResource(byte[] bytes, byte[] gzipped, long lastModified) {
+				this.bytes = bytes;
+				this.gzipped = gzipped;
+				this.lastModified = lastModified;
+				this.etag = getETag(bytes);
+			}
 		}
 
 		/**
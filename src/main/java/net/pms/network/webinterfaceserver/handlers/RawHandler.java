@@ -30,6 +30,7 @@ import net.pms.PMS;
 import net.pms.configuration.WebRender;
 import net.pms.dlna.DLNAResource;
 import net.pms.dlna.Range;
+import net.pms.dlna.RealFile;
 import net.pms.dlna.RootFolder;
 import net.pms.encoders.ImagePlayer;
 import net.pms.image.Image;
@@ -76,17 +77,23 @@ public class RawHandler implements HttpHandler {
 				throw new IOException("Bad id");
 			}
 			DLNAResource dlna = res.get(0);
+			if (dlna instanceof RealFile && (dlna.getMedia() == null || !dlna.getMedia().isImage() || isSupportedImage(dlna, root))) {
+				// Regular files are sent directly, with validators and ranges
+				String mime = dlna.getMedia() != null && dlna.getMedia().isImage() && dlna.getFormat() != null ?
+					dlna.getFormat().mimeType() :
+					root.getDefaultRenderer().getMimeType(dlna);
+				LOGGER.debug("Sending file \"{}\" with mime type \"{}\"", dlna, mime);
+				t.getResponseHeaders().add("Server", PMS.get().getServerName());
+				WebInterfaceServerUtil.sendFile(t, ((RealFile) dlna).getFile(), mime);
+				return;
+			}
 			long len;
 			String mime;
 			InputStream in;
 			Range.Byte range;
 			if (dlna.getMedia() != null && dlna.getMedia().isImage() && dlna.getMedia().getImageInfo() != null) {
-				boolean supported = false;
+				boolean supported = isSupportedImage(dlna, root);
 				ImageInfo imageInfo = dlna.getMedia().getImageInfo();
-				if (root.getDefaultRenderer() instanceof WebRender) {
-					WebRender renderer = (WebRender) root.getDefaultRenderer();
-					supported = renderer.isImageFormatSupported(imageInfo.getFormat());
-				}
 				mime = dlna.getFormat() != null ?
 					dlna.getFormat().mimeType() :
 					root.getDefaultRenderer().getMimeType(dlna);
@@ -150,4 +157,11 @@ public class RawHandler implements HttpHandler {
 			LOGGER.trace("", e);
 		}
 	}
+
+	private static boolean isSupportedImage(DLNAResource dlna, RootFolder root) {
+		ImageInfo imageInfo = dlna.getMedia().getImageInfo();
+		return imageInfo != null &&
+			root.getDefaultRenderer() instanceof WebRender &&
+			((WebRender) root.getDefaultRenderer()).isImageFormatSupported(imageInfo.getFormat());
+	}
 }
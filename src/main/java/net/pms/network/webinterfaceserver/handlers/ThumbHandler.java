@@ -21,7 +21,6 @@ import com.sun.net.httpserver.Headers;
 import com.sun.net.httpserver.HttpExchange;
 import com.sun.net.httpserver.HttpHandler;
 import java.io.IOException;
-import java.io.OutputStream;
 import net.pms.PMS;
 import net.pms.configuration.PmsConfiguration;
 import net.pms.dlna.DLNAResource;
@@ -90,10 +89,25 @@ public class ThumbHandler implements HttpHandler {
 				throw new IOException("Bad id");
 			}
 
+			// we shouldn't show the thumbs for coded objects
+			// unless the code is entered
+			boolean generic = !CONFIGURATION.isShowCodeThumbs() && !r.isCodeValid(r);
+			boolean fullyPlayed =
+				(
+					r instanceof RealFile &&
+					FullyPlayed.isFullyPlayedFileMark(((RealFile) r).getFile())
+				) ||
+				(
+					r instanceof MediaLibraryFolder &&
+					((MediaLibraryFolder) r).isTVSeries() &&
+					FullyPlayed.isFullyPlayedTVSeriesMark(((MediaLibraryFolder) r).getName())
+				);
+			if (WebInterfaceServerUtil.isNotModified(t, getETag(r, generic, fullyPlayed), 0)) {
+				return;
+			}
+
 			DLNAThumbnailInputStream in;
-			if (!CONFIGURATION.isShowCodeThumbs() && !r.isCodeValid(r)) {
-				// we shouldn't show the thumbs for coded objects
-				// unless the code is entered
+			if (generic) {
 				in = r.getGenericThumbnailInputStream(null);
 			} else {
 				r.checkThumbnail();
@@ -105,17 +119,7 @@ public class ThumbHandler implements HttpHandler {
 			}
 
 			BufferedImageFilterChain filterChain = null;
-			if (
-				(
-					r instanceof RealFile &&
-					FullyPlayed.isFullyPlayedFileMark(((RealFile) r).getFile())
-				) ||
-				(
-					r instanceof MediaLibraryFolder &&
-					((MediaLibraryFolder) r).isTVSeries() &&
-					FullyPlayed.isFullyPlayedTVSeriesMark(((MediaLibraryFolder) r).getName())
-				)
-			) {
+			if (fullyPlayed) {
 				filterChain = new BufferedImageFilterChain(FullyPlayed.getOverlayFilter());
 			}
 			filterChain = r.addFlagFilters(filterChain);
@@ -123,16 +127,17 @@ public class ThumbHandler implements HttpHandler {
 				in = in.transcode(in.getDLNAImageProfile(), false, filterChain);
 			}
 			Headers hdr = t.getResponseHeaders();
-			hdr.add("Content-Type", ImageFormat.PNG.equals(in.getFormat()) ? HTTPResource.PNG_TYPEMIME : HTTPResource.JPEG_TYPEMIME);
-			hdr.add("Accept-Ranges", "bytes");
 			hdr.add("Connection", "keep-alive");
-			t.sendResponseHeaders(200, in.getSize());
-			if (LOGGER.isTraceEnabled()) {
-				WebInterfaceServerUtil.logMessageSent(t, null, in);
-			}
-			OutputStream os = t.getResponseBody();
-			LOGGER.trace("Web thumbnail: Input is {} output is {}", in, os);
-			WebInterfaceServerUtil.dump(in, os);
+			byte[] bytes = in.getBytes(false);
+			LOGGER.trace("Web thumbnail: sending {} bytes", bytes.length);
+			// Generating the thumbnail may have changed its state
+			WebInterfaceServerUtil.sendBytes(
+				t,
+				bytes,
+				getETag(r, generic, fullyPlayed),
+				0,
+				ImageFormat.PNG.equals(in.getFormat()) ? HTTPResource.PNG_TYPEMIME : HTTPResource.JPEG_TYPEMIME
+			);
 		} catch (IOException e) {
 			throw e;
 		} catch (InterruptedException e) {
@@ -141,4 +146,25 @@ public class ThumbHandler implements HttpHandler {
 			LOGGER.trace("", e);
 		}
 	}
+
+	/**
+	 * Returns an entity tag for the thumbnail of a resource that is known
+	 * before the thumbnail is generated. It is made of what the thumbnail
+	 * depends on: the system update ID, which changes with the library and
+	 * when covers are fetched, the modification time of the file, whether the
+	 * thumbnail was generated and the overlays applied to it.
+	 *
+	 * @param r the resource.
+	 * @param generic whether the generic thumbnail is shown.
+	 * @param fullyPlayed whether the fully played overlay is shown.
+	 * @return The entity tag.
+	 */
+	private static String getETag(DLNAResource r, boolean generic, boolean fullyPlayed) {
+		long lastModified = 0;
+		if (r instanceof RealFile && ((RealFile) r).getFile() != null) {
+			lastModified = ((RealFile) r).getFile().lastModified();
+		}
+		int state = (generic ? 1 : 0) | (fullyPlayed ? 2 : 0) | (r.getMedia() != null && r.getMedia().isThumbready() ? 4 : 0);
+		return "\"" + Integer.toHexString(DLNAResource.getSystemUpdateId()) + "-" + Long.toHexString(lastModified) + "-" + state + "\"";
+	}
 }
@@ -29,6 +29,7 @@ import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLEncoder;
@@ -37,10 +38,12 @@ import java.nio.file.Path;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.regex.Pattern;
 import net.pms.Messages;
 import net.pms.PMS;
@@ -69,7 +72,6 @@ import net.pms.dlna.DLNAThumbnail;
 import net.pms.gui.GuiManager;
 import net.pms.image.ImageFormat;
 import net.pms.image.ImagesUtil.ScaleType;
-import net.pms.util.OpenSubtitle.OpenSubtitlesBackgroundWorkerThreadFactory;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -82,15 +84,35 @@ public class APIUtils {
 	private static final PmsConfiguration CONFIGURATION = PMS.getConfiguration();
 	private static final String VERBOSE_UA = "Universal Media Server " + PMS.getVersion();
 
-	// Minimum number of threads in pool
-	private static final ThreadPoolExecutor BACKGROUND_EXECUTOR = new ThreadPoolExecutor(0,
-		5, // Maximum number of threads in pool
-		30, // Number of seconds before an idle thread is terminated
+	/** The maximum number of API lookups that run at the same time */
+	private static final int MAX_LOOKUP_THREADS = 4;
 
-		// The queue holding the tasks waiting to be processed
-		TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
-			new OpenSubtitlesBackgroundWorkerThreadFactory() // The ThreadFactory
-	);
+	private static final MetadataLookupExecutor BACKGROUND_EXECUTOR = new MetadataLookupExecutor(MAX_LOOKUP_THREADS, "API Lookup Worker %d");
+
+	/**
+	 * The TV series lookups that are running, by lookup key. Episodes of the
+	 * same series that are looked up at the same time wait for one request.
+	 */
+	private static final Map<String, CompletableFuture<JsonObject>> SERIES_LOOKUPS = new ConcurrentHashMap<>();
+
+	/** The maximum number of TV series API results kept in memory */
+	private static final int MAX_CACHED_SERIES = 256;
+
+	/**
+	 * The TV series API results of this session, by lookup key in access
+	 * order, guarded by itself. The results must not be modified, callers get
+	 * copies.
+	 */
+	private static final Map<String, JsonObject> SERIES_CACHE = new LinkedHashMap<>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, JsonObject> eldest) {
+			return size() > MAX_CACHED_SERIES;
+		}
+	};
+
+	private static volatile String apiBaseUrl = "https://api.universalmediaserver.com";
 
 	static {
 		Runtime.getRuntime().addShutdownHook(new Thread("Api Utils Executor Shutdown Hook") {
@@ -157,7 +179,7 @@ public class APIUtils {
 			JsonObject jsonData = null;
 
 			if (CONFIGURATION.getExternalNetwork()) {
-				URL domain = new URL("https://api.universalmediaserver.com");
+				URL domain = new URL(apiBaseUrl);
 				URL url = new URL(domain, "/api/subversions");
 				String apiResult = getJson(url);
 
@@ -225,7 +247,7 @@ public class APIUtils {
 			JsonObject jsonData = null;
 
 			if (CONFIGURATION.getExternalNetwork()) {
-				URL domain = new URL("https://api.universalmediaserver.com");
+				URL domain = new URL(apiBaseUrl);
 				URL url = new URL(domain, "/api/configuration");
 				String apiResult = getJson(url);
 
@@ -543,7 +565,19 @@ public class APIUtils {
 				LOGGER.trace("Error in API parsing:", ex);
 			}
 		};
-		BACKGROUND_EXECUTOR.execute(r);
+		if (!BACKGROUND_EXECUTOR.execute(file.getAbsolutePath(), file.getParentFile(), r)) {
+			LOGGER.trace("API lookup for {} is already pending", file.getName());
+		}
+	}
+
+	/**
+	 * Runs the pending and future API lookups for the files in the given
+	 * folder before the others, because the user is browsing it.
+	 *
+	 * @param folder the folder.
+	 */
+	public static void prioritizeLookups(File folder) {
+		BACKGROUND_EXECUTOR.prioritize(folder);
 	}
 
 	private static void exitLookupAndAddMetadata(Connection connection) {
@@ -819,6 +853,52 @@ public class APIUtils {
 	 * @throws IOException If an I/O error occurs during the operation.
 	 */
 	public static JsonObject getTVSeriesInfo(String formattedName, String imdbID, String startYear) throws IOException {
+		String key = formattedName + "\n" + imdbID + "\n" + startYear;
+		JsonObject result;
+		synchronized (SERIES_CACHE) {
+			result = SERIES_CACHE.get(key);
+		}
+		if (result != null) {
+			LOGGER.trace("Using the TV series API result for {} from this session", formattedName);
+			return result.deepCopy();
+		}
+
+		CompletableFuture<JsonObject> lookup = new CompletableFuture<>();
+		CompletableFuture<JsonObject> running = SERIES_LOOKUPS.putIfAbsent(key, lookup);
+		if (running != null) {
+			LOGGER.trace("Waiting for the running TV series API lookup for {}", formattedName);
+			try {
+				result = running.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for the TV series lookup of " + formattedName);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException) {
+					throw (IOException) e.getCause();
+				}
+				throw new IOException(e.getCause());
+			}
+			return result == null ? null : result.deepCopy();
+		}
+
+		try {
+			result = lookupTVSeriesInfo(formattedName, imdbID, startYear);
+			if (result != null && !result.has("statusCode")) {
+				synchronized (SERIES_CACHE) {
+					SERIES_CACHE.put(key, result);
+				}
+			}
+			lookup.complete(result);
+		} catch (IOException | RuntimeException e) {
+			lookup.completeExceptionally(e);
+			throw e;
+		} finally {
+			SERIES_LOOKUPS.remove(key, lookup);
+		}
+		return result == null ? null : result.deepCopy();
+	}
+
+	private static JsonObject lookupTVSeriesInfo(String formattedName, String imdbID, String startYear) throws IOException {
 		String apiResult;
 
 		// Remove the startYear from the title if it exists
@@ -873,7 +953,7 @@ public class APIUtils {
 		String osdbHash,
 		long filebytesize
 	) throws IOException {
-		URL domain = new URL("https://api.universalmediaserver.com");
+		URL domain = new URL(apiBaseUrl);
 		String endpoint = isSeries ? "series/v2" : "video/v2";
 		ArrayList<String> getParameters = new ArrayList<>();
 		if (isNotBlank(title)) {
@@ -974,6 +1054,18 @@ public class APIUtils {
 		return null;
 	}
 
+	/**
+	 * Sets the API server to use, for testing.
+	 *
+	 * @param url the base URL of the API server.
+	 */
+	static void setApiBaseUrl(String url) {
+		apiBaseUrl = url;
+		synchronized (SERIES_CACHE) {
+			SERIES_CACHE.clear();
+		}
+	}
+
 	/**
 	 * @param posterFromApi a full URL of a poster from OMDb
 	 * @param posterRelativePathFromApi this is either a "poster_path" or "still_path" from TMDB
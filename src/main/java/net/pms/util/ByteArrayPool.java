@@ -0,0 +1,97 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.util;
+
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of the large byte arrays that the streaming pipes and stream
+ * transformers use for the lifetime of a stream. Arrays of several hundred
+ * kilobytes are allocated outside of the young generation, so allocating
+ * them for every stream makes the collector do expensive work for as long as
+ * streams are started and stopped.
+ * <p>
+ * Arrays are pooled by their exact size, and only {@link #MAX_POOLED} of each
+ * size are kept. An array must not be used after it has been released.
+ */
+public class ByteArrayPool {
+
+	/** The maximum number of idle arrays that are kept for each size */
+	private static final int MAX_POOLED = 8;
+
+	private static final Map<Integer, Pool> POOLS = new ConcurrentHashMap<>();
+
+	/**
+	 * Not to be instantiated.
+	 */
+	private ByteArrayPool() {
+	}
+
+	/**
+	 * Returns an array of the given size, filled with zeros like a newly
+	 * allocated array.
+	 *
+	 * @param size the size of the array.
+	 * @return The array.
+	 */
+	public static byte[] acquire(int size) {
+		Pool pool = POOLS.get(size);
+		byte[] array = pool == null ? null : pool.arrays.pollFirst();
+		if (array == null) {
+			return new byte[size];
+		}
+		pool.count.decrementAndGet();
+		Arrays.fill(array, (byte) 0);
+		return array;
+	}
+
+	/**
+	 * Returns an array acquired by {@link #acquire(int)} to the pool.
+	 *
+	 * @param array the array, {@code null} is ignored.
+	 */
+	public static void release(byte[] array) {
+		if (array == null) {
+			return;
+		}
+		Pool pool = POOLS.computeIfAbsent(array.length, size -> new Pool());
+		if (pool.count.incrementAndGet() <= MAX_POOLED) {
+			pool.arrays.offerFirst(array);
+		} else {
+			pool.count.decrementAndGet();
+		}
+	}
+
+	/**
+	 * @param size the array size.
+	 * @return The number of idle arrays of the given size.
+	 */
+	static int getPooled(int size) {
+		Pool pool = POOLS.get(size);
+		return pool == null ? 0 : pool.count.get();
+	}
+
+	private static class Pool {
+		private final Deque<byte[]> arrays = new ConcurrentLinkedDeque<>();
+		private final AtomicInteger count = new AtomicInteger();
+	}
+}
@@ -21,30 +21,52 @@ import static org.apache.commons.lang3.StringUtils.isBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
 import fm.last.musicbrainz.coverart.CoverArt;
 import fm.last.musicbrainz.coverart.CoverArtException;
+import fm.last.musicbrainz.coverart.CoverArtArchiveClient;
 import fm.last.musicbrainz.coverart.CoverArtImage;
 import fm.last.musicbrainz.coverart.impl.DefaultCoverArtArchiveClient;
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.sql.Connection;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import net.pms.PMS;
 import net.pms.database.MediaDatabase;
 import net.pms.database.MediaTableCoverArtArchive;
 import net.pms.database.MediaTableCoverArtArchive.CoverArtArchiveResult;
 import net.pms.database.MediaTableMusicBrainzReleases;
 import net.pms.database.MediaTableMusicBrainzReleases.MusicBrainzReleasesResult;
+import net.pms.image.Image;
+import net.pms.image.ImageFormat;
+import net.pms.image.ImagesUtil;
+import net.pms.image.ImagesUtil.ScaleType;
 import org.apache.commons.io.IOUtils;
 import org.apache.http.client.HttpResponseException;
+import org.apache.http.impl.client.HttpClients;
 import org.jaudiotagger.tag.FieldKey;
 import org.jaudiotagger.tag.Tag;
 import org.slf4j.Logger;
@@ -59,6 +81,10 @@ import org.xml.sax.SAXException;
  * This class is responsible for fetching music covers from Cover Art Archive.
  * It handles database caching and http lookup of both MusicBrainz ID's (MBID)
  * and binary cover data from Cover Art Archive.
+ * <p>
+ * Lookups run on a small pool of fetcher threads, and concurrent requests for
+ * the same tag or release share one lookup. Downloaded covers are resized and
+ * kept in a disk cache, so that they are only downloaded once.
  *
  * @author Nadahar
  */
@@ -68,6 +94,7 @@ public class CoverArtArchiveUtil extends CoverUtil {
 	private static final Logger LOGGER = LoggerFactory.getLogger(CoverArtArchiveUtil.class);
 	private static final long WAIT_TIMEOUT_MS = 30000;
 	private static final long EXPIRATION_TIME = 24 * 60 * 60 * 1000; // 24 hours
+	private static final String COVER_CACHE_DIR = "covers";
 	private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY = XmlUtils.xxeDisabledDocumentBuilderFactory();
 
 	private static enum ReleaseType {
@@ -318,257 +345,286 @@ public class CoverArtArchiveUtil extends CoverUtil {
 		}
 	}
 
-	private static class CoverArtArchiveTagLatch {
-		final CoverArtArchiveTagInfo info;
-		final CountDownLatch latch = new CountDownLatch(1);
-
-		public CoverArtArchiveTagLatch(CoverArtArchiveTagInfo info) {
-			this.info = info;
-		}
-	}
-
-	private static class CoverArtArchiveCoverLatch {
-		final String mBID;
-		final CountDownLatch latch = new CountDownLatch(1);
-
-		public CoverArtArchiveCoverLatch(String mBID) {
-			this.mBID = mBID;
-		}
-	}
-
 	/**
 	 * Do not instantiate this class, use {@link CoverUtil#get()}.
 	 */
 	protected CoverArtArchiveUtil() {
 	}
 
-	private static final Object TAG_LATCHES_LOCK = new Object();
-	private static final List<CoverArtArchiveTagLatch> TAG_LATCHES = new ArrayList<>();
+	/** The maximum number of MusicBrainz and Cover Art Archive requests at the same time */
+	private static final int MAX_FETCH_THREADS = 2;
+
+	/** The maximum width and height of the covers in the disk cache */
+	private static final int MAX_COVER_WIDTH = 640;
+	private static final int MAX_COVER_HEIGHT = 480;
+
+	private static final ThreadPoolExecutor FETCH_EXECUTOR;
+
+	static {
+		FETCH_EXECUTOR = new ThreadPoolExecutor(
+			MAX_FETCH_THREADS,
+			MAX_FETCH_THREADS,
+			30,
+			TimeUnit.SECONDS,
+			new LinkedBlockingQueue<>(),
+			new BasicThreadFactory("Cover Art Fetcher %d", Thread.NORM_PRIORITY - 1)
+		);
+		FETCH_EXECUTOR.allowCoreThreadTimeOut(true);
+	}
 
 	/**
-	 * Used to serialize search on a per {@link Tag} basis. Every thread doing
-	 * a search much hold a {@link CoverArtArchiveTagLatch} and release it when
-	 * the search is done and the result is written. Any other threads
-	 * attempting to search for the same {@link Tag} will wait for the existing
-	 * {@link CoverArtArchiveTagLatch} to be released, and can then use the
-	 * results from the previous thread instead of conducting it's own search.
+	 * The MusicBrainz release ID lookups that are queued or running. Concurrent
+	 * requests for the same tag share the lookup.
 	 */
-	private static CoverArtArchiveTagLatch reserveTagLatch(final CoverArtArchiveTagInfo tagInfo) {
-		CoverArtArchiveTagLatch tagLatch = null;
-
-		boolean owner = false;
-		long startTime = System.currentTimeMillis();
+	private static final Map<CoverArtArchiveTagInfo, CompletableFuture<String>> MBID_LOOKUPS = new ConcurrentHashMap<>();
 
-		while (!owner && !Thread.currentThread().isInterrupted()) {
+	/**
+	 * The cover downloads that are queued or running. Concurrent requests for
+	 * the same release share the download.
+	 */
+	private static final Map<String, CompletableFuture<byte[]>> COVER_LOOKUPS = new ConcurrentHashMap<>();
 
-			// Find if any other tread is currently searching the same tag
-			synchronized (TAG_LATCHES_LOCK) {
-				for (CoverArtArchiveTagLatch latch : TAG_LATCHES) {
-					if (latch.info.equals(tagInfo)) {
-						tagLatch = latch;
-						break;
-					}
-				}
-				// None found, our turn
-				if (tagLatch == null) {
-					tagLatch = new CoverArtArchiveTagLatch(tagInfo);
-					TAG_LATCHES.add(tagLatch);
-					owner = true;
-				}
-			}
+	private static volatile String musicBrainzUrl = "http://musicbrainz.org/ws/2/";
+	private static volatile CoverArtArchiveClient coverArtArchiveClient = new DefaultCoverArtArchiveClient(false, HttpClients.createSystem());
 
-			// Check for timeout here instead of in the while loop make logging
-			// it easier.
-			if (!owner && System.currentTimeMillis() - startTime > WAIT_TIMEOUT_MS) {
-				LOGGER.debug("A MusicBrainz search timed out while waiting it's turn");
-				return null;
-			}
+	/**
+	 * Sets the servers to use, for testing.
+	 *
+	 * @param musicBrainz the MusicBrainz web service URL.
+	 * @param coverArtArchive the Cover Art Archive client.
+	 */
+	static void setServers(String musicBrainz, CoverArtArchiveClient coverArtArchive) {
+		musicBrainzUrl = musicBrainz;
+		coverArtArchiveClient = coverArtArchive;
+	}
 
-			if (!owner) {
+	/**
+	 * Runs a lookup on the fetch pool unless one with the same key is queued
+	 * or running, in which case the future of that lookup is returned.
+	 */
+	private static <K, V> CompletableFuture<V> fetch(Map<K, CompletableFuture<V>> lookups, K key, Supplier<V> lookup) {
+		CompletableFuture<V> future = new CompletableFuture<>();
+		CompletableFuture<V> running = lookups.putIfAbsent(key, future);
+		if (running != null) {
+			return running;
+		}
+		try {
+			FETCH_EXECUTOR.execute(() -> {
 				try {
-					tagLatch.latch.await();
-				} catch (InterruptedException e) {
-					LOGGER.debug("A MusicBrainz search was interrupted while waiting it's turn");
-					Thread.currentThread().interrupt();
-					return null;
+					future.complete(lookup.get());
+				} catch (RuntimeException e) {
+					future.completeExceptionally(e);
 				} finally {
-					tagLatch = null;
+					lookups.remove(key, future);
 				}
-			}
+			});
+		} catch (RejectedExecutionException e) {
+			lookups.remove(key, future);
+			future.completeExceptionally(e);
 		}
-
-		return tagLatch;
+		return future;
 	}
 
-	private static void releaseTagLatch(CoverArtArchiveTagLatch tagLatch) {
-		synchronized (TAG_LATCHES_LOCK) {
-			if (!TAG_LATCHES.remove(tagLatch)) {
-				LOGGER.error("Concurrency error: Held tagLatch not found in latchList");
-			}
+	@Override
+	protected byte[] doGetThumbnail(Tag tag, boolean externalNetwork) {
+		CompletableFuture<byte[]> cover = getCover(tag, externalNetwork);
+		try {
+			return cover.get(WAIT_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			LOGGER.debug("A cover lookup was interrupted while waiting for the result");
+			Thread.currentThread().interrupt();
+		} catch (TimeoutException e) {
+			LOGGER.debug("A cover lookup timed out after {} seconds", WAIT_TIMEOUT_MS / 1000);
+		} catch (ExecutionException e) {
+			LOGGER.debug("A cover lookup failed: {}", e.getCause().getMessage());
+			LOGGER.trace("", e);
 		}
-		tagLatch.latch.countDown();
+		return null;
 	}
 
-	private static final Object COVER_LATCHES_LOCK = new Object();
-	private static final List<CoverArtArchiveCoverLatch> COVER_LATCHES = new ArrayList<>();
+	@Override
+	protected CompletableFuture<byte[]> doGetThumbnailAsync(Tag tag, boolean externalNetwork) {
+		return getCover(tag, externalNetwork).exceptionally(e -> {
+			LOGGER.debug("A cover lookup failed: {}", e.getMessage());
+			LOGGER.trace("", e);
+			return null;
+		});
+	}
+
+	private CompletableFuture<byte[]> getCover(Tag tag, boolean externalNetwork) {
+		return getMBID(tag, externalNetwork).thenCompose(mBID -> {
+			if (mBID == null) {
+				return CompletableFuture.completedFuture(null);
+			}
+			return getCover(mBID, externalNetwork);
+		});
+	}
 
 	/**
-	 * Used to serialize search on a per MBID basis. Every thread doing
-	 * a search much hold a {@link CoverArtArchiveCoverLatch} and release it
-	 * when the search is done and the result is written. Any other threads
-	 * attempting to search for the same MBID will wait for the existing
-	 * {@link CoverArtArchiveCoverLatch} to be released, and can then use the
-	 * results from the previous thread instead of conducting it's own search.
+	 * Gets the cover for a MusicBrainz release from the disk cache, or starts
+	 * downloading it from Cover Art Archive unless a recent lookup found
+	 * nothing.
 	 */
-	private static CoverArtArchiveCoverLatch reserveCoverLatch(final String mBID) {
-		CoverArtArchiveCoverLatch coverLatch = null;
-
-		boolean owner = false;
-		long startTime = System.currentTimeMillis();
-
-		while (!owner && !Thread.currentThread().isInterrupted()) {
+	private static CompletableFuture<byte[]> getCover(String mBID, boolean externalNetwork) {
+		try {
+			UUID.fromString(mBID);
+		} catch (IllegalArgumentException e) {
+			LOGGER.debug("Ignoring invalid MusicBrainz release ID \"{}\"", mBID);
+			return CompletableFuture.completedFuture(null);
+		}
+		CompletableFuture<byte[]> running = COVER_LOOKUPS.get(mBID);
+		if (running != null) {
+			return running;
+		}
 
-			// Find if any other tread is currently searching the same MBID
-			synchronized (COVER_LATCHES_LOCK) {
-				for (CoverArtArchiveCoverLatch latch : COVER_LATCHES) {
-					if (latch.mBID.equals(mBID)) {
-						coverLatch = latch;
-						break;
-					}
-				}
-				// None found, our turn
-				if (coverLatch == null) {
-					coverLatch = new CoverArtArchiveCoverLatch(mBID);
-					COVER_LATCHES.add(coverLatch);
-					owner = true;
+		byte[] cover = readCachedCover(mBID);
+		if (cover != null) {
+			return CompletableFuture.completedFuture(cover);
+		}
+		if (MediaDatabase.isAvailable()) {
+			CoverArtArchiveResult result = MediaTableCoverArtArchive.findMBID(mBID);
+			if (result.found) {
+				if (result.cover != null) {
+					return CompletableFuture.completedFuture(result.cover);
+				} else if (System.currentTimeMillis() - result.modified.getTime() < EXPIRATION_TIME) {
+					// If a lookup has been done within expireTime and no result,
+					// return null. Do another lookup after expireTime has passed
+					return CompletableFuture.completedFuture(null);
 				}
 			}
+		}
 
-			// Check for timeout here instead of in the while loop make logging
-			// it easier.
-			if (!owner && System.currentTimeMillis() - startTime > WAIT_TIMEOUT_MS) {
-				LOGGER.debug("A Cover Art Achive search timed out while waiting it's turn");
-				return null;
-			}
-
-			if (!owner) {
-				try {
-					coverLatch.latch.await();
-				} catch (InterruptedException e) {
-					LOGGER.debug("A Cover Art Archive search was interrupted while waiting it's turn");
-					Thread.currentThread().interrupt();
-					return null;
-				} finally {
-					coverLatch = null;
-				}
-			}
+		if (!externalNetwork) {
+			LOGGER.warn("Can't download cover from Cover Art Archive since external network is disabled");
+			LOGGER.info("Either enable external network or disable cover download");
+			return CompletableFuture.completedFuture(null);
 		}
+		return fetch(COVER_LOOKUPS, mBID, () -> downloadCover(mBID));
+	}
 
-		return coverLatch;
+	private static File getCoverCacheFile(String mBID) {
+		return new File(PMS.getConfiguration().getDataFile(COVER_CACHE_DIR), mBID.toLowerCase(Locale.ROOT) + ".cover");
 	}
 
-	private static void releaseCoverLatch(CoverArtArchiveCoverLatch coverLatch) {
-		synchronized (COVER_LATCHES_LOCK) {
-			if (!COVER_LATCHES.remove(coverLatch)) {
-				LOGGER.error("Concurrency error: Held coverLatch not found in latchList");
-			}
+	private static byte[] readCachedCover(String mBID) {
+		File file = getCoverCacheFile(mBID);
+		if (!file.isFile()) {
+			return null;
+		}
+		try {
+			return Files.readAllBytes(file.toPath());
+		} catch (IOException e) {
+			LOGGER.debug("Couldn't read cached cover \"{}\": {}", file, e.getMessage());
+			LOGGER.trace("", e);
+			return null;
 		}
-		coverLatch.latch.countDown();
 	}
 
-	@Override
-	protected byte[] doGetThumbnail(Tag tag, boolean externalNetwork) {
-		String mBID = getMBID(tag, externalNetwork);
-		if (mBID != null) {
-			// Secure exclusive access to search for this tag
-			CoverArtArchiveCoverLatch latch = reserveCoverLatch(mBID);
-			if (latch == null) {
-				// Couldn't reserve exclusive access, giving up
-				return null;
-			}
-			Connection connection = null;
+	/**
+	 * Stores a cover in the disk cache. The cover is written to a temporary
+	 * file first so that readers never see a partial cover.
+	 *
+	 * @return {@code true} if the cover is cached, {@code false} otherwise.
+	 */
+	private static boolean writeCachedCover(String mBID, byte[] cover) {
+		File file = getCoverCacheFile(mBID);
+		try {
+			Files.createDirectories(file.getParentFile().toPath());
+			Path temp = Files.createTempFile(file.getParentFile().toPath(), mBID, ".tmp");
 			try {
-				connection = MediaDatabase.getConnectionIfAvailable();
-				// Check if it's cached first
-				if (connection != null) {
-					CoverArtArchiveResult result = MediaTableCoverArtArchive.findMBID(mBID);
-					if (result.found) {
-						if (result.cover != null) {
-							return result.cover;
-						} else if (System.currentTimeMillis() - result.modified.getTime() < EXPIRATION_TIME) {
-							// If a lookup has been done within expireTime and no result,
-							// return null. Do another lookup after expireTime has passed
-							return null;
-						}
-					}
-				}
-
-				if (!externalNetwork) {
-					LOGGER.warn("Can't download cover from Cover Art Archive since external network is disabled");
-					LOGGER.info("Either enable external network or disable cover download");
-					return null;
-				}
+				Files.write(temp, cover);
+				Files.move(temp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+			return true;
+		} catch (IOException e) {
+			LOGGER.debug("Couldn't cache cover \"{}\": {}", file, e.getMessage());
+			LOGGER.trace("", e);
+			return false;
+		}
+	}
 
-				DefaultCoverArtArchiveClient client = new DefaultCoverArtArchiveClient();
+	private static void writeLookup(String mBID) {
+		if (MediaDatabase.isAvailable()) {
+			MediaTableCoverArtArchive.writeMBID(mBID, null);
+		}
+	}
 
-				CoverArt coverArt;
-				try {
-					coverArt = client.getByMbid(UUID.fromString(mBID));
-				} catch (CoverArtException e) {
-					LOGGER.debug("Could not get cover with MBID \"{}\": {}", mBID, e.getMessage());
-					LOGGER.trace("", e);
-					return null;
-				}
-				if (coverArt == null || coverArt.getImages().isEmpty()) {
-					LOGGER.debug("MBID \"{}\" has no cover at CoverArtArchive", mBID);
-					if (connection != null) {
-						MediaTableCoverArtArchive.writeMBID(mBID, null);
-					}
-					return null;
-				}
-				CoverArtImage image = coverArt.getFrontImage();
-				if (image == null) {
-					image = coverArt.getImages().get(0);
-				}
-				byte[] cover;
-				try {
-					try (InputStream is = image.getLargeThumbnail()) {
-						cover = IOUtils.toByteArray(is);
-					} catch (HttpResponseException e) {
-						// Use the default image if the large thumbnail is not available
-						try (InputStream is = image.getImage()) {
-							cover = IOUtils.toByteArray(is);
-						}
-					}
-					if (connection != null) {
-						MediaTableCoverArtArchive.writeMBID(mBID, null);
-					}
-					return cover;
-				} catch (HttpResponseException e) {
-					if (e.getStatusCode() == 404) {
-						LOGGER.debug("Cover for MBID \"{}\" was not found at CoverArtArchive", mBID);
-						if (connection != null) {
-							MediaTableCoverArtArchive.writeMBID(mBID, null);
-						}
-						return null;
-					}
-					LOGGER.warn(
-						"Got HTTP response {} while trying to download cover for MBID \"{}\" from CoverArtArchive: {}",
-						e.getStatusCode(),
-						mBID,
-						e.getMessage()
-					);
-				} catch (IOException e) {
-					LOGGER.error("An error occurred while downloading cover for MBID \"{}\": {}", mBID, e.getMessage());
-					LOGGER.trace("", e);
-					return null;
+	private static byte[] downloadCover(String mBID) {
+		CoverArt coverArt;
+		try {
+			coverArt = coverArtArchiveClient.getByMbid(UUID.fromString(mBID));
+		} catch (CoverArtException e) {
+			LOGGER.debug("Could not get cover with MBID \"{}\": {}", mBID, e.getMessage());
+			LOGGER.trace("", e);
+			return null;
+		}
+		if (coverArt == null || coverArt.getImages().isEmpty()) {
+			LOGGER.debug("MBID \"{}\" has no cover at CoverArtArchive", mBID);
+			writeLookup(mBID);
+			return null;
+		}
+		CoverArtImage image = coverArt.getFrontImage();
+		if (image == null) {
+			image = coverArt.getImages().get(0);
+		}
+		byte[] cover;
+		try {
+			try (InputStream is = image.getLargeThumbnail()) {
+				cover = IOUtils.toByteArray(is);
+			} catch (HttpResponseException e) {
+				// Use the default image if the large thumbnail is not available
+				try (InputStream is = image.getImage()) {
+					cover = IOUtils.toByteArray(is);
 				}
-			} finally {
-				MediaDatabase.close(connection);
-				releaseCoverLatch(latch);
 			}
+		} catch (HttpResponseException e) {
+			if (e.getStatusCode() == 404) {
+				LOGGER.debug("Cover for MBID \"{}\" was not found at CoverArtArchive", mBID);
+				writeLookup(mBID);
+				return null;
+			}
+			LOGGER.warn(
+				"Got HTTP response {} while trying to download cover for MBID \"{}\" from CoverArtArchive: {}",
+				e.getStatusCode(),
+				mBID,
+				e.getMessage()
+			);
+			return null;
+		} catch (IOException e) {
+			LOGGER.error("An error occurred while downloading cover for MBID \"{}\": {}", mBID, e.getMessage());
+			LOGGER.trace("", e);
+			return null;
 		}
-		return null;
+
+		// Cache the size the callers use, the full size image can be several megabytes
+		try {
+			Image resized = ImagesUtil.transcodeImage(
+				cover,
+				MAX_COVER_WIDTH,
+				MAX_COVER_HEIGHT,
+				ScaleType.MAX,
+				ImageFormat.SOURCE,
+				false,
+				false,
+				false,
+				null
+			);
+			if (resized != null) {
+				cover = resized.getBytes(false);
+			}
+		} catch (IOException e) {
+			LOGGER.debug("Couldn't resize cover for MBID \"{}\": {}", mBID, e.getMessage());
+			LOGGER.trace("", e);
+		}
+		if (writeCachedCover(mBID, cover)) {
+			writeLookup(mBID);
+		} else if (MediaDatabase.isAvailable()) {
+			// Keep the cover in the database, an empty row means there is none
+			MediaTableCoverArtArchive.writeMBID(mBID, new ByteArrayInputStream(cover));
+		}
+		return cover;
 	}
 
 	private static String fuzzString(String s) {
@@ -698,42 +754,34 @@ public class CoverArtArchiveUtil extends CoverUtil {
 		return query.toString();
 	}
 
-	private String getMBID(Tag tag, boolean externalNetwork) {
+	/**
+	 * Gets the MusicBrainz release ID for a {@link Tag} from the tag itself or
+	 * the database, or starts looking it up at MusicBrainz unless a recent
+	 * lookup found nothing.
+	 */
+	private CompletableFuture<String> getMBID(Tag tag, boolean externalNetwork) {
 		if (tag == null) {
-			return null;
+			return CompletableFuture.completedFuture(null);
 		}
 
 		// No need to look up MBID if it's already in the tag
-		String mBID = null;
 		if (AudioUtils.tagSupportsFieldKey(tag, FieldKey.MUSICBRAINZ_RELEASEID)) {
-			mBID = tag.getFirst(FieldKey.MUSICBRAINZ_RELEASEID);
+			String mBID = tag.getFirst(FieldKey.MUSICBRAINZ_RELEASEID);
 			if (isNotBlank(mBID)) {
-				return mBID;
+				return CompletableFuture.completedFuture(mBID);
 			}
 		}
 
-		DocumentBuilder builder = null;
-		try {
-			builder = DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
-		} catch (ParserConfigurationException e) {
-			LOGGER.error("Error initializing XML parser: {}", e.getMessage());
-			LOGGER.trace("", e);
-			return null;
-		}
-
 		final CoverArtArchiveTagInfo tagInfo = new CoverArtArchiveTagInfo(tag);
 		if (!tagInfo.hasInfo()) {
 			LOGGER.trace("Tag has no information - aborting search");
-			return null;
+			return CompletableFuture.completedFuture(null);
 		}
-
-		// Secure exclusive access to search for this tag
-		CoverArtArchiveTagLatch latch = reserveTagLatch(tagInfo);
-		if (latch == null) {
-			// Couldn't reserve exclusive access, giving up
-			LOGGER.error("Could not reserve tag latch for MBID search for \"{}\"", tagInfo);
-			return null;
+		CompletableFuture<String> running = MBID_LOOKUPS.get(tagInfo);
+		if (running != null) {
+			return running;
 		}
+
 		Connection dbconn = MediaDatabase.getConnectionIfAvailable();
 		try {
 			// Check if it's cached first
@@ -741,21 +789,39 @@ public class CoverArtArchiveUtil extends CoverUtil {
 				MusicBrainzReleasesResult result = MediaTableMusicBrainzReleases.findMBID(dbconn, tagInfo);
 				if (result.found) {
 					if (isNotBlank(result.mBID)) {
-						return result.mBID;
+						return CompletableFuture.completedFuture(result.mBID);
 					} else if (System.currentTimeMillis() - result.modified.getTime() < EXPIRATION_TIME) {
 						// If a lookup has been done within expireTime and no result,
 						// return null. Do another lookup after expireTime has passed
-						return null;
+						return CompletableFuture.completedFuture(null);
 					}
 				}
 			}
+		} finally {
+			MediaDatabase.close(dbconn);
+		}
 
-			if (!externalNetwork) {
-				LOGGER.warn("Can't look up cover MBID from MusicBrainz since external network is disabled");
-				LOGGER.info("Either enable external network or disable cover download");
-				return null;
-			}
+		if (!externalNetwork) {
+			LOGGER.warn("Can't look up cover MBID from MusicBrainz since external network is disabled");
+			LOGGER.info("Either enable external network or disable cover download");
+			return CompletableFuture.completedFuture(null);
+		}
+		return fetch(MBID_LOOKUPS, tagInfo, () -> lookupMBID(tagInfo));
+	}
 
+	private String lookupMBID(final CoverArtArchiveTagInfo tagInfo) {
+		DocumentBuilder builder = null;
+		try {
+			builder = DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
+		} catch (ParserConfigurationException e) {
+			LOGGER.error("Error initializing XML parser: {}", e.getMessage());
+			LOGGER.trace("", e);
+			return null;
+		}
+
+		String mBID = null;
+		Connection dbconn = MediaDatabase.getConnectionIfAvailable();
+		try {
 			/*
 			 * Rounds are defined as this:
 			 *
@@ -783,7 +849,7 @@ public class CoverArtArchiveUtil extends CoverUtil {
 				}
 
 				if (isNotBlank(query)) {
-					final String url = "http://musicbrainz.org/ws/2/" + query + "&fmt=xml";
+					final String url = musicBrainzUrl + query + "&fmt=xml";
 					if (LOGGER.isTraceEnabled()) {
 						LOGGER.trace("Performing release MBID lookup at musicbrainz: \"{}\"", url);
 					}
@@ -901,7 +967,6 @@ public class CoverArtArchiveUtil extends CoverUtil {
 			return null;
 		} finally {
 			MediaDatabase.close(dbconn);
-			releaseTagLatch(latch);
 		}
 	}
 
@@ -20,6 +20,7 @@ package net.pms.util;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
 import net.pms.PMS;
 import org.jaudiotagger.tag.Tag;
 import org.slf4j.Logger;
@@ -118,6 +119,25 @@ public abstract class CoverUtil {
 		return doGetThumbnail(tag, externalNetwork);
 	}
 
+	/**
+	 * Gets a thumbnail from the configured cover utility based on a {@link Tag}
+	 * without waiting for network lookups. If the cover isn't known yet, a
+	 * lookup is started in the background.
+	 *
+	 * @param tag the {@link tag} to use while searching for a cover
+	 * @return A future for the thumbnail, which is already completed if the
+	 *         cover is known. It completes with <code>null</code> if none was
+	 *         found.
+	 */
+	public final CompletableFuture<byte[]> getThumbnailAsync(Tag tag) {
+		boolean externalNetwork = PMS.getConfiguration().getExternalNetwork();
+		return doGetThumbnailAsync(tag, externalNetwork);
+	}
+
 	abstract protected byte[] doGetThumbnail(Tag tag, boolean externalNetwork);
 
+	protected CompletableFuture<byte[]> doGetThumbnailAsync(Tag tag, boolean externalNetwork) {
+		return CompletableFuture.completedFuture(doGetThumbnail(tag, externalNetwork));
+	}
+
 }
@@ -0,0 +1,486 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import net.pms.PMS;
+import net.pms.configuration.PmsConfiguration;
+import net.pms.dlna.DLNAMediaInfo;
+import net.pms.dlna.DLNAMediaSubtitle;
+import net.pms.dlna.DLNAResource;
+import net.pms.dlna.RealFile;
+import net.pms.formats.v2.SubtitleType;
+import net.pms.io.OutputParams;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A size-bounded cache of embedded text subtitles extracted from video files.
+ * <p>
+ * Extracting an embedded subtitles track requires FFmpeg to read the whole
+ * container, which for large files delays the start of playback
+ * considerably. This cache holds the extracted tracks in the
+ * {@value #CACHE_DIR} data folder, keyed by a hash of the video file, the
+ * track id and the conversion options, so that the extraction only has to be
+ * done once. Tracks are extracted ahead of time by a low priority background
+ * worker fed by the library scanner and new file events, all the tracks of a
+ * file in a single FFmpeg pass, and the least recently used entries are
+ * evicted when the size configured by
+ * {@link PmsConfiguration#getSubtitlesCacheSize()} is exceeded.
+ */
+public class EmbeddedSubtitlesCache {
+	private static final Logger LOGGER = LoggerFactory.getLogger(EmbeddedSubtitlesCache.class);
+	private static final PmsConfiguration CONFIGURATION = PMS.getConfiguration();
+	private static final String CACHE_DIR = "subs_cache";
+
+	/** The subtitles type used by the transcoding engines. */
+	private static final SubtitleType BACKGROUND_SUBTITLE_TYPE = SubtitleType.ASS;
+
+	/** The cached files in access order, guarded by itself. */
+	private static final LinkedHashMap<String, File> ENTRIES = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * The extractions that are queued or running, by cache key. An extraction
+	 * of several tracks is registered under each of their keys. New entries
+	 * are added while holding the map's lock.
+	 */
+	private static final Map<String, Extraction> IN_FLIGHT = new ConcurrentHashMap<>();
+
+	/**
+	 * The maximum number of video files waiting for a background extraction.
+	 * The tracks of the files that don't fit are extracted when played.
+	 */
+	private static final int MAX_QUEUED_FILES = 256;
+
+	private static final ThreadPoolExecutor BACKGROUND_EXECUTOR = new ThreadPoolExecutor(
+		1,
+		1,
+		30,
+		TimeUnit.SECONDS,
+		new LinkedBlockingQueue<>(MAX_QUEUED_FILES),
+		new BasicThreadFactory("Subtitles Extractor %d", Thread.MIN_PRIORITY)
+	);
+
+	private static volatile Extractor extractor = (fileName, media, tracks, subtitleType, outputFiles) ->
+		SubtitleUtils.extractEmbeddedSubtitles(fileName, media, tracks, CONFIGURATION, subtitleType, outputFiles);
+
+	private static long cacheSize;
+	private static boolean initialized;
+
+	static {
+		BACKGROUND_EXECUTOR.allowCoreThreadTimeOut(true);
+		Runtime.getRuntime().addShutdownHook(new Thread("Subtitles Extractor Shutdown Hook") {
+			@Override
+			public void run() {
+				BACKGROUND_EXECUTOR.shutdownNow();
+			}
+		});
+	}
+
+	/**
+	 * This class is not meant to be instantiated.
+	 */
+	private EmbeddedSubtitlesCache() {
+	}
+
+	/**
+	 * @return Whether the cache is enabled in the configuration.
+	 */
+	public static boolean isEnabled() {
+		return CONFIGURATION != null && CONFIGURATION.getSubtitlesCacheSize() > 0;
+	}
+
+	/**
+	 * Builds the cache key for an embedded subtitles track.
+	 *
+	 * @param file the video file containing the track.
+	 * @param subtitle the embedded subtitles track.
+	 * @param subtitleType the type the track is converted to.
+	 * @return The cache key or {@code null} if {@code file} isn't a real file.
+	 */
+	public static String getCacheKey(File file, DLNAMediaSubtitle subtitle, SubtitleType subtitleType) {
+		if (file == null || subtitle == null || subtitleType == null) {
+			return null;
+		}
+		long lastModified = file.lastModified();
+		if (lastModified == 0) {
+			return null;
+		}
+		String fileHash = DigestUtils.sha1Hex(file.getAbsolutePath() + '\0' + file.length() + '\0' + lastModified);
+		return fileHash + "_ID" + subtitle.getId() + "_" + subtitleType.getExtension();
+	}
+
+	/**
+	 * Returns the cached subtitles for an embedded track if present, and marks
+	 * the entry as recently used.
+	 *
+	 * @param key the cache key from
+	 *            {@link #getCacheKey(File, DLNAMediaSubtitle, SubtitleType)}.
+	 * @return The cached file or {@code null}.
+	 */
+	public static File get(String key) {
+		if (key == null) {
+			return null;
+		}
+		synchronized (ENTRIES) {
+			initialize();
+			File cached = ENTRIES.get(key);
+			if (cached == null) {
+				return null;
+			}
+			if (!cached.canRead()) {
+				ENTRIES.remove(key);
+				cacheSize -= cached.length();
+				return null;
+			}
+			// Persist the access order between restarts
+			if (!cached.setLastModified(System.currentTimeMillis())) {
+				LOGGER.trace("Couldn't update the modification time of cached subtitles \"{}\"", cached);
+			}
+			return cached;
+		}
+	}
+
+	/**
+	 * Returns the extracted subtitles for the embedded track of
+	 * {@code params}, using the cache when possible. If the track is waiting
+	 * in the background queue, the extraction is done on the calling thread
+	 * instead; if it's being extracted, the call waits for that extraction.
+	 * Falls back to a plain uncached conversion when the cache is disabled or
+	 * the source isn't a real file.
+	 * <p>
+	 * The returned file must not be modified by the caller.
+	 *
+	 * @param fileName the video file containing the embedded track.
+	 * @param media the {@link DLNAMediaInfo} of the video file.
+	 * @param params the {@link OutputParams} holding the subtitles track.
+	 * @param configuration the {@link PmsConfiguration} to use.
+	 * @param subtitleType the type to convert the track to.
+	 * @return The extracted subtitles file or {@code null} on failure.
+	 */
+	public static File getOrExtract(
+		String fileName,
+		DLNAMediaInfo media,
+		OutputParams params,
+		PmsConfiguration configuration,
+		SubtitleType subtitleType
+	) {
+		String key = isEnabled() ? getCacheKey(new File(fileName), params.getSid(), subtitleType) : null;
+		if (key == null) {
+			return SubtitleUtils.convertSubsToSubtitleType(fileName, media, params, configuration, subtitleType);
+		}
+
+		File cached = get(key);
+		if (cached != null) {
+			LOGGER.debug("Using cached embedded subtitles \"{}\" for \"{}\"", cached.getName(), fileName);
+			return cached;
+		}
+
+		Extraction extraction = submit(fileName, media, Collections.singletonList(params.getSid()), subtitleType, false);
+		if (extraction != null) {
+			// Runs the extraction now if it hasn't started yet, otherwise does nothing
+			extraction.task.run();
+			try {
+				extraction.task.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return null;
+			} catch (ExecutionException e) {
+				LOGGER.debug("Extraction of embedded subtitles from \"{}\" failed: {}", fileName, e.getMessage());
+				LOGGER.trace("", e);
+				return null;
+			}
+		}
+		return get(key);
+	}
+
+	/**
+	 * Queues the extraction of all embedded text subtitles tracks of
+	 * {@code resource} in the background if they aren't cached already.
+	 *
+	 * @param resource the {@link DLNAResource} to extract subtitles from.
+	 */
+	public static void extractInBackground(DLNAResource resource) {
+		if (!isEnabled() || !(resource instanceof RealFile)) {
+			return;
+		}
+
+		DLNAMediaInfo media = resource.getMedia();
+		File file = ((RealFile) resource).getFile();
+		if (media == null || !media.isVideo() || file == null) {
+			return;
+		}
+
+		List<DLNAMediaSubtitle> tracks = new ArrayList<>();
+		for (DLNAMediaSubtitle subtitle : media.getSubtitlesTracks()) {
+			if (subtitle.isEmbedded() && subtitle.getType() != null && subtitle.getType().isText()) {
+				tracks.add(subtitle);
+			}
+		}
+		if (!tracks.isEmpty()) {
+			submit(file.getAbsolutePath(), media, tracks, BACKGROUND_SUBTITLE_TYPE, true);
+		}
+	}
+
+	/**
+	 * Creates an extraction of the given tracks that aren't cached or being
+	 * extracted already.
+	 *
+	 * @return The created {@link Extraction}, an existing one of one of the
+	 *         tracks if all of them are being extracted already, or
+	 *         {@code null} if there's nothing to wait for.
+	 */
+	private static Extraction submit(
+		String fileName,
+		DLNAMediaInfo media,
+		List<DLNAMediaSubtitle> subtitles,
+		SubtitleType subtitleType,
+		boolean background
+	) {
+		File file = new File(fileName);
+		synchronized (IN_FLIGHT) {
+			Extraction existing = null;
+			List<DLNAMediaSubtitle> tracks = new ArrayList<>();
+			List<String> keys = new ArrayList<>();
+			for (DLNAMediaSubtitle subtitle : subtitles) {
+				String key = getCacheKey(file, subtitle, subtitleType);
+				if (key == null || get(key) != null) {
+					continue;
+				}
+				Extraction inFlight = IN_FLIGHT.get(key);
+				if (inFlight != null) {
+					existing = inFlight;
+				} else {
+					tracks.add(subtitle);
+					keys.add(key);
+				}
+			}
+			if (keys.isEmpty()) {
+				return existing;
+			}
+
+			Extraction created = new Extraction(fileName, media, tracks, keys, subtitleType);
+			for (String key : keys) {
+				IN_FLIGHT.put(key, created);
+			}
+			if (background) {
+				try {
+					BACKGROUND_EXECUTOR.execute(() -> {
+						// Give way to realtime operations like the scanner does
+						PMS.REALTIME_LOCK.lock();
+						PMS.REALTIME_LOCK.unlock();
+						created.task.run();
+					});
+				} catch (RejectedExecutionException e) {
+					LOGGER.trace("Too many files are waiting for subtitles extraction, \"{}\" will be extracted when played", fileName);
+					for (String key : keys) {
+						IN_FLIGHT.remove(key, created);
+					}
+					return null;
+				}
+			}
+			return created;
+		}
+	}
+
+	private static void extract(
+		String fileName,
+		DLNAMediaInfo media,
+		List<DLNAMediaSubtitle> tracks,
+		List<String> keys,
+		SubtitleType subtitleType
+	) {
+		File cacheFolder = getCacheFolder();
+		if (cacheFolder == null) {
+			return;
+		}
+
+		List<File> partials = new ArrayList<>(keys.size());
+		for (String key : keys) {
+			partials.add(new File(cacheFolder, key + ".part." + subtitleType.getExtension()));
+		}
+		long start = System.currentTimeMillis();
+		boolean completed = extractor.extract(fileName, media, tracks, subtitleType, partials);
+		int extracted = 0;
+		for (int i = 0; i < keys.size(); i++) {
+			File partial = partials.get(i);
+			if (!completed || partial.length() == 0) {
+				FileUtils.deleteQuietly(partial);
+				continue;
+			}
+			File target = new File(cacheFolder, keys.get(i) + "." + subtitleType.getExtension());
+			FileUtils.deleteQuietly(target);
+			if (!partial.renameTo(target)) {
+				LOGGER.debug("Couldn't move extracted subtitles to \"{}\"", target);
+				FileUtils.deleteQuietly(partial);
+				continue;
+			}
+			put(keys.get(i), target);
+			extracted++;
+		}
+		LOGGER.debug(
+			"Extracted {} of {} embedded subtitles tracks from \"{}\" in {} ms",
+			extracted,
+			keys.size(),
+			fileName,
+			System.currentTimeMillis() - start
+		);
+	}
+
+	/**
+	 * Replaces the extraction of the tracks, for testing.
+	 *
+	 * @param value the new {@link Extractor}.
+	 */
+	static void setExtractor(Extractor value) {
+		extractor = value;
+	}
+
+	private static void put(String key, File file) {
+		synchronized (ENTRIES) {
+			initialize();
+			File previous = ENTRIES.put(key, file);
+			if (previous != null) {
+				cacheSize -= previous.length();
+			}
+			cacheSize += file.length();
+			evict();
+		}
+	}
+
+	/**
+	 * Removes the least recently used entries until the cache fits within the
+	 * configured size. Must be called while holding the {@link #ENTRIES} lock.
+	 */
+	private static void evict() {
+		long maxSize = CONFIGURATION.getSubtitlesCacheSize() * 1024L * 1024L;
+		Iterator<Map.Entry<String, File>> iterator = ENTRIES.entrySet().iterator();
+		while (cacheSize > maxSize && iterator.hasNext()) {
+			File file = iterator.next().getValue();
+			cacheSize -= file.length();
+			iterator.remove();
+			LOGGER.trace("Evicting cached subtitles \"{}\"", file.getName());
+			FileUtils.deleteQuietly(file);
+		}
+	}
+
+	/**
+	 * Loads the existing cache entries, oldest first, on first use. Must be
+	 * called while holding the {@link #ENTRIES} lock.
+	 */
+	private static void initialize() {
+		if (initialized) {
+			return;
+		}
+		initialized = true;
+		File cacheFolder = getCacheFolder();
+		File[] files = cacheFolder == null ? null : cacheFolder.listFiles();
+		if (files == null) {
+			return;
+		}
+		Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+		for (File file : files) {
+			String name = file.getName();
+			if (name.contains(".part.")) {
+				// Left behind by an interrupted extraction
+				FileUtils.deleteQuietly(file);
+				continue;
+			}
+			int extensionIndex = name.lastIndexOf('.');
+			if (extensionIndex > 0) {
+				ENTRIES.put(name.substring(0, extensionIndex), file);
+				cacheSize += file.length();
+			}
+		}
+		evict();
+	}
+
+	/**
+	 * Extracts embedded subtitles tracks of a video file.
+	 */
+	interface Extractor {
+
+		/**
+		 * @param fileName the video file.
+		 * @param media the {@link DLNAMediaInfo} of the video file.
+		 * @param tracks the tracks to extract.
+		 * @param subtitleType the type to convert the tracks to.
+		 * @param outputFiles the files to write the tracks to, in the order
+		 *            of {@code tracks}.
+		 * @return {@code false} if the extraction was interrupted.
+		 */
+		boolean extract(
+			String fileName,
+			DLNAMediaInfo media,
+			List<DLNAMediaSubtitle> tracks,
+			SubtitleType subtitleType,
+			List<File> outputFiles
+		);
+	}
+
+	/**
+	 * A queued or running extraction of one or more tracks of a video file.
+	 */
+	private static class Extraction {
+		private final FutureTask<Void> task;
+
+		private Extraction(
+			String fileName,
+			DLNAMediaInfo media,
+			List<DLNAMediaSubtitle> tracks,
+			List<String> keys,
+			SubtitleType subtitleType
+		) {
+			task = new FutureTask<>(() -> {
+				try {
+					extract(fileName, media, tracks, keys, subtitleType);
+				} finally {
+					for (String key : keys) {
+						IN_FLIGHT.remove(key, this);
+					}
+				}
+				return null;
+			});
+		}
+	}
+
+	private static File getCacheFolder() {
+		File cacheFolder = new File(CONFIGURATION.getDataFile(CACHE_DIR));
+		if (!cacheFolder.isDirectory() && !cacheFolder.mkdirs()) {
+			LOGGER.error("Could not create subtitles cache folder \"{}\"", cacheFolder);
+			return null;
+		}
+		return cacheFolder;
+	}
+}
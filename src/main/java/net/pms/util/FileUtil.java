@@ -2142,6 +2142,9 @@ public class FileUtil {
 		return renameForSorting(filename, false, null);
 	}
 
+	private static final Pattern LEADING_ARTICLE_PATTERN = Pattern.compile("^(?i)A[ .]|The[ .]");
+	private static final Pattern MULTIPLE_WHITESPACE_PATTERN = Pattern.compile("\\s{2,}");
+
 	public static String renameForSorting(String filename, boolean isEpisodeWithinTVSeriesFolder, String absolutePath) {
 		if (PMS.getConfiguration().isPrettifyFilenames()) {
 			filename = getFileNamePrettified(filename, null, false, isEpisodeWithinTVSeriesFolder, absolutePath);
@@ -2149,10 +2152,10 @@ public class FileUtil {
 
 		if (PMS.getConfiguration().isIgnoreTheWordAandThe()) {
 			// Remove "a" and "the" from filename
-			filename = filename.replaceAll("^(?i)A[ .]|The[ .]", "");
+			filename = LEADING_ARTICLE_PATTERN.matcher(filename).replaceAll("");
 
 			// Replace multiple whitespaces with space
-			filename = filename.replaceAll("\\s{2,}", " ");
+			filename = MULTIPLE_WHITESPACE_PATTERN.matcher(filename).replaceAll(" ");
 		}
 
 		return filename;
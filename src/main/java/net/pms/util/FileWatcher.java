@@ -36,11 +36,12 @@ public class FileWatcher {
 
 	/**
 	 * Add a file watchpoint to the Watch Service. Will not
-	 * add duplicates.
+	 * add duplicates. Watches may be added from several threads at once, e.g.
+	 * while the renderer configurations are loaded.
 	 *
 	 * @param w The watch object.
 	 */
-	public static void add(Watch w) {
+	public static synchronized void add(Watch w) {
 		LOGGER.trace("FileWatcher: Adding " + w.fspec);
 		try {
 			Path dir = Paths.get(FilenameUtils.getFullPath(w.fspec));
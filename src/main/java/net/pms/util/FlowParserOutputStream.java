@@ -3,9 +3,15 @@ package net.pms.util;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
-import java.util.Arrays;
 
+/**
+ * Base class for the stream transformers that parse audio into chunks. The
+ * parsing buffer comes from the {@link ByteArrayPool} and is returned to it
+ * when the stream is closed.
+ */
 public abstract class FlowParserOutputStream extends OutputStream {
+	private static final byte[] ZEROS = new byte[15000];
+
 	private ByteBuffer buffer;
 	private OutputStream out;
 	protected int neededByteNumber;
@@ -17,9 +23,7 @@ public abstract class FlowParserOutputStream extends OutputStream {
 
 	public FlowParserOutputStream(OutputStream out, int maxbuffersize) {
 		this.out = out;
-		buffer = ByteBuffer.allocate(maxbuffersize);
-		zerobuffer = new byte[15000];
-		Arrays.fill(zerobuffer, (byte) 0);
+		buffer = ByteBuffer.wrap(ByteArrayPool.acquire(maxbuffersize));
 	}
 
 	@Override
@@ -29,6 +33,9 @@ public abstract class FlowParserOutputStream extends OutputStream {
 
 	@Override
 	public void write(byte[] b, int off, int len) throws IOException {
+		if (buffer == null) {
+			throw new IOException("Stream closed");
+		}
 		if (swapOrderBits == 2) {
 			if (swapRemainingByte != null && swapRemainingByte.length == 1) {
 				buffer.put(b[off]);
@@ -37,7 +44,9 @@ public abstract class FlowParserOutputStream extends OutputStream {
 			}
 			int modulo = Math.abs(len - off) % swapOrderBits;
 			if (modulo != 0) {
-				swapRemainingByte = new byte[1];
+				if (swapRemainingByte == null) {
+					swapRemainingByte = new byte[1];
+				}
 				len -= modulo;
 				System.arraycopy(b, len, swapRemainingByte, 0, modulo);
 			}
@@ -109,11 +118,10 @@ public abstract class FlowParserOutputStream extends OutputStream {
 	protected void writePayload(byte[] payload) throws IOException {
 		out.write(payload, 0, payload.length);
 	}
-	private byte[] zerobuffer;
 
 	protected void padWithZeros(int numberOfZeros) throws IOException {
 		if (numberOfZeros > 0) {
-			out.write(zerobuffer, 0, numberOfZeros);
+			out.write(ZEROS, 0, numberOfZeros);
 		}
 	}
 
@@ -125,11 +133,19 @@ public abstract class FlowParserOutputStream extends OutputStream {
 
 	@Override
 	public void close() throws IOException {
-		int finalPos = buffer.position();
-		if (finalPos > 0 && streamableByteNumber > finalPos) {
-			out.write(buffer.array(), 0, finalPos);
-			padWithZeros(streamableByteNumber - finalPos);
+		if (buffer == null) {
+			return;
+		}
+		try {
+			int finalPos = buffer.position();
+			if (finalPos > 0 && streamableByteNumber > finalPos) {
+				out.write(buffer.array(), 0, finalPos);
+				padWithZeros(streamableByteNumber - finalPos);
+			}
+			out.close();
+		} finally {
+			ByteArrayPool.release(buffer.array());
+			buffer = null;
 		}
-		out.close();
 	}
 }
@@ -0,0 +1,519 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The H.264 sequence and picture parameter sets of a MP4/MOV or Matroska
+ * file, read from the {@code avcC} decoder configuration record that these
+ * containers store in the {@code stsd} box and the {@code CodecPrivate}
+ * element respectively. Only the container headers are read, so this is cheap
+ * enough to do while a file is parsed and replaces running FFmpeg with the
+ * {@code h264_mp4toannexb} filter.
+ */
+public class H264ParameterSets {
+	private static final Logger LOGGER = LoggerFactory.getLogger(H264ParameterSets.class);
+
+	/** The largest container header element that is read into memory */
+	private static final int MAX_ELEMENT_SIZE = 1024 * 1024;
+
+	private static final byte[] START_CODE = {0, 0, 0, 1};
+
+	private static final int MATROSKA_EBML = 0x1A45DFA3;
+	private static final int MATROSKA_SEGMENT = 0x18538067;
+	private static final int MATROSKA_TRACKS = 0x1654AE6B;
+	private static final int MATROSKA_TRACK_ENTRY = 0xAE;
+	private static final int MATROSKA_CODEC_ID = 0x86;
+	private static final int MATROSKA_CODEC_PRIVATE = 0x63A2;
+	private static final int MATROSKA_CLUSTER = 0x1F43B675;
+
+	private final List<byte[]> sequenceParameterSets;
+	private final List<byte[]> pictureParameterSets;
+	private final int profileIdc;
+	private final int levelIdc;
+	private final boolean constraintSet3;
+	private final int maxNumRefFrames;
+
+	private H264ParameterSets(List<byte[]> sps, List<byte[]> pps) throws ParseException {
+		this.sequenceParameterSets = sps;
+		this.pictureParameterSets = pps;
+		BitReader reader = new BitReader(unescape(sps.get(0)));
+		if ((reader.readBits(8) & 0x1F) != 7) {
+			throw new ParseException("Not a sequence parameter set");
+		}
+		profileIdc = reader.readBits(8);
+		constraintSet3 = (reader.readBits(8) & 0x10) != 0;
+		levelIdc = reader.readBits(8);
+		reader.readUnsignedExpGolomb(); // seq_parameter_set_id
+		switch (profileIdc) {
+			case 100:
+			case 110:
+			case 122:
+			case 244:
+			case 44:
+			case 83:
+			case 86:
+			case 118:
+			case 128:
+			case 138:
+			case 139:
+			case 134:
+			case 135:
+				int chromaFormatIdc = reader.readUnsignedExpGolomb();
+				if (chromaFormatIdc == 3) {
+					reader.readBits(1); // separate_colour_plane_flag
+				}
+				reader.readUnsignedExpGolomb(); // bit_depth_luma_minus8
+				reader.readUnsignedExpGolomb(); // bit_depth_chroma_minus8
+				reader.readBits(1); // qpprime_y_zero_transform_bypass_flag
+				if (reader.readBits(1) == 1) { // seq_scaling_matrix_present_flag
+					int lists = chromaFormatIdc == 3 ? 12 : 8;
+					for (int i = 0; i < lists; i++) {
+						if (reader.readBits(1) == 1) {
+							skipScalingList(reader, i < 6 ? 16 : 64);
+						}
+					}
+				}
+				break;
+			default:
+				break;
+		}
+		reader.readUnsignedExpGolomb(); // log2_max_frame_num_minus4
+		int picOrderCntType = reader.readUnsignedExpGolomb();
+		if (picOrderCntType == 0) {
+			reader.readUnsignedExpGolomb(); // log2_max_pic_order_cnt_lsb_minus4
+		} else if (picOrderCntType == 1) {
+			reader.readBits(1); // delta_pic_order_always_zero_flag
+			reader.readSignedExpGolomb(); // offset_for_non_ref_pic
+			reader.readSignedExpGolomb(); // offset_for_top_to_bottom_field
+			int cycle = reader.readUnsignedExpGolomb();
+			for (int i = 0; i < cycle; i++) {
+				reader.readSignedExpGolomb(); // offset_for_ref_frame
+			}
+		}
+		maxNumRefFrames = reader.readUnsignedExpGolomb();
+	}
+
+	/**
+	 * @return the {@code profile_idc} of the first sequence parameter set.
+	 */
+	public int getProfileIdc() {
+		return profileIdc;
+	}
+
+	/**
+	 * @return the {@code level_idc} of the first sequence parameter set.
+	 */
+	public int getLevelIdc() {
+		return levelIdc;
+	}
+
+	/**
+	 * @return the level in the form MediaInfo reports it, like {@code "4.1"}
+	 *         or {@code "5"}.
+	 */
+	public String getLevel() {
+		if (levelIdc == 9 || (levelIdc == 11 && constraintSet3 && profileIdc < 100)) {
+			return "1b";
+		}
+		if (levelIdc % 10 == 0) {
+			return Integer.toString(levelIdc / 10);
+		}
+		return levelIdc / 10 + "." + levelIdc % 10;
+	}
+
+	/**
+	 * @return the {@code max_num_ref_frames} of the first sequence parameter
+	 *         set.
+	 */
+	public int getMaxNumRefFrames() {
+		return maxNumRefFrames;
+	}
+
+	/**
+	 * Returns the parameter sets as an Annex B byte stream in the form
+	 * {@link H264AnnexBInputStream} expects for its header: every sequence
+	 * and picture parameter set preceded by a start code, followed by the
+	 * start code of the frame the header is inserted in front of.
+	 *
+	 * @return the Annex B header.
+	 */
+	public byte[] getAnnexBHeader() {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (byte[] sps : sequenceParameterSets) {
+			out.write(START_CODE, 0, START_CODE.length);
+			out.write(sps, 0, sps.length);
+		}
+		for (byte[] pps : pictureParameterSets) {
+			out.write(START_CODE, 0, START_CODE.length);
+			out.write(pps, 0, pps.length);
+		}
+		out.write(START_CODE, 0, START_CODE.length);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Reads the parameter sets of the first H.264 video track of a MP4/MOV or
+	 * Matroska file.
+	 *
+	 * @param file the file to read.
+	 * @return The parameter sets or {@code null} if the file has no H.264
+	 *         track with a decoder configuration record or couldn't be read.
+	 */
+	public static H264ParameterSets parse(File file) {
+		if (file == null || !file.isFile()) {
+			return null;
+		}
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+			if (raf.length() < 8) {
+				return null;
+			}
+			byte[] avcC;
+			if (raf.readInt() == MATROSKA_EBML) {
+				avcC = findMatroskaCodecPrivate(raf);
+			} else {
+				avcC = findMp4AvcC(raf, 0, raf.length());
+			}
+			return avcC == null ? null : fromAvcC(avcC);
+		} catch (IOException | RuntimeException e) {
+			LOGGER.debug("Could not read the H.264 parameter sets of \"{}\": {}", file, e.getMessage());
+			LOGGER.trace("", e);
+			return null;
+		}
+	}
+
+	/**
+	 * Parses an {@code AVCDecoderConfigurationRecord} as defined by ISO/IEC
+	 * 14496-15.
+	 *
+	 * @param avcC the record.
+	 * @return The parameter sets.
+	 * @throws ParseException If the record is invalid.
+	 */
+	public static H264ParameterSets fromAvcC(byte[] avcC) throws ParseException {
+		if (avcC.length < 7 || avcC[0] != 1) {
+			throw new ParseException("Invalid AVC decoder configuration record");
+		}
+		int pos = 5;
+		List<byte[]> sps = new ArrayList<>();
+		int count = avcC[pos++] & 0x1F;
+		for (int i = 0; i < count; i++) {
+			pos = readParameterSet(avcC, pos, sps);
+		}
+		if (pos >= avcC.length) {
+			throw new ParseException("Truncated AVC decoder configuration record");
+		}
+		List<byte[]> pps = new ArrayList<>();
+		count = avcC[pos++] & 0xFF;
+		for (int i = 0; i < count; i++) {
+			pos = readParameterSet(avcC, pos, pps);
+		}
+		if (sps.isEmpty()) {
+			throw new ParseException("No sequence parameter set in the AVC decoder configuration record");
+		}
+		return new H264ParameterSets(sps, pps);
+	}
+
+	private static int readParameterSet(byte[] avcC, int pos, List<byte[]> target) throws ParseException {
+		if (pos + 2 > avcC.length) {
+			throw new ParseException("Truncated AVC decoder configuration record");
+		}
+		int length = ((avcC[pos] & 0xFF) << 8) | (avcC[pos + 1] & 0xFF);
+		pos += 2;
+		if (length == 0 || pos + length > avcC.length) {
+			throw new ParseException("Invalid parameter set length " + length);
+		}
+		byte[] nal = new byte[length];
+		System.arraycopy(avcC, pos, nal, 0, length);
+		target.add(nal);
+		return pos + length;
+	}
+
+	/**
+	 * Walks the boxes between {@code start} and {@code end} down to the
+	 * {@code stsd} box of the first H.264 track.
+	 */
+	private static byte[] findMp4AvcC(RandomAccessFile raf, long start, long end) throws IOException {
+		long pos = start;
+		while (pos + 8 <= end) {
+			raf.seek(pos);
+			long size = raf.readInt() & 0xFFFFFFFFL;
+			byte[] type = new byte[4];
+			raf.readFully(type);
+			int headerSize = 8;
+			if (size == 1) {
+				size = raf.readLong();
+				headerSize = 16;
+			} else if (size == 0) {
+				size = end - pos;
+			}
+			if (size < headerSize || pos + size > end) {
+				return null;
+			}
+			switch (new String(type, StandardCharsets.US_ASCII)) {
+				case "moov":
+				case "trak":
+				case "mdia":
+				case "minf":
+				case "stbl":
+					byte[] avcC = findMp4AvcC(raf, pos + headerSize, pos + size);
+					if (avcC != null) {
+						return avcC;
+					}
+					break;
+				case "stsd":
+					if (size - headerSize > MAX_ELEMENT_SIZE) {
+						return null;
+					}
+					byte[] stsd = new byte[(int) (size - headerSize)];
+					raf.readFully(stsd);
+					avcC = findAvcCInSampleDescriptions(stsd);
+					if (avcC != null) {
+						return avcC;
+					}
+					break;
+				default:
+					break;
+			}
+			pos += size;
+		}
+		return null;
+	}
+
+	private static byte[] findAvcCInSampleDescriptions(byte[] stsd) {
+		// Full box header and entry_count
+		int pos = 8;
+		while (pos + 8 <= stsd.length) {
+			int size = readInt(stsd, pos);
+			String type = new String(stsd, pos + 4, 4, StandardCharsets.US_ASCII);
+			if (size < 8 || pos + size > stsd.length) {
+				return null;
+			}
+			if ("avc1".equals(type) || "avc3".equals(type)) {
+				// Box header, SampleEntry and VisualSampleEntry fields
+				int child = pos + 86;
+				int entryEnd = pos + size;
+				while (child + 8 <= entryEnd) {
+					int childSize = readInt(stsd, child);
+					if (childSize < 8 || child + childSize > entryEnd) {
+						break;
+					}
+					if ("avcC".equals(new String(stsd, child + 4, 4, StandardCharsets.US_ASCII))) {
+						byte[] avcC = new byte[childSize - 8];
+						System.arraycopy(stsd, child + 8, avcC, 0, avcC.length);
+						return avcC;
+					}
+					child += childSize;
+				}
+			}
+			pos += size;
+		}
+		return null;
+	}
+
+	/**
+	 * Reads the {@code CodecPrivate} of the first {@code V_MPEG4/ISO/AVC}
+	 * track. The {@code Tracks} element is expected before the first
+	 * {@code Cluster}, where muxers put it.
+	 */
+	private static byte[] findMatroskaCodecPrivate(RandomAccessFile raf) throws IOException {
+		raf.seek(0);
+		long end = raf.length();
+		while (raf.getFilePointer() < end) {
+			int id = readElementId(raf);
+			long size = readElementSize(raf);
+			if (id == MATROSKA_SEGMENT || id == MATROSKA_TRACKS) {
+				// Descend into the element
+				continue;
+			}
+			if (id == MATROSKA_CLUSTER || size < 0) {
+				return null;
+			}
+			if (id == MATROSKA_TRACK_ENTRY) {
+				if (size > MAX_ELEMENT_SIZE) {
+					return null;
+				}
+				byte[] entry = new byte[(int) size];
+				raf.readFully(entry);
+				byte[] codecPrivate = getAvcCodecPrivate(entry);
+				if (codecPrivate != null) {
+					return codecPrivate;
+				}
+			} else {
+				raf.seek(raf.getFilePointer() + size);
+			}
+		}
+		return null;
+	}
+
+	private static byte[] getAvcCodecPrivate(byte[] trackEntry) {
+		int[] pos = {0};
+		String codecId = null;
+		byte[] codecPrivate = null;
+		while (pos[0] < trackEntry.length) {
+			int id = readElementId(trackEntry, pos);
+			long size = readElementSize(trackEntry, pos);
+			if (size < 0 || pos[0] + size > trackEntry.length) {
+				return null;
+			}
+			if (id == MATROSKA_CODEC_ID) {
+				codecId = new String(trackEntry, pos[0], (int) size, StandardCharsets.US_ASCII).trim();
+			} else if (id == MATROSKA_CODEC_PRIVATE) {
+				codecPrivate = new byte[(int) size];
+				System.arraycopy(trackEntry, pos[0], codecPrivate, 0, codecPrivate.length);
+			}
+			pos[0] += size;
+		}
+		return "V_MPEG4/ISO/AVC".equals(codecId) ? codecPrivate : null;
+	}
+
+	private static int readElementId(RandomAccessFile raf) throws IOException {
+		int first = raf.readUnsignedByte();
+		int length = Integer.numberOfLeadingZeros(first) - 23;
+		if (length < 1 || length > 4) {
+			throw new IOException("Invalid EBML element ID");
+		}
+		int id = first;
+		for (int i = 1; i < length; i++) {
+			id = (id << 8) | raf.readUnsignedByte();
+		}
+		return id;
+	}
+
+	/**
+	 * @return The element size or {@code -1} if it's unknown.
+	 */
+	private static long readElementSize(RandomAccessFile raf) throws IOException {
+		int first = raf.readUnsignedByte();
+		int length = Integer.numberOfLeadingZeros(first) - 23;
+		if (length < 1 || length > 8) {
+			throw new IOException("Invalid EBML element size");
+		}
+		long size = first & (0xFF >> length);
+		boolean unknown = size == (0xFF >> length);
+		for (int i = 1; i < length; i++) {
+			int b = raf.readUnsignedByte();
+			unknown &= b == 0xFF;
+			size = (size << 8) | b;
+		}
+		return unknown ? -1 : size;
+	}
+
+	private static int readElementId(byte[] data, int[] pos) {
+		int first = data[pos[0]++] & 0xFF;
+		int length = Integer.numberOfLeadingZeros(first) - 23;
+		int id = first;
+		for (int i = 1; i < length && pos[0] < data.length; i++) {
+			id = (id << 8) | (data[pos[0]++] & 0xFF);
+		}
+		return id;
+	}
+
+	private static long readElementSize(byte[] data, int[] pos) {
+		if (pos[0] >= data.length) {
+			return -1;
+		}
+		int first = data[pos[0]++] & 0xFF;
+		int length = Integer.numberOfLeadingZeros(first) - 23;
+		if (length < 1 || length > 8 || pos[0] + length - 1 > data.length) {
+			return -1;
+		}
+		long size = first & (0xFF >> length);
+		for (int i = 1; i < length; i++) {
+			size = (size << 8) | (data[pos[0]++] & 0xFF);
+		}
+		return size;
+	}
+
+	private static int readInt(byte[] data, int pos) {
+		return ((data[pos] & 0xFF) << 24) | ((data[pos + 1] & 0xFF) << 16) | ((data[pos + 2] & 0xFF) << 8) | (data[pos + 3] & 0xFF);
+	}
+
+	private static void skipScalingList(BitReader reader, int size) throws ParseException {
+		int lastScale = 8;
+		int nextScale = 8;
+		for (int j = 0; j < size; j++) {
+			if (nextScale != 0) {
+				nextScale = (lastScale + reader.readSignedExpGolomb() + 256) % 256;
+			}
+			lastScale = nextScale == 0 ? lastScale : nextScale;
+		}
+	}
+
+	/**
+	 * Removes the emulation prevention bytes from a NAL unit.
+	 */
+	private static byte[] unescape(byte[] nal) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(nal.length);
+		int zeros = 0;
+		for (byte b : nal) {
+			if (zeros >= 2 && b == 3) {
+				zeros = 0;
+				continue;
+			}
+			zeros = b == 0 ? zeros + 1 : 0;
+			out.write(b);
+		}
+		return out.toByteArray();
+	}
+
+	private static class BitReader {
+		private final byte[] data;
+		private int bitPos;
+
+		BitReader(byte[] data) {
+			this.data = data;
+		}
+
+		int readBits(int count) throws ParseException {
+			int result = 0;
+			for (int i = 0; i < count; i++) {
+				if (bitPos >= data.length * 8) {
+					throw new ParseException("Truncated sequence parameter set");
+				}
+				int bit = (data[bitPos >> 3] >> (7 - (bitPos & 7))) & 1;
+				result = (result << 1) | bit;
+				bitPos++;
+			}
+			return result;
+		}
+
+		int readUnsignedExpGolomb() throws ParseException {
+			int leadingZeros = 0;
+			while (readBits(1) == 0) {
+				if (++leadingZeros > 31) {
+					throw new ParseException("Invalid exp-Golomb code");
+				}
+			}
+			return (int) ((1L << leadingZeros) - 1 + readBits(leadingZeros));
+		}
+
+		int readSignedExpGolomb() throws ParseException {
+			int value = readUnsignedExpGolomb();
+			return (value & 1) == 1 ? (value + 1) / 2 : -(value / 2);
+		}
+	}
+}
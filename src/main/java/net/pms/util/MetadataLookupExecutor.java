@@ -0,0 +1,250 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.util;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs metadata lookups on a bounded number of worker threads.
+ * <p>
+ * A lookup is identified by a key, and a lookup whose key is already queued
+ * or running is dropped, so a file that is parsed again while its lookup is
+ * pending isn't looked up twice. Lookups for files in the folders the user
+ * has most recently browsed are run before the others, newest browse first,
+ * so that a first scan of a large library doesn't delay the metadata of what
+ * is on screen.
+ * <p>
+ * The queued lookups are kept sorted and indexed by folder, so giving a
+ * folder priority only touches the lookups of that folder. The worker
+ * threads each take the first queued lookup when they get to it.
+ */
+public class MetadataLookupExecutor {
+
+	/** The number of recently browsed folders that keep their priority */
+	private static final int MAX_BROWSED_FOLDERS = 16;
+
+	private final ThreadPoolExecutor executor;
+	private final Map<String, Lookup> pending = new ConcurrentHashMap<>();
+
+	/** The queued lookups in the order they run, guarded by itself */
+	private final TreeSet<Lookup> queue = new TreeSet<>();
+
+	/** The queued lookups with a folder by folder, guarded by queue */
+	private final Map<File, Set<Lookup>> queuedByFolder = new HashMap<>();
+	private final AtomicLong sequence = new AtomicLong();
+	private final AtomicLong browseGeneration = new AtomicLong();
+
+	/** The priority of the recently browsed folders, guarded by itself */
+	private final Map<File, Long> browsedFolders = new LinkedHashMap<>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<File, Long> eldest) {
+			return size() > MAX_BROWSED_FOLDERS;
+		}
+	};
+
+	/**
+	 * Creates a new executor.
+	 *
+	 * @param workers the maximum number of lookups that run at the same
+	 *            time.
+	 * @param namePattern the {@link BasicThreadFactory} name pattern of the
+	 *            worker threads.
+	 */
+	public MetadataLookupExecutor(int workers, String namePattern) {
+		executor = new ThreadPoolExecutor(
+			workers,
+			workers,
+			30,
+			TimeUnit.SECONDS,
+			new LinkedBlockingQueue<>(),
+			new BasicThreadFactory(namePattern, Thread.NORM_PRIORITY - 1)
+		);
+		executor.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Queues a lookup unless one with the same key is queued or running.
+	 *
+	 * @param key the key identifying the lookup, like the file path.
+	 * @param folder the folder of the file that is looked up, used for
+	 *            prioritization. May be {@code null}.
+	 * @param lookup the lookup to run.
+	 * @return {@code true} if the lookup was queued, {@code false} if it was
+	 *         dropped as a duplicate.
+	 */
+	public boolean execute(String key, File folder, Runnable lookup) {
+		Lookup task = new Lookup(key, folder, lookup, getPriority(folder), sequence.incrementAndGet());
+		if (pending.putIfAbsent(key, task) != null) {
+			return false;
+		}
+		synchronized (queue) {
+			queue.add(task);
+			if (folder != null) {
+				queuedByFolder.computeIfAbsent(folder, f -> new HashSet<>()).add(task);
+			}
+		}
+		try {
+			// Every queued lookup has one call to run the next one
+			executor.execute(this::runNext);
+		} catch (RejectedExecutionException e) {
+			synchronized (queue) {
+				dequeue(task);
+			}
+			pending.remove(key, task);
+			throw e;
+		}
+		return true;
+	}
+
+	/**
+	 * Gives the lookups for files in the given folder, queued now or later,
+	 * priority over the lookups for folders that were browsed earlier or not
+	 * at all.
+	 *
+	 * @param folder the folder the user is browsing.
+	 */
+	public void prioritize(File folder) {
+		if (folder == null) {
+			return;
+		}
+		long priority = browseGeneration.incrementAndGet();
+		synchronized (browsedFolders) {
+			browsedFolders.put(folder, priority);
+		}
+		synchronized (queue) {
+			Set<Lookup> tasks = queuedByFolder.get(folder);
+			if (tasks == null) {
+				return;
+			}
+			for (Lookup task : tasks) {
+				// A queued lookup is removed before its priority is changed, so
+				// that the queue's ordering stays consistent
+				if (task.priority < priority) {
+					queue.remove(task);
+					task.priority = priority;
+					queue.add(task);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return The number of lookups that are queued or running.
+	 */
+	public int getPendingCount() {
+		return pending.size();
+	}
+
+	/**
+	 * Stops the running lookups and drops the queued ones.
+	 */
+	public void shutdownNow() {
+		executor.shutdownNow();
+		synchronized (queue) {
+			queue.clear();
+			queuedByFolder.clear();
+		}
+		pending.clear();
+	}
+
+	/**
+	 * Runs the first queued lookup.
+	 */
+	private void runNext() {
+		Lookup task;
+		synchronized (queue) {
+			task = queue.pollFirst();
+			if (task == null) {
+				// Dropped by shutdownNow()
+				return;
+			}
+			dequeue(task);
+		}
+		task.run();
+	}
+
+	/**
+	 * Removes a lookup from the queue and from its folder's index. This must
+	 * only be called while holding the queue lock.
+	 */
+	private void dequeue(Lookup task) {
+		queue.remove(task);
+		if (task.folder != null) {
+			Set<Lookup> tasks = queuedByFolder.get(task.folder);
+			if (tasks != null && tasks.remove(task) && tasks.isEmpty()) {
+				queuedByFolder.remove(task.folder);
+			}
+		}
+	}
+
+	private long getPriority(File folder) {
+		if (folder == null) {
+			return 0;
+		}
+		synchronized (browsedFolders) {
+			Long priority = browsedFolders.get(folder);
+			return priority == null ? 0 : priority;
+		}
+	}
+
+	private class Lookup implements Comparable<Lookup> {
+		private final String key;
+		private final File folder;
+		private final Runnable lookup;
+		private final long order;
+		/** Only changed while the lookup isn't in the queue */
+		private long priority;
+
+		private Lookup(String key, File folder, Runnable lookup, long priority, long order) {
+			this.key = key;
+			this.folder = folder;
+			this.lookup = lookup;
+			this.priority = priority;
+			this.order = order;
+		}
+
+		private void run() {
+			try {
+				lookup.run();
+			} finally {
+				pending.remove(key, this);
+			}
+		}
+
+		@Override
+		public int compareTo(Lookup other) {
+			if (priority != other.priority) {
+				return priority > other.priority ? -1 : 1;
+			}
+			return Long.compare(order, other.order);
+		}
+	}
+}
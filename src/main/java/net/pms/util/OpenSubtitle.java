@@ -42,6 +42,7 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.sql.Connection;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -49,14 +50,16 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.regex.Matcher;
@@ -78,6 +81,10 @@ import org.slf4j.LoggerFactory;
 import org.xml.sax.SAXException;
 import net.pms.PMS;
 import net.pms.configuration.RendererConfiguration;
+import net.pms.database.MediaDatabase;
+import net.pms.database.MediaTableOpenSubtitles;
+import net.pms.database.MediaTableOpenSubtitles.LookupMethod;
+import net.pms.database.MediaTableOpenSubtitles.OpenSubtitlesHash;
 import net.pms.dlna.DLNAMediaInfo;
 import net.pms.dlna.DLNAMediaLang;
 import net.pms.dlna.DLNAResource;
@@ -116,18 +123,28 @@ public class OpenSubtitle {
 	private static final String OPENSUBS_URL = "http://api.opensubtitles.org/xml-rpc";
 	private static final ReentrantReadWriteLock TOKEN_LOCK = new ReentrantReadWriteLock();
 	private static Token token = null;
+	private static volatile String apiUrl = OPENSUBS_URL;
 
-	// Minimum number of threads in pool
-	private static final ThreadPoolExecutor BACKGROUND_EXECUTOR = new ThreadPoolExecutor(0,
-		5, // Maximum number of threads in pool
-		30, // Number of seconds before an idle thread is terminated
+	/** The maximum number of file hashes sent in one CheckMovieHash2 request */
+	private static final int MAX_HASH_BATCH = 100;
 
-		// The queue holding the tasks waiting to be processed
-		TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
-			new OpenSubtitlesBackgroundWorkerThreadFactory() // The ThreadFactory
+	/**
+	 * The number of milliseconds to collect files queued by a scan before
+	 * their hashes are looked up together.
+	 */
+	private static final long HASH_BATCH_DELAY = 2000;
+
+	/** The files whose hashes are queued for lookup, guarded by itself */
+	private static final Map<String, File> QUEUED_HASH_LOOKUPS = new LinkedHashMap<>();
+	private static final AtomicBoolean HASH_LOOKUP_SCHEDULED = new AtomicBoolean();
+
+	private static final ScheduledThreadPoolExecutor BACKGROUND_EXECUTOR = new ScheduledThreadPoolExecutor(
+		1,
+		new OpenSubtitlesBackgroundWorkerThreadFactory()
 	);
 
 	static {
+		BACKGROUND_EXECUTOR.allowCoreThreadTimeOut(true);
 		Runtime.getRuntime().addShutdownHook(new Thread("OpenSubtitles Executor Shutdown Hook") {
 			@Override
 			public void run() {
@@ -140,6 +157,21 @@ public class OpenSubtitle {
 	private OpenSubtitle() {
 	}
 
+	/**
+	 * Sets the XML-RPC endpoint to use, for testing.
+	 *
+	 * @param url the endpoint URL.
+	 */
+	static void setApiUrl(String url) {
+		TOKEN_LOCK.writeLock().lock();
+		try {
+			apiUrl = url;
+			token = null;
+		} finally {
+			TOKEN_LOCK.writeLock().unlock();
+		}
+	}
+
 	/**
 	 * Gets the <a href=
 	 * "http://trac.opensubtitles.org/projects/opensubtitles/wiki/HashSourceCodes"
@@ -154,12 +186,51 @@ public class OpenSubtitle {
 	public static String getHash(Path file) throws IOException {
 		String hash = ImdbUtil.extractOSHash(file);
 		if (isBlank(hash)) {
-			hash = computeHash(file);
+			hash = getStoredHash(file);
 		}
 		LOGGER.debug("OpenSubtitles hash for \"{}\" is {}", file.getFileName(), hash);
 		return hash;
 	}
 
+	/**
+	 * Gets the OpenSubtitles hash for the specified {@link Path} from the
+	 * database, or calculates and stores it if the file isn't stored with its
+	 * current size and modification time.
+	 *
+	 * @param file the {@link Path} for which to get the hash.
+	 * @return The OpenSubtitles hash or {@code null}.
+	 * @throws IOException If an I/O error occurs during the operation.
+	 */
+	private static String getStoredHash(Path file) throws IOException {
+		if (!Files.isRegularFile(file)) {
+			return null;
+		}
+		long size = Files.size(file);
+		long modified = Files.getLastModifiedTime(file).toMillis();
+		String fullPathToFile = file.toAbsolutePath().toString();
+		Connection connection = getDatabaseConnection();
+		try {
+			if (connection != null) {
+				OpenSubtitlesHash stored = MediaTableOpenSubtitles.get(connection, fullPathToFile, size, modified);
+				if (stored != null) {
+					return stored.getHash();
+				}
+			}
+			String hash = computeHash(file);
+			if (connection != null && hash != null) {
+				MediaTableOpenSubtitles.setHash(connection, fullPathToFile, size, modified, hash);
+			}
+			return hash;
+		} finally {
+			MediaDatabase.close(connection);
+		}
+	}
+
+	@Nullable
+	private static Connection getDatabaseConnection() {
+		return PMS.getConfiguration().getUseCache() ? MediaDatabase.getConnectionIfAvailable() : null;
+	}
+
 	/**
 	 * Calculates the <a href=
 	 * "http://trac.opensubtitles.org/projects/opensubtitles/wiki/HashSourceCodes"
@@ -295,14 +366,14 @@ public class OpenSubtitle {
 			// Setup connection
 			URL url;
 			try {
-				url = new URL(OPENSUBS_URL);
+				url = new URL(apiUrl);
 			} catch (MalformedURLException e) {
-				throw new AssertionError("OpenSubtitles URL \"" + OPENSUBS_URL + "\" is invalid");
+				throw new AssertionError("OpenSubtitles URL \"" + apiUrl + "\" is invalid");
 			}
 
 			URLConnection urlConnection = url.openConnection();
 			if (!(urlConnection instanceof HttpURLConnection)) {
-				throw new OpenSubtitlesException("Invalid URL: " + OPENSUBS_URL);
+				throw new OpenSubtitlesException("Invalid URL: " + apiUrl);
 			}
 			HttpURLConnection connection = (HttpURLConnection) urlConnection;
 			connection.setDoInput(true);
@@ -666,7 +737,8 @@ public class OpenSubtitle {
 		Array queryArray = new Array();
 		queryArray.add(new ValueStruct(queryStruct));
 
-		return searchSubtitles(queryArray, resource, prettifier, "file hash", fileHash, -1);
+		ArrayList<SubtitleItem> result = searchSubtitles(queryArray, resource, prettifier, "file hash", fileHash, -1);
+		return result == null ? new ArrayList<>() : result;
 	}
 
 	/**
@@ -703,7 +775,8 @@ public class OpenSubtitle {
 		Array queryArray = new Array();
 		queryArray.add(new ValueStruct(queryStruct));
 
-		return searchSubtitles(queryArray, resource, prettifier, "IMDB ID", imdbId, -1);
+		ArrayList<SubtitleItem> result = searchSubtitles(queryArray, resource, prettifier, "IMDB ID", imdbId, -1);
+		return result == null ? new ArrayList<>() : result;
 	}
 
 	/**
@@ -721,7 +794,7 @@ public class OpenSubtitle {
 	 * @param limit the maximum number of returned {@link SubtitleItem}s or
 	 *            {@code -1} for no limit.
 	 * @return A {@link List} with the found {@link SubtitleItem}s (might be
-	 *         empty).
+	 *         empty), or {@code null} if the query failed.
 	 */
 	protected static ArrayList<SubtitleItem> searchSubtitles(
 		Array queryArray,
@@ -736,7 +809,7 @@ public class OpenSubtitle {
 		}
 		URL url = login();
 		if (url == null) {
-			return new ArrayList<>();
+			return null;
 		}
 
 		URLConnection urlConnection;
@@ -822,7 +895,7 @@ public class OpenSubtitle {
 			// Handle status code
 			if (!checkStatus(params)) {
 				LOGGER.error("OpenSubtitles search using {} \"{}\" was aborted because of an error", logDescription, logSearchTerm);
-				return new ArrayList<>();
+				return null;
 			}
 
 			// Parse subtitles
@@ -864,7 +937,7 @@ public class OpenSubtitle {
 		} catch (XMLStreamException | IOException e) {
 			LOGGER.error("An error occurred while performing OpenSubtitles search by {}: {}", logDescription, e.getMessage());
 			LOGGER.trace("", e);
-			return new ArrayList<>();
+			return null;
 		}
 	}
 
@@ -883,6 +956,71 @@ public class OpenSubtitle {
 		if (resource == null || isBlank(fileHash)) {
 			return null;
 		}
+		File file = resource instanceof RealFile ? ((RealFile) resource).getFile() : null;
+		Connection connection = file == null ? null : getDatabaseConnection();
+		try {
+			String[] checkMovieHash2Result = null;
+			if (connection != null) {
+				OpenSubtitlesHash stored = MediaTableOpenSubtitles.get(connection, file.getAbsolutePath(), file.length(), file.lastModified());
+				if (stored != null && fileHash.equals(stored.getHash()) && stored.isLookupValid()) {
+					if (stored.getLookupMethod() == LookupMethod.SEARCH_SUBTITLES) {
+						LOGGER.debug(
+							"Using the stored OpenSubtitles lookup of file hash \"{}\" for \"{}\": {}",
+							fileHash,
+							resource.getName(),
+							stored.getImdbId() == null ? "no IMDB ID" : stored.getImdbId()
+						);
+						return stored.getImdbId();
+					}
+					// Looked up during a scan, SearchSubtitles may still find a better match
+					checkMovieHash2Result = new String[] {stored.getImdbId()};
+				}
+			}
+			ImdbIdLookup result = lookupImdbIdByFileHash(resource, fileHash, fileSize, prettifier, checkMovieHash2Result);
+			if (
+				connection != null &&
+				result != null &&
+				(result.method == LookupMethod.SEARCH_SUBTITLES || checkMovieHash2Result == null)
+			) {
+				// A failed SearchSubtitles query leaves the scanned outcome in place
+				MediaTableOpenSubtitles.setLookup(
+					connection,
+					file.getAbsolutePath(),
+					file.length(),
+					file.lastModified(),
+					fileHash,
+					result.method,
+					result.imdbId
+				);
+			}
+			return result == null ? null : result.imdbId;
+		} finally {
+			MediaDatabase.close(connection);
+		}
+	}
+
+	/**
+	 * Queries OpenSubtitles for the {@code IMDB ID} of a video file.
+	 *
+	 * @param resource the {@link DLNAResource} whose IMDB ID to find.
+	 * @param fileHash the file hash for the video file.
+	 * @param fileSize the file size for the video file.
+	 * @param prettifier the {@link FileNamePrettifier} to use.
+	 * @param checkMovieHash2Result the stored outcome of an earlier
+	 *            {@code CheckMovieHash2} query for the file hash, or
+	 *            {@code null} to query it if needed.
+	 * @return The {@link ImdbIdLookup} with the {@code IMDB ID}, which is
+	 *         {@code null} if none was found, and the {@link LookupMethod} it
+	 *         should be stored with, or {@code null} if the lookup failed and
+	 *         should be retried.
+	 */
+	private static ImdbIdLookup lookupImdbIdByFileHash(
+		DLNAResource resource,
+		String fileHash,
+		long fileSize,
+		FileNamePrettifier prettifier,
+		String[] checkMovieHash2Result
+	) {
 		LOGGER.trace("Querying OpenSubtitles for IMDB ID for \"{}\" using file hash \"{}\".", resource.getName(), fileHash);
 		String result;
 
@@ -899,7 +1037,8 @@ public class OpenSubtitle {
 		queryArray.add(new ValueStruct(queryStruct));
 
 		List<SubtitleItem> subtitles = searchSubtitles(queryArray, resource, prettifier, "file hash", fileHash, 1);
-		if (!subtitles.isEmpty()) {
+		LookupMethod method = subtitles == null ? LookupMethod.CHECK_MOVIE_HASH2 : LookupMethod.SEARCH_SUBTITLES;
+		if (subtitles != null && !subtitles.isEmpty()) {
 			result = subtitles.get(0).getIdMovieImdb();
 			if (isNotBlank(result)) {
 				LOGGER.debug(
@@ -908,18 +1047,44 @@ public class OpenSubtitle {
 					resource.getName(),
 					fileHash
 				);
-				return result;
+				return new ImdbIdLookup(result, method);
 			}
 		}
 
 		// Use the less accurate checkMovieHash2 if no subtitles are registered
 		// for the file hash
-		Map<String, List<CheckMovieHashItem>> results = checkMovieHash2(fileHash);
-		List<CheckMovieHashItem> items = results.isEmpty() ? null : results.get(fileHash);
+		if (checkMovieHash2Result != null) {
+			LOGGER.debug(
+				"Using the stored OpenSubtitles CheckMovieHash2 lookup of file hash \"{}\" for \"{}\": {}",
+				fileHash,
+				resource.getName(),
+				checkMovieHash2Result[0] == null ? "no IMDB ID" : checkMovieHash2Result[0]
+			);
+			return new ImdbIdLookup(checkMovieHash2Result[0], method);
+		}
+		Map<String, List<CheckMovieHashItem>> results = queryCheckMovieHash2(fileHash);
+		if (results == null) {
+			return null;
+		}
+		return new ImdbIdLookup(pickImdbId(results.get(fileHash), prettifier, resource.getName(), fileHash), method);
+	}
+
+	/**
+	 * Picks the {@code IMDB ID} that best matches the file name from the
+	 * titles that {@code CheckMovieHash2} returned for a file hash.
+	 *
+	 * @param items the {@link CheckMovieHashItem}s for the file hash.
+	 * @param prettifier the {@link FileNamePrettifier} to use.
+	 * @param name the name of the file, for logging.
+	 * @param fileHash the file hash, for logging.
+	 * @return The {@code IMDB ID} or {@code null}.
+	 */
+	private static String pickImdbId(List<CheckMovieHashItem> items, FileNamePrettifier prettifier, String name, String fileHash) {
+		String result;
 		if (items == null || items.isEmpty()) {
 			LOGGER.debug(
 				"OpenSubtitles CheckMovieHash2 returned no IMDB ID for \"{}\" using file hash \"{}\"",
-				resource.getName(),
+				name,
 				fileHash
 			);
 			return null;
@@ -937,7 +1102,7 @@ public class OpenSubtitle {
 		if (candidates.isEmpty()) {
 			LOGGER.debug(
 				"OpenSubtitles CheckMovieHash2 returned no usable IMDB ID for \"{}\" using file hash \"{}\"",
-				resource.getName(),
+				name,
 				fileHash
 			);
 			return null;
@@ -947,7 +1112,7 @@ public class OpenSubtitle {
 			LOGGER.debug(
 				"OpenSubtitles CheckMovieHash2 returned IMDB ID {} for \"{}\" using file hash \"{}\"",
 				result,
-				resource.getName(),
+				name,
 				fileHash
 			);
 			return result;
@@ -958,19 +1123,140 @@ public class OpenSubtitle {
 			for (GuessCandidate candidate : candidates) {
 				sb.append("  ").append(candidate).append("\n");
 			}
-			LOGGER.trace("OpenSubtitles: findImdbIdByHash() candidates for \"{}\":\n{}", resource.getName(), sb.toString());
+			LOGGER.trace("OpenSubtitles: findImdbIdByHash() candidates for \"{}\":\n{}", name, sb.toString());
 		}
 		result = candidates.get(0).getGuessItem().getImdbId();
 		LOGGER.debug(
 			"OpenSubtitles: Picked IMDB ID {} as the best match for \"{}\" using file hash \"{}\" with CheckMovieHash2",
 			result,
-			resource.getName(),
+			name,
 			fileHash
 		);
 
 		return result;
 	}
 
+	/**
+	 * Queues a lookup of the {@code IMDB ID} of a video file by its file hash,
+	 * unless live subtitles are disabled. Files queued close together, like
+	 * during a library scan, are looked up with one {@code CheckMovieHash2}
+	 * request, and the outcome is stored in the database so that finding
+	 * live subtitles for the file later doesn't have to hash it or query
+	 * {@code CheckMovieHash2} again. That lookup still queries
+	 * {@code SearchSubtitles}, which also matches the file size.
+	 *
+	 * @param file the video file.
+	 */
+	public static void backgroundLookupImdbIdByFileHash(File file) {
+		if (
+			file == null ||
+			!PMS.getConfiguration().isShowLiveSubtitlesFolder() ||
+			!PMS.getConfiguration().getExternalNetwork() ||
+			!PMS.getConfiguration().getUseCache()
+		) {
+			return;
+		}
+		queueHashLookup(file);
+	}
+
+	/**
+	 * Queues a lookup of the {@code IMDB ID} of a video file by its file
+	 * hash.
+	 *
+	 * @param file the video file.
+	 */
+	static void queueHashLookup(File file) {
+		synchronized (QUEUED_HASH_LOOKUPS) {
+			QUEUED_HASH_LOOKUPS.put(file.getAbsolutePath(), file);
+		}
+		if (HASH_LOOKUP_SCHEDULED.compareAndSet(false, true)) {
+			BACKGROUND_EXECUTOR.schedule(OpenSubtitle::lookupQueuedHashes, HASH_BATCH_DELAY, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * Looks up the queued files in batches of up to {@link #MAX_HASH_BATCH}
+	 * file hashes.
+	 */
+	static void lookupQueuedHashes() {
+		do {
+			List<File> files;
+			while (!(files = takeQueuedHashLookups()).isEmpty()) {
+				lookupHashes(files);
+			}
+			HASH_LOOKUP_SCHEDULED.set(false);
+			// A file may have been queued after the last batch was taken
+		} while (hasQueuedHashLookups() && HASH_LOOKUP_SCHEDULED.compareAndSet(false, true));
+	}
+
+	private static List<File> takeQueuedHashLookups() {
+		List<File> files = new ArrayList<>();
+		synchronized (QUEUED_HASH_LOOKUPS) {
+			Iterator<File> iterator = QUEUED_HASH_LOOKUPS.values().iterator();
+			while (iterator.hasNext() && files.size() < MAX_HASH_BATCH) {
+				files.add(iterator.next());
+				iterator.remove();
+			}
+		}
+		return files;
+	}
+
+	private static boolean hasQueuedHashLookups() {
+		synchronized (QUEUED_HASH_LOOKUPS) {
+			return !QUEUED_HASH_LOOKUPS.isEmpty();
+		}
+	}
+
+	private static void lookupHashes(List<File> files) {
+		Connection connection = getDatabaseConnection();
+		if (connection == null) {
+			return;
+		}
+		try {
+			Map<String, List<File>> filesByHash = new LinkedHashMap<>();
+			for (File file : files) {
+				OpenSubtitlesHash stored = MediaTableOpenSubtitles.get(connection, file.getAbsolutePath(), file.length(), file.lastModified());
+				if (stored != null && stored.isLookupValid()) {
+					continue;
+				}
+				try {
+					String fileHash = getHash(file.toPath());
+					if (isNotBlank(fileHash)) {
+						filesByHash.computeIfAbsent(fileHash, k -> new ArrayList<>()).add(file);
+					}
+				} catch (IOException e) {
+					LOGGER.debug("Couldn't calculate OpenSubtitles hash for \"{}\": {}", file.getName(), e.getMessage());
+					LOGGER.trace("", e);
+				}
+			}
+			if (filesByHash.isEmpty()) {
+				return;
+			}
+
+			Map<String, List<CheckMovieHashItem>> results = queryCheckMovieHash2(filesByHash.keySet().toArray(new String[0]));
+			if (results == null) {
+				// Don't store the failure as "not found", the files are looked up again when needed
+				return;
+			}
+			for (Entry<String, List<File>> entry : filesByHash.entrySet()) {
+				for (File file : entry.getValue()) {
+					String imdbId = pickImdbId(results.get(entry.getKey()), new FileNamePrettifier(file), file.getName(), entry.getKey());
+					MediaTableOpenSubtitles.setLookup(
+						connection,
+						file.getAbsolutePath(),
+						file.length(),
+						file.lastModified(),
+						entry.getKey(),
+						LookupMethod.CHECK_MOVIE_HASH2,
+						imdbId
+					);
+				}
+			}
+		} finally {
+			MediaDatabase.close(connection);
+		}
+	}
+
 	/**
 	 * Queries OpenSubtitles for titles matching the specified file hashes.
 	 *
@@ -983,9 +1269,22 @@ public class OpenSubtitle {
 		if (fileHashes == null || fileHashes.length == 0) {
 			return new HashMap<>();
 		}
+		Map<String, List<CheckMovieHashItem>> results = queryCheckMovieHash2(fileHashes);
+		return results == null ? new HashMap<>() : results;
+	}
+
+	/**
+	 * Queries OpenSubtitles for titles matching the specified file hashes.
+	 *
+	 * @param fileHashes the file hashes to look up.
+	 * @return A {@link Map} of the matching [file hash, {@link List} of
+	 *         {@link CheckMovieHashItem}s] pairs, or {@code null} if the query
+	 *         failed.
+	 */
+	private static Map<String, List<CheckMovieHashItem>> queryCheckMovieHash2(String... fileHashes) {
 		URL url = login();
 		if (url == null) {
-			return new HashMap<>();
+			return null;
 		}
 
 		URLConnection urlConnection;
@@ -1072,7 +1371,7 @@ public class OpenSubtitle {
 			// Handle status code
 			if (!checkStatus(params)) {
 				LOGGER.error("OpenSubtitles CheckMovieHash2 was aborted because of an error");
-				return new HashMap<>();
+				return null;
 			}
 
 			// Parse subtitles
@@ -1120,7 +1419,7 @@ public class OpenSubtitle {
 				e.getMessage()
 			);
 			LOGGER.trace("", e);
-			return new HashMap<>();
+			return null;
 		}
 	}
 
@@ -1180,7 +1479,8 @@ public class OpenSubtitle {
 			queryArray.add(new ValueStruct(queryStruct));
 		}
 
-		return searchSubtitles(queryArray, resource, prettifier, "filename", fileName, -1);
+		ArrayList<SubtitleItem> result = searchSubtitles(queryArray, resource, prettifier, "filename", fileName, -1);
+		return result == null ? new ArrayList<>() : result;
 	}
 
 	private static void addGuesses(
@@ -1758,6 +2058,20 @@ public class OpenSubtitle {
 		return true;
 	}
 
+	/**
+	 * The outcome of an {@code IMDB ID} lookup by file hash, and the
+	 * {@link LookupMethod} it was found with.
+	 */
+	private static class ImdbIdLookup {
+		private final String imdbId;
+		private final LookupMethod method;
+
+		private ImdbIdLookup(String imdbId, LookupMethod method) {
+			this.imdbId = imdbId;
+			this.method = method;
+		}
+	}
+
 	/**
 	 * A class representing an OpenSubtitles token.
 	 *
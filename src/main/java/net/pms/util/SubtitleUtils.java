@@ -325,6 +325,8 @@ public class SubtitleUtils {
 			)
 		) {
 			tempSubs = params.getSid().getExternalFile();
+		} else if (isEmbeddedSource) {
+			tempSubs = EmbeddedSubtitlesCache.getOrExtract(filename, media, params, configuration, subtitleType);
 		} else {
 			tempSubs = convertSubsToSubtitleType(filename, media, params, configuration, subtitleType);
 		}
@@ -400,22 +402,7 @@ public class SubtitleUtils {
 		File tempSubsFile;
 		cmdList.add(PlayerFactory.getPlayerExecutable(StandardPlayerId.FFMPEG_VIDEO));
 		cmdList.add("-y");
-		cmdList.add("-loglevel");
-		FFmpegLogLevels askedLogLevel = FFmpegLogLevels.valueOfLabel(configuration.getFFmpegLoggingLevel());
-		if (LOGGER.isTraceEnabled()) {
-			// Set -loglevel in accordance with LOGGER setting
-			if (FFmpegLogLevels.INFO.isMoreVerboseThan(askedLogLevel)) {
-				cmdList.add("info");
-			} else {
-				cmdList.add(askedLogLevel.label);
-			}
-		} else {
-			if (FFmpegLogLevels.FATAL.isMoreVerboseThan(askedLogLevel)) {
-				cmdList.add("fatal");
-			} else {
-				cmdList.add(askedLogLevel.label);
-			}
-		}
+		addLogLevel(cmdList, configuration);
 
 		// Try to specify input encoding if we have a non utf-8 external sub
 		if (params.getSid().isExternal() && !params.getSid().isExternalFileUtf8()) {
@@ -470,6 +457,77 @@ public class SubtitleUtils {
 		return tempSubsFile;
 	}
 
+	/**
+	 * Extracts embedded text subtitles tracks of a video file to the requested
+	 * subtitle type. All tracks are extracted by a single FFmpeg pass, so the
+	 * container is only read once however many tracks it has.
+	 *
+	 * @param fileName the video file
+	 * @param media
+	 * @param tracks the embedded text subtitles tracks to extract
+	 * @param configuration
+	 * @param outputSubtitleType requested subtitle type
+	 * @param outputFiles the files to write the tracks to, in the order of
+	 *            {@code tracks}
+	 * @return {@code false} if the extraction was interrupted
+	 */
+	public static boolean extractEmbeddedSubtitles(
+		String fileName,
+		DLNAMediaInfo media,
+		List<DLNAMediaSubtitle> tracks,
+		PmsConfiguration configuration,
+		SubtitleType outputSubtitleType,
+		List<File> outputFiles
+	) {
+		List<String> cmdList = new ArrayList<>();
+		cmdList.add(PlayerFactory.getPlayerExecutable(StandardPlayerId.FFMPEG_VIDEO));
+		cmdList.add("-y");
+		addLogLevel(cmdList, configuration);
+		cmdList.add("-i");
+		cmdList.add(fileName);
+
+		for (int i = 0; i < tracks.size(); i++) {
+			cmdList.add("-map");
+			cmdList.add("0:s:" + media.getSubtitlesTracks().indexOf(tracks.get(i)));
+			cmdList.add(outputFiles.get(i).getAbsolutePath());
+		}
+
+		String[] cmdArray = new String[cmdList.size()];
+		cmdList.toArray(cmdArray);
+
+		ProcessWrapperImpl pw = new ProcessWrapperImpl(cmdArray, new OutputParams(configuration));
+		pw.runInNewThread();
+
+		try {
+			pw.join(); // Wait until the extraction is finished
+			pw.stopProcess();
+		} catch (InterruptedException e) {
+			LOGGER.debug("Subtitles extraction finished wih error: " + e);
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		return true;
+	}
+
+	private static void addLogLevel(List<String> cmdList, PmsConfiguration configuration) {
+		cmdList.add("-loglevel");
+		FFmpegLogLevels askedLogLevel = FFmpegLogLevels.valueOfLabel(configuration.getFFmpegLoggingLevel());
+		if (LOGGER.isTraceEnabled()) {
+			// Set -loglevel in accordance with LOGGER setting
+			if (FFmpegLogLevels.INFO.isMoreVerboseThan(askedLogLevel)) {
+				cmdList.add("info");
+			} else {
+				cmdList.add(askedLogLevel.label);
+			}
+		} else {
+			if (FFmpegLogLevels.FATAL.isMoreVerboseThan(askedLogLevel)) {
+				cmdList.add("fatal");
+			} else {
+				cmdList.add(askedLogLevel.label);
+			}
+		}
+	}
+
 	public static File applyFontconfigToASSTempSubsFile(
 		File tempSubs,
 		DLNAMediaInfo media,
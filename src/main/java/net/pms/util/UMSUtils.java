@@ -19,9 +19,11 @@ package net.pms.util;
 import java.io.*;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.text.CollationKey;
 import java.text.Collator;
 import java.util.*;
 import java.util.List;
+import java.util.function.Function;
 import net.pms.PMS;
 import net.pms.configuration.PmsConfiguration;
 import net.pms.configuration.RendererConfiguration;
@@ -138,63 +140,17 @@ public class UMSUtils {
 		switch (method) {
 			case SORT_NO_SORT: // no sorting
 				break;
-			case SORT_LOC_NAT: // Locale-sensitive natural sort
-				Collections.sort(files, new Comparator<File>() {
-
-					@Override
-					public int compare(File f1, File f2) {
-						String filename1ToSort = FileUtil.renameForSorting(f1.getName(), isEpisodeWithinTVSeriesFolder, f1.getAbsolutePath());
-						String filename2ToSort = FileUtil.renameForSorting(f2.getName(), isEpisodeWithinTVSeriesFolder, f2.getAbsolutePath());
-
-						return NaturalComparator.compareNatural(COLLATOR, filename1ToSort, filename2ToSort);
-					}
-				});
-				break;
-			case SORT_INS_ASCII: // Case-insensitive ASCIIbetical sort
-				Collections.sort(files, new Comparator<File>() {
-
-					@Override
-					public int compare(File f1, File f2) {
-						String filename1ToSort = FileUtil.renameForSorting(f1.getName(), isEpisodeWithinTVSeriesFolder, f1.getAbsolutePath());
-						String filename2ToSort = FileUtil.renameForSorting(f2.getName(), isEpisodeWithinTVSeriesFolder, f2.getAbsolutePath());
-
-						return filename1ToSort.compareToIgnoreCase(filename2ToSort);
-					}
-				});
-				break;
 			case SORT_MOD_OLD: // Sort by modified date, oldest first
-				Collections.sort(files, new Comparator<File>() {
-
-					@Override
-					public int compare(File f1, File f2) {
-						return Long.valueOf(f1.lastModified()).compareTo(f2.lastModified());
-					}
-				});
+				sortByKeys(files, f -> new SortKey<>(f, f.lastModified()), (k1, k2) -> Long.compare(k1.modified, k2.modified));
 				break;
 			case SORT_MOD_NEW: // Sort by modified date, newest first
-				Collections.sort(files, new Comparator<File>() {
-
-					@Override
-					public int compare(File f1, File f2) {
-						return Long.valueOf(f2.lastModified()).compareTo(f1.lastModified());
-					}
-				});
+				sortByKeys(files, f -> new SortKey<>(f, f.lastModified()), (k1, k2) -> Long.compare(k2.modified, k1.modified));
 				break;
 			case SORT_RANDOM: // Random
 				Collections.shuffle(files, new Random(System.currentTimeMillis()));
 				break;
-			case SORT_LOC_SENS: // Same as default
-			default: // Locale-sensitive A-Z
-				Collections.sort(files, new Comparator<File>() {
-
-					@Override
-					public int compare(File f1, File f2) {
-						String filename1ToSort = FileUtil.renameForSorting(f1.getName(), isEpisodeWithinTVSeriesFolder, f1.getAbsolutePath());
-						String filename2ToSort = FileUtil.renameForSorting(f2.getName(), isEpisodeWithinTVSeriesFolder, f2.getAbsolutePath());
-
-						return COLLATOR.compare(filename1ToSort, filename2ToSort);
-					}
-				});
+			default:
+				sortByName(files, f -> FileUtil.renameForSorting(f.getName(), isEpisodeWithinTVSeriesFolder, f.getAbsolutePath()), method);
 				break;
 		}
 	}
@@ -210,46 +166,175 @@ public class UMSUtils {
 		switch (method) {
 			case SORT_NO_SORT: // no sorting
 				break;
-			case SORT_LOC_NAT: // Locale-sensitive natural sort
-				Collections.sort(inputStrings, new Comparator<String>() {
-
-					@Override
-					public int compare(String s1, String s2) {
-						String filename1ToSort = FileUtil.renameForSorting(s1);
-						String filename2ToSort = FileUtil.renameForSorting(s2);
-
-						return NaturalComparator.compareNatural(COLLATOR, filename1ToSort, filename2ToSort);
-					}
-				});
+			case SORT_RANDOM: // Random
+				Collections.shuffle(inputStrings, new Random(System.currentTimeMillis()));
 				break;
-			case SORT_INS_ASCII: // Case-insensitive ASCIIbetical sort
-				Collections.sort(inputStrings, new Comparator<String>() {
-
-					@Override
-					public int compare(String s1, String s2) {
-						String filename1ToSort = FileUtil.renameForSorting(s1);
-						String filename2ToSort = FileUtil.renameForSorting(s2);
+			default:
+				sortByName(inputStrings, FileUtil::renameForSorting, method);
+				break;
+		}
+	}
 
-						return filename1ToSort.compareToIgnoreCase(filename2ToSort);
-					}
-				});
+	/**
+	 * Sorts a list by the names returned by {@code nameFunction} using one of
+	 * the name based sort methods. Each name is renamed for sorting and
+	 * collated only once, instead of on every comparison.
+	 */
+	private static <T> void sortByName(List<T> list, Function<T, String> nameFunction, int method) {
+		switch (method) {
+			case SORT_LOC_NAT: // Locale-sensitive natural sort
+				sortByKeys(list, item -> SortKey.natural(item, nameFunction.apply(item)), UMSUtils::compareNatural);
 				break;
-			case SORT_RANDOM: // Random
-				Collections.shuffle(inputStrings, new Random(System.currentTimeMillis()));
+			case SORT_INS_ASCII: // Case-insensitive ASCIIbetical sort
+				sortByKeys(list, item -> new SortKey<>(item, nameFunction.apply(item)), (k1, k2) -> k1.name.compareToIgnoreCase(k2.name));
 				break;
 			case SORT_LOC_SENS: // Same as default
 			default: // Locale-sensitive A-Z
-				Collections.sort(inputStrings, new Comparator<String>() {
+				sortByKeys(list, item -> SortKey.collated(item, nameFunction.apply(item)), (k1, k2) -> k1.collationKey.compareTo(k2.collationKey));
+				break;
+		}
+	}
+
+	/**
+	 * Sorts a list by building a {@link SortKey} for each element once,
+	 * sorting the keys and writing the elements back in the sorted order.
+	 * The sort is stable, like {@link Collections#sort(List, Comparator)}.
+	 */
+	private static <T> void sortByKeys(List<T> list, Function<T, SortKey<T>> keyFunction, Comparator<SortKey<T>> comparator) {
+		if (list.size() < 2) {
+			return;
+		}
+		List<SortKey<T>> keys = new ArrayList<>(list.size());
+		for (T item : list) {
+			keys.add(keyFunction.apply(item));
+		}
+		keys.sort(comparator);
+		ListIterator<T> iterator = list.listIterator();
+		for (SortKey<T> key : keys) {
+			iterator.next();
+			iterator.set(key.item);
+		}
+	}
 
-					@Override
-					public int compare(String s1, String s2) {
-						String filename1ToSort = FileUtil.renameForSorting(s1);
-						String filename2ToSort = FileUtil.renameForSorting(s2);
+	/**
+	 * Compares two names like {@link NaturalComparator#compareNatural(Collator, String, String)}
+	 * using their precomputed tokens.
+	 */
+	private static <T> int compareNatural(SortKey<T> k1, SortKey<T> k2) {
+		int count = Math.min(k1.tokens.length, k2.tokens.length);
+		for (int i = 0; i < count; i++) {
+			boolean digits1 = k1.tokenKeys[i] == null;
+			boolean digits2 = k2.tokenKeys[i] == null;
+			int result;
+			if (digits1 && digits2) {
+				result = compareNumbers(k1.tokens[i], k2.tokens[i], i == k1.tokens.length - 1, i == k2.tokens.length - 1);
+			} else if (!digits1 && !digits2) {
+				result = k1.tokenKeys[i].compareTo(k2.tokenKeys[i]);
+			} else {
+				// A number against a word, rare enough to leave to the original
+				return NaturalComparator.compareNatural(COLLATOR, k1.name, k2.name);
+			}
+			if (result != 0) {
+				return result;
+			}
+		}
+		return Integer.compare(k1.tokens.length, k2.tokens.length);
+	}
 
-						return COLLATOR.compare(filename1ToSort, filename2ToSort);
-					}
-				});
-				break;
+	/**
+	 * Compares two runs of digits the way {@link NaturalComparator} does,
+	 * including its tie breaks for the leading zeros of the last number.
+	 */
+	private static int compareNumbers(String s, String t, boolean sLast, boolean tLast) {
+		int sZeros = 0;
+		while (sZeros < s.length() && s.charAt(sZeros) == '0') {
+			sZeros++;
+		}
+		int tZeros = 0;
+		while (tZeros < t.length() && t.charAt(tZeros) == '0') {
+			tZeros++;
+		}
+		int sLength = s.length() - sZeros;
+		int tLength = t.length() - tZeros;
+		if (sLength == 0 && tLength == 0) {
+			return 0;
+		}
+		if (sLength == 0) {
+			return -1;
+		}
+		if (tLength == 0) {
+			return 1;
+		}
+		if (sLength != tLength) {
+			return sLength < tLength ? -1 : 1;
+		}
+		int diff = 0;
+		for (int i = 0; i < sLength && diff == 0; i++) {
+			diff = s.charAt(sZeros + i) - t.charAt(tZeros + i);
+		}
+		if (sLast && tLast) {
+			return diff != 0 ? diff : sZeros - tZeros;
+		}
+		if (diff == 0 && sLast) {
+			return -1;
+		}
+		if (diff == 0 && tLast) {
+			return 1;
+		}
+		return diff;
+	}
+
+	/**
+	 * An element to sort with the values it is compared by, computed once.
+	 */
+	private static final class SortKey<T> {
+		private final T item;
+		private final String name;
+		private final long modified;
+		private CollationKey collationKey;
+		private String[] tokens;
+		private CollationKey[] tokenKeys;
+
+		private SortKey(T item, long modified) {
+			this.item = item;
+			this.name = null;
+			this.modified = modified;
+		}
+
+		private SortKey(T item, String name) {
+			this.item = item;
+			this.name = name;
+			this.modified = 0;
+		}
+
+		private static <T> SortKey<T> collated(T item, String name) {
+			SortKey<T> key = new SortKey<>(item, name);
+			key.collationKey = COLLATOR.getCollationKey(name);
+			return key;
+		}
+
+		/**
+		 * Splits the name into runs of digits and runs of other characters,
+		 * with a {@link CollationKey} for each of the latter.
+		 */
+		private static <T> SortKey<T> natural(T item, String name) {
+			SortKey<T> key = new SortKey<>(item, name);
+			List<String> tokens = new ArrayList<>();
+			int start = 0;
+			for (int i = 1; i <= name.length(); i++) {
+				if (i == name.length() || Character.isDigit(name.charAt(i)) != Character.isDigit(name.charAt(start))) {
+					tokens.add(name.substring(start, i));
+					start = i;
+				}
+			}
+			key.tokens = tokens.toArray(new String[0]);
+			key.tokenKeys = new CollationKey[key.tokens.length];
+			for (int i = 0; i < key.tokens.length; i++) {
+				if (!Character.isDigit(key.tokens[i].charAt(0))) {
+					key.tokenKeys[i] = COLLATOR.getCollationKey(key.tokens[i]);
+				}
+			}
+			return key;
 		}
 	}
 
@@ -0,0 +1,156 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; version 2
+ * of the License only.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package net.pms.util.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of non-negative {@code long} values with log-linear buckets, in
+ * the spirit of HdrHistogram: each power of two is split into
+ * {@value #SUB_BUCKETS} linear sub-buckets, so the quantiles have a relative
+ * error below 1/{@value #SUB_BUCKETS} over the whole {@code long} range while
+ * the bucket array has a fixed size. Recording never allocates.
+ * <p>
+ * Durations are recorded in nanoseconds and exposed in seconds.
+ */
+public class Histogram implements Metric {
+	private static final int SUB_BUCKET_BITS = 4;
+	static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+	private final double scale;
+
+	/**
+	 * @param scale the factor converting recorded values to the exposed unit.
+	 */
+	Histogram(double scale) {
+		this.scale = scale;
+	}
+
+	/**
+	 * Creates a histogram of durations recorded in nanoseconds.
+	 */
+	Histogram() {
+		this(1d / TimeUnit.SECONDS.toNanos(1));
+	}
+
+	/**
+	 * Records a value. Negative values are recorded as 0.
+	 *
+	 * @param value the value to record.
+	 */
+	public void record(long value) {
+		if (value < 0) {
+			value = 0;
+		}
+		buckets.incrementAndGet(bucketIndex(value));
+		count.increment();
+		sum.add(value);
+		max.accumulate(value);
+	}
+
+	/**
+	 * Records the time elapsed since {@code startNanos}.
+	 *
+	 * @param startNanos the start time as returned by {@link System#nanoTime()}.
+	 */
+	public void recordSince(long startNanos) {
+		record(System.nanoTime() - startNanos);
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * @return The sum of the recorded values in the exposed unit.
+	 */
+	public double getSum() {
+		return sum.sum() * scale;
+	}
+
+	/**
+	 * @return The largest recorded value in the exposed unit.
+	 */
+	public double getMax() {
+		return max.get() * scale;
+	}
+
+	/**
+	 * Returns an approximation of the given quantile.
+	 *
+	 * @param quantile the quantile between 0 and 1.
+	 * @return The value in the exposed unit, or {@link Double#NaN} if nothing
+	 *         has been recorded.
+	 */
+	public double getQuantile(double quantile) {
+		long total = 0;
+		long[] snapshot = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = buckets.get(i);
+			total += snapshot[i];
+		}
+		if (total == 0) {
+			return Double.NaN;
+		}
+		long rank = Math.max(1, (long) Math.ceil(quantile * total));
+		long maxValue = max.get();
+		int maxIndex = bucketIndex(maxValue);
+		long seen = 0;
+		for (int i = 0; i < maxIndex; i++) {
+			seen += snapshot[i];
+			if (seen >= rank) {
+				return bucketMidpoint(i) * scale;
+			}
+		}
+		// The highest bucket is better represented by the largest value
+		return maxValue * scale;
+	}
+
+	static int bucketIndex(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int mantissa = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + mantissa;
+	}
+
+	static long bucketLowerBound(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = index / SUB_BUCKETS - 1;
+		return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+	}
+
+	private static double bucketMidpoint(int index) {
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		int shift = index / SUB_BUCKETS - 1;
+		return bucketLowerBound(index) + (double) (1L << shift) / 2;
+	}
+}
@@ -0,0 +1,277 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; version 2
+ * of the License only.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package net.pms.util.metrics;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.Function;
+
+/**
+ * The registry of the built-in metrics.
+ * <p>
+ * Metrics are grouped in families sharing a name, a type and an optional
+ * label. The components keep references to their metrics in static fields,
+ * so that updating them only costs an atomic operation. Metrics labeled with
+ * runtime values, like the renderer name, are looked up with
+ * {@link Family#labels(String)}, which doesn't allocate once the label value
+ * is known.
+ * <p>
+ * The registry can be exported as JSON and in the Prometheus text
+ * exposition format, see
+ * {@link net.pms.network.mediaserver.handlers.api.MetricsApi}.
+ */
+public class Metrics {
+	private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+	private static final Map<String, Family<?>> FAMILIES = new ConcurrentSkipListMap<>();
+
+	/**
+	 * This class is not meant to be instantiated.
+	 */
+	private Metrics() {
+	}
+
+	/**
+	 * Returns the unlabeled counter with the given name, creating it if
+	 * needed.
+	 *
+	 * @param name the metric name.
+	 * @param help the metric description.
+	 * @return The {@link Counter}.
+	 */
+	public static Counter counter(String name, String help) {
+		return counters(name, help, null).labels(null);
+	}
+
+	public static Family<Counter> counters(String name, String help, String labelName) {
+		return family(name, help, Metric.Type.COUNTER, labelName, label -> new Counter());
+	}
+
+	/**
+	 * Returns the unlabeled duration histogram with the given name, creating
+	 * it if needed.
+	 *
+	 * @param name the metric name, which should end with {@code _seconds}.
+	 * @param help the metric description.
+	 * @return The {@link Histogram}.
+	 */
+	public static Histogram histogram(String name, String help) {
+		return histograms(name, help, null).labels(null);
+	}
+
+	public static Family<Histogram> histograms(String name, String help, String labelName) {
+		return family(name, help, Metric.Type.SUMMARY, labelName, label -> new Histogram());
+	}
+
+	/**
+	 * Registers a gauge, replacing any previous gauge with the same name and
+	 * label value.
+	 *
+	 * @param name the metric name.
+	 * @param help the metric description.
+	 * @param labelName the label name or {@code null}.
+	 * @param labelValue the label value or {@code null}.
+	 * @param supplier the supplier of the current value.
+	 */
+	public static void gauge(String name, String help, String labelName, String labelValue, DoubleSupplier supplier) {
+		family(name, help, Metric.Type.GAUGE, labelName, label -> null).put(labelValue, new Gauge(supplier));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T extends Metric> Family<T> family(
+		String name,
+		String help,
+		Metric.Type type,
+		String labelName,
+		Function<String, T> factory
+	) {
+		Family<?> family = FAMILIES.computeIfAbsent(name, key -> new Family<>(name, help, type, labelName, factory));
+		if (family.type != type) {
+			throw new IllegalArgumentException("Metric \"" + name + "\" is already registered as a " + family.type);
+		}
+		return (Family<T>) family;
+	}
+
+	/**
+	 * @return All metrics in the Prometheus text exposition format.
+	 */
+	public static String toPrometheus() {
+		StringBuilder sb = new StringBuilder();
+		for (Family<?> family : FAMILIES.values()) {
+			if (family.children.isEmpty()) {
+				continue;
+			}
+			sb.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+			sb.append("# TYPE ").append(family.name).append(' ').append(family.type).append('\n');
+			for (Map.Entry<String, ? extends Metric> entry : family.children.entrySet()) {
+				String labelValue = entry.getKey().isEmpty() ? null : entry.getKey();
+				Metric metric = entry.getValue();
+				if (metric instanceof Counter) {
+					appendSample(sb, family.name, family.labelName, labelValue, null, ((Counter) metric).get());
+				} else if (metric instanceof Gauge) {
+					appendSample(sb, family.name, family.labelName, labelValue, null, ((Gauge) metric).get());
+				} else if (metric instanceof Histogram) {
+					Histogram histogram = (Histogram) metric;
+					for (double quantile : QUANTILES) {
+						appendSample(sb, family.name, family.labelName, labelValue, Double.toString(quantile), histogram.getQuantile(quantile));
+					}
+					appendSample(sb, family.name + "_sum", family.labelName, labelValue, null, histogram.getSum());
+					appendSample(sb, family.name + "_count", family.labelName, labelValue, null, histogram.getCount());
+				}
+			}
+		}
+		return sb.toString();
+	}
+
+	private static void appendSample(StringBuilder sb, String name, String labelName, String labelValue, String quantile, double value) {
+		sb.append(name);
+		if (labelValue != null || quantile != null) {
+			sb.append('{');
+			if (labelValue != null) {
+				sb.append(labelName).append("=\"").append(escapeLabelValue(labelValue)).append('"');
+				if (quantile != null) {
+					sb.append(',');
+				}
+			}
+			if (quantile != null) {
+				sb.append("quantile=\"").append(quantile).append('"');
+			}
+			sb.append('}');
+		}
+		sb.append(' ');
+		if (Double.isNaN(value)) {
+			sb.append("NaN");
+		} else if (value == Math.rint(value) && !Double.isInfinite(value)) {
+			sb.append((long) value);
+		} else {
+			sb.append(value);
+		}
+		sb.append('\n');
+	}
+
+	private static String escapeLabelValue(String value) {
+		return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+
+	/**
+	 * @return All metrics as a JSON object keyed by metric name.
+	 */
+	public static JsonObject toJson() {
+		JsonObject result = new JsonObject();
+		for (Family<?> family : FAMILIES.values()) {
+			if (family.children.isEmpty()) {
+				continue;
+			}
+			JsonObject jsonFamily = new JsonObject();
+			jsonFamily.addProperty("type", family.type.toString());
+			jsonFamily.addProperty("help", family.help);
+			JsonArray values = new JsonArray();
+			for (Map.Entry<String, ? extends Metric> entry : family.children.entrySet()) {
+				JsonObject value = new JsonObject();
+				if (!entry.getKey().isEmpty()) {
+					JsonObject labels = new JsonObject();
+					labels.addProperty(family.labelName, entry.getKey());
+					value.add("labels", labels);
+				}
+				Metric metric = entry.getValue();
+				if (metric instanceof Counter) {
+					value.addProperty("value", ((Counter) metric).get());
+				} else if (metric instanceof Gauge) {
+					addNumber(value, "value", ((Gauge) metric).get());
+				} else if (metric instanceof Histogram) {
+					Histogram histogram = (Histogram) metric;
+					value.addProperty("count", histogram.getCount());
+					addNumber(value, "sum", histogram.getSum());
+					addNumber(value, "max", histogram.getMax());
+					for (double quantile : QUANTILES) {
+						addNumber(value, "p" + Math.round(quantile * 100), histogram.getQuantile(quantile));
+					}
+				}
+				values.add(value);
+			}
+			jsonFamily.add("values", values);
+			result.add(family.name, jsonFamily);
+		}
+		return result;
+	}
+
+	private static void addNumber(JsonObject object, String property, double value) {
+		if (!Double.isNaN(value) && !Double.isInfinite(value)) {
+			object.addProperty(property, value);
+		}
+	}
+
+	/**
+	 * Clears the registry, metrics referenced elsewhere keep working but are
+	 * no longer exported. Meant for tests.
+	 */
+	static void clear() {
+		FAMILIES.clear();
+	}
+
+	/**
+	 * A group of metrics sharing a name and type, distinguished by the value
+	 * of a label.
+	 *
+	 * @param <T> the metric type.
+	 */
+	public static class Family<T extends Metric> {
+		private final String name;
+		private final String help;
+		private final Metric.Type type;
+		private final String labelName;
+		private final Function<String, T> factory;
+		private final Map<String, T> children = new ConcurrentSkipListMap<>();
+		private final Map<String, T> lookup = new ConcurrentHashMap<>();
+
+		private Family(String name, String help, Metric.Type type, String labelName, Function<String, T> factory) {
+			this.name = name;
+			this.help = help;
+			this.type = type;
+			this.labelName = labelName;
+			this.factory = factory;
+		}
+
+		/**
+		 * Returns the metric for the given label value, creating it if
+		 * needed.
+		 *
+		 * @param labelValue the label value, ignored if the family has no
+		 *            label.
+		 * @return The metric.
+		 */
+		public T labels(String labelValue) {
+			String key = labelName == null || labelValue == null ? "" : labelValue;
+			T metric = lookup.get(key);
+			if (metric == null) {
+				metric = lookup.computeIfAbsent(key, factory);
+				children.putIfAbsent(key, metric);
+			}
+			return metric;
+		}
+
+		private void put(String labelValue, T metric) {
+			String key = labelName == null || labelValue == null ? "" : labelValue;
+			lookup.put(key, metric);
+			children.put(key, metric);
+		}
+	}
+}
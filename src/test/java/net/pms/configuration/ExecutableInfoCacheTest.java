@@ -0,0 +1,104 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.configuration;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import net.pms.PMS;
+import net.pms.encoders.ExecutableErrorType;
+import net.pms.util.Version;
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.io.FileUtils;
+import static org.assertj.core.api.Assertions.*;
+import static org.junit.Assume.assumeTrue;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class ExecutableInfoCacheTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@BeforeClass
+	public static void setUpClass() throws ConfigurationException, InterruptedException {
+		// Silence all log messages from the code that is being tested
+		LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+		context.getLogger(Logger.ROOT_LOGGER_NAME).setLevel(Level.WARN);
+		PMS.get();
+		PMS.setConfiguration(new PmsConfiguration(false));
+	}
+
+	private File createExecutable(String name) throws IOException {
+		File file = temporaryFolder.newFile(name);
+		FileUtils.writeStringToFile(file, "#!/bin/sh\necho test\n", StandardCharsets.US_ASCII);
+		assumeTrue(file.setExecutable(true));
+		return file;
+	}
+
+	@Test
+	public void testCachedExecutable() throws IOException {
+		File file = createExecutable("ffmpeg");
+		FFmpegExecutableInfo untested = FFmpegExecutableInfo.build(file.toPath()).build();
+		assertThat(ExecutableInfoCache.get(untested)).isNull();
+
+		ExecutableInfoCache.put(untested.modify()
+			.available(Boolean.TRUE)
+			.version(new Version("4.4.1"))
+			.protocols(Arrays.asList("file", "http", "rtmp"))
+			.build()
+		);
+		ExecutableInfo cached = ExecutableInfoCache.get(untested);
+		assertThat(cached).isInstanceOf(FFmpegExecutableInfo.class);
+		assertThat(cached.getAvailable()).isTrue();
+		assertThat(cached.getVersion()).isEqualTo(new Version("4.4.1"));
+		assertThat(((FFmpegExecutableInfo) cached).getProtocols()).containsExactly("file", "http", "rtmp");
+
+		// A replaced executable must be tested again
+		FileUtils.writeStringToFile(file, "#!/bin/sh\necho version 5\n", StandardCharsets.US_ASCII);
+		assertThat(ExecutableInfoCache.get(untested)).isNull();
+	}
+
+	@Test
+	public void testUnavailableExecutableIsNotCached() throws IOException {
+		File file = createExecutable("mencoder");
+		ExecutableInfo untested = ExecutableInfo.build(file.toPath()).build();
+		ExecutableInfoCache.put(untested.modify()
+			.available(Boolean.FALSE)
+			.errorType(ExecutableErrorType.GENERAL)
+			.errorText("Missing library")
+			.build()
+		);
+		assertThat(ExecutableInfoCache.get(untested)).isNull();
+	}
+
+	@Test
+	public void testMissingExecutable() {
+		ExecutableInfo missing = ExecutableInfo.build(new File(temporaryFolder.getRoot(), "vlc").toPath())
+			.available(Boolean.TRUE)
+			.build();
+		ExecutableInfoCache.put(missing);
+		assertThat(ExecutableInfoCache.get(missing)).isNull();
+	}
+}
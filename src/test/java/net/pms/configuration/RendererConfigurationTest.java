@@ -19,6 +19,7 @@
 package net.pms.configuration;
 
 import ch.qos.logback.classic.LoggerContext;
+import java.io.File;
 import java.util.*;
 import net.pms.PMS;
 import net.pms.configuration.RendererConfiguration.SortedHeaderMap;
@@ -28,6 +29,7 @@ import static net.pms.configuration.RendererConfiguration.loadRendererConfigurat
 import org.apache.commons.configuration.ConfigurationException;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.After;
@@ -453,6 +455,125 @@ public class RendererConfigurationTest {
 		);
 	}
 
+	/**
+	 * Test that loading the renderer configurations in parallel ranks, orders
+	 * and detects renderers exactly like parsing the files one by one does.
+	 * @throws ConfigurationException
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testParallelLoadingMatchesSequential() throws ConfigurationException, InterruptedException {
+		PmsConfiguration pmsConf = new PmsConfiguration(false);
+		PMS.setConfiguration(pmsConf);
+		loadRendererConfigurations(pmsConf);
+
+		List<RendererConfiguration> sequential = new ArrayList<>();
+		for (File renderersDir : new File[]{RendererConfiguration.getProfileRenderersDir(), RendererConfiguration.getRenderersDir()}) {
+			if (renderersDir == null) {
+				continue;
+			}
+			File[] confs = renderersDir.listFiles();
+			Arrays.sort(confs);
+			int rank = 1;
+			for (File f : confs) {
+				if (f.getName().endsWith(".conf")) {
+					RendererConfiguration r = new RendererConfiguration(f);
+					if (!r.configuration.containsKey(RendererConfiguration.DEVICE_ID) && !r.configuration.containsKey("device")) {
+						r.rank = rank++;
+						sequential.add(r);
+					}
+				}
+			}
+		}
+		sequential.sort(RendererConfiguration.RENDERER_LOADING_PRIORITY_COMPARATOR);
+
+		List<RendererConfiguration> parallel = RendererConfiguration.getEnabledRenderersConfigurations();
+		assertEquals(sequential.size(), parallel.size());
+		for (int i = 0; i < sequential.size(); i++) {
+			assertEquals(sequential.get(i).getConfName(), parallel.get(i).getConfName());
+			assertEquals(sequential.get(i).getRank(), parallel.get(i).getRank());
+		}
+
+		String[][] headerSets = {
+			{"User-Agent: AirPlayer/1.0.09 CFNetwork/485.13.9 Darwin/11.0.0"},
+			{"User-Agent: DLNADOC/1.50 INTEL_NMPR/2.1"},
+			{"User-Agent: LG-BP350"},
+			{"User-Agent: PLAYSTATION 3", "X-AV-Client-Info: av=5.0; cn=\"Sony Computer Entertainment Inc.\"; mn=\"PLAYSTATION 3\"; mv=\"1.0\";"},
+			{"User-Agent: Roku/DVP-8.0 (308.00E04156A)"},
+			{"User-Agent: SEC_HHP_[TV]UE32D5000/1.0"},
+			{"User-Agent: Windows2000/0.0 UPnP/1.0 PhilipsIntelSDK/1.4 DLNADOC/1.50"},
+			{"User-Agent: UPnP/1.0 DLNADOC/1.50"},
+			{"X-Unknown-Header: Unknown Content"}
+		};
+		for (String[] headerLines : headerSets) {
+			SortedHeaderMap headers = new SortedHeaderMap();
+			for (String header : headerLines) {
+				headers.put(header);
+			}
+			RendererConfiguration expected = null;
+			for (RendererConfiguration r : sequential) {
+				if (r.match(headers)) {
+					expected = r;
+					break;
+				}
+			}
+			RendererConfiguration actual = getRendererConfigurationByHeaders(headers);
+			assertEquals("Renderer detected for headers " + headers, getConfName(expected), getConfName(actual));
+		}
+
+		String[] upnpDetails = {
+			"manufacturer=DENON, modelName=AVR-4311",
+			"friendlyName=[TV][LG]42LB5700-ZB",
+			"modelNumber=OLED65C9PUA",
+			"modelName=QN49Q70RAFXZA",
+			"friendlyName=Unknown, manufacturer=Unknown"
+		};
+		for (String details : upnpDetails) {
+			RendererConfiguration expected = null;
+			for (RendererConfiguration r : sequential) {
+				if (r.matchUPNPDetails(details)) {
+					expected = r;
+					break;
+				}
+			}
+			RendererConfiguration actual = getRendererConfigurationByUPNPDetails(details);
+			assertEquals("Renderer detected for UPnP details " + details, getConfName(expected), getConfName(actual));
+		}
+	}
+
+	/**
+	 * Test that the bundled renderer configurations load and are matched
+	 * against in a reasonable time.
+	 * @throws ConfigurationException
+	 * @throws InterruptedException
+	 */
+	@Test
+	public void testLoadingTime() throws ConfigurationException, InterruptedException {
+		PmsConfiguration pmsConf = new PmsConfiguration(false);
+		PMS.setConfiguration(pmsConf);
+
+		long start = System.nanoTime();
+		loadRendererConfigurations(pmsConf);
+		long loadTime = (System.nanoTime() - start) / 1000000;
+		assertTrue("Only " + RendererConfiguration.getEnabledRenderersConfigurations().size() + " renderers were loaded",
+			RendererConfiguration.getEnabledRenderersConfigurations().size() > 100);
+		assertTrue("Loading the renderer configurations took " + loadTime + " ms", loadTime < 20000);
+
+		SortedHeaderMap headers = new SortedHeaderMap();
+		headers.put("User-Agent: Unknown Renderer");
+		start = System.nanoTime();
+		for (int i = 0; i < 1000; i++) {
+			getRendererConfigurationByHeaders(headers);
+			getRendererConfigurationByUPNPDetails("friendlyName=Unknown, manufacturer=Unknown");
+		}
+		long matchTime = (System.nanoTime() - start) / 1000000;
+		assertTrue("1000 unmatched detections took " + matchTime + " ms", matchTime < 20000);
+	}
+
+	private static String getConfName(RendererConfiguration r) {
+		return r == null ? null : r.getConfName();
+	}
+
 	/**
 	 * Test a particular set of headers to see if it returns the correct
 	 * renderer. Set the correct renderer name to <code>null</code> to require
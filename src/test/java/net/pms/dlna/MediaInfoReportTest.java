@@ -0,0 +1,229 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.dlna;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.pms.PMS;
+import net.pms.configuration.FormatConfiguration;
+import net.pms.configuration.PmsConfiguration;
+import net.pms.dlna.LibMediaInfoParser.StreamValues;
+import net.pms.dlna.MediaInfo.StreamType;
+import net.pms.formats.Format;
+import net.pms.util.Version;
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import static org.assertj.core.api.Assertions.*;
+import static org.junit.Assume.assumeTrue;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The {@code mediainfo-synthetic-*} fixtures are written by hand to mirror the
+ * JSON reports of MediaInfo 21.x and the matching values of the field by field
+ * calls, they aren't recorded from MediaInfo. The output of the installed
+ * library is compared by {@link #testRealFilesReportMatchesValues()}.
+ */
+public class MediaInfoReportTest {
+
+	@BeforeClass
+	public static void setUpClass() throws ConfigurationException, InterruptedException {
+		// Silence all log messages from the code that is being tested
+		LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+		context.getLogger(Logger.ROOT_LOGGER_NAME).setLevel(Level.OFF);
+		PMS.get();
+		PMS.setConfiguration(new PmsConfiguration(false));
+	}
+
+	private static MediaInfoReport readReport(String name) throws IOException {
+		try (InputStream in = MediaInfoReportTest.class.getResourceAsStream("mediainfo-synthetic-" + name + ".json")) {
+			return MediaInfoReport.parse(new InputStreamReader(in, StandardCharsets.UTF_8));
+		}
+	}
+
+	/**
+	 * Reads the synthetic values of the field by field calls for the same
+	 * file as a report.
+	 */
+	private static StreamValues readValues(String name) throws IOException {
+		Map<String, String> values = new HashMap<>();
+		List<Map.Entry<String, String>> chapters = new ArrayList<>();
+		try (InputStream in = MediaInfoReportTest.class.getResourceAsStream("mediainfo-synthetic-" + name + ".values")) {
+			for (String line : IOUtils.readLines(in, StandardCharsets.UTF_8)) {
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				int equals = line.indexOf('=');
+				String key = line.substring(0, equals);
+				String value = line.substring(equals + 1);
+				if (key.startsWith("Chapter;")) {
+					chapters.add(new AbstractMap.SimpleImmutableEntry<>(key.substring("Chapter;".length()), value));
+				} else {
+					values.put(key, value);
+				}
+			}
+		}
+		return new StreamValues() {
+			@Override
+			public String get(StreamType streamType, int streamNumber, String parameter) {
+				return values.getOrDefault(streamType + ";" + streamNumber + ";" + parameter, "");
+			}
+
+			@Override
+			public List<Map.Entry<String, String>> getChapters() {
+				return chapters;
+			}
+		};
+	}
+
+	private static DLNAMediaInfo map(StreamValues values, String fileName, int type) {
+		InputFile inputFile = new InputFile();
+		inputFile.setFile(new File(fileName));
+		DLNAMediaInfo media = new DLNAMediaInfo();
+		LibMediaInfoParser.parse(values, media, inputFile, type);
+		return media;
+	}
+
+	private static void assertSameChapters(DLNAMediaInfo actual, DLNAMediaInfo expected) {
+		assertThat(actual.getChapters()).hasSameSizeAs(expected.getChapters());
+		for (int i = 0; i < expected.getChapters().size(); i++) {
+			DLNAMediaChapter actualChapter = actual.getChapters().get(i);
+			DLNAMediaChapter expectedChapter = expected.getChapters().get(i);
+			assertThat(actualChapter.getId()).isEqualTo(expectedChapter.getId());
+			assertThat(actualChapter.getStart()).isEqualTo(expectedChapter.getStart());
+			assertThat(actualChapter.getEnd()).isEqualTo(expectedChapter.getEnd());
+			assertThat(actualChapter.getLang()).isEqualTo(expectedChapter.getLang());
+			assertThat(actualChapter.getTitle()).isEqualTo(expectedChapter.getTitle());
+		}
+	}
+
+	@Test
+	public void testVideoReportMatchesValues() throws IOException {
+		String name = "video-h264-ac3-aac-chapters";
+		DLNAMediaInfo fromReport = map(readReport(name), name + ".mkv", Format.VIDEO);
+		DLNAMediaInfo fromValues = map(readValues(name), name + ".mkv", Format.VIDEO);
+
+		assertThat(fromReport.toString()).isEqualTo(fromValues.toString());
+		assertSameChapters(fromReport, fromValues);
+
+		assertThat(fromReport.getContainer()).isEqualTo(FormatConfiguration.MKV);
+		assertThat(fromReport.getCodecV()).isEqualTo(FormatConfiguration.H264);
+		assertThat(fromReport.getAvcLevel()).isEqualTo("4.1");
+		assertThat(fromReport.getWidth()).isEqualTo(1920);
+		assertThat(fromReport.getAspectRatioContainer()).isEqualTo("16:9");
+		assertThat(fromReport.getReferenceFrameCount()).isEqualTo((byte) 4);
+		assertThat(fromReport.getDurationInSeconds()).isEqualTo(5400.123);
+		assertThat(fromReport.getAudioTracksList()).extracting(DLNAMediaAudio::getCodecA)
+			.containsExactly(FormatConfiguration.AC3, FormatConfiguration.AAC_LC);
+		assertThat(fromReport.getAudioTracksList()).extracting(DLNAMediaAudio::getLang).containsExactly("eng", "fre");
+		assertThat(fromReport.getAudioTracksList().get(0).getAudioProperties().getNumberOfChannels()).isEqualTo(6);
+		assertThat(fromReport.getSubtitlesTracks()).extracting(DLNAMediaSubtitle::getLang).containsExactly("eng", "ger");
+		assertThat(fromReport.getChapters()).hasSize(3);
+		assertThat(fromReport.getChapters().get(1).getStart()).isEqualTo(750.5);
+		assertThat(fromReport.getChapters().get(2).getTitle()).isEqualTo("The End");
+	}
+
+	@Test
+	public void testAudioReportMatchesValues() throws IOException {
+		String name = "audio-mp3-tags";
+		DLNAMediaInfo fromReport = map(readReport(name), name + ".mp3", Format.AUDIO);
+		DLNAMediaInfo fromValues = map(readValues(name), name + ".mp3", Format.AUDIO);
+
+		assertThat(fromReport.toString()).isEqualTo(fromValues.toString());
+		assertThat(fromReport.getContainer()).isEqualTo(FormatConfiguration.MP3);
+		DLNAMediaAudio audio = fromReport.getFirstAudioTrack();
+		assertThat(audio.getCodecA()).isEqualTo(FormatConfiguration.MP3);
+		assertThat(audio.getAlbumArtist()).isEqualTo("Various Artists");
+		assertThat(audio.getTrack()).isEqualTo(7);
+		assertThat(audio.getDisc()).isEqualTo(2);
+		assertThat(audio.getYear()).isEqualTo(2003);
+	}
+
+	@Test
+	public void testValues() throws IOException {
+		MediaInfoReport report = readReport("video-h264-ac3-aac-chapters");
+		assertThat(report.getStreamCount(StreamType.Audio)).isEqualTo(2);
+		assertThat(report.getStreamCount(StreamType.Image)).isZero();
+		assertThat(report.get(StreamType.General, 0, "Duration")).isEqualTo("5400123");
+		assertThat(report.get(StreamType.Video, 0, "Format_Profile")).isEqualTo("High@L4.1");
+		assertThat(report.get(StreamType.Audio, 1, "Format_Profile")).isEqualTo("LC");
+		assertThat(report.get(StreamType.Audio, 0, "Channel(s)")).isEqualTo("6");
+		assertThat(report.get(StreamType.Audio, 0, "Language/String")).isEqualTo("en");
+		assertThat(report.get(StreamType.Audio, 0, "dialnorm")).isEqualTo("-27");
+		assertThat(report.get(StreamType.Text, 0, "StreamCount")).isEqualTo("2");
+		assertThat(report.get(StreamType.Image, 0, "StreamCount")).isEmpty();
+		assertThat(report.get(StreamType.Audio, 2, "Format")).isEmpty();
+		assertThat(report.get(StreamType.Video, 0, "Encryption")).isEmpty();
+		assertThat(readReport("audio-mp3-tags").get(StreamType.Audio, 0, "Format_Version")).isEqualTo("Version 1");
+		assertThat(report.getChapters()).extracting(Map.Entry::getKey)
+			.containsExactly("00:00:00.000", "00:12:30.500", "01:15:00.000");
+	}
+
+	/**
+	 * Parses the sample files with the installed MediaInfo library, from its
+	 * report and value by value, when the library supports reports.
+	 */
+	@Test
+	public void testRealFilesReportMatchesValues() {
+		Version version = LibMediaInfoParser.getVersion();
+		assumeTrue(LibMediaInfoParser.isValid() && version != null && version.isGreaterThan(new Version("18.03")));
+		PmsConfiguration configuration = PMS.getConfiguration();
+		String[] fileNames = {"video-h264-aac.mp4", "video-mpeg4-aac.mkv", "video-xvid-mp3.avi", "audio-mp3.mp3", "audio-flac24.flac"};
+		try {
+			for (String fileName : fileNames) {
+				InputFile inputFile = new InputFile();
+				inputFile.setFile(FileUtils.toFile(MediaInfoReportTest.class.getResource(fileName)));
+				int type = fileName.startsWith("audio") ? Format.AUDIO : Format.VIDEO;
+
+				configuration.setMediaInfoReportParsing(true);
+				DLNAMediaInfo fromReport = new DLNAMediaInfo();
+				LibMediaInfoParser.parse(fromReport, inputFile, type, null);
+				configuration.setMediaInfoReportParsing(false);
+				DLNAMediaInfo fromValues = new DLNAMediaInfo();
+				LibMediaInfoParser.parse(fromValues, inputFile, type, null);
+
+				assertThat(fromReport.toString()).as(fileName).isEqualTo(fromValues.toString());
+				assertSameChapters(fromReport, fromValues);
+			}
+		} finally {
+			configuration.setMediaInfoReportParsing(false);
+		}
+	}
+
+	@Test
+	public void testInvalidReport() throws IOException {
+		assertThatThrownBy(() -> MediaInfoReport.parse("{\"media\":")).isInstanceOf(IOException.class);
+		assertThatThrownBy(() -> MediaInfoReport.parse("[]")).isInstanceOf(IOException.class);
+		// A file MediaInfo couldn't read
+		MediaInfoReport report = MediaInfoReport.parse("{\"media\":null}");
+		assertThat(report.get(StreamType.General, 0, "Format")).isEmpty();
+		assertThat(report.getChapters()).isEmpty();
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.dlna;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import net.pms.PMS;
+import net.pms.configuration.PmsConfiguration;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.reflect.FieldUtils;
+import static org.assertj.core.api.Assertions.*;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class PlaylistFolderTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@BeforeClass
+	public static void setUpClass() throws Exception {
+		// Silence all log messages from the code that is being tested
+		LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+		context.getLogger(Logger.ROOT_LOGGER_NAME).setLevel(Level.OFF);
+		PMS.get();
+		PmsConfiguration configuration = new PmsConfiguration(false);
+		// The code database isn't initialized in tests
+		configuration.setCustomProperty("code_enable", false);
+		PMS.setConfiguration(configuration);
+		if (PMS.getGlobalRepo() == null) {
+			FieldUtils.writeField(PMS.get(), "globalRepo", new GlobalIdRepo(), true);
+		}
+	}
+
+	private File createPlaylist(int entries) throws IOException {
+		StringBuilder sb = new StringBuilder("#EXTM3U\n");
+		for (int i = 0; i < entries; i++) {
+			String name = String.format("track%03d.mp3", i);
+			temporaryFolder.newFile(name);
+			sb.append("#EXTINF:100,Track ").append(i).append('\n').append(name).append('\n');
+		}
+		// A missing file is skipped
+		sb.append("missing.mp3\n");
+		File playlist = new File(temporaryFolder.getRoot(), "playlist.m3u");
+		FileUtils.writeStringToFile(playlist, sb.toString(), StandardCharsets.ISO_8859_1);
+		return playlist;
+	}
+
+	@Test
+	public void testParsedEntriesAreCached() throws IOException {
+		File playlist = createPlaylist(3);
+		PlaylistFolder folder = new PlaylistFolder(playlist);
+		List<PlaylistFolder.Entry> entries = folder.getEntries();
+		assertThat(entries).hasSize(4);
+		assertThat(entries.get(0).title).isEqualTo("Track 0");
+		assertThat(entries.get(3).title).isEqualTo("missing.mp3");
+
+		// Another folder for the same file doesn't parse it again
+		assertThat(new PlaylistFolder(playlist).getEntries()).isSameAs(entries);
+		assertThat(folder.isRefreshNeeded()).isFalse();
+
+		// An edited playlist is parsed again
+		FileUtils.writeStringToFile(playlist, "#EXTM3U\ntrack000.mp3\n", StandardCharsets.ISO_8859_1);
+		assertThat(playlist.setLastModified(playlist.lastModified() + 2000)).isTrue();
+		assertThat(folder.isRefreshNeeded()).isTrue();
+		assertThat(folder.getEntries()).hasSize(1);
+		folder.resolve();
+		assertThat(folder.isRefreshNeeded()).isFalse();
+
+		// So is one edited within the timestamp resolution
+		long modified = playlist.lastModified();
+		FileUtils.writeStringToFile(playlist, "#EXTM3U\ntrack000.mp3\ntrack001.mp3\n", StandardCharsets.ISO_8859_1);
+		assertThat(playlist.setLastModified(modified)).isTrue();
+		assertThat(folder.isRefreshNeeded()).isTrue();
+		assertThat(folder.getEntries()).hasSize(2);
+		folder.resolve();
+		assertThat(folder.isRefreshNeeded()).isFalse();
+	}
+
+	@Test
+	public void testChildrenAreAddedOnDemand() throws IOException {
+		PlaylistFolder folder = new PlaylistFolder(createPlaylist(30));
+		folder.resolve();
+		assertThat(folder.getChildren()).isEmpty();
+
+		folder.discoverChildren();
+		assertThat(folder.analyzeChildren(10)).isFalse();
+		assertThat(folder.getChildren()).hasSize(10);
+		assertThat(folder.getChildren().get(0).getDisplayName()).isEqualTo("Track 0");
+		assertThat(folder.analyzeChildren(10)).isFalse();
+		assertThat(folder.getChildren()).hasSize(20);
+		assertThat(folder.getChildren().get(19).getDisplayName()).isEqualTo("Track 19");
+
+		// The rest, skipping the missing file
+		assertThat(folder.analyzeChildren(-1)).isTrue();
+		assertThat(folder.getChildren()).hasSize(30);
+
+		// Resolving again keeps the children of an unchanged playlist
+		folder.resolve();
+		assertThat(folder.getChildren()).hasSize(30);
+	}
+}
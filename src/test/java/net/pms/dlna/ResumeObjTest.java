@@ -0,0 +1,88 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.dlna;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import java.io.File;
+import java.io.IOException;
+import net.pms.PMS;
+import net.pms.configuration.PmsConfiguration;
+import org.apache.commons.configuration.ConfigurationException;
+import static org.assertj.core.api.Assertions.*;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class ResumeObjTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@BeforeClass
+	public static void setUpClass() throws ConfigurationException, InterruptedException {
+		// Silence all log messages from the code that is being tested
+		LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+		context.getLogger(Logger.ROOT_LOGGER_NAME).setLevel(Level.WARN);
+		PMS.get();
+		PMS.setConfiguration(new PmsConfiguration(false));
+	}
+
+	private RealFile createVideo(String name) throws IOException {
+		RealFile video = new RealFile(temporaryFolder.newFile(name + System.nanoTime() + ".mkv"));
+		DLNAMediaInfo media = new DLNAMediaInfo();
+		media.setDuration(7200.0);
+		video.setMedia(media);
+		return video;
+	}
+
+	@Test
+	public void testStoreAndCreate() throws IOException {
+		RealFile video = createVideo("resume");
+		assertThat(ResumeObj.create(video)).isNull();
+
+		ResumeObj stored = ResumeObj.store(video, System.currentTimeMillis() - 600000);
+		assertThat(stored).isNotNull();
+		assertThat(stored.getResumeFile()).exists();
+		assertThat(stored.getResumeFile().getParentFile().listFiles((dir, name) -> name.endsWith(".tmp"))).isEmpty();
+
+		ResumeObj resume = ResumeObj.create(video);
+		assertThat(resume).isNotNull();
+		assertThat(resume.isDone()).isFalse();
+		assertThat(resume.getTimeOffset()).isBetween(580000L, 590000L);
+
+		// Watching the rest of the video removes the resume position
+		resume.stop(System.currentTimeMillis() - 7200000, 7200000);
+		assertThat(resume.isDone()).isTrue();
+		assertThat(ResumeObj.create(video)).isNull();
+	}
+
+	@Test
+	public void testDeletedResumeFile() throws IOException {
+		RealFile video = createVideo("deleted");
+		ResumeObj stored = ResumeObj.store(video, System.currentTimeMillis() - 600000);
+		assertThat(stored).isNotNull();
+		assertThat(ResumeObj.create(video)).isNotNull();
+
+		// Resume files can be removed behind our back by the temporary file manager or the user
+		assertThat(stored.getResumeFile().delete()).isTrue();
+		assertThat(ResumeObj.create(video)).isNull();
+	}
+}
@@ -0,0 +1,368 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.dlna;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import net.sf.sevenzipjbinding.IOutCreateArchive7z;
+import net.sf.sevenzipjbinding.IOutCreateCallback;
+import net.sf.sevenzipjbinding.IOutItem7z;
+import net.sf.sevenzipjbinding.ISequentialInStream;
+import net.sf.sevenzipjbinding.SevenZip;
+import net.sf.sevenzipjbinding.SevenZipException;
+import net.sf.sevenzipjbinding.SevenZipNativeInitializationException;
+import net.sf.sevenzipjbinding.impl.OutItemFactory;
+import net.sf.sevenzipjbinding.impl.RandomAccessFileOutStream;
+import net.sf.sevenzipjbinding.util.ByteArrayStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import static org.assertj.core.api.Assertions.*;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class StoredArchiveEntryTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private static byte[] randomBytes(int length) {
+		byte[] data = new byte[length];
+		new Random(length).nextBytes(data);
+		return data;
+	}
+
+	private File createZip(byte[] stored, byte[] deflated) throws IOException {
+		File zip = temporaryFolder.newFile("test.zip");
+		try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+			ZipEntry entry = new ZipEntry("deflated.mkv");
+			entry.setExtra(new byte[] {(byte) 0xCA, (byte) 0xFE, 2, 0, 1, 2});
+			out.putNextEntry(entry);
+			out.write(deflated);
+			out.closeEntry();
+
+			CRC32 crc = new CRC32();
+			crc.update(stored);
+			entry = new ZipEntry("folder/stored video.mkv");
+			entry.setMethod(ZipEntry.STORED);
+			entry.setSize(stored.length);
+			entry.setCompressedSize(stored.length);
+			entry.setCrc(crc.getValue());
+			entry.setComment("A comment");
+			out.putNextEntry(entry);
+			out.write(stored);
+			out.closeEntry();
+		}
+		return zip;
+	}
+
+	@Test
+	public void testZipStoredEntry() throws IOException {
+		byte[] stored = randomBytes(300000);
+		File zip = createZip(stored, randomBytes(1000));
+
+		StoredArchiveEntry entry = StoredArchiveEntry.forZipEntry(zip, "folder/stored video.mkv");
+		assertThat(entry).isNotNull();
+		assertThat(entry.length()).isEqualTo(stored.length);
+		assertThat(entry.getSegments()).hasSize(1);
+
+		try (InputStream in = entry.getInputStream()) {
+			assertThat(IOUtils.toByteArray(in)).isEqualTo(stored);
+		}
+
+		// Seeking must land on the same data as a sequential read
+		try (InputStream in = entry.getInputStream()) {
+			assertThat(in.skip(123456)).isEqualTo(123456);
+			byte[] expected = new byte[1000];
+			System.arraycopy(stored, 123456, expected, 0, expected.length);
+			assertThat(IOUtils.toByteArray(in, expected.length)).isEqualTo(expected);
+			assertThat(in.skip(Long.MAX_VALUE)).isEqualTo(stored.length - 124456);
+			assertThat(in.read()).isEqualTo(-1);
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		entry.copyTo(out);
+		assertThat(out.toByteArray()).isEqualTo(stored);
+	}
+
+	@Test
+	public void testPushOnSharedReaders() throws IOException, InterruptedException {
+		byte[] stored = randomBytes(300000);
+		StoredArchiveEntry entry = StoredArchiveEntry.forZipEntry(createZip(stored, randomBytes(1000)), "folder/stored video.mkv");
+		assertThat(entry).isNotNull();
+
+		// More pushes than reader threads, the ones that don't get a reader
+		// are copied by the calling thread
+		CountDownLatch closed = new CountDownLatch(10);
+		Set<String> threads = ConcurrentHashMap.newKeySet();
+		List<ByteArrayOutputStream> outputs = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream() {
+				@Override
+				public synchronized void write(byte[] b, int off, int len) {
+					threads.add(Thread.currentThread().getName());
+					super.write(b, off, len);
+				}
+
+				@Override
+				public void close() {
+					closed.countDown();
+				}
+			};
+			outputs.add(out);
+			entry.push(out);
+		}
+		assertThat(closed.await(10, TimeUnit.SECONDS)).isTrue();
+		for (ByteArrayOutputStream out : outputs) {
+			assertThat(out.toByteArray()).isEqualTo(stored);
+		}
+		assertThat(threads.stream().filter(name -> name.startsWith("Stored Archive Entry Reader"))).hasSizeLessThanOrEqualTo(4);
+	}
+
+	@Test
+	public void testZipManyEntries() throws IOException {
+		File zip = temporaryFolder.newFile("many.zip");
+		try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+			for (int i = 0; i < 500; i++) {
+				byte[] data = randomBytes(100 + i);
+				CRC32 crc = new CRC32();
+				crc.update(data);
+				ZipEntry entry = new ZipEntry("entry " + i + " \u00e9.mkv");
+				entry.setMethod(ZipEntry.STORED);
+				entry.setSize(data.length);
+				entry.setCompressedSize(data.length);
+				entry.setCrc(crc.getValue());
+				out.putNextEntry(entry);
+				out.write(data);
+				out.closeEntry();
+			}
+		}
+		for (int i = 0; i < 500; i++) {
+			StoredArchiveEntry entry = StoredArchiveEntry.forZipEntry(zip, "entry " + i + " \u00e9.mkv");
+			assertThat(entry).isNotNull();
+			try (InputStream in = entry.getInputStream()) {
+				assertThat(IOUtils.toByteArray(in)).isEqualTo(randomBytes(100 + i));
+			}
+		}
+	}
+
+	@Test
+	public void testRarStoredEntry() throws IOException {
+		byte[] stored = randomBytes(300000);
+		File rar = temporaryFolder.newFile("test.rar");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writeRarHeaders(out, 0);
+		writeRarFile(out, "compressed.mkv", randomBytes(1000), 0x33, 0, stored.length);
+		writeRarFile(out, "folder\\stored video.mkv", stored, 0x30, 0, stored.length);
+		writeRarEnd(out, false);
+		FileUtils.writeByteArrayToFile(rar, out.toByteArray());
+
+		StoredArchiveEntry entry = StoredArchiveEntry.forRarEntry(rar, "folder\\stored video.mkv");
+		assertThat(entry).isNotNull();
+		assertThat(entry.length()).isEqualTo(stored.length);
+		try (InputStream in = entry.getInputStream()) {
+			assertThat(in.skip(1000)).isEqualTo(1000);
+			byte[] expected = new byte[stored.length - 1000];
+			System.arraycopy(stored, 1000, expected, 0, expected.length);
+			assertThat(IOUtils.toByteArray(in)).isEqualTo(expected);
+		}
+		assertThat(StoredArchiveEntry.forRarEntry(rar, "compressed.mkv")).isNull();
+		assertThat(StoredArchiveEntry.forRarEntry(rar, "missing.mkv")).isNull();
+	}
+
+	@Test
+	public void testRarSplitEntry() throws IOException {
+		byte[] stored = randomBytes(200000);
+		byte[] first = new byte[120000];
+		byte[] second = new byte[stored.length - first.length];
+		System.arraycopy(stored, 0, first, 0, first.length);
+		System.arraycopy(stored, first.length, second, 0, second.length);
+
+		File volume1 = temporaryFolder.newFile("split.part1.rar");
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writeRarHeaders(out, 0x0001 | 0x0010 | 0x0100);
+		writeRarFile(out, "small.mkv", randomBytes(500), 0x30, 0, 500);
+		writeRarFile(out, "split.mkv", first, 0x30, 0x02, stored.length);
+		writeRarEnd(out, true);
+		FileUtils.writeByteArrayToFile(volume1, out.toByteArray());
+
+		File volume2 = temporaryFolder.newFile("split.part2.rar");
+		out = new ByteArrayOutputStream();
+		writeRarHeaders(out, 0x0001 | 0x0010);
+		writeRarFile(out, "split.mkv", second, 0x30, 0x01, stored.length);
+		writeRarEnd(out, false);
+		FileUtils.writeByteArrayToFile(volume2, out.toByteArray());
+
+		StoredArchiveEntry entry = StoredArchiveEntry.forRarEntry(volume1, "split.mkv");
+		assertThat(entry).isNotNull();
+		assertThat(entry.getSegments()).hasSize(2);
+		assertThat(entry.getSegments().get(1).getFile()).isEqualTo(volume2);
+		try (InputStream in = entry.getInputStream()) {
+			assertThat(IOUtils.toByteArray(in)).isEqualTo(stored);
+		}
+		assertThat(StoredArchiveEntry.forRarEntry(volume1, "small.mkv").length()).isEqualTo(500);
+	}
+
+	@Test
+	public void testSevenZipStoredEntry() throws IOException {
+		byte[] stored = randomBytes(300000);
+		byte[] small = randomBytes(1000);
+		File archive = createSevenZip("test.7z", 0, new byte[0], stored, small);
+
+		StoredArchiveEntry entry = StoredArchiveEntry.forSevenZipEntry(archive, "folder/entry1.mkv");
+		assertThat(entry).isNotNull();
+		try (InputStream in = entry.getInputStream()) {
+			assertThat(IOUtils.toByteArray(in)).isEqualTo(stored);
+		}
+		entry = StoredArchiveEntry.forSevenZipEntry(archive, "folder/entry2.mkv");
+		assertThat(entry).isNotNull();
+		try (InputStream in = entry.getInputStream()) {
+			assertThat(IOUtils.toByteArray(in)).isEqualTo(small);
+		}
+		assertThat(StoredArchiveEntry.forSevenZipEntry(archive, "missing.mkv")).isNull();
+
+		File compressed = createSevenZip("compressed.7z", 5, stored);
+		assertThat(StoredArchiveEntry.forSevenZipEntry(compressed, "folder/entry0.mkv")).isNull();
+	}
+
+	/**
+	 * Creates a 7z archive holding {@code entries} as
+	 * {@code folder/entry<index>.mkv}.
+	 */
+	private File createSevenZip(String name, int level, byte[]... entries) throws IOException {
+		try {
+			SevenZip.initSevenZipFromPlatformJAR();
+		} catch (SevenZipNativeInitializationException e) {
+			Assume.assumeNoException("7-Zip-JBinding isn't available on this platform", e);
+		}
+		File archive = temporaryFolder.newFile(name);
+		try (
+			RandomAccessFile file = new RandomAccessFile(archive, "rw");
+			IOutCreateArchive7z out = SevenZip.openOutArchive7z()
+		) {
+			out.setLevel(level);
+			out.createArchive(new RandomAccessFileOutStream(file), entries.length, new IOutCreateCallback<IOutItem7z>() {
+				@Override
+				public void setOperationResult(boolean operationResultOk) {
+				}
+
+				@Override
+				public void setTotal(long total) {
+				}
+
+				@Override
+				public void setCompleted(long complete) {
+				}
+
+				@Override
+				public IOutItem7z getItemInformation(int index, OutItemFactory<IOutItem7z> outItemFactory) {
+					IOutItem7z item = outItemFactory.createOutItem();
+					item.setDataSize((long) entries[index].length);
+					item.setPropertyPath("folder/entry" + index + ".mkv");
+					return item;
+				}
+
+				@Override
+				public ISequentialInStream getStream(int index) {
+					return new ByteArrayStream(entries[index], false);
+				}
+			});
+		} catch (SevenZipException e) {
+			throw new IOException(e);
+		}
+		return archive;
+	}
+
+	/**
+	 * Writes the marker and main headers of a RAR 4 archive.
+	 */
+	private static void writeRarHeaders(ByteArrayOutputStream out, int flags) throws IOException {
+		out.write(new byte[] {0x52, 0x61, 0x72, 0x21, 0x1A, 0x07, 0x00});
+		writeRarBlock(out, 0x73, flags, new byte[6]);
+	}
+
+	/**
+	 * Writes a RAR 4 file header followed by the (packed) file data.
+	 */
+	private static void writeRarFile(ByteArrayOutputStream out, String name, byte[] data, int method, int flags, int unpackedSize) throws IOException {
+		byte[] nameBytes = name.getBytes(StandardCharsets.US_ASCII);
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		ByteBuffer fields = ByteBuffer.allocate(25 + nameBytes.length).order(ByteOrder.LITTLE_ENDIAN);
+		fields.putInt(data.length);
+		fields.putInt(unpackedSize);
+		fields.put((byte) 2);
+		fields.putInt((int) crc.getValue());
+		fields.putInt(0x21);
+		fields.put((byte) 29);
+		fields.put((byte) method);
+		fields.putShort((short) nameBytes.length);
+		fields.putInt(0x20);
+		fields.put(nameBytes);
+		writeRarBlock(out, 0x74, 0x8000 | flags, fields.array());
+		out.write(data);
+	}
+
+	private static void writeRarEnd(ByteArrayOutputStream out, boolean nextVolume) throws IOException {
+		writeRarBlock(out, 0x7B, 0x4000 | (nextVolume ? 0x0001 : 0), new byte[0]);
+	}
+
+	private static void writeRarBlock(ByteArrayOutputStream out, int type, int flags, byte[] fields) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(7 + fields.length).order(ByteOrder.LITTLE_ENDIAN);
+		header.putShort((short) 0);
+		header.put((byte) type);
+		header.putShort((short) flags);
+		header.putShort((short) header.capacity());
+		header.put(fields);
+		CRC32 crc = new CRC32();
+		crc.update(header.array(), 2, header.capacity() - 2);
+		header.putShort(0, (short) crc.getValue());
+		out.write(header.array());
+	}
+
+	@Test
+	public void testZipCompressedOrMissingEntry() throws IOException {
+		File zip = createZip(randomBytes(1000), randomBytes(1000));
+		assertThat(StoredArchiveEntry.forZipEntry(zip, "deflated.mkv")).isNull();
+		assertThat(StoredArchiveEntry.forZipEntry(zip, "missing.mkv")).isNull();
+	}
+
+	@Test
+	public void testNotAnArchive() throws IOException {
+		File file = temporaryFolder.newFile("test.rar");
+		assertThat(StoredArchiveEntry.forZipEntry(file, "entry.mkv")).isNull();
+		assertThat(StoredArchiveEntry.forRarEntry(file, "entry.mkv")).isNull();
+	}
+}
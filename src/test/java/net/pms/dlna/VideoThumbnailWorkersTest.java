@@ -0,0 +1,157 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.dlna;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.io.IOUtils;
+import static org.assertj.core.api.Assertions.*;
+import static org.junit.Assume.assumeTrue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class VideoThumbnailWorkersTest {
+	private static final Logger LOGGER = LoggerFactory.getLogger(VideoThumbnailWorkersTest.class);
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Test
+	public void testWorkerCount() {
+		assertThat(VideoThumbnailWorkers.getWorkerCount(1)).isEqualTo(1);
+		assertThat(VideoThumbnailWorkers.getWorkerCount(2)).isEqualTo(1);
+		assertThat(VideoThumbnailWorkers.getWorkerCount(8)).isEqualTo(4);
+		assertThat(VideoThumbnailWorkers.getWorkerCount(64)).isEqualTo(8);
+	}
+
+	@Test
+	public void testThumbnailArgs() {
+		List<String> args = new ArrayList<>();
+		DLNAMediaInfo.addThumbnailInputArgs(args, 30);
+		args.add("-i");
+		args.add("input.mkv");
+		DLNAMediaInfo.addThumbnailOutputArgs(args);
+
+		// Seeking and frame skipping are input options, so they must come
+		// before the input
+		int input = args.indexOf("-i");
+		assertThat(args.indexOf("-ss")).isLessThan(input);
+		assertThat(args.get(args.indexOf("-ss") + 1)).isEqualTo("30");
+		assertThat(args.indexOf("-noaccurate_seek")).isLessThan(input);
+		assertThat(args.indexOf("-skip_frame")).isLessThan(input);
+		assertThat(args.get(args.indexOf("-skip_frame") + 1)).isEqualTo("nokey");
+		assertThat(args.indexOf("-copyts")).isLessThan(input);
+		assertThat(args.subList(input, args.size())).containsSubsequence("-vframes", "1", "pipe:");
+	}
+
+	private static boolean isFFmpegAvailable() {
+		try {
+			Process process = new ProcessBuilder("ffmpeg", "-version").redirectErrorStream(true).start();
+			IOUtils.toByteArray(process.getInputStream());
+			return process.waitFor() == 0;
+		} catch (IOException e) {
+			return false;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private static byte[] run(List<String> command) throws IOException, InterruptedException {
+		Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.DISCARD).start();
+		byte[] output;
+		try (InputStream is = process.getInputStream()) {
+			output = IOUtils.toByteArray(is);
+		}
+		assertThat(process.waitFor()).isZero();
+		return output;
+	}
+
+	private static byte[] thumbnail(File video, boolean keyframes) throws IOException, InterruptedException {
+		List<String> args = new ArrayList<>();
+		args.add("ffmpeg");
+		if (keyframes) {
+			DLNAMediaInfo.addThumbnailInputArgs(args, 25);
+		} else {
+			// The previous arguments, which decode up to the exact frame
+			args.add("-ss");
+			args.add("25");
+		}
+		args.addAll(Arrays.asList("-i", video.getAbsolutePath(), "-an", "-dn", "-sn"));
+		DLNAMediaInfo.addThumbnailOutputArgs(args);
+		return run(args);
+	}
+
+	@Test
+	public void testThroughputOnGeneratedVideos() throws Exception {
+		assumeTrue("FFmpeg isn't available", isFFmpegAvailable());
+
+		// Long GOPs, like most broadcast and disc video, make exact seeking
+		// slow. MPEG-4 part 2 is used since every FFmpeg build can encode it.
+		List<File> videos = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			File video = new File(temporaryFolder.getRoot(), "video" + i + ".mkv");
+			run(Arrays.asList(
+				"ffmpeg", "-f", "lavfi", "-i", "testsrc2=duration=30:size=1280x720:rate=25",
+				"-c:v", "mpeg4", "-q:v", "5", "-g", "500", video.getAbsolutePath()
+			));
+			videos.add(video);
+		}
+
+		long start = System.nanoTime();
+		for (File video : videos) {
+			assertThat(thumbnail(video, false)).isNotEmpty();
+		}
+		long serial = System.nanoTime() - start;
+
+		int workers = VideoThumbnailWorkers.getWorkerCount(Runtime.getRuntime().availableProcessors());
+		ExecutorService executor = Executors.newFixedThreadPool(workers);
+		try {
+			start = System.nanoTime();
+			List<Future<byte[]>> thumbnails = new ArrayList<>();
+			for (File video : videos) {
+				thumbnails.add(executor.submit(() -> thumbnail(video, true)));
+			}
+			for (Future<byte[]> thumbnail : thumbnails) {
+				assertThat(thumbnail.get(60, TimeUnit.SECONDS)).isNotEmpty();
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		long pooled = System.nanoTime() - start;
+
+		LOGGER.info(
+			"Generated {} thumbnails in {} ms with exact seeking one at a time, and in {} ms with keyframe seeking on {} workers",
+			videos.size(),
+			TimeUnit.NANOSECONDS.toMillis(serial),
+			TimeUnit.NANOSECONDS.toMillis(pooled),
+			workers
+		);
+		assertThat(pooled).isLessThan(serial);
+	}
+}
@@ -0,0 +1,192 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.encoders;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.CRC32;
+import net.pms.PMS;
+import net.pms.configuration.PmsConfiguration;
+import net.pms.io.OutputParams;
+import org.apache.commons.configuration.ConfigurationException;
+import static org.assertj.core.api.Assertions.*;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class AviDemuxerInputStreamTest {
+	private static PmsConfiguration configuration;
+
+	@BeforeClass
+	public static void setUpClass() throws ConfigurationException, InterruptedException {
+		// Silence all log messages from the code that is being tested
+		LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+		context.getLogger(Logger.ROOT_LOGGER_NAME).setLevel(Level.OFF);
+		PMS.get();
+		configuration = new PmsConfiguration(false);
+		PMS.setConfiguration(configuration);
+	}
+
+	private static void writeFourCC(ByteArrayOutputStream out, String fourCC) {
+		out.write(fourCC.getBytes(StandardCharsets.US_ASCII), 0, 4);
+	}
+
+	private static void writeLe32(ByteArrayOutputStream out, int value) {
+		out.write(AviDemuxerInputStream.getLe32(value), 0, 4);
+	}
+
+	private static void writeLe16(ByteArrayOutputStream out, int value) {
+		out.write(AviDemuxerInputStream.getLe16(value), 0, 2);
+	}
+
+	private static void writeChunk(ByteArrayOutputStream out, String fourCC, byte[] data) {
+		writeFourCC(out, fourCC);
+		writeLe32(out, data.length);
+		out.write(data, 0, data.length);
+		if (data.length % 2 != 0) {
+			out.write(0);
+		}
+	}
+
+	private static byte[] createStreamHeader(String type, String handler, int scale, int rate, int sampleSize) {
+		ByteArrayOutputStream strh = new ByteArrayOutputStream();
+		writeFourCC(strh, type);
+		writeFourCC(strh, handler);
+		writeLe32(strh, 0); // flags
+		writeLe32(strh, 0); // priority and language
+		writeLe32(strh, 0); // initial frames
+		writeLe32(strh, scale);
+		writeLe32(strh, rate);
+		writeLe32(strh, 0); // start
+		writeLe32(strh, 0); // length
+		writeLe32(strh, 0); // suggested buffer size
+		writeLe32(strh, -1); // quality
+		writeLe32(strh, sampleSize);
+		writeLe32(strh, 0); // frame
+		writeLe32(strh, 0);
+		return strh.toByteArray();
+	}
+
+	private static void writeList(ByteArrayOutputStream out, String type, byte[] content) {
+		writeFourCC(out, "LIST");
+		writeLe32(out, content.length + 4);
+		writeFourCC(out, type);
+		out.write(content, 0, content.length);
+	}
+
+	/**
+	 * Creates an AVI file with a video and an audio stream whose movi list
+	 * holds interleaved chunks of random sizes, some of them odd, JUNK chunks
+	 * and an index.
+	 */
+	static byte[] createAvi(long seed, int chunks, int maxChunkSize) {
+		Random random = new Random(seed);
+
+		ByteArrayOutputStream videoList = new ByteArrayOutputStream();
+		writeChunk(videoList, "strh", createStreamHeader("vids", "XVID", 1001, 24000, 0));
+		writeChunk(videoList, "strf", new byte[40]);
+
+		ByteArrayOutputStream wave = new ByteArrayOutputStream();
+		writeLe16(wave, 1); // PCM
+		writeLe16(wave, 2); // channels
+		writeLe32(wave, 48000);
+		writeLe32(wave, 192000);
+		writeLe16(wave, 4); // block align
+		writeLe16(wave, 16); // bits per sample
+		writeLe16(wave, 0);
+		ByteArrayOutputStream audioList = new ByteArrayOutputStream();
+		writeChunk(audioList, "strh", createStreamHeader("auds", "\0\0\0\0", 1, 48000, 4));
+		writeChunk(audioList, "strf", wave.toByteArray());
+
+		ByteArrayOutputStream hdrl = new ByteArrayOutputStream();
+		writeChunk(hdrl, "avih", new byte[56]);
+		writeList(hdrl, "strl", videoList.toByteArray());
+		writeList(hdrl, "strl", audioList.toByteArray());
+
+		ByteArrayOutputStream movi = new ByteArrayOutputStream();
+		for (int i = 0; i < chunks; i++) {
+			byte[] data = new byte[1 + random.nextInt(maxChunkSize)];
+			random.nextBytes(data);
+			if (i % 50 == 25) {
+				writeChunk(movi, "JUNK", new byte[data.length & ~1]);
+			} else {
+				writeChunk(movi, i % 3 == 0 ? "01wb" : "00dc", data);
+			}
+		}
+
+		ByteArrayOutputStream riff = new ByteArrayOutputStream();
+		writeList(riff, "hdrl", hdrl.toByteArray());
+		writeList(riff, "movi", movi.toByteArray());
+		writeChunk(riff, "idx1", new byte[16 * chunks]);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writeFourCC(out, "RIFF");
+		writeLe32(out, riff.size() + 4);
+		writeFourCC(out, "AVI ");
+		out.write(riff.toByteArray(), 0, riff.size());
+		return out.toByteArray();
+	}
+
+	static String checksum(byte[] data) {
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		return data.length + ":" + Long.toHexString(crc.getValue());
+	}
+
+	/**
+	 * Demuxes the AVI data and returns the checksums of the video and the
+	 * audio output.
+	 */
+	private static String demux(byte[] avi) throws IOException {
+		ByteArrayOutputStream video = new ByteArrayOutputStream();
+		ByteArrayOutputStream audio = new ByteArrayOutputStream();
+		AviDemuxerInputStream demuxer = new AviDemuxerInputStream(
+			new ByteArrayInputStream(avi),
+			new OutputParams(configuration),
+			video,
+			audio
+		);
+		demuxer.parseHeader();
+		return checksum(video.toByteArray()) + " " + checksum(audio.toByteArray());
+	}
+
+	/**
+	 * The checksums were taken from the output of the implementation that
+	 * allocated an array for every chunk, FourCC and size.
+	 */
+	@Test
+	public void testOutputMatchesPreviousImplementation() throws IOException {
+		byte[] avi = createAvi(1, 600, 100000);
+		assertThat(demux(avi)).isEqualTo("19330887:2c1572ad 9482679:d7ea9e2");
+
+		// A truncated last chunk is padded with zeros
+		byte[] truncated = new byte[avi.length - 16 * 600 - 1000];
+		System.arraycopy(avi, 0, truncated, 0, truncated.length);
+		assertThat(demux(truncated)).isEqualTo("19330887:5ace4d0f 9482679:d7ea9e2");
+
+		// The end of the stream right after a chunk
+		truncated = new byte[avi.length - 16 * 600 - 8];
+		System.arraycopy(avi, 0, truncated, 0, truncated.length);
+		assertThat(demux(truncated)).isEqualTo("19330887:2c1572ad 9482679:d7ea9e2");
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.gui;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import static org.assertj.core.api.Assertions.*;
+import org.junit.Test;
+
+public class LogRingBufferTest {
+
+	@Test
+	public void testSnapshotAndOverwrite() {
+		LogRingBuffer buffer = new LogRingBuffer(3);
+		assertThat(buffer.snapshot()).isEmpty();
+		buffer.add("a");
+		buffer.add("b");
+		assertThat(buffer.snapshot()).containsExactly("a", "b");
+		buffer.add("c");
+		buffer.add("d");
+		buffer.add("e");
+		assertThat(buffer.snapshot()).containsExactly("c", "d", "e");
+		assertThat(buffer.getWritten()).isEqualTo(5);
+		assertThat(buffer.getOldest()).isEqualTo(2);
+	}
+
+	@Test
+	public void testDrain() {
+		LogRingBuffer buffer = new LogRingBuffer(3);
+		StringBuilder sb = new StringBuilder();
+		long cursor = buffer.drain(0, sb);
+		assertThat(cursor).isZero();
+		assertThat(sb).isEmpty();
+
+		buffer.add("a\n");
+		buffer.add("b\n");
+		cursor = buffer.drain(cursor, sb);
+		assertThat(cursor).isEqualTo(2);
+		assertThat(sb.toString()).isEqualTo("a\nb\n");
+
+		// The consumer falls behind by two lines
+		sb.setLength(0);
+		for (String line : new String[] {"c\n", "d\n", "e\n", "f\n", "g\n"}) {
+			buffer.add(line);
+		}
+		cursor = buffer.drain(cursor, sb);
+		assertThat(cursor).isEqualTo(7);
+		assertThat(sb.toString()).isEqualTo("e\nf\ng\n");
+		assertThat(buffer.getDropped()).isEqualTo(2);
+	}
+
+	@Test
+	public void testConcurrentWriters() throws InterruptedException {
+		int threads = 4;
+		int lines = 20000;
+		LogRingBuffer buffer = new LogRingBuffer(1000);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Thread> writers = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			String prefix = "writer" + t + " ";
+			Thread writer = new Thread(() -> {
+				try {
+					start.await();
+				} catch (InterruptedException e) {
+					return;
+				}
+				for (int i = 0; i < lines; i++) {
+					buffer.add(prefix + i + "\n");
+				}
+			});
+			writer.start();
+			writers.add(writer);
+		}
+
+		start.countDown();
+		long cursor = 0;
+		long drained = 0;
+		StringBuilder sb = new StringBuilder();
+		while (writers.stream().anyMatch(Thread::isAlive)) {
+			assertThat(buffer.snapshot().length).isLessThanOrEqualTo(1000);
+			cursor = buffer.drain(cursor, sb);
+			drained += sb.chars().filter(c -> c == '\n').count();
+			sb.setLength(0);
+		}
+		for (Thread writer : writers) {
+			writer.join();
+		}
+		cursor = buffer.drain(cursor, sb);
+		drained += sb.chars().filter(c -> c == '\n').count();
+
+		// Every line is either delivered or counted as dropped
+		assertThat(cursor).isEqualTo(threads * lines);
+		assertThat(drained + buffer.getDropped()).isEqualTo(threads * lines);
+		assertThat(buffer.snapshot()).hasSize(1000);
+	}
+}
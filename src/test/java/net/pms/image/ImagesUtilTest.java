@@ -0,0 +1,123 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.image;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import javax.imageio.ImageIO;
+import net.pms.PMS;
+import net.pms.configuration.PmsConfiguration;
+import net.pms.dlna.DLNAImage;
+import net.pms.dlna.DLNAImageProfile;
+import net.pms.dlna.DLNAThumbnail;
+import net.pms.image.ImagesUtil.ScaleType;
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.io.FileUtils;
+import static org.assertj.core.api.Assertions.*;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class ImagesUtilTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@BeforeClass
+	public static void setUpClass() throws ConfigurationException, InterruptedException {
+		// Silence all log messages from the code that is being tested
+		LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+		context.getLogger(Logger.ROOT_LOGGER_NAME).setLevel(Level.WARN);
+		PMS.get();
+		PMS.setConfiguration(new PmsConfiguration(false));
+	}
+
+	private File createJpeg(String name, int width, int height) throws IOException {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+		Graphics2D graphics = image.createGraphics();
+		try {
+			graphics.setColor(Color.BLUE);
+			graphics.fillRect(0, 0, width, height);
+			graphics.setColor(Color.YELLOW);
+			graphics.fillRect(0, 0, width / 2, height / 2);
+		} finally {
+			graphics.dispose();
+		}
+		File file = temporaryFolder.newFile(name);
+		assertThat(ImageIO.write(image, "jpeg", file)).isTrue();
+		return file;
+	}
+
+	@Test
+	public void testTranscodeLargeImageFile() throws IOException {
+		File file = createJpeg("large.jpg", 4000, 3000);
+
+		DLNAThumbnail thumbnail = DLNAThumbnail.toThumbnail(file, 320, 320, ScaleType.MAX, ImageFormat.JPEG, false);
+		assertThat(thumbnail.getWidth()).isEqualTo(320);
+		assertThat(thumbnail.getHeight()).isEqualTo(240);
+
+		DLNAImage image = DLNAImage.toDLNAImage(file, DLNAImageProfile.JPEG_LRG, false);
+		assertThat(image.getDLNAImageProfile()).isEqualTo(DLNAImageProfile.JPEG_LRG);
+		assertThat(image.getWidth()).isEqualTo(4000);
+		assertThat(image.getHeight()).isEqualTo(3000);
+
+		image = DLNAImage.toDLNAImage(file, DLNAImageProfile.JPEG_MED, false);
+		assertThat(image.getWidth()).isEqualTo(1024);
+		assertThat(image.getHeight()).isEqualTo(768);
+
+		// The reduced decode must give the same result as a full decode
+		Image fromBytes = ImagesUtil.transcodeImage(
+			FileUtils.readFileToByteArray(file),
+			DLNAImageProfile.JPEG_TN,
+			true,
+			false,
+			null
+		);
+		Image fromFile = ImagesUtil.transcodeImage(file, 0, 0, null, DLNAImageProfile.JPEG_TN, true, true, false, null);
+		assertThat(fromFile.getWidth()).isEqualTo(fromBytes.getWidth()).isEqualTo(160);
+		assertThat(fromFile.getHeight()).isEqualTo(fromBytes.getHeight()).isEqualTo(120);
+		BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(fromFile.getBytes(false)));
+		assertThat(new Color(decoded.getRGB(20, 20)).getRed()).isGreaterThan(200);
+		assertThat(new Color(decoded.getRGB(140, 100)).getBlue()).isGreaterThan(200);
+	}
+
+	@Test
+	public void testSmallImageFileIsNotReencoded() throws IOException {
+		File file = createJpeg("small.jpg", 160, 120);
+		byte[] bytes = FileUtils.readFileToByteArray(file);
+
+		DLNAThumbnail thumbnail = DLNAThumbnail.toThumbnail(file, 320, 320, ScaleType.MAX, ImageFormat.JPEG, false);
+		assertThat(thumbnail.getWidth()).isEqualTo(160);
+		assertThat(thumbnail.getBytes(false)).isEqualTo(bytes);
+	}
+
+	@Test
+	public void testMissingImageFile() {
+		File file = new File(temporaryFolder.getRoot(), "missing.jpg");
+		assertThatThrownBy(() -> DLNAThumbnail.toThumbnail(file, 320, 320, ScaleType.MAX, ImageFormat.JPEG, false))
+			.isInstanceOf(IOException.class);
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.network;
+
+import java.util.concurrent.TimeUnit;
+import static org.assertj.core.api.Assertions.*;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SpeedStatsTest {
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+	private static final long MEGABIT = 1000000 / 8;
+
+	@Before
+	public void setUp() {
+		SpeedStats.reset();
+	}
+
+	/**
+	 * Simulates sending {@code megabits} during one second, where the writes
+	 * are pending {@code busyFraction} of the time.
+	 */
+	private static long send(TransferMeter meter, long start, int megabits, double busyFraction) {
+		long chunk = SECOND / 10;
+		for (int i = 0; i < 10; i++) {
+			long now = start + i * chunk;
+			meter.writeStarted(now);
+			meter.writeCompleted(megabits * MEGABIT / 10, now + (long) (chunk * busyFraction));
+		}
+		return start + SECOND;
+	}
+
+	@Test
+	public void testNetworkLimitedTransfer() {
+		TransferMeter meter = new TransferMeter("10.0.0.1");
+		assertThat(SpeedStats.getSpeedInMBits("10.0.0.1")).isEqualTo(-1);
+		long now = send(meter, System.nanoTime(), 20, 1);
+		assertThat(SpeedStats.getSpeedInMBits("10.0.0.1")).isEqualTo(20);
+
+		// The link gets slower, the estimate must follow gradually
+		int previous = 20;
+		for (int i = 0; i < 60; i++) {
+			now = send(meter, now, 5, 1);
+			int speed = SpeedStats.getSpeedInMBits("10.0.0.1");
+			assertThat(speed).isLessThanOrEqualTo(previous);
+			previous = speed;
+		}
+		assertThat(previous).isEqualTo(5);
+
+		// And faster again
+		for (int i = 0; i < 10; i++) {
+			now = send(meter, now, 50, 1);
+		}
+		assertThat(SpeedStats.getSpeedInMBits("10.0.0.1")).isBetween(49, 50);
+		assertThat(SpeedStats.getSpeedInMBits("10.0.0.2")).isEqualTo(-1);
+	}
+
+	@Test
+	public void testSenderLimitedTransfer() {
+		TransferMeter meter = new TransferMeter("10.0.0.1");
+
+		// A transcoder producing 8 Mb/s over a fast link says nothing about the link
+		long now = send(meter, System.nanoTime(), 8, 0.05);
+		assertThat(SpeedStats.getSpeedInMBits("10.0.0.1")).isEqualTo(-1);
+
+		// Once the link has been measured, the transcoder output only tells
+		// that the link is at least 8 Mb/s fast, don't lower the estimate
+		now = send(meter, now, 100, 0.5);
+		int speed = SpeedStats.getSpeedInMBits("10.0.0.1");
+		assertThat(speed).isBetween(150, 200);
+		for (int i = 0; i < 10; i++) {
+			now = send(meter, now, 8, 0.05);
+		}
+		assertThat(SpeedStats.getSpeedInMBits("10.0.0.1")).isBetween(speed - 5, speed);
+	}
+
+	@Test
+	public void testSmallTransfers() {
+		TransferMeter meter = new TransferMeter("10.0.0.1");
+		long now = System.nanoTime();
+		meter.writeStarted(now);
+		meter.writeCompleted(1000, now + 1000);
+		assertThat(SpeedStats.getSpeedInMBits("10.0.0.1")).isEqualTo(-1);
+	}
+}
@@ -0,0 +1,270 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.network.mediaserver;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import net.pms.PMS;
+import net.pms.configuration.PmsConfiguration;
+import net.pms.dlna.DLNAResource;
+import net.pms.dlna.virtual.VirtualFolder;
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.io.IOUtils;
+import static org.assertj.core.api.Assertions.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class GENAEventNotifierTest {
+
+	private static final String CONTENT_DIRECTORY = "upnp/event/content_directory";
+
+	private HttpServer subscriber;
+	private GENAEventNotifier notifier;
+	private final BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+	private volatile int status = 200;
+	private volatile CountDownLatch release;
+
+	@BeforeClass
+	public static void setUpClass() throws ConfigurationException, InterruptedException {
+		// Silence all log messages from the code that is being tested
+		LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+		context.getLogger(Logger.ROOT_LOGGER_NAME).setLevel(Level.OFF);
+		PMS.get();
+		PMS.setConfiguration(new PmsConfiguration(false));
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		subscriber = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		subscriber.createContext("/", exchange -> {
+			Event event = new Event();
+			event.method = exchange.getRequestMethod();
+			event.sid = exchange.getRequestHeaders().getFirst("SID");
+			event.seq = exchange.getRequestHeaders().getFirst("SEQ");
+			event.remotePort = exchange.getRemoteAddress().getPort();
+			try (InputStream in = exchange.getRequestBody()) {
+				event.body = IOUtils.toString(in, StandardCharsets.UTF_8);
+			}
+			CountDownLatch gate = release;
+			if (gate != null) {
+				try {
+					gate.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			exchange.sendResponseHeaders(status, -1);
+			exchange.close();
+			events.add(event);
+		});
+		subscriber.start();
+		notifier = new GENAEventNotifier(200);
+	}
+
+	@After
+	public void tearDown() {
+		notifier.shutdown();
+		subscriber.stop(0);
+	}
+
+	private String getCallback() {
+		return "<http://127.0.0.1:" + subscriber.getAddress().getPort() + "/event>";
+	}
+
+	private Event nextEvent() throws InterruptedException {
+		Event event = events.poll(5, TimeUnit.SECONDS);
+		assertThat(event).as("event").isNotNull();
+		return event;
+	}
+
+	@Test
+	public void testModeratedContainerUpdates() throws InterruptedException {
+		GENAEventNotifier.Subscription subscription = notifier.subscribe(getCallback(), CONTENT_DIRECTORY);
+		assertThat(subscription).isNotNull();
+		assertThat(subscription.getSid()).startsWith("uuid:");
+
+		// Nothing is sent before the response to the SUBSCRIBE request
+		assertThat(events.poll(300, TimeUnit.MILLISECONDS)).isNull();
+		notifier.sendInitialEvent(subscription);
+		Event initial = nextEvent();
+		assertThat(initial.method).isEqualTo("NOTIFY");
+		assertThat(initial.sid).isEqualTo(subscription.getSid());
+		assertThat(initial.seq).isEqualTo("0");
+		assertThat(initial.body).contains("<ContainerUpdateIDs></ContainerUpdateIDs>", "<SystemUpdateID>");
+
+		// A burst of changes is sent as one event listing each container once
+		notifier.containerUpdated("0$1", 5);
+		notifier.containerUpdated("0$2", 3);
+		notifier.containerUpdated("0$1", 6);
+		notifier.systemUpdated();
+		Event update = nextEvent();
+		assertThat(update.seq).isEqualTo("1");
+		assertThat(update.body).contains("<ContainerUpdateIDs>0$1,6,0$2,3</ContainerUpdateIDs>", "<SystemUpdateID>");
+		assertThat(notifier.getContainerUpdateIds()).isEqualTo("0$1,6,0$2,3");
+		assertThat(events.poll(500, TimeUnit.MILLISECONDS)).isNull();
+
+		// Only the containers changed since the last event are listed
+		notifier.containerUpdated("0$2", 4);
+		update = nextEvent();
+		assertThat(update.seq).isEqualTo("2");
+		assertThat(update.body).contains("<ContainerUpdateIDs>0$2,4</ContainerUpdateIDs>");
+
+		// A SystemUpdateID change alone doesn't report containers
+		notifier.systemUpdated();
+		update = nextEvent();
+		assertThat(update.seq).isEqualTo("3");
+		assertThat(update.body).doesNotContain("ContainerUpdateIDs").contains("<SystemUpdateID>");
+
+		// All events used the same connection
+		assertThat(update.remotePort).isEqualTo(initial.remotePort);
+	}
+
+	@Test
+	public void testModerationInterval() throws InterruptedException {
+		notifier.sendInitialEvent(notifier.subscribe(getCallback(), CONTENT_DIRECTORY));
+		nextEvent();
+		notifier.containerUpdated("0$1", 2);
+		Event first = nextEvent();
+		first.received = System.currentTimeMillis();
+		notifier.containerUpdated("0$1", 3);
+		Event second = nextEvent();
+		assertThat(System.currentTimeMillis() - first.received).isGreaterThanOrEqualTo(150);
+		assertThat(second.body).contains("<ContainerUpdateIDs>0$1,3</ContainerUpdateIDs>");
+	}
+
+	@Test
+	public void testSubscriptionLifecycle() throws InterruptedException {
+		assertThat(notifier.subscribe("<ftp://127.0.0.1/event>", CONTENT_DIRECTORY)).isNull();
+		assertThat(notifier.subscribe(null, CONTENT_DIRECTORY)).isNull();
+		assertThat(notifier.renew("uuid:unknown")).isNull();
+
+		GENAEventNotifier.Subscription subscription = notifier.subscribe("<invalid url><" + getCallback().substring(1), CONTENT_DIRECTORY);
+		assertThat(subscription).isNotNull();
+		notifier.sendInitialEvent(subscription);
+		nextEvent();
+		assertThat(notifier.renew(subscription.getSid())).isSameAs(subscription);
+		assertThat(subscription.getTimeoutHeader()).isEqualTo("Second-300");
+
+		// Other services don't get content directory events
+		GENAEventNotifier.Subscription connectionManager = notifier.subscribe(getCallback(), "upnp/event/connection_manager");
+		notifier.sendInitialEvent(connectionManager);
+		assertThat(nextEvent().body).contains("<SinkProtocolInfo>");
+
+		assertThat(notifier.unsubscribe(subscription.getSid())).isTrue();
+		assertThat(notifier.unsubscribe(subscription.getSid())).isFalse();
+		notifier.containerUpdated("0$1", 2);
+		assertThat(events.poll(1, TimeUnit.SECONDS)).isNull();
+		assertThat(notifier.unsubscribe(connectionManager.getSid())).isTrue();
+	}
+
+	@Test
+	public void testRejectedSubscriptionIsRemoved() throws InterruptedException {
+		status = 412;
+		GENAEventNotifier.Subscription subscription = notifier.subscribe(getCallback(), CONTENT_DIRECTORY);
+		notifier.sendInitialEvent(subscription);
+		nextEvent();
+		// The response is handled after the subscriber has seen the event
+		long timeout = System.currentTimeMillis() + 5000;
+		while (notifier.renew(subscription.getSid()) != null && System.currentTimeMillis() < timeout) {
+			Thread.sleep(10);
+		}
+		assertThat(notifier.renew(subscription.getSid())).isNull();
+	}
+
+	@Test
+	public void testUnresponsiveSubscriber() throws Exception {
+		// Accepts connections but never answers
+		try (ServerSocket unresponsive = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+			notifier.sendInitialEvent(notifier.subscribe("<http://127.0.0.1:" + unresponsive.getLocalPort() + "/event>", CONTENT_DIRECTORY));
+			GENAEventNotifier.Subscription subscription = notifier.subscribe(getCallback(), CONTENT_DIRECTORY);
+			notifier.sendInitialEvent(subscription);
+			assertThat(nextEvent().seq).isEqualTo("0");
+
+			// The other subscriber's events wait for their own timeouts only
+			notifier.containerUpdated("0$1", 2);
+			Event update = nextEvent();
+			assertThat(update.sid).isEqualTo(subscription.getSid());
+			assertThat(update.body).contains("<ContainerUpdateIDs>0$1,2</ContainerUpdateIDs>");
+		}
+	}
+
+	@Test
+	public void testDroppedEventsKeepContainerUpdates() throws InterruptedException {
+		GENAEventNotifier fastNotifier = new GENAEventNotifier(20);
+		try {
+			// The subscriber doesn't answer while more events are queued than
+			// are kept
+			release = new CountDownLatch(1);
+			fastNotifier.sendInitialEvent(fastNotifier.subscribe(getCallback(), CONTENT_DIRECTORY));
+			for (int i = 0; i < 40; i++) {
+				fastNotifier.containerUpdated("0$" + i, i + 1);
+				Thread.sleep(40);
+			}
+			release.countDown();
+			assertThat(nextEvent().seq).isEqualTo("0");
+
+			// Every container is reported, even those of the dropped events
+			StringBuilder updateIds = new StringBuilder();
+			int received = 0;
+			while (!updateIds.toString().contains("0$39,40")) {
+				updateIds.append(nextEvent().body);
+				received++;
+			}
+			assertThat(received).isLessThanOrEqualTo(16);
+			for (int i = 0; i < 40; i++) {
+				assertThat(updateIds.toString()).containsPattern("0\\$" + i + "," + (i + 1) + "[,<]");
+			}
+		} finally {
+			release.countDown();
+			fastNotifier.shutdown();
+		}
+	}
+
+	@Test
+	public void testBrowseUpdateIdIsContainerUpdateId() {
+		VirtualFolder folder = new VirtualFolder("Folder", null);
+		int updateId = folder.getContainerUpdateId();
+		folder.notifyContainerUpdate();
+		assertThat(folder.getContainerUpdateId()).isEqualTo(updateId + 1);
+		assertThat(DLNAResource.getUpdateId(folder)).isEqualTo(folder.getContainerUpdateId());
+		assertThat(DLNAResource.getUpdateId(null)).isEqualTo(DLNAResource.getSystemUpdateId());
+	}
+
+	private static class Event {
+		private String method;
+		private String sid;
+		private String seq;
+		private String body;
+		private int remotePort;
+		private long received;
+	}
+}
@@ -0,0 +1,179 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.network.mediaserver.handlers.api.starrating;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import org.apache.commons.io.FileUtils;
+import static org.assertj.core.api.Assertions.*;
+import org.jaudiotagger.audio.AudioFileIO;
+import static org.junit.Assume.assumeNoException;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class StarRatingWriterTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@Rule
+	public TemporaryFolder profileFolder = new TemporaryFolder();
+
+	@BeforeClass
+	public static void setUpClass() {
+		// Silence all log messages from the code that is being tested
+		LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+		context.getLogger(Logger.ROOT_LOGGER_NAME).setLevel(Level.OFF);
+	}
+
+	private File copyResource(String name) throws IOException {
+		File file = new File(temporaryFolder.getRoot(), name);
+		try (InputStream is = getClass().getResourceAsStream("/net/pms/dlna/" + name)) {
+			FileUtils.copyInputStreamToFile(is, file);
+		}
+		return file;
+	}
+
+	private StarRatingWriter createWriter(long retryDelay, Predicate<String> inUse) {
+		return new StarRatingWriter(60000, retryDelay, inUse, getJournal());
+	}
+
+	private Path getJournal() {
+		return profileFolder.getRoot().toPath().resolve("journal.txt");
+	}
+
+	private static Integer getStars(File file) throws Exception {
+		return StarRating.convertTagRatingToStar(AudioFileIO.read(file).getTag());
+	}
+
+	@Test
+	public void testRepeatedEditsAreCoalesced() throws Exception {
+		File mp3 = copyResource("audio-mp3.mp3");
+		File flac = copyResource("audio-flac24.flac");
+		StarRatingWriter writer = createWriter(60000, filename -> false);
+
+		writer.queue(mp3.getAbsolutePath(), 1);
+		writer.queue(mp3.getAbsolutePath(), 3);
+		writer.queue(flac.getAbsolutePath(), 2);
+		writer.queue(mp3.getAbsolutePath(), 5);
+		assertThat(writer.getPendingCount()).isEqualTo(2);
+
+		writer.flush();
+		assertThat(writer.getWriteCount()).isEqualTo(2);
+		assertThat(writer.getPendingCount()).isZero();
+		assertThat(getStars(mp3)).isEqualTo(5);
+		assertThat(getStars(flac)).isEqualTo(2);
+
+		// The copies the tags were written to replaced the files
+		assertThat(temporaryFolder.getRoot().list()).containsOnly("audio-mp3.mp3", "audio-flac24.flac");
+	}
+
+	@Test
+	public void testStreamedFileIsPostponed() throws Exception {
+		File mp3 = copyResource("audio-mp3.mp3");
+		Set<String> streaming = ConcurrentHashMap.newKeySet();
+		streaming.add(mp3.getAbsolutePath());
+		StarRatingWriter writer = createWriter(0, streaming::contains);
+
+		writer.queue(mp3.getAbsolutePath(), 4);
+		writer.flush();
+		assertThat(writer.getWriteCount()).isZero();
+		assertThat(writer.getPendingCount()).isEqualTo(1);
+
+		streaming.clear();
+		writer.flush();
+		assertThat(writer.getWriteCount()).isEqualTo(1);
+		assertThat(getStars(mp3)).isEqualTo(4);
+	}
+
+	@Test
+	public void testFailedWriteLeavesFileIntact() throws Exception {
+		byte[] data = new byte[100000];
+		new Random(1).nextBytes(data);
+		File broken = new File(temporaryFolder.getRoot(), "broken.mp3");
+		FileUtils.writeByteArrayToFile(broken, data);
+		StarRatingWriter writer = createWriter(0, filename -> false);
+
+		writer.queue(broken.getAbsolutePath(), 3);
+		for (int i = 0; i < 5; i++) {
+			writer.flush();
+		}
+
+		// The write is retried a limited number of times, and never touches
+		// the file itself
+		assertThat(writer.getPendingCount()).isZero();
+		assertThat(writer.getWriteCount()).isZero();
+		assertThat(FileUtils.readFileToByteArray(broken)).isEqualTo(data);
+		assertThat(temporaryFolder.getRoot().list()).containsOnly("broken.mp3");
+		assertThat(getJournal()).doesNotExist();
+	}
+
+	@Test
+	public void testLinksAreKept() throws Exception {
+		File mp3 = copyResource("audio-mp3.mp3");
+		Path symlink = temporaryFolder.getRoot().toPath().resolve("symlink.mp3");
+		Path hardLink = temporaryFolder.getRoot().toPath().resolve("hardlink.mp3");
+		try {
+			Files.createSymbolicLink(symlink, mp3.toPath());
+			Files.createLink(hardLink, mp3.toPath());
+		} catch (UnsupportedOperationException | IOException e) {
+			assumeNoException(e);
+		}
+		StarRatingWriter writer = createWriter(0, filename -> false);
+
+		// The link target is written
+		writer.queue(symlink.toString(), 2);
+		writer.flush();
+		assertThat(Files.isSymbolicLink(symlink)).isTrue();
+		assertThat(getStars(mp3)).isEqualTo(2);
+		assertThat(getStars(hardLink.toFile())).isEqualTo(2);
+
+		// Hard linked files are written in place
+		writer.queue(hardLink.toString(), 4);
+		writer.flush();
+		assertThat(getStars(mp3)).isEqualTo(4);
+		assertThat(Files.isSameFile(mp3.toPath(), hardLink)).isTrue();
+		assertThat(temporaryFolder.getRoot().list()).containsOnly("audio-mp3.mp3", "symlink.mp3", "hardlink.mp3");
+	}
+
+	@Test
+	public void testStaleCopyIsRemoved() throws Exception {
+		File mp3 = copyResource("audio-mp3.mp3");
+		Path copy = temporaryFolder.getRoot().toPath().resolve(".audio-mp3.mp3" + StarRatingWriter.COPY_EXTENSION);
+		Files.copy(mp3.toPath(), copy);
+		Files.write(getJournal(), copy.toString().getBytes(StandardCharsets.UTF_8));
+
+		createWriter(0, filename -> false).removeStaleCopy();
+		assertThat(copy).doesNotExist();
+		assertThat(getJournal()).doesNotExist();
+		assertThat(mp3).exists();
+	}
+}
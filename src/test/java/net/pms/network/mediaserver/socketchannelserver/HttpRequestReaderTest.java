@@ -0,0 +1,96 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.network.mediaserver.socketchannelserver;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import static org.assertj.core.api.Assertions.*;
+import org.junit.Test;
+
+public class HttpRequestReaderTest {
+
+	/**
+	 * Returns at most {@code chunk} bytes per read, like a socket receiving
+	 * small packets.
+	 */
+	private static InputStream trickle(String data, int chunk) {
+		return new ByteArrayInputStream(data.getBytes(StandardCharsets.UTF_8)) {
+			@Override
+			public synchronized int read(byte[] b, int off, int len) {
+				return super.read(b, off, Math.min(len, chunk));
+			}
+		};
+	}
+
+	@Test
+	public void testPipelinedRequests() throws IOException {
+		String body = "<s:Envelope>æøå</s:Envelope>";
+		int bodyLength = body.getBytes(StandardCharsets.UTF_8).length;
+		String data =
+			"POST /upnp/control/content_directory HTTP/1.1\r\n" +
+			"Content-Length: " + bodyLength + "\r\n" +
+			"\r\n" +
+			body +
+			"GET /get/0/thumbnail0000a.jpg HTTP/1.1\n" +
+			"Host: 127.0.0.1\n" +
+			"\n";
+
+		for (int chunk : new int[] {1, 7, 8192}) {
+			HttpRequestReader reader = new HttpRequestReader(trickle(data, chunk));
+			assertThat(reader.readLine()).isEqualTo("POST /upnp/control/content_directory HTTP/1.1");
+			assertThat(reader.readLine()).isEqualTo("Content-Length: " + bodyLength);
+			assertThat(reader.readLine()).isEmpty();
+			assertThat(new String(reader.readFully(bodyLength), StandardCharsets.UTF_8)).isEqualTo(body);
+			assertThat(reader.readLine()).isEqualTo("GET /get/0/thumbnail0000a.jpg HTTP/1.1");
+			assertThat(reader.readLine()).isEqualTo("Host: 127.0.0.1");
+			assertThat(reader.readLine()).isEmpty();
+			assertThat(reader.hasBufferedData()).isFalse();
+			assertThat(reader.readLine()).isNull();
+		}
+	}
+
+	@Test
+	public void testTruncatedInput() throws IOException {
+		HttpRequestReader reader = new HttpRequestReader(trickle("GET / HTTP/1.1\r\nHost", 3));
+		assertThat(reader.readLine()).isEqualTo("GET / HTTP/1.1");
+		assertThat(reader.readLine()).isEqualTo("Host");
+		assertThat(reader.readLine()).isNull();
+
+		HttpRequestReader bodyReader = new HttpRequestReader(trickle("abc", 3));
+		assertThatThrownBy(() -> bodyReader.readFully(10)).isInstanceOf(EOFException.class);
+	}
+
+	@Test
+	public void testLongLines() throws IOException {
+		StringBuilder sb = new StringBuilder("X-Long: ");
+		while (sb.length() < 20000) {
+			sb.append("0123456789");
+		}
+		String header = sb.toString();
+		HttpRequestReader reader = new HttpRequestReader(trickle(header + "\r\n", 4096));
+		assertThat(reader.readLine()).isEqualTo(header);
+
+		while (sb.length() < 70000) {
+			sb.append("0123456789");
+		}
+		HttpRequestReader tooLong = new HttpRequestReader(trickle(sb + "\r\n", 4096));
+		assertThatThrownBy(tooLong::readLine).isInstanceOf(IOException.class);
+	}
+}
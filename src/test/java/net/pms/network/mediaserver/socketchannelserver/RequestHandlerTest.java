@@ -0,0 +1,190 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; version 2
+ * of the License only.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301, USA.
+ */
+package net.pms.network.mediaserver.socketchannelserver;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import net.pms.PMS;
+import net.pms.configuration.PmsConfiguration;
+import net.pms.configuration.RendererConfiguration;
+import org.apache.commons.configuration.ConfigurationException;
+import static org.assertj.core.api.Assertions.*;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class RequestHandlerTest {
+	private static final String REQUEST =
+		"GET /unknown HTTP/1.1\r\n" +
+		"Host: 127.0.0.1\r\n" +
+		"\r\n";
+
+	private static ExecutorService executor;
+	private ServerSocket serverSocket;
+	private Future<?> handler;
+
+	@BeforeClass
+	public static void setUpClass() throws ConfigurationException, InterruptedException {
+		// Silence all log messages from the code that is being tested
+		LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+		context.getLogger(Logger.ROOT_LOGGER_NAME).setLevel(Level.OFF);
+		PMS.get();
+		PmsConfiguration configuration = new PmsConfiguration(false);
+		PMS.setConfiguration(configuration);
+		RendererConfiguration.loadRendererConfigurations(configuration);
+		executor = Executors.newCachedThreadPool();
+	}
+
+	@AfterClass
+	public static void tearDownClass() {
+		executor.shutdownNow();
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		serverSocket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		RequestHandler.setTimeouts(5000, 20000);
+		serverSocket.close();
+	}
+
+	/**
+	 * Connects to the test server and serves the connection with a
+	 * {@link RequestHandler}.
+	 */
+	private Socket connect() throws IOException {
+		Socket client = new Socket(serverSocket.getInetAddress(), serverSocket.getLocalPort());
+		client.setSoTimeout(10000);
+		Socket socket = serverSocket.accept();
+		handler = executor.submit(new RequestHandler(socket));
+		return client;
+	}
+
+	private static String readLine(InputStream in) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		int b;
+		while ((b = in.read()) != '\n') {
+			if (b == -1) {
+				return null;
+			}
+			if (b != '\r') {
+				sb.append((char) b);
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Reads one response without content and returns its status line.
+	 */
+	private static String readResponse(InputStream in) throws IOException {
+		String status = readLine(in);
+		String line;
+		do {
+			line = readLine(in);
+		} while (line != null && !line.isEmpty());
+		return status;
+	}
+
+	@Test
+	public void testKeepAlive() throws Exception {
+		try (Socket client = connect()) {
+			OutputStream out = client.getOutputStream();
+			InputStream in = client.getInputStream();
+			for (int i = 0; i < 3; i++) {
+				out.write(REQUEST.getBytes(StandardCharsets.US_ASCII));
+				out.flush();
+				assertThat(readResponse(in)).startsWith("HTTP/1.1 204");
+				Thread.sleep(50);
+			}
+			assertThat(handler.isDone()).isFalse();
+
+			out.write("GET /unknown HTTP/1.1\r\nConnection: close\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+			out.flush();
+			assertThat(readResponse(in)).startsWith("HTTP/1.1 204");
+			assertThat(in.read()).isEqualTo(-1);
+		}
+		handler.get(10, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void testPipelinedBurst() throws Exception {
+		StringBuilder burst = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			burst.append(REQUEST);
+		}
+		try (Socket client = connect()) {
+			OutputStream out = client.getOutputStream();
+			out.write(burst.toString().getBytes(StandardCharsets.US_ASCII));
+			out.flush();
+			InputStream in = client.getInputStream();
+			for (int i = 0; i < 200; i++) {
+				assertThat(readResponse(in)).as("response %d", i).startsWith("HTTP/1.1 204");
+			}
+			assertThat(handler.isDone()).isFalse();
+		}
+		handler.get(10, TimeUnit.SECONDS);
+	}
+
+	@Test
+	public void testIdleClients() throws Exception {
+		RequestHandler.setTimeouts(200, 500);
+
+		// A client that never sends its first request
+		long start = System.nanoTime();
+		try (Socket client = connect()) {
+			assertThat(client.getInputStream().read()).isEqualTo(-1);
+		}
+		handler.get(10, TimeUnit.SECONDS);
+		assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(5000);
+
+		// A client that stops in the middle of the headers
+		try (Socket client = connect()) {
+			client.getOutputStream().write("GET /unknown HTTP/1.1\r\nHost: 127".getBytes(StandardCharsets.US_ASCII));
+			assertThat(client.getInputStream().read()).isEqualTo(-1);
+		}
+		handler.get(10, TimeUnit.SECONDS);
+
+		// A client that stays idle after a request
+		try (Socket client = connect()) {
+			client.getOutputStream().write(REQUEST.getBytes(StandardCharsets.US_ASCII));
+			InputStream in = client.getInputStream();
+			assertThat(readResponse(in)).startsWith("HTTP/1.1 204");
+			assertThat(in.read()).isEqualTo(-1);
+		}
+		handler.get(10, TimeUnit.SECONDS);
+	}
+}
@@ -0,0 +1,156 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.network.webinterfaceserver;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import static org.assertj.core.api.Assertions.*;
+import org.junit.Test;
+
+public class ServerSentEventsTest {
+
+	private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000;
+		while (!condition.getAsBoolean()) {
+			assertThat(System.currentTimeMillis()).as("timed out").isLessThan(deadline);
+			Thread.sleep(10);
+		}
+	}
+
+	private static String text(ByteArrayOutputStream out) {
+		synchronized (out) {
+			return new String(out.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+
+	@Test
+	public void testMessagesInOrder() throws InterruptedException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		ServerSentEvents sse = new ServerSentEvents(out, "en-US");
+		try {
+			for (int i = 0; i < 20; i++) {
+				assertThat(sse.sendMessage("[\"notify\",\"" + i + "\"]", null)).isTrue();
+			}
+			waitFor(() -> text(out).contains("\"19\""));
+			String stream = text(out);
+			for (int i = 1; i < 20; i++) {
+				assertThat(stream.indexOf("\"" + (i - 1) + "\"")).isLessThan(stream.indexOf("\"" + i + "\""));
+			}
+			assertThat(stream).startsWith("event: message\ndata: [\"notify\",\"0\"]\n\n");
+		} finally {
+			sse.close();
+		}
+		assertThat(sse.isOpened()).isFalse();
+		assertThat(sse.sendMessage("closed", null)).isFalse();
+	}
+
+	@Test
+	public void testFinish() throws InterruptedException {
+		CountDownLatch closed = new CountDownLatch(1);
+		ByteArrayOutputStream out = new ByteArrayOutputStream() {
+			@Override
+			public void close() {
+				closed.countDown();
+			}
+		};
+		ServerSentEvents sse = new ServerSentEvents(out, "en-US");
+		assertThat(sse.sendMessage("last", null)).isTrue();
+		sse.finish();
+		assertThat(sse.sendMessage("too late", null)).isFalse();
+		assertThat(closed.await(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(text(out)).isEqualTo("event: message\ndata: last\n\n");
+		assertThat(sse.isOpened()).isFalse();
+	}
+
+	/**
+	 * @return A stream that blocks every write until it is closed, and then
+	 *         fails it.
+	 */
+	private static OutputStream stalledStream() {
+		CountDownLatch release = new CountDownLatch(1);
+		return new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+				throw new IOException("closed");
+			}
+
+			@Override
+			public void close() {
+				release.countDown();
+			}
+		};
+	}
+
+	@Test
+	public void testSlowClients() throws InterruptedException {
+		ByteArrayOutputStream fast = new ByteArrayOutputStream();
+		ServerSentEvents client = new ServerSentEvents(fast, "en-US");
+		// More stalled clients than writer threads
+		List<ServerSentEvents> stalled = new ArrayList<>();
+		for (int i = 0; i < 6; i++) {
+			stalled.add(new ServerSentEvents(stalledStream(), "en-US"));
+		}
+		AtomicInteger accepted = new AtomicInteger();
+		AtomicInteger failed = new AtomicInteger();
+		try {
+			// Let the stalled clients block every writer for a while
+			for (ServerSentEvents slow : stalled) {
+				assertThat(slow.sendMessage("first", failed::incrementAndGet)).isTrue();
+				accepted.incrementAndGet();
+			}
+			Thread.sleep(1500);
+
+			// Sending must not block on the stalled clients. The ones holding
+			// a writer are closed once the fast client needs one, and the
+			// others when they fall too far behind.
+			for (int i = 0; i < 1100; i++) {
+				String message = "message " + i + "\u00a0";
+				assertThat(client.sendMessage(message, failed::incrementAndGet)).isTrue();
+				for (ServerSentEvents slow : stalled) {
+					if (slow.sendMessage(message, failed::incrementAndGet)) {
+						accepted.incrementAndGet();
+					}
+				}
+			}
+			for (ServerSentEvents slow : stalled) {
+				assertThat(slow.isOpened()).isFalse();
+			}
+			waitFor(() -> text(fast).contains("message 1099\u00a0"));
+			assertThat(client.isOpened()).isTrue();
+
+			// Every message a stalled client accepted is reported as undelivered
+			waitFor(() -> failed.get() == accepted.get());
+			assertThat(accepted.get()).isGreaterThanOrEqualTo(2 * 1024);
+		} finally {
+			client.close();
+			stalled.forEach(ServerSentEvents::close);
+		}
+	}
+}
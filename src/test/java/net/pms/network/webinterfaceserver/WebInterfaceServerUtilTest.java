@@ -0,0 +1,197 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.network.webinterfaceserver;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import static org.assertj.core.api.Assertions.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class WebInterfaceServerUtilTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private HttpServer server;
+	private File file;
+	private byte[] data;
+
+	@BeforeClass
+	public static void setUpClass() {
+		// Silence all log messages from the code that is being tested
+		LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+		context.getLogger(Logger.ROOT_LOGGER_NAME).setLevel(Level.WARN);
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		data = new byte[200000];
+		new Random(1).nextBytes(data);
+		file = temporaryFolder.newFile("video.mkv");
+		FileUtils.writeByteArrayToFile(file, data);
+
+		File web = temporaryFolder.newFolder("web");
+		FileUtils.writeStringToFile(new File(web, "style.css"), StringUtils.repeat("body { color: black; }\n", 100), StandardCharsets.UTF_8);
+		WebInterfaceServerUtil.ResourceManager resources = new WebInterfaceServerUtil.ResourceManager(web.toURI().toString());
+
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/file", t -> WebInterfaceServerUtil.sendFile(t, file, "video/x-matroska"));
+		server.createContext("/files/", t -> {
+			if (!resources.write(t.getRequestURI().getPath().substring(7), t)) {
+				WebInterfaceServerUtil.respond(t, null, 404, null);
+			}
+		});
+		server.start();
+	}
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+	}
+
+	private HttpURLConnection open(String path) throws IOException {
+		URL url = new URL("http", server.getAddress().getHostString(), server.getAddress().getPort(), path);
+		return (HttpURLConnection) url.openConnection();
+	}
+
+	private static byte[] read(HttpURLConnection connection) throws IOException {
+		try (InputStream in = connection.getInputStream()) {
+			return IOUtils.toByteArray(in);
+		}
+	}
+
+	@Test
+	public void testSendFile() throws IOException {
+		HttpURLConnection connection = open("/file");
+		assertThat(connection.getResponseCode()).isEqualTo(200);
+		assertThat(connection.getContentType()).isEqualTo("video/x-matroska");
+		assertThat(read(connection)).isEqualTo(data);
+		String etag = connection.getHeaderField("ETag");
+		String lastModified = connection.getHeaderField("Last-Modified");
+		assertThat(etag).isNotEmpty();
+		assertThat(lastModified).isNotEmpty();
+
+		connection = open("/file");
+		connection.setRequestProperty("If-None-Match", etag);
+		assertThat(connection.getResponseCode()).isEqualTo(304);
+
+		connection = open("/file");
+		connection.setRequestProperty("If-Modified-Since", lastModified);
+		assertThat(connection.getResponseCode()).isEqualTo(304);
+
+		// A changed file must be sent again
+		assertThat(file.setLastModified(file.lastModified() + 10000)).isTrue();
+		connection = open("/file");
+		connection.setRequestProperty("If-None-Match", etag);
+		assertThat(connection.getResponseCode()).isEqualTo(200);
+		assertThat(read(connection)).isEqualTo(data);
+	}
+
+	@Test
+	public void testSendFileRanges() throws IOException {
+		HttpURLConnection connection = open("/file");
+		connection.setRequestProperty("Range", "bytes=1000-1999");
+		assertThat(connection.getResponseCode()).isEqualTo(206);
+		assertThat(connection.getHeaderField("Content-Range")).isEqualTo("bytes 1000-1999/200000");
+		assertThat(read(connection)).isEqualTo(Arrays.copyOfRange(data, 1000, 2000));
+
+		connection = open("/file");
+		connection.setRequestProperty("Range", "bytes=-500");
+		assertThat(connection.getResponseCode()).isEqualTo(206);
+		assertThat(read(connection)).isEqualTo(Arrays.copyOfRange(data, 199500, 200000));
+
+		connection = open("/file");
+		connection.setRequestProperty("Range", "bytes=199000-");
+		assertThat(connection.getResponseCode()).isEqualTo(206);
+		assertThat(read(connection)).isEqualTo(Arrays.copyOfRange(data, 199000, 200000));
+
+		connection = open("/file");
+		connection.setRequestProperty("Range", "bytes=300000-");
+		assertThat(connection.getResponseCode()).isEqualTo(416);
+		assertThat(connection.getHeaderField("Content-Range")).isEqualTo("bytes */200000");
+
+		// An invalid range is ignored
+		connection = open("/file");
+		connection.setRequestProperty("Range", "bytes=500-400");
+		assertThat(connection.getResponseCode()).isEqualTo(200);
+		assertThat(connection.getHeaderField("Content-Range")).isNull();
+		assertThat(read(connection)).isEqualTo(data);
+	}
+
+	@Test
+	public void testStaticResources() throws IOException {
+		byte[] css = Files.readAllBytes(new File(temporaryFolder.getRoot(), "web/style.css").toPath());
+
+		HttpURLConnection connection = open("/files/style.css");
+		assertThat(connection.getResponseCode()).isEqualTo(200);
+		assertThat(connection.getContentType()).isEqualTo("text/css");
+		assertThat(connection.getHeaderField("Content-Encoding")).isNull();
+		assertThat(read(connection)).isEqualTo(css);
+		String etag = connection.getHeaderField("ETag");
+
+		connection = open("/files/style.css");
+		connection.setRequestProperty("Accept-Encoding", "gzip, deflate");
+		assertThat(connection.getResponseCode()).isEqualTo(200);
+		assertThat(connection.getHeaderField("Content-Encoding")).isEqualTo("gzip");
+		assertThat(connection.getHeaderField("ETag")).isNotEqualTo(etag);
+		try (InputStream in = new GZIPInputStream(connection.getInputStream())) {
+			assertThat(IOUtils.toByteArray(in)).isEqualTo(css);
+		}
+
+		connection = open("/files/style.css");
+		connection.setRequestProperty("If-None-Match", etag);
+		assertThat(connection.getResponseCode()).isEqualTo(304);
+
+		assertThat(open("/files/missing.css").getResponseCode()).isEqualTo(404);
+	}
+
+	@Test
+	public void testGetByteRange() {
+		assertThat(WebInterfaceServerUtil.getByteRange("bytes=0-99", 1000)).containsExactly(0, 99);
+		assertThat(WebInterfaceServerUtil.getByteRange("bytes=900-2000", 1000)).containsExactly(900, 999);
+		assertThat(WebInterfaceServerUtil.getByteRange("bytes=-2000", 1000)).containsExactly(0, 999);
+		assertThat(WebInterfaceServerUtil.getByteRange("bytes=0-1,5-6", 1000)).isNull();
+		assertThat(WebInterfaceServerUtil.getByteRange("items=0-1", 1000)).isNull();
+		assertThat(WebInterfaceServerUtil.getByteRange("bytes=500-400", 1000)).isNull();
+		assertThat(WebInterfaceServerUtil.getByteRange("bytes=1500-1200", 1000)).isNull();
+		assertThat(WebInterfaceServerUtil.getByteRange("bytes=1000-", 1000)).isSameAs(WebInterfaceServerUtil.UNSATISFIABLE_RANGE);
+		assertThat(WebInterfaceServerUtil.getByteRange("bytes=-0", 1000)).isSameAs(WebInterfaceServerUtil.UNSATISFIABLE_RANGE);
+	}
+}
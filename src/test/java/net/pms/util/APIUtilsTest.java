@@ -0,0 +1,115 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.util;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import net.pms.PMS;
+import net.pms.configuration.PmsConfiguration;
+import org.apache.commons.configuration.ConfigurationException;
+import static org.assertj.core.api.Assertions.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class APIUtilsTest {
+
+	private HttpServer server;
+	private final AtomicInteger requests = new AtomicInteger();
+
+	@BeforeClass
+	public static void setUpClass() throws ConfigurationException, InterruptedException {
+		// Silence all log messages from the code that is being tested
+		LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+		context.getLogger(Logger.ROOT_LOGGER_NAME).setLevel(Level.WARN);
+		PMS.get();
+		PMS.setConfiguration(new PmsConfiguration(false));
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.createContext("/api/media/series/v2", t -> {
+			requests.incrementAndGet();
+			try {
+				// Keep the request open long enough for the other lookups to arrive
+				Thread.sleep(300);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			String title = t.getRequestURI().getQuery().replaceAll(".*title=([^&]*).*", "$1");
+			byte[] response = ("{\"title\":\"" + title + "\",\"imdbID\":\"tt0000001\"}").getBytes(StandardCharsets.UTF_8);
+			t.sendResponseHeaders(200, response.length);
+			try (OutputStream os = t.getResponseBody()) {
+				os.write(response);
+			}
+		});
+		server.start();
+		APIUtils.setApiBaseUrl("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort());
+	}
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+		APIUtils.setApiBaseUrl("https://api.universalmediaserver.com");
+	}
+
+	@Test
+	public void testSeriesLookupsAreShared() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<JsonObject>> results = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				Callable<JsonObject> lookup = () -> APIUtils.getTVSeriesInfo("Series", null, null);
+				results.add(executor.submit(lookup));
+			}
+			for (Future<JsonObject> result : results) {
+				assertThat(result.get().get("title").getAsString()).isEqualTo("Series");
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		assertThat(requests.get()).isEqualTo(1);
+
+		// Changing a result must not change the results of later lookups
+		JsonObject result = APIUtils.getTVSeriesInfo("Series", null, null);
+		result.remove("title");
+		assertThat(APIUtils.getTVSeriesInfo("Series", null, null).get("title").getAsString()).isEqualTo("Series");
+		assertThat(requests.get()).isEqualTo(1);
+
+		assertThat(APIUtils.getTVSeriesInfo("Other Series", null, null).get("title").getAsString()).isEqualTo("Other+Series");
+		assertThat(requests.get()).isEqualTo(2);
+	}
+}
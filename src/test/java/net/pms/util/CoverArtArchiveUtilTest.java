@@ -0,0 +1,264 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.util;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import fm.last.musicbrainz.coverart.impl.DefaultCoverArtArchiveClient;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+import net.pms.PMS;
+import net.pms.configuration.PmsConfiguration;
+import net.pms.database.MediaDatabase;
+import net.pms.dlna.DLNAMediaInfo;
+import net.pms.dlna.InputFile;
+import net.pms.formats.Format;
+import org.apache.commons.io.FileUtils;
+import org.apache.http.HttpHost;
+import org.apache.http.impl.client.HttpClientBuilder;
+import static org.assertj.core.api.Assertions.*;
+import org.jaudiotagger.audio.AudioFile;
+import org.jaudiotagger.audio.AudioFileIO;
+import org.jaudiotagger.tag.FieldKey;
+import org.jaudiotagger.tag.Tag;
+import org.jaudiotagger.tag.id3.ID3v24Tag;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class CoverArtArchiveUtilTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private HttpServer server;
+	private String serverUrl;
+	private final String mBID = UUID.randomUUID().toString();
+	private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+	private final CountDownLatch releaseLookups = new CountDownLatch(1);
+
+	@BeforeClass
+	public static void setUpClass() throws Exception {
+		// Silence all log messages from the code that is being tested
+		LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+		context.getLogger(Logger.ROOT_LOGGER_NAME).setLevel(Level.OFF);
+		PMS.get();
+		PMS.setConfiguration(new PmsConfiguration(false));
+		MediaDatabase.init();
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.setExecutor(Executors.newCachedThreadPool());
+		serverUrl = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+
+		// MusicBrainz, held back until the test lets the lookups through
+		server.createContext("/ws/2/", t -> {
+			count("musicbrainz");
+			try {
+				releaseLookups.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			respond(t, "text/xml", (
+				"<?xml version=\"1.0\" encoding=\"UTF-8\"?>" +
+				"<metadata xmlns=\"http://musicbrainz.org/ns/mmd-2.0#\" xmlns:ext=\"http://musicbrainz.org/ns/ext#-2.0\">" +
+				"<release-list count=\"1\" offset=\"0\"><release id=\"" + mBID + "\" ext:score=\"100\">" +
+				"<title>Test Album</title><date>2001</date>" +
+				"<artist-credit><name-credit><artist><name>Test Artist</name></artist></name-credit></artist-credit>" +
+				"<release-group><primary-type>Album</primary-type></release-group>" +
+				"</release></release-list></metadata>"
+			).getBytes(StandardCharsets.UTF_8));
+		});
+
+		// Cover Art Archive, reached through the client's proxy
+		server.createContext("/release/", t -> {
+			count("listing");
+			respond(t, "application/json", (
+				"{\"images\":[{\"types\":[\"Front\"],\"front\":true,\"back\":false,\"edit\":1,\"comment\":\"\"," +
+				"\"approved\":true,\"id\":\"1\",\"image\":\"" + serverUrl + "/image/full.png\"," +
+				"\"thumbnails\":{\"large\":\"" + serverUrl + "/image/large.png\",\"small\":\"" + serverUrl + "/image/small.png\"}}]," +
+				"\"release\":\"https://musicbrainz.org/release/" + mBID + "\"}"
+			).getBytes(StandardCharsets.UTF_8));
+		});
+		server.createContext("/image/", t -> {
+			count(t.getRequestURI().getPath());
+			ByteArrayOutputStream image = new ByteArrayOutputStream();
+			ImageIO.write(new BufferedImage(800, 800, BufferedImage.TYPE_INT_RGB), "png", image);
+			respond(t, "image/png", image.toByteArray());
+		});
+		server.start();
+
+		CoverArtArchiveUtil.setServers(
+			serverUrl + "/ws/2/",
+			new DefaultCoverArtArchiveClient(
+				false,
+				HttpClientBuilder.create().setProxy(new HttpHost(server.getAddress().getHostString(), server.getAddress().getPort())).build()
+			)
+		);
+	}
+
+	@After
+	public void tearDown() {
+		releaseLookups.countDown();
+		server.stop(0);
+		CoverArtArchiveUtil.setServers("http://musicbrainz.org/ws/2/", new DefaultCoverArtArchiveClient());
+	}
+
+	private void count(String request) {
+		requests.computeIfAbsent(request, k -> new AtomicInteger()).incrementAndGet();
+	}
+
+	private int getRequestCount(String request) {
+		AtomicInteger count = requests.get(request);
+		return count == null ? 0 : count.get();
+	}
+
+	private static void respond(HttpExchange t, String contentType, byte[] response) throws IOException {
+		t.getResponseHeaders().set("Content-Type", contentType);
+		t.sendResponseHeaders(200, response.length);
+		try (OutputStream os = t.getResponseBody()) {
+			os.write(response);
+		}
+	}
+
+	private static Tag createTag() throws Exception {
+		Tag tag = new ID3v24Tag();
+		// Unique names, so that the lookup isn't answered from earlier runs
+		tag.setField(FieldKey.ARTIST, "Test Artist");
+		tag.setField(FieldKey.ALBUM, "Test Album " + UUID.randomUUID());
+		tag.setField(FieldKey.TITLE, "Test Title");
+		return tag;
+	}
+
+	@Test
+	public void testSharedLookupAndCoverCache() throws Exception {
+		CoverArtArchiveUtil coverUtil = new CoverArtArchiveUtil();
+		Tag tag = createTag();
+
+		// Callers that don't wait get nothing while the lookup is running,
+		// and share the lookup that is running
+		CompletableFuture<byte[]> lookup = coverUtil.doGetThumbnailAsync(tag, true);
+		assertThat(lookup.isDone()).isFalse();
+		assertThat(coverUtil.doGetThumbnailAsync(createTagCopy(tag), true).isDone()).isFalse();
+		assertThat(getRequestCount("musicbrainz")).isLessThanOrEqualTo(1);
+		releaseLookups.countDown();
+
+		byte[] cover = coverUtil.doGetThumbnail(tag, true);
+		assertThat(cover).isNotNull();
+		assertThat(lookup.get(10, TimeUnit.SECONDS)).isEqualTo(cover);
+		BufferedImage image = ImageIO.read(new ByteArrayInputStream(cover));
+		assertThat(image.getWidth()).isEqualTo(480);
+		assertThat(image.getHeight()).isEqualTo(480);
+		assertThat(getRequestCount("musicbrainz")).isEqualTo(1);
+		assertThat(getRequestCount("listing")).isEqualTo(1);
+		assertThat(getRequestCount("/image/large.png")).isEqualTo(1);
+		assertThat(getRequestCount("/image/full.png")).isZero();
+
+		// The next time the resized cover is available at once
+		assertThat(coverUtil.doGetThumbnailAsync(tag, true).getNow(null)).isEqualTo(cover);
+		assertThat(coverUtil.doGetThumbnail(createTagCopy(tag), true)).isEqualTo(cover);
+		assertThat(getRequestCount("musicbrainz")).isEqualTo(1);
+		assertThat(getRequestCount("listing")).isEqualTo(1);
+		assertThat(getRequestCount("/image/large.png")).isEqualTo(1);
+	}
+
+	@Test
+	public void testThumbnailNotReadyWhileLookupRuns() throws Exception {
+		File file = temporaryFolder.newFile("audio.mp3");
+		FileUtils.copyURLToFile(getClass().getResource("/net/pms/dlna/audio-mp3.mp3"), file);
+		AudioFile audioFile = AudioFileIO.read(file);
+		Tag tag = createTag();
+		audioFile.setTag(tag);
+		audioFile.commit();
+		InputFile input = new InputFile();
+		input.setFile(file);
+
+		DLNAMediaInfo media = new DLNAMediaInfo();
+		media.generateThumbnail(input, null, Format.AUDIO, 0d, false, null);
+		assertThat(media.getThumb()).isNull();
+		assertThat(media.isThumbready()).isFalse();
+
+		// The cover is used once the lookup is done
+		releaseLookups.countDown();
+		assertThat(new CoverArtArchiveUtil().doGetThumbnailAsync(tag, true).get(10, TimeUnit.SECONDS)).isNotNull();
+		media.generateThumbnail(input, null, Format.AUDIO, 0d, false, null);
+		assertThat(media.getThumb()).isNotNull();
+		assertThat(media.isThumbready()).isTrue();
+	}
+
+	@Test
+	public void testCoverKeptWhenNotCached() throws Exception {
+		// A non-empty directory where the cached cover goes makes caching fail
+		File cached = new File(PMS.getConfiguration().getDataFile("covers"), mBID + ".cover");
+		assertThat(new File(cached, "blocked").mkdirs()).isTrue();
+		try {
+			CoverArtArchiveUtil coverUtil = new CoverArtArchiveUtil();
+			Tag tag = createTag();
+			releaseLookups.countDown();
+			byte[] cover = coverUtil.doGetThumbnail(tag, true);
+			assertThat(cover).isNotNull();
+			assertThat(cached.isFile()).isFalse();
+
+			// The cover is stored in the database instead of a "no cover" result
+			assertThat(coverUtil.doGetThumbnail(createTagCopy(tag), true)).isEqualTo(cover);
+			assertThat(getRequestCount("/image/large.png")).isEqualTo(1);
+		} finally {
+			FileUtils.deleteDirectory(cached);
+		}
+	}
+
+	@Test
+	public void testNoExternalNetwork() throws Exception {
+		CoverArtArchiveUtil coverUtil = new CoverArtArchiveUtil();
+		assertThat(coverUtil.doGetThumbnail(createTag(), false)).isNull();
+		assertThat(coverUtil.doGetThumbnailAsync(createTag(), false).get(10, TimeUnit.SECONDS)).isNull();
+		assertThat(requests).isEmpty();
+	}
+
+	private static Tag createTagCopy(Tag tag) throws Exception {
+		Tag copy = new ID3v24Tag();
+		copy.setField(FieldKey.ARTIST, tag.getFirst(FieldKey.ARTIST));
+		copy.setField(FieldKey.ALBUM, tag.getFirst(FieldKey.ALBUM));
+		copy.setField(FieldKey.TITLE, tag.getFirst(FieldKey.TITLE));
+		return copy;
+	}
+}
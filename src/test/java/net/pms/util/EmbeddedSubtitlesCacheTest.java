@@ -0,0 +1,218 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.util;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import net.pms.PMS;
+import net.pms.configuration.PmsConfiguration;
+import net.pms.dlna.DLNAMediaInfo;
+import net.pms.dlna.DLNAMediaSubtitle;
+import net.pms.dlna.RealFile;
+import net.pms.formats.v2.SubtitleType;
+import net.pms.io.OutputParams;
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.reflect.FieldUtils;
+import static org.assertj.core.api.Assertions.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class EmbeddedSubtitlesCacheTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	/** The track lists passed to the extractor, one per FFmpeg pass */
+	private final List<List<DLNAMediaSubtitle>> extractions = new CopyOnWriteArrayList<>();
+	private PmsConfiguration configuration;
+	private int previousCacheSize;
+	private int trackSize = 100;
+
+	@BeforeClass
+	public static void setUpClass() throws ConfigurationException, InterruptedException {
+		// Silence all log messages from the code that is being tested
+		LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+		context.getLogger(Logger.ROOT_LOGGER_NAME).setLevel(Level.WARN);
+		PMS.get();
+		PMS.setConfiguration(new PmsConfiguration(false));
+	}
+
+	@Before
+	public void setUp() throws IllegalAccessException {
+		// The cache keeps the configuration it was first loaded with
+		configuration = (PmsConfiguration) FieldUtils.readStaticField(EmbeddedSubtitlesCache.class, "CONFIGURATION", true);
+		previousCacheSize = configuration.getSubtitlesCacheSize();
+		EmbeddedSubtitlesCache.setExtractor((fileName, media, tracks, subtitleType, outputFiles) -> {
+			extractions.add(new ArrayList<>(tracks));
+			for (int i = 0; i < tracks.size(); i++) {
+				try {
+					FileUtils.writeStringToFile(outputFiles.get(i), String.format("%0" + trackSize + "d", tracks.get(i).getId()), StandardCharsets.US_ASCII);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+			return true;
+		});
+	}
+
+	@After
+	public void tearDown() {
+		configuration.setSubtitlesCacheSize(previousCacheSize);
+	}
+
+	private static DLNAMediaSubtitle createTrack(int id) {
+		DLNAMediaSubtitle track = new DLNAMediaSubtitle();
+		track.setId(id);
+		track.setType(SubtitleType.SUBRIP);
+		return track;
+	}
+
+	private DLNAMediaInfo createMedia(DLNAMediaSubtitle... tracks) {
+		DLNAMediaInfo media = new DLNAMediaInfo();
+		media.setVideoTrackCount(1);
+		media.setSubtitlesTracks(new ArrayList<>(Arrays.asList(tracks)));
+		return media;
+	}
+
+	private File extract(File video, DLNAMediaInfo media, DLNAMediaSubtitle track) {
+		OutputParams params = new OutputParams(configuration);
+		params.setSid(track);
+		return EmbeddedSubtitlesCache.getOrExtract(video.getAbsolutePath(), media, params, configuration, SubtitleType.ASS);
+	}
+
+	@Test
+	public void testBackgroundExtraction() throws Exception {
+		File video = temporaryFolder.newFile("background.mkv");
+		FileUtils.writeStringToFile(video, "not really a video", StandardCharsets.US_ASCII);
+		DLNAMediaSubtitle track1 = createTrack(1);
+		DLNAMediaSubtitle track2 = createTrack(2);
+		DLNAMediaInfo media = createMedia(track1, track2);
+		RealFile resource = new RealFile(video);
+		resource.setMedia(media);
+
+		EmbeddedSubtitlesCache.extractInBackground(resource);
+		String key1 = EmbeddedSubtitlesCache.getCacheKey(video, track1, SubtitleType.ASS);
+		String key2 = EmbeddedSubtitlesCache.getCacheKey(video, track2, SubtitleType.ASS);
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while ((EmbeddedSubtitlesCache.get(key1) == null || EmbeddedSubtitlesCache.get(key2) == null) && System.nanoTime() < deadline) {
+			Thread.sleep(10);
+		}
+
+		// Both tracks are extracted by a single pass over the file
+		assertThat(extractions).hasSize(1);
+		assertThat(extractions.get(0)).containsExactly(track1, track2);
+		assertThat(FileUtils.readFileToString(EmbeddedSubtitlesCache.get(key2), StandardCharsets.US_ASCII)).endsWith("2");
+
+		// Cached tracks are neither queued again nor extracted when played
+		EmbeddedSubtitlesCache.extractInBackground(resource);
+		File played = extract(video, media, track1);
+		assertThat(played).isEqualTo(EmbeddedSubtitlesCache.get(key1));
+		assertThat(extractions).hasSize(1);
+
+		FileUtils.deleteQuietly(played);
+		FileUtils.deleteQuietly(EmbeddedSubtitlesCache.get(key2));
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEviction() throws Exception {
+		configuration.setSubtitlesCacheSize(1);
+		trackSize = 400 * 1024;
+		List<File> videos = new ArrayList<>();
+		List<String> keys = new ArrayList<>();
+		DLNAMediaSubtitle track = createTrack(1);
+		DLNAMediaInfo media = createMedia(track);
+		for (int i = 0; i < 3; i++) {
+			File video = temporaryFolder.newFile("video" + i + ".mkv");
+			FileUtils.writeStringToFile(video, "not really a video " + i, StandardCharsets.US_ASCII);
+			videos.add(video);
+			keys.add(EmbeddedSubtitlesCache.getCacheKey(video, track, SubtitleType.ASS));
+		}
+
+		File first = extract(videos.get(0), media, track);
+		File second = extract(videos.get(1), media, track);
+		assertThat(first).exists();
+		assertThat(second).exists();
+
+		// Using the first entry makes the second the least recently used
+		assertThat(EmbeddedSubtitlesCache.get(keys.get(0))).isEqualTo(first);
+		File third = extract(videos.get(2), media, track);
+
+		assertThat(EmbeddedSubtitlesCache.get(keys.get(1))).isNull();
+		assertThat(second).doesNotExist();
+		assertThat(EmbeddedSubtitlesCache.get(keys.get(0))).isEqualTo(first);
+		assertThat(EmbeddedSubtitlesCache.get(keys.get(2))).isEqualTo(third);
+		assertThat(extractions).hasSize(3);
+		for (List<DLNAMediaSubtitle> extraction : extractions) {
+			assertThat(extraction).isEqualTo(Collections.singletonList(track));
+		}
+
+		FileUtils.deleteQuietly(first);
+		FileUtils.deleteQuietly(third);
+	}
+
+	@Test
+	public void testCacheKey() throws Exception {
+		File video = temporaryFolder.newFile("video.mkv");
+		FileUtils.writeStringToFile(video, "not really a video", StandardCharsets.US_ASCII);
+		DLNAMediaSubtitle track1 = new DLNAMediaSubtitle();
+		track1.setId(1);
+		DLNAMediaSubtitle track2 = new DLNAMediaSubtitle();
+		track2.setId(2);
+
+		String key = EmbeddedSubtitlesCache.getCacheKey(video, track1, SubtitleType.ASS);
+		assertThat(key).isNotNull().endsWith("_ID1_ass");
+		assertThat(EmbeddedSubtitlesCache.getCacheKey(video, track1, SubtitleType.ASS)).isEqualTo(key);
+		assertThat(EmbeddedSubtitlesCache.getCacheKey(video, track2, SubtitleType.ASS)).isNotEqualTo(key);
+		assertThat(EmbeddedSubtitlesCache.getCacheKey(video, track1, SubtitleType.WEBVTT)).isNotEqualTo(key);
+
+		// A modified file must not be served stale subtitles
+		FileUtils.writeStringToFile(video, "a different video", StandardCharsets.US_ASCII);
+		assertThat(video.setLastModified(video.lastModified() - 10000)).isTrue();
+		assertThat(EmbeddedSubtitlesCache.getCacheKey(video, track1, SubtitleType.ASS)).isNotEqualTo(key);
+	}
+
+	@Test
+	public void testCacheKeyWithoutRealFile() {
+		DLNAMediaSubtitle track = new DLNAMediaSubtitle();
+		track.setId(1);
+		assertThat(EmbeddedSubtitlesCache.getCacheKey(new File("http://example.com/stream"), track, SubtitleType.ASS)).isNull();
+		assertThat(EmbeddedSubtitlesCache.getCacheKey(null, track, SubtitleType.ASS)).isNull();
+	}
+
+	@Test
+	public void testMissingEntry() {
+		assertThat(EmbeddedSubtitlesCache.get("0000_ID1_ass")).isNull();
+		assertThat(EmbeddedSubtitlesCache.get(null)).isNull();
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.zip.CRC32;
+import static org.assertj.core.api.Assertions.*;
+import org.junit.Test;
+
+public class H264AnnexBInputStreamTest {
+
+	private static final byte[] HEADER = {0, 0, 0, 1, 0x67, 0x64, 0x00, 0x29, 0, 0, 0, 1, 0x68, (byte) 0xEB, (byte) 0xE3, 0, 0, 0, 1};
+
+	/**
+	 * Creates length prefixed NAL units where every tenth one is an IDR
+	 * slice that gets the header inserted in front of it.
+	 */
+	static byte[] createAvcStream(long seed, int nalUnits, int maxNalSize) {
+		Random random = new Random(seed);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (int i = 0; i < nalUnits; i++) {
+			byte[] nal = new byte[3 + random.nextInt(maxNalSize)];
+			random.nextBytes(nal);
+			if (i % 10 == 0) {
+				nal[0] = 0x65;
+				nal[1] = (byte) 0x88;
+			} else {
+				nal[0] = 0x41;
+				nal[1] = 0x02;
+			}
+			out.write(nal.length >> 24);
+			out.write(nal.length >> 16);
+			out.write(nal.length >> 8);
+			out.write(nal.length);
+			out.write(nal, 0, nal.length);
+		}
+		return out.toByteArray();
+	}
+
+	static byte[] readAll(InputStream in, int bufferSize) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[bufferSize];
+		int n;
+		while ((n = in.read(buffer)) > -1) {
+			out.write(buffer, 0, n);
+		}
+		return out.toByteArray();
+	}
+
+	static String checksum(byte[] data) {
+		CRC32 crc = new CRC32();
+		crc.update(data);
+		return data.length + ":" + Long.toHexString(crc.getValue());
+	}
+
+	/**
+	 * The checksums were taken from the output of the implementation that
+	 * allocated an array for every NAL unit.
+	 */
+	@Test
+	public void testOutputMatchesPreviousImplementation() throws IOException {
+		byte[] source = createAvcStream(1, 200, 50000);
+		try (InputStream in = new H264AnnexBInputStream(new ByteArrayInputStream(source), HEADER)) {
+			assertThat(checksum(readAll(in, 512 * 1024))).isEqualTo("5014278:e52bab8a");
+		}
+		try (InputStream in = new H264AnnexBInputStream(new ByteArrayInputStream(source), HEADER)) {
+			assertThat(checksum(readAll(in, 4096))).isEqualTo("5014278:e52bab8a");
+		}
+		// A truncated last NAL unit is padded with zeros
+		byte[] truncated = new byte[source.length - 1000];
+		System.arraycopy(source, 0, truncated, 0, truncated.length);
+		try (InputStream in = new H264AnnexBInputStream(new ByteArrayInputStream(truncated), HEADER)) {
+			assertThat(checksum(readAll(in, 512 * 1024))).isEqualTo("5014278:356d957f");
+		}
+	}
+}
@@ -0,0 +1,293 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.util;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import net.pms.PMS;
+import net.pms.configuration.PmsConfiguration;
+import net.pms.dlna.DLNAMediaInfo;
+import net.pms.dlna.InputFile;
+import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.io.FileUtils;
+import static org.assertj.core.api.Assertions.*;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class H264ParameterSetsTest {
+
+	private static final byte[] PPS = {0x68, (byte) 0xEB, (byte) 0xE3, (byte) 0xCB, 0x22, (byte) 0xC0};
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	@BeforeClass
+	public static void setUpClass() throws ConfigurationException, InterruptedException {
+		// Silence all log messages from the code that is being tested
+		LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+		context.getLogger(Logger.ROOT_LOGGER_NAME).setLevel(Level.WARN);
+		PMS.get();
+		PMS.setConfiguration(new PmsConfiguration(false));
+	}
+
+	/**
+	 * Writes the bits of a sequence parameter set, with exp-Golomb codes.
+	 */
+	private static class BitWriter {
+		private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		private int current;
+		private int count;
+
+		BitWriter bits(int value, int length) {
+			for (int i = length - 1; i >= 0; i--) {
+				current = (current << 1) | ((value >> i) & 1);
+				if (++count == 8) {
+					out.write(current);
+					current = 0;
+					count = 0;
+				}
+			}
+			return this;
+		}
+
+		BitWriter ue(int value) {
+			int length = 32 - Integer.numberOfLeadingZeros(value + 1);
+			bits(0, length - 1);
+			return bits(value + 1, length);
+		}
+
+		BitWriter se(int value) {
+			return ue(value > 0 ? 2 * value - 1 : -2 * value);
+		}
+
+		byte[] toByteArray() {
+			// rbsp_stop_one_bit and alignment
+			bits(1, 1);
+			while (count != 0) {
+				bits(0, 1);
+			}
+			return out.toByteArray();
+		}
+	}
+
+	private static byte[] highProfileSps(int level, int refFrames) {
+		BitWriter writer = new BitWriter()
+			.bits(0x67, 8).bits(100, 8).bits(0, 8).bits(level, 8)
+			.ue(0) // seq_parameter_set_id
+			.ue(1) // chroma_format_idc
+			.ue(0).ue(0).bits(0, 1)
+			.bits(1, 1); // seq_scaling_matrix_present_flag
+		// One explicit 4x4 list, the others absent
+		writer.bits(1, 1);
+		for (int i = 0; i < 16; i++) {
+			writer.se(i == 0 ? 8 : 1);
+		}
+		writer.bits(0, 7);
+		return writer
+			.ue(0) // log2_max_frame_num_minus4
+			.ue(1) // pic_order_cnt_type
+			.bits(0, 1).se(-2).se(3).ue(2).se(1).se(-1)
+			.ue(refFrames)
+			.bits(0, 1).ue(119).ue(67).bits(1, 1)
+			.toByteArray();
+	}
+
+	private static byte[] avcC(byte[] sps) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(1);
+		out.write(sps[1]);
+		out.write(sps[2]);
+		out.write(sps[3]);
+		out.write(0xFF);
+		out.write(0xE1);
+		out.write(sps.length >> 8);
+		out.write(sps.length);
+		out.write(sps, 0, sps.length);
+		out.write(1);
+		out.write(0);
+		out.write(PPS.length);
+		out.write(PPS, 0, PPS.length);
+		return out.toByteArray();
+	}
+
+	private static byte[] box(String type, byte[]... children) {
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		for (byte[] child : children) {
+			content.write(child, 0, child.length);
+		}
+		int size = content.size() + 8;
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write(new byte[] {(byte) (size >> 24), (byte) (size >> 16), (byte) (size >> 8), (byte) size}, 0, 4);
+		out.write(type.getBytes(StandardCharsets.US_ASCII), 0, 4);
+		out.write(content.toByteArray(), 0, content.size());
+		return out.toByteArray();
+	}
+
+	private static byte[] mp4(byte[] avcC) {
+		byte[] stsd = box("stsd", new byte[] {0, 0, 0, 0, 0, 0, 0, 1}, box("avc1", new byte[78], box("avcC", avcC)));
+		// An mdat with a 64 bit size before the moov
+		byte[] mdat = {0, 0, 0, 1, 'm', 'd', 'a', 't', 0, 0, 0, 0, 0, 0, 0, 20, 1, 2, 3, 4};
+		return concat(
+			box("ftyp", "isom".getBytes(StandardCharsets.US_ASCII)),
+			mdat,
+			box("moov",
+				box("mvhd", new byte[100]),
+				box("trak", box("mdia", box("minf", box("stbl", box("stsd", new byte[] {0, 0, 0, 0, 0, 0, 0, 1, 0, 0, 0, 16, 'm', 'p', '4', 'a', 0, 0, 0, 0, 0, 0, 0, 0}))))),
+				box("trak", box("tkhd", new byte[84]), box("mdia", box("minf", box("stbl", stsd)))))
+		);
+	}
+
+	private static byte[] element(int id, byte[]... children) {
+		byte[] content = concat(children);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (int shift = 24; shift >= 0; shift -= 8) {
+			if ((id >>> shift) != 0) {
+				out.write(id >>> shift);
+			}
+		}
+		// 4 byte size
+		out.write(0x10 | (content.length >> 24));
+		out.write(content.length >> 16);
+		out.write(content.length >> 8);
+		out.write(content.length);
+		out.write(content, 0, content.length);
+		return out.toByteArray();
+	}
+
+	private static byte[] matroska(byte[] avcC) {
+		byte[] audio = element(0xAE, element(0xD7, new byte[] {1}), element(0x86, "A_AAC".getBytes(StandardCharsets.US_ASCII)), element(0x63A2, new byte[] {0x12, 0x10}));
+		byte[] video = element(0xAE, element(0xD7, new byte[] {2}), element(0x86, "V_MPEG4/ISO/AVC".getBytes(StandardCharsets.US_ASCII)), element(0x63A2, avcC));
+		return concat(
+			element(0x1A45DFA3, element(0x4282, "matroska".getBytes(StandardCharsets.US_ASCII))),
+			// Segment of unknown size
+			new byte[] {0x18, 0x53, (byte) 0x80, 0x67, 0x01, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF},
+			element(0x114D9B74, new byte[30]),
+			element(0x1654AE6B, audio, video),
+			element(0x1F43B675, new byte[64])
+		);
+	}
+
+	private static byte[] concat(byte[]... arrays) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (byte[] array : arrays) {
+			out.write(array, 0, array.length);
+		}
+		return out.toByteArray();
+	}
+
+	private File write(String name, byte[] data) throws IOException {
+		File file = temporaryFolder.newFile(name);
+		FileUtils.writeByteArrayToFile(file, data);
+		return file;
+	}
+
+	@Test
+	public void testFromAvcC() throws ParseException {
+		byte[] sps = highProfileSps(41, 5);
+		H264ParameterSets parameterSets = H264ParameterSets.fromAvcC(avcC(sps));
+		assertThat(parameterSets.getProfileIdc()).isEqualTo(100);
+		assertThat(parameterSets.getLevelIdc()).isEqualTo(41);
+		assertThat(parameterSets.getLevel()).isEqualTo("4.1");
+		assertThat(parameterSets.getMaxNumRefFrames()).isEqualTo(5);
+		assertThat(parameterSets.getAnnexBHeader()).isEqualTo(concat(
+			new byte[] {0, 0, 0, 1}, sps, new byte[] {0, 0, 0, 1}, PPS, new byte[] {0, 0, 0, 1}
+		));
+
+		assertThat(H264ParameterSets.fromAvcC(avcC(highProfileSps(50, 16))).getLevel()).isEqualTo("5");
+		assertThatThrownBy(() -> H264ParameterSets.fromAvcC(new byte[] {1, 100, 0, 41, -1, -31, 0, 60, 0x67}))
+			.isInstanceOf(ParseException.class);
+	}
+
+	@Test
+	public void testEmulationPrevention() throws ParseException {
+		// A long exp-Golomb code makes zero bytes that need emulation prevention
+		byte[] sps = escape(new BitWriter()
+			.bits(0x67, 8).bits(66, 8).bits(0, 8).bits(30, 8)
+			.ue(0).ue(0)
+			.ue(1).bits(0, 1).se(-30000000).se(0).ue(0)
+			.ue(13)
+			.toByteArray());
+		H264ParameterSets parameterSets = H264ParameterSets.fromAvcC(avcC(sps));
+		assertThat(parameterSets.getProfileIdc()).isEqualTo(66);
+		assertThat(parameterSets.getLevelIdc()).isEqualTo(30);
+		assertThat(parameterSets.getMaxNumRefFrames()).isEqualTo(13);
+	}
+
+	private static byte[] escape(byte[] rbsp) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		int zeros = 0;
+		for (byte b : rbsp) {
+			if (zeros == 2 && (b & 0xFF) <= 3) {
+				out.write(3);
+				zeros = 0;
+			}
+			zeros = b == 0 ? zeros + 1 : 0;
+			out.write(b);
+		}
+		assertThat(out.size()).as("emulation prevention bytes").isGreaterThan(rbsp.length);
+		return out.toByteArray();
+	}
+
+	@Test
+	public void testParseContainers() throws IOException {
+		byte[] avcC = avcC(highProfileSps(41, 4));
+		H264ParameterSets mp4 = H264ParameterSets.parse(write("video.mp4", mp4(avcC)));
+		assertThat(mp4).isNotNull();
+		assertThat(mp4.getMaxNumRefFrames()).isEqualTo(4);
+
+		H264ParameterSets mkv = H264ParameterSets.parse(write("video.mkv", matroska(avcC)));
+		assertThat(mkv).isNotNull();
+		assertThat(mkv.getAnnexBHeader()).isEqualTo(mp4.getAnnexBHeader());
+
+		assertThat(H264ParameterSets.parse(write("empty.mp4", new byte[0]))).isNull();
+		assertThat(H264ParameterSets.parse(write("audio.mkv", matroska(new byte[0])))).isNull();
+		assertThat(H264ParameterSets.parse(write("garbage.mp4", "not really a video file".getBytes(StandardCharsets.US_ASCII)))).isNull();
+	}
+
+	@Test
+	public void testVideoWithinH264LevelLimits() throws IOException {
+		InputFile tooManyRefFrames = new InputFile();
+		tooManyRefFrames.setFile(write("refs.mp4", mp4(avcC(highProfileSps(41, 5)))));
+		assertThat(createMedia().isVideoWithinH264LevelLimits(tooManyRefFrames, null)).isFalse();
+
+		InputFile withinLimits = new InputFile();
+		withinLimits.setFile(write("refs.mkv", matroska(avcC(highProfileSps(41, 4)))));
+		DLNAMediaInfo media = createMedia();
+		media.setContainer("mkv");
+		assertThat(media.isVideoWithinH264LevelLimits(withinLimits, null)).isTrue();
+		assertThat(media.getAvcLevel()).isEqualTo("4.1");
+		assertThat(media.getReferenceFrameCount()).isEqualTo((byte) 4);
+		assertThat(media.getH264AnnexB()).isNotEmpty();
+	}
+
+	private static DLNAMediaInfo createMedia() {
+		DLNAMediaInfo media = new DLNAMediaInfo();
+		media.setCodecV("h264");
+		media.setContainer("mp4");
+		media.setWidth(1920);
+		media.setHeight(1080);
+		return media;
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.util;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.assertj.core.api.Assertions.*;
+import org.junit.After;
+import org.junit.Test;
+
+public class MetadataLookupExecutorTest {
+
+	private MetadataLookupExecutor executor;
+
+	@After
+	public void tearDown() {
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testConcurrencyIsBounded() throws InterruptedException {
+		executor = new MetadataLookupExecutor(3, "Test Lookup %d");
+		AtomicInteger running = new AtomicInteger();
+		AtomicInteger maxRunning = new AtomicInteger();
+		CountDownLatch done = new CountDownLatch(20);
+		for (int i = 0; i < 20; i++) {
+			executor.execute("file" + i, null, () -> {
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				try {
+					Thread.sleep(20);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				running.decrementAndGet();
+				done.countDown();
+			});
+		}
+		assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(maxRunning.get()).isBetween(2, 3);
+	}
+
+	@Test
+	public void testDuplicatesAreDropped() throws InterruptedException {
+		executor = new MetadataLookupExecutor(1, "Test Lookup %d");
+		CountDownLatch blocked = new CountDownLatch(1);
+		AtomicInteger runs = new AtomicInteger();
+		executor.execute("blocker", null, () -> await(blocked));
+		assertThat(executor.execute("file", null, runs::incrementAndGet)).isTrue();
+		assertThat(executor.execute("file", null, runs::incrementAndGet)).isFalse();
+		assertThat(executor.getPendingCount()).isEqualTo(2);
+		blocked.countDown();
+		waitForIdle();
+		assertThat(runs.get()).isEqualTo(1);
+
+		// A finished lookup can be queued again
+		assertThat(executor.execute("file", null, runs::incrementAndGet)).isTrue();
+		waitForIdle();
+		assertThat(runs.get()).isEqualTo(2);
+	}
+
+	@Test
+	public void testBrowsedFolderRunsFirst() throws InterruptedException {
+		executor = new MetadataLookupExecutor(1, "Test Lookup %d");
+		File scanned = new File("scanned");
+		File browsed = new File("browsed");
+		List<String> order = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch blocked = new CountDownLatch(1);
+		executor.execute("blocker", null, () -> await(blocked));
+		executor.execute("scanned1", scanned, () -> order.add("scanned1"));
+		executor.execute("browsed1", browsed, () -> order.add("browsed1"));
+		executor.execute("scanned2", scanned, () -> order.add("scanned2"));
+
+		// Both the queued and the later lookups of the folder get priority
+		executor.prioritize(browsed);
+		executor.execute("browsed2", browsed, () -> order.add("browsed2"));
+		blocked.countDown();
+		waitForIdle();
+		assertThat(order).containsExactly("browsed1", "browsed2", "scanned1", "scanned2");
+	}
+
+	@Test
+	public void testLatestBrowseRunsFirst() throws InterruptedException {
+		executor = new MetadataLookupExecutor(1, "Test Lookup %d");
+		File first = new File("first");
+		File second = new File("second");
+		List<String> order = Collections.synchronizedList(new ArrayList<>());
+		CountDownLatch blocked = new CountDownLatch(1);
+		executor.execute("blocker", null, () -> await(blocked));
+		for (int i = 1; i <= 2; i++) {
+			String scanned = "scanned" + i;
+			executor.execute(scanned, new File("scanned"), () -> order.add(scanned));
+			String firstLookup = "first" + i;
+			executor.execute(firstLookup, first, () -> order.add(firstLookup));
+			String secondLookup = "second" + i;
+			executor.execute(secondLookup, second, () -> order.add(secondLookup));
+		}
+
+		// Going back to a folder gives it priority again
+		executor.prioritize(first);
+		executor.prioritize(second);
+		executor.prioritize(first);
+		blocked.countDown();
+		waitForIdle();
+		assertThat(order).containsExactly("first1", "first2", "second1", "second2", "scanned1", "scanned2");
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void waitForIdle() throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000;
+		while (executor.getPendingCount() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertThat(executor.getPendingCount()).isZero();
+	}
+}
@@ -0,0 +1,254 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.util;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import net.pms.PMS;
+import net.pms.configuration.PmsConfiguration;
+import net.pms.database.MediaDatabase;
+import net.pms.database.MediaTableOpenSubtitles;
+import net.pms.database.MediaTableOpenSubtitles.LookupMethod;
+import net.pms.database.MediaTableOpenSubtitles.OpenSubtitlesHash;
+import net.pms.dlna.RealFile;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import static org.assertj.core.api.Assertions.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class OpenSubtitleTest {
+
+	private static final Pattern METHOD_NAME = Pattern.compile("<methodName>([^<]*)</methodName>");
+	private static final Pattern STRING = Pattern.compile("<string>([0-9a-f]{16})</string>");
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private HttpServer server;
+	private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+	private final Map<String, String[]> titles = new HashMap<>();
+	private final Map<String, String[]> subtitles = new HashMap<>();
+	private volatile boolean searchFails;
+
+	@BeforeClass
+	public static void setUpClass() throws Exception {
+		// Silence all log messages from the code that is being tested
+		LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+		context.getLogger(Logger.ROOT_LOGGER_NAME).setLevel(Level.OFF);
+		PMS.get();
+		PMS.setConfiguration(new PmsConfiguration(false));
+		MediaDatabase.init();
+	}
+
+	@Before
+	public void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/xml-rpc", t -> {
+			String request;
+			try (InputStream is = t.getRequestBody()) {
+				request = IOUtils.toString(is, StandardCharsets.UTF_8);
+			}
+			Matcher matcher = METHOD_NAME.matcher(request);
+			String method = matcher.find() ? matcher.group(1) : "";
+			requests.computeIfAbsent(method, k -> new AtomicInteger()).incrementAndGet();
+			StringBuilder sb = new StringBuilder("<?xml version=\"1.0\"?><methodResponse><params><param><value><struct>");
+			if ("LogIn".equals(method)) {
+				sb.append(member("token", "testtoken"));
+			} else if ("CheckMovieHash2".equals(method)) {
+				sb.append("<member><name>data</name><value><struct>");
+				matcher = STRING.matcher(request);
+				while (matcher.find()) {
+					String[] title = titles.get(matcher.group(1));
+					if (title != null) {
+						sb.append("<member><name>").append(matcher.group(1)).append("</name><value><array><data><value><struct>")
+							.append(member("MovieHash", matcher.group(1)))
+							.append(member("MovieImdbID", title[0]))
+							.append(member("MovieName", title[1]))
+							.append(member("MovieYear", title[2]))
+							.append(member("MovieKind", "movie"))
+							.append("</struct></value></data></array></value></member>");
+					}
+				}
+				sb.append("</struct></value></member>");
+			} else if ("SearchSubtitles".equals(method)) {
+				matcher = STRING.matcher(request);
+				String[] title = matcher.find() ? subtitles.get(matcher.group(1)) : null;
+				if (title != null) {
+					sb.append("<member><name>data</name><value><array><data><value><struct>")
+						.append(member("SubDownloadLink", "http://127.0.0.1/subtitles.srt.gz"))
+						.append(member("SubLanguageID", "eng"))
+						.append(member("SubFormat", "srt"))
+						.append(member("IDMovieImdb", title[0]))
+						.append(member("MovieName", title[1]))
+						.append(member("MovieYear", title[2]))
+						.append(member("MovieKind", "movie"))
+						.append("</struct></value></data></array></value></member>");
+				}
+			}
+			sb.append(member("status", searchFails && "SearchSubtitles".equals(method) ? "503 Service Unavailable" : "200 OK"));
+			sb.append("</struct></value></param></params></methodResponse>");
+			byte[] response = sb.toString().getBytes(StandardCharsets.UTF_8);
+			t.getResponseHeaders().set("Content-Type", "text/xml");
+			t.sendResponseHeaders(200, response.length);
+			try (OutputStream os = t.getResponseBody()) {
+				os.write(response);
+			}
+		});
+		server.start();
+		OpenSubtitle.setApiUrl("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/xml-rpc");
+	}
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+		OpenSubtitle.setApiUrl("http://api.opensubtitles.org/xml-rpc");
+	}
+
+	private static String member(String name, String value) {
+		return "<member><name>" + name + "</name><value><string>" + value + "</string></value></member>";
+	}
+
+	private int getRequestCount(String method) {
+		AtomicInteger count = requests.get(method);
+		return count == null ? 0 : count.get();
+	}
+
+	private File createVideo(String name, int seed) throws IOException {
+		byte[] data = new byte[200000];
+		new Random(seed).nextBytes(data);
+		File file = temporaryFolder.newFile(name);
+		FileUtils.writeByteArrayToFile(file, data);
+		return file;
+	}
+
+	private static OpenSubtitlesHash getStored(File file) throws Exception {
+		try (Connection connection = MediaDatabase.getConnectionIfAvailable()) {
+			return MediaTableOpenSubtitles.get(connection, file.getAbsolutePath(), file.length(), file.lastModified());
+		}
+	}
+
+	@Test
+	public void testBatchedHashLookups() throws Exception {
+		File matrix = createVideo("The Matrix (1999).mkv", 1);
+		File heat = createVideo("Heat (1995).mkv", 2);
+		File unknown = createVideo("Unknown Film.mkv", 3);
+		titles.put(OpenSubtitle.computeHash(matrix.toPath()), new String[] {"0133093", "The Matrix", "1999"});
+		titles.put(OpenSubtitle.computeHash(heat.toPath()), new String[] {"0113277", "Heat", "1995"});
+
+		OpenSubtitle.queueHashLookup(matrix);
+		OpenSubtitle.queueHashLookup(heat);
+		OpenSubtitle.queueHashLookup(unknown);
+		OpenSubtitle.lookupQueuedHashes();
+
+		// One request covers all the files, and misses are stored too
+		assertThat(getRequestCount("CheckMovieHash2")).isEqualTo(1);
+		assertThat(getStored(matrix).getImdbId()).isEqualTo("0133093");
+		assertThat(getStored(heat).getImdbId()).isEqualTo("0113277");
+		assertThat(getStored(unknown).getImdbId()).isNull();
+		assertThat(getStored(unknown).isLookupValid()).isTrue();
+		assertThat(getStored(matrix).getHash()).isEqualTo(OpenSubtitle.computeHash(matrix.toPath()));
+
+		assertThat(getStored(matrix).getLookupMethod()).isEqualTo(LookupMethod.CHECK_MOVIE_HASH2);
+
+		// Scanned files are not looked up again
+		OpenSubtitle.queueHashLookup(matrix);
+		OpenSubtitle.queueHashLookup(unknown);
+		OpenSubtitle.lookupQueuedHashes();
+		assertThat(getRequestCount("CheckMovieHash2")).isEqualTo(1);
+		assertThat(getRequestCount("SearchSubtitles")).isZero();
+
+		// SearchSubtitles, which also matches the file size, is still queried
+		// when the IMDB ID is needed, and falls back to the stored outcome
+		String hash = OpenSubtitle.getHash(heat.toPath());
+		assertThat(OpenSubtitle.findImdbIdByFileHash(new RealFile(heat), hash, heat.length(), new FileNamePrettifier(heat)))
+			.isEqualTo("0113277");
+		assertThat(getRequestCount("SearchSubtitles")).isEqualTo(1);
+		assertThat(getRequestCount("CheckMovieHash2")).isEqualTo(1);
+		assertThat(getStored(heat).getLookupMethod()).isEqualTo(LookupMethod.SEARCH_SUBTITLES);
+
+		// The full lookup is stored
+		assertThat(OpenSubtitle.findImdbIdByFileHash(new RealFile(heat), hash, heat.length(), new FileNamePrettifier(heat)))
+			.isEqualTo("0113277");
+		assertThat(getRequestCount("SearchSubtitles")).isEqualTo(1);
+
+		// A SearchSubtitles match wins over the scanned CheckMovieHash2 one
+		hash = OpenSubtitle.getHash(unknown.toPath());
+		subtitles.put(hash, new String[] {"0468569", "Unknown Film", "2008"});
+		assertThat(OpenSubtitle.findImdbIdByFileHash(new RealFile(unknown), hash, unknown.length(), new FileNamePrettifier(unknown)))
+			.isEqualTo("0468569");
+		assertThat(getStored(unknown).getImdbId()).isEqualTo("0468569");
+		assertThat(getRequestCount("SearchSubtitles")).isEqualTo(2);
+		assertThat(getRequestCount("CheckMovieHash2")).isEqualTo(1);
+
+		// A changed file is hashed and looked up again
+		FileUtils.writeByteArrayToFile(matrix, new byte[1000], true);
+		assertThat(getStored(matrix)).isNull();
+		OpenSubtitle.queueHashLookup(matrix);
+		OpenSubtitle.lookupQueuedHashes();
+		assertThat(getRequestCount("CheckMovieHash2")).isEqualTo(2);
+		assertThat(getStored(matrix).getImdbId()).isNull();
+		assertThat(getRequestCount("LogIn")).isEqualTo(1);
+	}
+
+	@Test
+	public void testFailedSearchKeepsScannedLookup() throws Exception {
+		File alien = createVideo("Alien (1979).mkv", 4);
+		String hash = OpenSubtitle.computeHash(alien.toPath());
+		titles.put(hash, new String[] {"0078748", "Alien", "1979"});
+		OpenSubtitle.queueHashLookup(alien);
+		OpenSubtitle.lookupQueuedHashes();
+		assertThat(getStored(alien).getLookupMethod()).isEqualTo(LookupMethod.CHECK_MOVIE_HASH2);
+
+		// A failed SearchSubtitles query falls back to the scanned outcome
+		// without storing it as a full lookup
+		searchFails = true;
+		assertThat(OpenSubtitle.findImdbIdByFileHash(new RealFile(alien), hash, alien.length(), new FileNamePrettifier(alien)))
+			.isEqualTo("0078748");
+		assertThat(getRequestCount("SearchSubtitles")).isEqualTo(1);
+		assertThat(getStored(alien).getLookupMethod()).isEqualTo(LookupMethod.CHECK_MOVIE_HASH2);
+
+		// So SearchSubtitles is queried again
+		searchFails = false;
+		assertThat(OpenSubtitle.findImdbIdByFileHash(new RealFile(alien), hash, alien.length(), new FileNamePrettifier(alien)))
+			.isEqualTo("0078748");
+		assertThat(getRequestCount("SearchSubtitles")).isEqualTo(2);
+		assertThat(getStored(alien).getLookupMethod()).isEqualTo(LookupMethod.SEARCH_SUBTITLES);
+	}
+}
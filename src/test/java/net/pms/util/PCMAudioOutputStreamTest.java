@@ -0,0 +1,140 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import static net.pms.util.H264AnnexBInputStreamTest.checksum;
+import static org.assertj.core.api.Assertions.*;
+import org.junit.Test;
+
+public class PCMAudioOutputStreamTest {
+
+	/**
+	 * Writes the data in chunks of random, sometimes odd, lengths from a
+	 * larger array, like the pipes reading a transcoder's output do.
+	 */
+	private static void writeChunks(OutputStream out, byte[] data, long seed) throws IOException {
+		Random random = new Random(seed);
+		byte[] chunk = new byte[70000];
+		int pos = 0;
+		while (pos < data.length) {
+			int len = Math.min(1 + random.nextInt(65536), data.length - pos);
+			System.arraycopy(data, pos, chunk, 0, len);
+			out.write(chunk, 0, len);
+			pos += len;
+		}
+		out.close();
+	}
+
+	private static byte[] createAc3Stream(long seed, int frames) {
+		Random random = new Random(seed);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] frame = new byte[1536];
+		for (int i = 0; i < frames; i++) {
+			random.nextBytes(frame);
+			for (int j = 2; j < frame.length; j++) {
+				if (frame[j] == 11) {
+					frame[j] = 12;
+				}
+			}
+			frame[0] = 11;
+			frame[1] = 119;
+			out.write(frame, 0, frame.length);
+		}
+		return out.toByteArray();
+	}
+
+	private static byte[] createDtsStream(long seed, int frames) {
+		Random random = new Random(seed);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		int framesize = 1024;
+		int fsize = framesize - 1;
+		byte[] frame = new byte[framesize];
+		for (int i = 0; i < frames; i++) {
+			random.nextBytes(frame);
+			for (int j = 13; j < frame.length; j++) {
+				if (frame[j] == 127 || frame[j] == 100) {
+					frame[j] = 0;
+				}
+			}
+			frame[0] = 127;
+			frame[1] = -2;
+			frame[2] = -128;
+			frame[3] = 1;
+			// 16 blocks of 32 samples
+			frame[4] = 0;
+			frame[5] = (byte) ((15 << 2) | ((fsize >> 12) & 3));
+			frame[6] = (byte) (fsize >> 4);
+			frame[7] = (byte) ((fsize & 0x0F) << 4);
+			// 48 kHz
+			frame[8] = 13 << 2;
+			out.write(frame, 0, frame.length);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * The checksums in these tests were taken from the output of the
+	 * implementation that allocated its buffers for every stream and chunk.
+	 */
+	@Test
+	public void testPcmOutputMatchesPreviousImplementation() throws IOException {
+		byte[] pcm = new byte[3000000];
+		new Random(2).nextBytes(pcm);
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		writeChunks(new PCMAudioOutputStream(out, 6, 48000, 16), pcm, 3);
+		assertThat(checksum(out.toByteArray())).isEqualTo("3004318:23b68fcc");
+	}
+
+	@Test
+	public void testAc3OutputMatchesPreviousImplementation() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		IEC61937AudioOutputStream iec = new IEC61937AudioOutputStream(new PCMAudioOutputStream(out, 2, 48000, 16));
+		writeChunks(iec, createAc3Stream(4, 500), 5);
+		assertThat(iec.isAc3()).isTrue();
+		assertThat(checksum(out.toByteArray())).isEqualTo("3066292:b2a1f9df");
+	}
+
+	@Test
+	public void testDtsOutputMatchesPreviousImplementation() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		IEC61937AudioOutputStream iec = new IEC61937AudioOutputStream(new PCMAudioOutputStream(out, 2, 48000, 16));
+		writeChunks(iec, createDtsStream(6, 500), 7);
+		assertThat(iec.isDts()).isTrue();
+		assertThat(checksum(out.toByteArray())).isEqualTo("1020044:d04e6aa2");
+	}
+
+	@Test
+	public void testBufferIsReleasedOnClose() throws IOException {
+		PCMAudioOutputStream pcm = new PCMAudioOutputStream(new ByteArrayOutputStream(), 2, 48000, 16);
+		int pooled = ByteArrayPool.getPooled(600000);
+		pcm.close();
+		assertThat(ByteArrayPool.getPooled(600000)).isEqualTo(pooled + 1);
+		// Closing twice mustn't release the buffer twice
+		pcm.close();
+		assertThat(ByteArrayPool.getPooled(600000)).isEqualTo(pooled + 1);
+		assertThatThrownBy(() -> pcm.write(new byte[4], 0, 4)).isInstanceOf(IOException.class);
+
+		byte[] reused = ByteArrayPool.acquire(600000);
+		assertThat(ByteArrayPool.getPooled(600000)).isEqualTo(pooled);
+		assertThat(reused).containsOnly(0);
+		ByteArrayPool.release(reused);
+	}
+}
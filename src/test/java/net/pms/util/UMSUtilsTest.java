@@ -2,16 +2,29 @@ package net.pms.util;
 
 import ch.qos.logback.classic.Level;
 import ch.qos.logback.classic.LoggerContext;
+import java.io.File;
+import java.io.IOException;
+import java.text.Collator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 import net.pms.PMS;
 import net.pms.configuration.PmsConfiguration;
 import org.apache.commons.configuration.ConfigurationException;
 import static org.assertj.core.api.Assertions.*;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class UMSUtilsTest {
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
 	/**
 	 * Set up testing conditions before running the tests.
 	 * @throws ConfigurationException
@@ -26,6 +39,59 @@ public class UMSUtilsTest {
 		PMS.setConfiguration(new PmsConfiguration(false));
 	}
 
+	@Test
+	public void testSortStrings() {
+		Collator collator = Collator.getInstance();
+		collator.setStrength(Collator.PRIMARY);
+		String[] parts = {"a", "B", "the ", "é", "0", "00", "1", "01", "9", "10", "007", " ", "-", "Z", "x"};
+		Random random = new Random(42);
+		ArrayList<String> names = new ArrayList<>();
+		for (int i = 0; i < 3000; i++) {
+			StringBuilder sb = new StringBuilder();
+			int count = 1 + random.nextInt(5);
+			for (int j = 0; j < count; j++) {
+				sb.append(parts[random.nextInt(parts.length)]);
+			}
+			names.add(sb.toString());
+		}
+
+		ArrayList<String> sorted = new ArrayList<>(names);
+		UMSUtils.sort(sorted, UMSUtils.SORT_LOC_NAT);
+		ArrayList<String> expected = new ArrayList<>(names);
+		expected.sort((s1, s2) -> NaturalComparator.compareNatural(collator, FileUtil.renameForSorting(s1), FileUtil.renameForSorting(s2)));
+		assertThat(sorted).isEqualTo(expected);
+
+		sorted = new ArrayList<>(names);
+		UMSUtils.sort(sorted, UMSUtils.SORT_LOC_SENS);
+		expected = new ArrayList<>(names);
+		expected.sort((s1, s2) -> collator.compare(FileUtil.renameForSorting(s1), FileUtil.renameForSorting(s2)));
+		assertThat(sorted).isEqualTo(expected);
+
+		sorted = new ArrayList<>(names);
+		UMSUtils.sort(sorted, UMSUtils.SORT_INS_ASCII);
+		expected = new ArrayList<>(names);
+		expected.sort((s1, s2) -> FileUtil.renameForSorting(s1).compareToIgnoreCase(FileUtil.renameForSorting(s2)));
+		assertThat(sorted).isEqualTo(expected);
+	}
+
+	@Test
+	public void testSortFilesByDate() throws IOException {
+		File oldest = temporaryFolder.newFile("beta.mkv");
+		File middle = temporaryFolder.newFile("gamma.mkv");
+		File newest = temporaryFolder.newFile("alpha.mkv");
+		assertThat(oldest.setLastModified(1000000000000L)).isTrue();
+		assertThat(middle.setLastModified(1100000000000L)).isTrue();
+		assertThat(newest.setLastModified(1200000000000L)).isTrue();
+
+		List<File> files = new ArrayList<>(Arrays.asList(middle, newest, oldest));
+		UMSUtils.sort(files, UMSUtils.SORT_MOD_OLD);
+		assertThat(files).containsExactly(oldest, middle, newest);
+		UMSUtils.sort(files, UMSUtils.SORT_MOD_NEW);
+		assertThat(files).containsExactly(newest, middle, oldest);
+		UMSUtils.sort(files, UMSUtils.SORT_LOC_NAT);
+		assertThat(files).containsExactly(newest, oldest, middle);
+	}
+
 	@Test
 	public void testPlayedDurationStr() throws Exception {
 		assertThat(UMSUtils.playedDurationStr("01:23:45:67.89", "01:23:45:67")).isEqualTo("23:45:67 / 23:45:67");
@@ -0,0 +1,99 @@
+/*
+ * This file is part of Universal Media Server, based on PS3 Media Server.
+ *
+ * This program is a free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; version 2 of the License only.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * this program; if not, write to the Free Software Foundation, Inc., 51
+ * Franklin Street, Fifth Floor, Boston, MA 02110-1301, USA.
+ */
+package net.pms.util.metrics;
+
+import com.google.gson.JsonObject;
+import java.util.Random;
+import static org.assertj.core.api.Assertions.*;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MetricsTest {
+
+	@Before
+	public void setUp() {
+		Metrics.clear();
+	}
+
+	@Test
+	public void testHistogramBuckets() {
+		for (long value : new long[] {0, 1, 15, 16, 17, 31, 32, 1000, 123456789, Long.MAX_VALUE}) {
+			int index = Histogram.bucketIndex(value);
+			assertThat(Histogram.bucketLowerBound(index)).isLessThanOrEqualTo(value);
+			if (index + 1 < (64 - 4) * Histogram.SUB_BUCKETS) {
+				assertThat(Histogram.bucketLowerBound(index + 1)).isGreaterThan(value);
+			}
+		}
+	}
+
+	@Test
+	public void testHistogramQuantiles() {
+		Histogram histogram = new Histogram(1);
+		assertThat(histogram.getQuantile(0.5)).isNaN();
+
+		Random random = new Random(42);
+		for (int i = 0; i < 100000; i++) {
+			histogram.record(1 + random.nextInt(1000000));
+		}
+		assertThat(histogram.getCount()).isEqualTo(100000);
+		assertThat(histogram.getQuantile(0.5)).isCloseTo(500000, withinPercentage(1d / Histogram.SUB_BUCKETS * 100 + 1));
+		assertThat(histogram.getQuantile(0.99)).isCloseTo(990000, withinPercentage(1d / Histogram.SUB_BUCKETS * 100 + 1));
+		assertThat(histogram.getMax()).isLessThanOrEqualTo(1000000);
+		assertThat(histogram.getQuantile(1)).isLessThanOrEqualTo(histogram.getMax());
+	}
+
+	@Test
+	public void testPrometheusExposition() {
+		Metrics.counter("test_requests_total", "Requests").add(3);
+		Metrics.gauge("test_connections", "Connections", "database", "MEDIA", () -> 2);
+		Histogram histogram = Metrics.histograms("test_latency_seconds", "Latency", "renderer").labels("TV \"Living\"");
+		histogram.record(1000000000);
+		assertThat(Metrics.histograms("test_latency_seconds", "Latency", "renderer").labels("TV \"Living\"")).isSameAs(histogram);
+
+		assertThat(Metrics.toPrometheus()).isEqualTo(
+			"# HELP test_connections Connections\n" +
+			"# TYPE test_connections gauge\n" +
+			"test_connections{database=\"MEDIA\"} 2\n" +
+			"# HELP test_latency_seconds Latency\n" +
+			"# TYPE test_latency_seconds summary\n" +
+			"test_latency_seconds{renderer=\"TV \\\"Living\\\"\",quantile=\"0.5\"} 1\n" +
+			"test_latency_seconds{renderer=\"TV \\\"Living\\\"\",quantile=\"0.9\"} 1\n" +
+			"test_latency_seconds{renderer=\"TV \\\"Living\\\"\",quantile=\"0.99\"} 1\n" +
+			"test_latency_seconds_sum{renderer=\"TV \\\"Living\\\"\"} 1\n" +
+			"test_latency_seconds_count{renderer=\"TV \\\"Living\\\"\"} 1\n" +
+			"# HELP test_requests_total Requests\n" +
+			"# TYPE test_requests_total counter\n" +
+			"test_requests_total 3\n"
+		);
+	}
+
+	@Test
+	public void testJson() {
+		Metrics.histogram("test_latency_seconds", "Latency").record(500000000);
+		JsonObject json = Metrics.toJson();
+		JsonObject value = json.getAsJsonObject("test_latency_seconds").getAsJsonArray("values").get(0).getAsJsonObject();
+		assertThat(value.get("count").getAsLong()).isEqualTo(1);
+		assertThat(value.get("sum").getAsDouble()).isEqualTo(0.5);
+		assertThat(value.get("p50").getAsDouble()).isEqualTo(0.5);
+	}
+
+	@Test
+	public void testTypeConflict() {
+		Metrics.counter("test_metric", "A counter");
+		assertThatThrownBy(() -> Metrics.histogram("test_metric", "A histogram")).isInstanceOf(IllegalArgumentException.class);
+	}
+}